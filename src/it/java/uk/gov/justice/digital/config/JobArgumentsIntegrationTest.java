@@ -9,6 +9,8 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 import org.junit.jupiter.params.provider.ValueSource;
+import uk.gov.justice.digital.job.batchprocessing.LatestRecordsStrategy;
+import uk.gov.justice.digital.service.ManifestUpdatePolicy;
 
 import java.time.Duration;
 import java.time.temporal.ChronoUnit;
@@ -30,6 +32,22 @@ import static org.mockito.Mockito.when;
 import static uk.gov.justice.digital.common.RegexPatterns.jsonOrParquetFileRegex;
 import static uk.gov.justice.digital.common.RegexPatterns.matchAllFiles;
 import static uk.gov.justice.digital.common.RegexPatterns.parquetFileRegex;
+import static uk.gov.justice.digital.config.JobArguments.DEFAULT_CDC_ADAPTIVE_TRIGGER_EVALUATION_INTERVAL_SECONDS;
+import static uk.gov.justice.digital.config.JobArguments.DEFAULT_CDC_ADAPTIVE_TRIGGER_MAX_INTERVAL_SECONDS;
+import static uk.gov.justice.digital.config.JobArguments.DEFAULT_CDC_ADAPTIVE_TRIGGER_MIN_INTERVAL_SECONDS;
+import static uk.gov.justice.digital.config.JobArguments.DEFAULT_CDC_CATCH_UP_LAG_THRESHOLD_SECONDS;
+import static uk.gov.justice.digital.config.JobArguments.DEFAULT_CDC_CATCH_UP_MAX_FILES_PER_TRIGGER;
+import static uk.gov.justice.digital.config.JobArguments.DEFAULT_CDC_CHANGE_LOG_COMPACTION_INTERVAL_SECONDS;
+import static uk.gov.justice.digital.config.JobArguments.DEFAULT_CDC_CLOUDWATCH_METRICS_FLUSH_INTERVAL_SECONDS;
+import static uk.gov.justice.digital.config.JobArguments.DEFAULT_CDC_CLOUDWATCH_METRICS_NAMESPACE;
+import static uk.gov.justice.digital.config.JobArguments.DEFAULT_CDC_MULTIPLEXED_QUERY_GROUPS;
+import static uk.gov.justice.digital.config.JobArguments.DEFAULT_CDC_QUERY_GRACEFUL_STOP_TIMEOUT_SECONDS;
+import static uk.gov.justice.digital.config.JobArguments.DEFAULT_CDC_QUERY_RESTART_FAILURE_WINDOW_SECONDS;
+import static uk.gov.justice.digital.config.JobArguments.DEFAULT_CDC_QUERY_RESTART_INITIAL_BACKOFF_SECONDS;
+import static uk.gov.justice.digital.config.JobArguments.DEFAULT_CDC_QUERY_RESTART_MAX_BACKOFF_SECONDS;
+import static uk.gov.justice.digital.config.JobArguments.DEFAULT_CDC_QUERY_RESTART_MAX_FAILURES;
+import static uk.gov.justice.digital.config.JobArguments.DEFAULT_CDC_QUERY_STARTUP_CONCURRENCY;
+import static uk.gov.justice.digital.config.JobArguments.DEFAULT_CDC_TABLE_CONFIG_WATCH_INTERVAL_SECONDS;
 import static uk.gov.justice.digital.config.JobArguments.DEFAULT_CDC_TRIGGER_INTERVAL_SECONDS;
 import static uk.gov.justice.digital.config.JobArguments.DEFAULT_RAW_FILE_RETENTION_PERIOD_AMOUNT;
 import static uk.gov.justice.digital.config.JobArguments.DEFAULT_SPARK_BROADCAST_TIMEOUT_SECONDS;
@@ -506,6 +524,334 @@ class JobArgumentsIntegrationTest {
         assertEquals(DEFAULT_CDC_TRIGGER_INTERVAL_SECONDS, jobArguments.getCdcTriggerIntervalSeconds());
     }
 
+    @Test
+    public void cdcMultiplexedQueriesShouldBeDisabledByDefault() {
+        JobArguments jobArguments = new JobArguments(givenAContextWithArguments(cloneTestArguments()));
+        assertFalse(jobArguments.isCdcMultiplexedQueriesEnabled());
+    }
+
+    @Test
+    public void getCdcMultiplexedQueryGroupsShouldUseDefaultWhenNotProvided() {
+        JobArguments jobArguments = new JobArguments(givenAContextWithArguments(cloneTestArguments()));
+        assertEquals(DEFAULT_CDC_MULTIPLEXED_QUERY_GROUPS, jobArguments.getCdcMultiplexedQueryGroups());
+    }
+
+    @Test
+    public void getCdcMultiplexedQueryGroupsShouldThrowWhenNotPositive() {
+        HashMap<String, String> args = cloneTestArguments();
+        args.put(JobArguments.CDC_MULTIPLEXED_QUERY_GROUPS, "0");
+        JobArguments jobArguments = new JobArguments(givenAContextWithArguments(args));
+        assertThrows(IllegalArgumentException.class, jobArguments::getCdcMultiplexedQueryGroups);
+    }
+
+    @Test
+    public void adaptiveTriggerArgumentsShouldUseDefaultsWhenNotProvided() {
+        JobArguments jobArguments = new JobArguments(givenAContextWithArguments(cloneTestArguments()));
+        assertFalse(jobArguments.isCdcAdaptiveTriggerEnabled());
+        assertEquals(DEFAULT_CDC_ADAPTIVE_TRIGGER_MIN_INTERVAL_SECONDS, jobArguments.getCdcAdaptiveTriggerMinIntervalSeconds());
+        assertEquals(DEFAULT_CDC_ADAPTIVE_TRIGGER_MAX_INTERVAL_SECONDS, jobArguments.getCdcAdaptiveTriggerMaxIntervalSeconds());
+        assertEquals(DEFAULT_CDC_ADAPTIVE_TRIGGER_EVALUATION_INTERVAL_SECONDS, jobArguments.getCdcAdaptiveTriggerEvaluationIntervalSeconds());
+    }
+
+    @Test
+    public void getCdcAdaptiveTriggerMaxIntervalSecondsShouldThrowWhenLessThanMinimum() {
+        HashMap<String, String> args = cloneTestArguments();
+        args.put(JobArguments.CDC_ADAPTIVE_TRIGGER_MIN_INTERVAL_SECONDS, "60");
+        args.put(JobArguments.CDC_ADAPTIVE_TRIGGER_MAX_INTERVAL_SECONDS, "30");
+        JobArguments jobArguments = new JobArguments(givenAContextWithArguments(args));
+        assertThrows(IllegalArgumentException.class, jobArguments::getCdcAdaptiveTriggerMaxIntervalSeconds);
+    }
+
+    @Test
+    public void cdcPipelinedZoneWritesShouldBeDisabledByDefault() {
+        JobArguments jobArguments = new JobArguments(givenAContextWithArguments(cloneTestArguments()));
+        assertFalse(jobArguments.isCdcPipelinedZoneWritesEnabled());
+    }
+
+    @Test
+    public void cdcBatchStorageLevelShouldDefaultToMemoryAndDisk() {
+        JobArguments jobArguments = new JobArguments(givenAContextWithArguments(cloneTestArguments()));
+        assertEquals(JobArguments.DEFAULT_CDC_BATCH_STORAGE_LEVEL, jobArguments.getCdcBatchStorageLevel());
+    }
+
+    @Test
+    public void cdcBatchStorageLevelShouldBeUpperCased() {
+        HashMap<String, String> args = cloneTestArguments();
+        args.put(JobArguments.CDC_BATCH_STORAGE_LEVEL, "disk_only");
+        JobArguments jobArguments = new JobArguments(givenAContextWithArguments(args));
+        assertEquals("DISK_ONLY", jobArguments.getCdcBatchStorageLevel());
+    }
+
+    @Test
+    public void dataStorageMergePruningShouldBeDisabledWithDefaultsWhenNotProvided() {
+        JobArguments jobArguments = new JobArguments(givenAContextWithArguments(cloneTestArguments()));
+        assertFalse(jobArguments.isDataStorageMergePruningEnabled());
+        assertFalse(jobArguments.isDataStorageMergeInsertOnlyFastPathEnabled());
+        assertEquals(JobArguments.DATA_STORAGE_MERGE_PRUNING_MAX_IN_LIST_KEYS_DEFAULT, jobArguments.getDataStorageMergePruningMaxInListKeys());
+        assertEquals(JobArguments.DATA_STORAGE_MERGE_BROADCAST_MAX_ROWS_DEFAULT, jobArguments.getDataStorageMergeBroadcastMaxRows());
+    }
+
+    @Test
+    public void getDataStorageMergeBroadcastMaxRowsShouldThrowWhenNegative() {
+        HashMap<String, String> args = cloneTestArguments();
+        args.put(JobArguments.DATA_STORAGE_MERGE_BROADCAST_MAX_ROWS, "-1");
+        JobArguments jobArguments = new JobArguments(givenAContextWithArguments(args));
+        assertThrows(IllegalArgumentException.class, jobArguments::getDataStorageMergeBroadcastMaxRows);
+    }
+
+    @Test
+    public void dataStorageManifestUpdatePolicyShouldDefaultToEager() {
+        JobArguments jobArguments = new JobArguments(givenAContextWithArguments(cloneTestArguments()));
+        assertEquals(ManifestUpdatePolicy.EAGER, jobArguments.getDataStorageManifestUpdatePolicy());
+        assertEquals(JobArguments.DATA_STORAGE_MANIFEST_DEBOUNCE_INTERVAL_SECONDS_DEFAULT, jobArguments.getDataStorageManifestDebounceIntervalSeconds());
+    }
+
+    @Test
+    public void dataStorageManifestUpdatePolicyShouldBeParsed() {
+        HashMap<String, String> args = cloneTestArguments();
+        args.put(JobArguments.DATA_STORAGE_MANIFEST_UPDATE_POLICY, "debounced");
+        JobArguments jobArguments = new JobArguments(givenAContextWithArguments(args));
+        assertEquals(ManifestUpdatePolicy.DEBOUNCED, jobArguments.getDataStorageManifestUpdatePolicy());
+    }
+
+    @Test
+    public void getDataStorageManifestUpdatePolicyShouldThrowWhenUnknown() {
+        HashMap<String, String> args = cloneTestArguments();
+        args.put(JobArguments.DATA_STORAGE_MANIFEST_UPDATE_POLICY, "never");
+        JobArguments jobArguments = new JobArguments(givenAContextWithArguments(args));
+        assertThrows(IllegalArgumentException.class, jobArguments::getDataStorageManifestUpdatePolicy);
+    }
+
+    @Test
+    public void getDataStorageManifestDebounceIntervalSecondsShouldThrowWhenNotPositive() {
+        HashMap<String, String> args = cloneTestArguments();
+        args.put(JobArguments.DATA_STORAGE_MANIFEST_DEBOUNCE_INTERVAL_SECONDS, "0");
+        JobArguments jobArguments = new JobArguments(givenAContextWithArguments(args));
+        assertThrows(IllegalArgumentException.class, jobArguments::getDataStorageManifestDebounceIntervalSeconds);
+    }
+
+    @Test
+    public void dataStorageTableRegistryShouldBeDisabledWhenNotProvided() {
+        JobArguments jobArguments = new JobArguments(givenAContextWithArguments(cloneTestArguments()));
+        assertFalse(jobArguments.isDataStorageTableRegistryEnabled());
+        assertEquals(JobArguments.DATA_STORAGE_TABLE_REGISTRY_TTL_SECONDS_DEFAULT, jobArguments.getDataStorageTableRegistryTtlSeconds());
+    }
+
+    @Test
+    public void getDataStorageTableRegistryTtlSecondsShouldThrowWhenNotPositive() {
+        HashMap<String, String> args = cloneTestArguments();
+        args.put(JobArguments.DATA_STORAGE_TABLE_REGISTRY_TTL_SECONDS, "0");
+        JobArguments jobArguments = new JobArguments(givenAContextWithArguments(args));
+        assertThrows(IllegalArgumentException.class, jobArguments::getDataStorageTableRegistryTtlSeconds);
+    }
+
+    @Test
+    public void dataStorageWriteStatsShouldBeDisabledWithDefaultsWhenNotProvided() {
+        JobArguments jobArguments = new JobArguments(givenAContextWithArguments(cloneTestArguments()));
+        assertFalse(jobArguments.isDataStorageWriteStatsEnabled());
+        assertEquals(JobArguments.DATA_STORAGE_WRITE_STATS_FLUSH_INTERVAL_SECONDS_DEFAULT, jobArguments.getDataStorageWriteStatsFlushIntervalSeconds());
+    }
+
+    @Test
+    public void getDataStorageWriteStatsFlushIntervalSecondsShouldThrowWhenNotPositive() {
+        HashMap<String, String> args = cloneTestArguments();
+        args.put(JobArguments.DATA_STORAGE_WRITE_STATS_FLUSH_INTERVAL_SECONDS, "0");
+        JobArguments jobArguments = new JobArguments(givenAContextWithArguments(args));
+        assertThrows(IllegalArgumentException.class, jobArguments::getDataStorageWriteStatsFlushIntervalSeconds);
+    }
+
+    @Test
+    public void dataStorageCommitCoordinatorShouldBeDisabledWhenNotProvided() {
+        JobArguments jobArguments = new JobArguments(givenAContextWithArguments(cloneTestArguments()));
+        assertFalse(jobArguments.isDataStorageCommitCoordinatorEnabled());
+    }
+
+    @Test
+    public void maintenanceListTableParallelismShouldDefaultWhenNotProvided() {
+        JobArguments jobArguments = new JobArguments(givenAContextWithArguments(cloneTestArguments()));
+        assertEquals(JobArguments.MAINTENANCE_LIST_TABLE_PARALLELISM_DEFAULT, jobArguments.getMaintenanceListTableParallelism());
+    }
+
+    @Test
+    public void getMaintenanceListTableParallelismShouldThrowWhenNotPositive() {
+        HashMap<String, String> args = cloneTestArguments();
+        args.put(JobArguments.MAINTENANCE_LIST_TABLE_PARALLELISM, "0");
+        JobArguments jobArguments = new JobArguments(givenAContextWithArguments(args));
+        assertThrows(IllegalArgumentException.class, jobArguments::getMaintenanceListTableParallelism);
+    }
+
+    @Test
+    public void batchLoadTableParallelismShouldDefaultWhenNotProvided() {
+        JobArguments jobArguments = new JobArguments(givenAContextWithArguments(cloneTestArguments()));
+        assertEquals(JobArguments.BATCH_LOAD_TABLE_PARALLELISM_DEFAULT, jobArguments.getBatchLoadTableParallelism());
+    }
+
+    @Test
+    public void getBatchLoadTableParallelismShouldThrowWhenNotPositive() {
+        HashMap<String, String> args = cloneTestArguments();
+        args.put(JobArguments.BATCH_LOAD_TABLE_PARALLELISM, "0");
+        JobArguments jobArguments = new JobArguments(givenAContextWithArguments(args));
+        assertThrows(IllegalArgumentException.class, jobArguments::getBatchLoadTableParallelism);
+    }
+
+    @Test
+    public void batchLoadDiscoveryParallelismShouldDefaultWhenNotProvided() {
+        JobArguments jobArguments = new JobArguments(givenAContextWithArguments(cloneTestArguments()));
+        assertEquals(JobArguments.BATCH_LOAD_DISCOVERY_PARALLELISM_DEFAULT, jobArguments.getBatchLoadDiscoveryParallelism());
+    }
+
+    @Test
+    public void getBatchLoadDiscoveryParallelismShouldThrowWhenNotPositive() {
+        HashMap<String, String> args = cloneTestArguments();
+        args.put(JobArguments.BATCH_LOAD_DISCOVERY_PARALLELISM, "0");
+        JobArguments jobArguments = new JobArguments(givenAContextWithArguments(args));
+        assertThrows(IllegalArgumentException.class, jobArguments::getBatchLoadDiscoveryParallelism);
+    }
+
+    @Test
+    public void batchLoadSchemaGroupingShouldBeDisabledWhenNotProvided() {
+        JobArguments jobArguments = new JobArguments(givenAContextWithArguments(cloneTestArguments()));
+        assertFalse(jobArguments.isBatchLoadSchemaGroupingEnabled());
+    }
+
+    @Test
+    public void batchLoadResumeShouldBeDisabledWhenNotProvided() {
+        JobArguments jobArguments = new JobArguments(givenAContextWithArguments(cloneTestArguments()));
+        assertFalse(jobArguments.isBatchLoadResumeEnabled());
+    }
+
+    @Test
+    public void batchLoadProgressPathShouldBeRequired() {
+        JobArguments jobArguments = new JobArguments(givenAContextWithArguments(cloneTestArguments()));
+        assertThrows(IllegalStateException.class, jobArguments::getBatchLoadProgressPath);
+    }
+
+    @Test
+    public void dataStorageLoadPlannerShouldBeDisabledWhenNotProvided() {
+        JobArguments jobArguments = new JobArguments(givenAContextWithArguments(cloneTestArguments()));
+        assertFalse(jobArguments.isDataStorageLoadPlannerEnabled());
+    }
+
+    @Test
+    public void cdcLatestRecordsStrategyShouldDefaultToWindow() {
+        JobArguments jobArguments = new JobArguments(givenAContextWithArguments(cloneTestArguments()));
+        assertEquals(LatestRecordsStrategy.WINDOW, jobArguments.getCdcLatestRecordsStrategy());
+    }
+
+    @Test
+    public void cdcLatestRecordsStrategyShouldBeParsed() {
+        HashMap<String, String> args = cloneTestArguments();
+        args.put(JobArguments.CDC_LATEST_RECORDS_STRATEGY, "aggregate");
+        JobArguments jobArguments = new JobArguments(givenAContextWithArguments(args));
+        assertEquals(LatestRecordsStrategy.AGGREGATE, jobArguments.getCdcLatestRecordsStrategy());
+    }
+
+    @Test
+    public void getCdcLatestRecordsStrategyShouldThrowWhenUnknown() {
+        HashMap<String, String> args = cloneTestArguments();
+        args.put(JobArguments.CDC_LATEST_RECORDS_STRATEGY, "sort");
+        JobArguments jobArguments = new JobArguments(givenAContextWithArguments(args));
+        assertThrows(IllegalArgumentException.class, jobArguments::getCdcLatestRecordsStrategy);
+    }
+
+    @Test
+    public void tableConfigWatchArgumentsShouldUseDefaultsWhenNotProvided() {
+        JobArguments jobArguments = new JobArguments(givenAContextWithArguments(cloneTestArguments()));
+        assertFalse(jobArguments.isCdcTableConfigWatchEnabled());
+        assertEquals(DEFAULT_CDC_TABLE_CONFIG_WATCH_INTERVAL_SECONDS, jobArguments.getCdcTableConfigWatchIntervalSeconds());
+        assertEquals(DEFAULT_CDC_QUERY_STARTUP_CONCURRENCY, jobArguments.getCdcQueryStartupConcurrency());
+        assertEquals(DEFAULT_CDC_QUERY_GRACEFUL_STOP_TIMEOUT_SECONDS, jobArguments.getCdcQueryGracefulStopTimeoutSeconds());
+    }
+
+    @Test
+    public void getCdcQueryStartupConcurrencyShouldThrowWhenNotPositive() {
+        HashMap<String, String> args = cloneTestArguments();
+        args.put(JobArguments.CDC_QUERY_STARTUP_CONCURRENCY, "0");
+        JobArguments jobArguments = new JobArguments(givenAContextWithArguments(args));
+        assertThrows(IllegalArgumentException.class, jobArguments::getCdcQueryStartupConcurrency);
+    }
+
+    @Test
+    public void cdcSchedulerPoolsShouldBeDisabledByDefault() {
+        JobArguments jobArguments = new JobArguments(givenAContextWithArguments(cloneTestArguments()));
+        assertFalse(jobArguments.isCdcSchedulerPoolsEnabled());
+    }
+
+    @Test
+    public void cdcCloudwatchMetricsShouldBeDisabledWithDefaultsWhenNotProvided() {
+        JobArguments jobArguments = new JobArguments(givenAContextWithArguments(cloneTestArguments()));
+        assertFalse(jobArguments.isCdcCloudwatchMetricsEnabled());
+        assertEquals(DEFAULT_CDC_CLOUDWATCH_METRICS_NAMESPACE, jobArguments.getCdcCloudwatchMetricsNamespace());
+        assertEquals(DEFAULT_CDC_CLOUDWATCH_METRICS_FLUSH_INTERVAL_SECONDS, jobArguments.getCdcCloudwatchMetricsFlushIntervalSeconds());
+    }
+
+    @Test
+    public void getCdcCloudwatchMetricsFlushIntervalSecondsShouldThrowWhenNotPositive() {
+        HashMap<String, String> args = cloneTestArguments();
+        args.put(JobArguments.CDC_CLOUDWATCH_METRICS_FLUSH_INTERVAL_SECONDS, "0");
+        JobArguments jobArguments = new JobArguments(givenAContextWithArguments(args));
+        assertThrows(IllegalArgumentException.class, jobArguments::getCdcCloudwatchMetricsFlushIntervalSeconds);
+    }
+
+    @Test
+    public void cdcQuerySupervisorShouldBeDisabledWithDefaultsWhenNotProvided() {
+        JobArguments jobArguments = new JobArguments(givenAContextWithArguments(cloneTestArguments()));
+        assertFalse(jobArguments.isCdcQuerySupervisorEnabled());
+        assertEquals(DEFAULT_CDC_QUERY_RESTART_INITIAL_BACKOFF_SECONDS, jobArguments.getCdcQueryRestartInitialBackoffSeconds());
+        assertEquals(DEFAULT_CDC_QUERY_RESTART_MAX_BACKOFF_SECONDS, jobArguments.getCdcQueryRestartMaxBackoffSeconds());
+        assertEquals(DEFAULT_CDC_QUERY_RESTART_MAX_FAILURES, jobArguments.getCdcQueryRestartMaxFailures());
+        assertEquals(DEFAULT_CDC_QUERY_RESTART_FAILURE_WINDOW_SECONDS, jobArguments.getCdcQueryRestartFailureWindowSeconds());
+    }
+
+    @Test
+    public void getCdcQueryRestartMaxBackoffSecondsShouldThrowWhenLessThanTheInitialBackoff() {
+        HashMap<String, String> args = cloneTestArguments();
+        args.put(JobArguments.CDC_QUERY_RESTART_INITIAL_BACKOFF_SECONDS, "60");
+        args.put(JobArguments.CDC_QUERY_RESTART_MAX_BACKOFF_SECONDS, "30");
+        JobArguments jobArguments = new JobArguments(givenAContextWithArguments(args));
+        assertThrows(IllegalArgumentException.class, jobArguments::getCdcQueryRestartMaxBackoffSeconds);
+    }
+
+    @Test
+    public void getCdcQueryRestartMaxFailuresShouldThrowWhenNotPositive() {
+        HashMap<String, String> args = cloneTestArguments();
+        args.put(JobArguments.CDC_QUERY_RESTART_MAX_FAILURES, "0");
+        JobArguments jobArguments = new JobArguments(givenAContextWithArguments(args));
+        assertThrows(IllegalArgumentException.class, jobArguments::getCdcQueryRestartMaxFailures);
+    }
+
+    @Test
+    public void cdcCatchUpShouldBeDisabledWithDefaultsWhenNotProvided() {
+        JobArguments jobArguments = new JobArguments(givenAContextWithArguments(cloneTestArguments()));
+        assertFalse(jobArguments.isCdcCatchUpEnabled());
+        assertEquals(DEFAULT_CDC_CATCH_UP_MAX_FILES_PER_TRIGGER, jobArguments.getCdcCatchUpMaxFilesPerTrigger());
+        assertEquals(DEFAULT_CDC_CATCH_UP_LAG_THRESHOLD_SECONDS, jobArguments.getCdcCatchUpLagThresholdSeconds());
+        assertFalse(jobArguments.isCdcCatchUpRelaxedManifestUpdates());
+    }
+
+    @Test
+    public void getCdcCatchUpMaxFilesPerTriggerShouldThrowWhenNotPositive() {
+        HashMap<String, String> args = cloneTestArguments();
+        args.put(JobArguments.CDC_CATCH_UP_MAX_FILES_PER_TRIGGER, "0");
+        JobArguments jobArguments = new JobArguments(givenAContextWithArguments(args));
+        assertThrows(IllegalArgumentException.class, jobArguments::getCdcCatchUpMaxFilesPerTrigger);
+    }
+
+    @Test
+    public void cdcChangeLogShouldBeDisabledWithDefaultsWhenNotProvided() {
+        JobArguments jobArguments = new JobArguments(givenAContextWithArguments(cloneTestArguments()));
+        assertFalse(jobArguments.isCdcChangeLogEnabled());
+        assertEquals(DEFAULT_CDC_CHANGE_LOG_COMPACTION_INTERVAL_SECONDS, jobArguments.getCdcChangeLogCompactionIntervalSeconds());
+    }
+
+    @Test
+    public void getCdcChangeLogCompactionIntervalSecondsShouldThrowWhenNotPositive() {
+        HashMap<String, String> args = cloneTestArguments();
+        args.put(JobArguments.CDC_CHANGE_LOG_COMPACTION_INTERVAL_SECONDS, "0");
+        JobArguments jobArguments = new JobArguments(givenAContextWithArguments(args));
+        assertThrows(IllegalArgumentException.class, jobArguments::getCdcChangeLogCompactionIntervalSeconds);
+    }
+
     @Test
     public void cleanCdcCheckpointShouldDefaultToFalseWhenNotProvided() {
         HashMap<String, String> args = cloneTestArguments();
@@ -35,6 +35,7 @@ import static org.mockito.Mockito.when;
 import static uk.gov.justice.digital.common.CommonDataFields.ShortOperationCode.Insert;
 import static uk.gov.justice.digital.common.CommonDataFields.ShortOperationCode.Delete;
 import static uk.gov.justice.digital.common.CommonDataFields.ShortOperationCode.Update;
+import static uk.gov.justice.digital.config.JobArguments.BATCH_LOAD_DISCOVERY_PARALLELISM_DEFAULT;
 import static uk.gov.justice.digital.test.Fixtures.fixedClock;
 import static uk.gov.justice.digital.test.MinimalTestData.createRow;
 
@@ -64,6 +65,7 @@ public class CreateReloadDiffJobE2ESmokeIT extends E2ETestBase {
         when(arguments.getTempReloadOutputFolder()).thenReturn("diffs");
         when(arguments.getDmsTaskId()).thenReturn(DMS_TASK_ID);
         when(arguments.getBatchLoadFileGlobPattern()).thenReturn("*.parquet");
+        when(arguments.getBatchLoadDiscoveryParallelism()).thenReturn(BATCH_LOAD_DISCOVERY_PARALLELISM_DEFAULT);
         when(dmsOrchestrationService.getTaskStartTime(DMS_TASK_ID)).thenReturn(dmsTaskStartTime);
         givenDependenciesAreInjected();
     }
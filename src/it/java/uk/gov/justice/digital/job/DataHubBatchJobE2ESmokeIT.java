@@ -13,12 +13,16 @@ import uk.gov.justice.digital.config.JobArguments;
 import uk.gov.justice.digital.config.JobProperties;
 import uk.gov.justice.digital.job.batchprocessing.BatchProcessor;
 import uk.gov.justice.digital.provider.SparkSessionProvider;
+import uk.gov.justice.digital.service.ChangeLogService;
 import uk.gov.justice.digital.service.ConfigService;
 import uk.gov.justice.digital.service.DataStorageService;
+import uk.gov.justice.digital.service.LoadProgressService;
+import uk.gov.justice.digital.service.ParquetSchemaCacheService;
 import uk.gov.justice.digital.service.SourceReferenceService;
 import uk.gov.justice.digital.service.TableDiscoveryService;
 import uk.gov.justice.digital.service.ValidationService;
 import uk.gov.justice.digital.service.ViolationService;
+import uk.gov.justice.digital.service.WriteStatsService;
 import uk.gov.justice.digital.service.operationaldatastore.OperationalDataStoreService;
 import uk.gov.justice.digital.service.operationaldatastore.OperationalDataStoreServiceImpl;
 import uk.gov.justice.digital.service.operationaldatastore.OperationalDataStoreTransformation;
@@ -32,11 +36,14 @@ import uk.gov.justice.digital.zone.structured.StructuredZoneLoad;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.time.Clock;
 import java.util.Arrays;
 import java.util.List;
 
 import static org.mockito.Mockito.when;
 import static uk.gov.justice.digital.common.CommonDataFields.ShortOperationCode.Insert;
+import static uk.gov.justice.digital.config.JobArguments.BATCH_LOAD_DISCOVERY_PARALLELISM_DEFAULT;
+import static uk.gov.justice.digital.config.JobArguments.BATCH_LOAD_TABLE_PARALLELISM_DEFAULT;
 import static uk.gov.justice.digital.config.JobArguments.OPERATIONAL_DATA_STORE_JDBC_BATCH_SIZE_DEFAULT;
 import static uk.gov.justice.digital.test.MinimalTestData.createRow;
 import static uk.gov.justice.digital.test.SharedTestFunctions.givenDatastoreCredentials;
@@ -72,6 +79,8 @@ class DataHubBatchJobE2ESmokeIT extends E2ETestBase {
     private ConfigService configService;
     @Mock
     private JDBCGlueConnectionDetailsService connectionDetailsService;
+    @Mock
+    private WriteStatsService writeStatsService;
     private DataHubBatchJob underTest;
 
     @BeforeAll
@@ -144,6 +153,7 @@ class DataHubBatchJobE2ESmokeIT extends E2ETestBase {
         givenTableConfigIsConfigured(arguments, configService);
         givenGlobPatternIsConfigured();
         givenRetrySettingsAreConfigured(arguments);
+        when(arguments.getBatchLoadTableParallelism()).thenReturn(BATCH_LOAD_TABLE_PARALLELISM_DEFAULT);
         when(arguments.getOperationalDataStoreJdbcBatchSize()).thenReturn(OPERATIONAL_DATA_STORE_JDBC_BATCH_SIZE_DEFAULT);
         when(arguments.getOperationalDataStoreGlueConnectionName()).thenReturn("operational-datastore-connection-name");
         when(properties.getSparkDriverMemory()).thenReturn("2g");
@@ -161,9 +171,10 @@ class DataHubBatchJobE2ESmokeIT extends E2ETestBase {
         DataStorageService storageService = new DataStorageService(arguments);
         S3DataProvider dataProvider = new S3DataProvider(arguments);
         ViolationService violationService = new ViolationService(arguments, storageService, dataProvider, tableDiscoveryService);
-        ValidationService validationService = new ValidationService(violationService);
+        ParquetSchemaCacheService schemaCache = new ParquetSchemaCacheService();
+        ValidationService validationService = new ValidationService(violationService, schemaCache);
         StructuredZoneLoad structuredZoneLoad = new StructuredZoneLoad(arguments, storageService, violationService);
-        CuratedZoneLoad curatedZoneLoad = new CuratedZoneLoad(arguments, storageService, violationService);
+        CuratedZoneLoad curatedZoneLoad = new CuratedZoneLoad(arguments, storageService, violationService, new ChangeLogService(arguments, configService, storageService, Clock.systemUTC()));
         OperationalDataStoreTransformation operationalDataStoreTransformation = new OperationalDataStoreTransformation();
         ConnectionPoolProvider connectionPoolProvider = new ConnectionPoolProvider();
         OperationalDataStoreRepository operationalDataStoreRepository =
@@ -181,12 +192,16 @@ class DataHubBatchJobE2ESmokeIT extends E2ETestBase {
                 batchProcessor,
                 dataProvider,
                 sourceReferenceService,
-                violationService
+                violationService,
+                writeStatsService,
+                schemaCache,
+                new LoadProgressService(arguments, storageService)
         );
     }
 
     private void givenGlobPatternIsConfigured() {
         // Pattern for data written by Spark as input in tests instead of by DMS
         when(arguments.getBatchLoadFileGlobPattern()).thenReturn("part-*parquet");
+        when(arguments.getBatchLoadDiscoveryParallelism()).thenReturn(BATCH_LOAD_DISCOVERY_PARALLELISM_DEFAULT);
     }
 }
\ No newline at end of file
@@ -13,15 +13,25 @@ import uk.gov.justice.digital.client.s3.S3DataProvider;
 import uk.gov.justice.digital.config.JobArguments;
 import uk.gov.justice.digital.config.JobProperties;
 import uk.gov.justice.digital.job.batchprocessing.CdcBatchProcessor;
+import uk.gov.justice.digital.job.cdc.AdaptiveTriggerPolicy;
+import uk.gov.justice.digital.job.cdc.AdaptiveTriggerScheduler;
+import uk.gov.justice.digital.job.cdc.TableConfigWatcher;
+import uk.gov.justice.digital.job.cdc.CatchUpCoordinator;
+import uk.gov.justice.digital.job.cdc.TableQuerySupervisor;
 import uk.gov.justice.digital.job.cdc.TableStreamingQuery;
 import uk.gov.justice.digital.job.cdc.TableStreamingQueryProvider;
 import uk.gov.justice.digital.provider.SparkSessionProvider;
+import uk.gov.justice.digital.service.ChangeLogService;
 import uk.gov.justice.digital.service.ConfigService;
 import uk.gov.justice.digital.service.DataStorageService;
+import uk.gov.justice.digital.service.ParquetSchemaCacheService;
+import uk.gov.justice.digital.service.SchedulerPoolService;
 import uk.gov.justice.digital.service.SourceReferenceService;
 import uk.gov.justice.digital.service.TableDiscoveryService;
 import uk.gov.justice.digital.service.ValidationService;
 import uk.gov.justice.digital.service.ViolationService;
+import uk.gov.justice.digital.service.WriteStatsService;
+import uk.gov.justice.digital.service.metrics.StreamingMetricsCollector;
 import uk.gov.justice.digital.service.operationaldatastore.OperationalDataStoreService;
 import uk.gov.justice.digital.service.operationaldatastore.OperationalDataStoreServiceImpl;
 import uk.gov.justice.digital.service.operationaldatastore.OperationalDataStoreTransformation;
@@ -30,6 +40,7 @@ import uk.gov.justice.digital.service.JDBCGlueConnectionDetailsService;
 import uk.gov.justice.digital.service.operationaldatastore.dataaccess.OperationalDataStoreDataAccessService;
 import uk.gov.justice.digital.service.operationaldatastore.dataaccess.OperationalDataStoreRepository;
 import uk.gov.justice.digital.test.InMemoryOperationalDataStore;
+import uk.gov.justice.digital.test.InMemoryStreamingMetricsSink;
 import uk.gov.justice.digital.zone.curated.CuratedZoneCDC;
 import uk.gov.justice.digital.zone.structured.StructuredZoneCDC;
 
@@ -37,6 +48,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.sql.Connection;
+import java.time.Clock;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
@@ -45,8 +57,11 @@ import java.util.concurrent.TimeUnit;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.mockito.Mockito.when;
 import static uk.gov.justice.digital.common.CommonDataFields.ShortOperationCode.Insert;
+import static uk.gov.justice.digital.config.JobArguments.DEFAULT_CDC_BATCH_STORAGE_LEVEL;
 import static uk.gov.justice.digital.config.JobArguments.OPERATIONAL_DATA_STORE_JDBC_BATCH_SIZE_DEFAULT;
 import static uk.gov.justice.digital.config.JobArguments.STREAMING_JOB_DEFAULT_MAX_FILES_PER_TRIGGER;
+import static uk.gov.justice.digital.service.metrics.StreamingMetricsCollector.BACKLOG;
+import static uk.gov.justice.digital.service.metrics.StreamingMetricsCollector.INPUT_ROWS;
 import static uk.gov.justice.digital.test.MinimalTestData.createRow;
 import static uk.gov.justice.digital.test.SharedTestFunctions.givenDatastoreCredentials;
 import static uk.gov.justice.digital.test.SharedTestFunctions.givenSchemaExists;
@@ -80,6 +95,8 @@ public class DataHubCdcJobE2ESmokeIT extends E2ETestBase {
     private ConfigService configService;
     @Mock
     private JDBCGlueConnectionDetailsService connectionDetailsService;
+    private final InMemoryStreamingMetricsSink metricsSink = new InMemoryStreamingMetricsSink();
+    private StreamingMetricsCollector streamingMetricsCollector;
     private DataHubCdcJob underTest;
     private List<TableStreamingQuery> streamingQueries;
 
@@ -176,6 +193,8 @@ public class DataHubCdcJobE2ESmokeIT extends E2ETestBase {
 
         thenEventually(() -> thenStructuredViolationsContainsForPK(offendersTable, "3a", pk3));
 
+        thenEventually(() -> thenMetricsWerePublishedFor(agencyLocationsTable));
+
         thenStructuredCuratedAndOperationalDataStoreDoNotContainPK(offendersTable, pk1, testQueryConnection);
         thenStructuredCuratedAndOperationalDataStoreDoNotContainPK(offendersTable, pk2, testQueryConnection);
         thenStructuredCuratedAndOperationalDataStoreDoNotContainPK(offendersTable, pk3, testQueryConnection);
@@ -190,11 +209,21 @@ public class DataHubCdcJobE2ESmokeIT extends E2ETestBase {
         givenLoadingSchemaIsConfigured();
         when(arguments.getOperationalDataStoreJdbcBatchSize()).thenReturn(OPERATIONAL_DATA_STORE_JDBC_BATCH_SIZE_DEFAULT);
         when(arguments.streamingJobMaxFilePerTrigger()).thenReturn(STREAMING_JOB_DEFAULT_MAX_FILES_PER_TRIGGER);
+        when(arguments.getCdcBatchStorageLevel()).thenReturn(DEFAULT_CDC_BATCH_STORAGE_LEVEL);
+        when(arguments.isCdcCloudwatchMetricsEnabled()).thenReturn(true);
+        // Metrics are flushed by the test rather than on a schedule
+        when(arguments.getCdcCloudwatchMetricsFlushIntervalSeconds()).thenReturn(3600L);
         when(arguments.getOperationalDataStoreGlueConnectionName()).thenReturn("operational-datastore-connection-name");
         when(properties.getSparkDriverMemory()).thenReturn("2g");
         when(properties.getSparkExecutorMemory()).thenReturn("2g");
     }
 
+    private void thenMetricsWerePublishedFor(String table) {
+        streamingMetricsCollector.flush();
+        assertFalse(metricsSink.getPublished(INPUT_ROWS, inputSchemaName, table).isEmpty());
+        assertFalse(metricsSink.getPublished(BACKLOG, inputSchemaName, table).isEmpty());
+    }
+
     private void whenTheJobRuns() {
         streamingQueries = underTest.runJob(spark);
         assertFalse(streamingQueries.isEmpty());
@@ -209,8 +238,10 @@ public class DataHubCdcJobE2ESmokeIT extends E2ETestBase {
         S3DataProvider dataProvider = new S3DataProvider(arguments);
         DataStorageService storageService = new DataStorageService(arguments);
         ViolationService violationService = new ViolationService(arguments, storageService, dataProvider, tableDiscoveryService);
-        ValidationService validationService = new ValidationService(violationService);
-        CuratedZoneCDC curatedZone = new CuratedZoneCDC(arguments, violationService, storageService);
+        ParquetSchemaCacheService schemaCache = new ParquetSchemaCacheService();
+        ValidationService validationService = new ValidationService(violationService, schemaCache);
+        ChangeLogService changeLogService = new ChangeLogService(arguments, configService, storageService, Clock.systemUTC());
+        CuratedZoneCDC curatedZone = new CuratedZoneCDC(arguments, violationService, storageService, changeLogService);
         StructuredZoneCDC structuredZone = new StructuredZoneCDC(arguments, violationService, storageService);
         OperationalDataStoreTransformation operationalDataStoreTransformation = new OperationalDataStoreTransformation();
         ConnectionPoolProvider connectionPoolProvider = new ConnectionPoolProvider();
@@ -220,17 +251,26 @@ public class DataHubCdcJobE2ESmokeIT extends E2ETestBase {
                 new OperationalDataStoreDataAccessService(arguments, connectionDetailsService, connectionPoolProvider, operationalDataStoreRepository);
         OperationalDataStoreService operationalDataStoreService =
                 new OperationalDataStoreServiceImpl(arguments, operationalDataStoreTransformation, operationalDataStoreDataAccessService);
+        streamingMetricsCollector = new StreamingMetricsCollector(arguments, metricsSink);
         CdcBatchProcessor batchProcessor = new CdcBatchProcessor(
+                arguments,
                 validationService,
                 structuredZone,
                 curatedZone,
                 dataProvider,
-                operationalDataStoreService
+                operationalDataStoreService,
+                schemaCache,
+                streamingMetricsCollector
         );
         TableStreamingQueryProvider tableStreamingQueryProvider = new TableStreamingQueryProvider(
-                arguments, dataProvider, batchProcessor, sourceReferenceService, violationService
+                arguments, dataProvider, batchProcessor, sourceReferenceService, violationService, schemaCache,
+                new SchedulerPoolService(arguments, configService), streamingMetricsCollector, Clock.systemUTC()
         );
-        underTest = new DataHubCdcJob(arguments, jobProperties, sparkSessionProvider, tableStreamingQueryProvider, tableDiscoveryService);
+        AdaptiveTriggerScheduler adaptiveTriggerScheduler = new AdaptiveTriggerScheduler(arguments, new AdaptiveTriggerPolicy(arguments));
+        TableConfigWatcher tableConfigWatcher = new TableConfigWatcher(arguments, tableDiscoveryService);
+        underTest = new DataHubCdcJob(arguments, jobProperties, sparkSessionProvider, tableStreamingQueryProvider, tableDiscoveryService, adaptiveTriggerScheduler, tableConfigWatcher, streamingMetricsCollector,
+                new TableQuerySupervisor(arguments, streamingMetricsCollector, Clock.systemUTC()), new CatchUpCoordinator(), storageService, changeLogService,
+                new WriteStatsService(arguments, storageService, streamingMetricsCollector));
     }
 
     private void givenCheckpointsAreConfigured() throws IOException {
@@ -13,8 +13,10 @@ import uk.gov.justice.digital.client.s3.S3DataProvider;
 import uk.gov.justice.digital.config.JobArguments;
 import uk.gov.justice.digital.config.JobProperties;
 import uk.gov.justice.digital.datahub.model.SourceReference;
+import uk.gov.justice.digital.service.ChangeLogService;
 import uk.gov.justice.digital.service.ConfigService;
 import uk.gov.justice.digital.service.DataStorageService;
+import uk.gov.justice.digital.service.ParquetSchemaCacheService;
 import uk.gov.justice.digital.service.TableDiscoveryService;
 import uk.gov.justice.digital.service.ValidationService;
 import uk.gov.justice.digital.service.ViolationService;
@@ -31,6 +33,7 @@ import uk.gov.justice.digital.zone.curated.CuratedZoneLoad;
 import uk.gov.justice.digital.zone.structured.StructuredZoneLoad;
 
 import java.sql.Connection;
+import java.time.Clock;
 import java.util.Arrays;
 
 import static org.apache.spark.sql.functions.lit;
@@ -283,9 +286,9 @@ class BatchProcessorIT extends BaseMinimalDataIntegrationTest {
         S3DataProvider dataProvider = new S3DataProvider(arguments);
         TableDiscoveryService tableDiscoveryService = new TableDiscoveryService(arguments, configService);
         ViolationService violationService = new ViolationService(arguments, storageService, dataProvider, tableDiscoveryService);
-        ValidationService validationService = new ValidationService(violationService);
+        ValidationService validationService = new ValidationService(violationService, new ParquetSchemaCacheService());
         StructuredZoneLoad structuredZoneLoad = new StructuredZoneLoad(arguments, storageService, violationService);
-        CuratedZoneLoad curatedZoneLoad = new CuratedZoneLoad(arguments, storageService, violationService);
+        CuratedZoneLoad curatedZoneLoad = new CuratedZoneLoad(arguments, storageService, violationService, new ChangeLogService(arguments, configService, storageService, Clock.systemUTC()));
         OperationalDataStoreTransformation operationalDataStoreTransformation = new OperationalDataStoreTransformation();
         ConnectionPoolProvider connectionPoolProvider = new ConnectionPoolProvider();
         OperationalDataStoreRepository operationalDataStoreRepository =
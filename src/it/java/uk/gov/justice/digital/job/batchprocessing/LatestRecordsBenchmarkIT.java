@@ -0,0 +1,101 @@
+package uk.gov.justice.digital.job.batchprocessing;
+
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.justice.digital.config.BaseSparkTest;
+import uk.gov.justice.digital.datahub.model.SourceReference;
+
+import java.util.function.BiFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static uk.gov.justice.digital.common.CommonDataFields.TIMESTAMP;
+
+/**
+ * Compares the time each way of finding the latest record per primary key takes over uniform and skewed key
+ * distributions. Only runs when DPR_RUN_BENCHMARKS=true, e.g. DPR_RUN_BENCHMARKS=true ./gradlew integrationTest --tests '*LatestRecordsBenchmarkIT'
+ */
+@EnabledIfEnvironmentVariable(named = "DPR_RUN_BENCHMARKS", matches = "true")
+class LatestRecordsBenchmarkIT extends BaseSparkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(LatestRecordsBenchmarkIT.class);
+
+    private static final SourceReference.PrimaryKey primaryKey = new SourceReference.PrimaryKey("pk");
+    private static final long ROWS = 2_000_000L;
+    private static final long KEYS = 200_000L;
+    private static final int WARM_UP_RUNS = 2;
+    private static final int TIMED_RUNS = 5;
+
+    private String previousShufflePartitions;
+
+    @BeforeEach
+    public void setUp() {
+        previousShufflePartitions = spark.conf().get("spark.sql.shuffle.partitions");
+        spark.conf().set("spark.sql.shuffle.partitions", "8");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        spark.conf().set("spark.sql.shuffle.partitions", previousShufflePartitions);
+    }
+
+    @Test
+    public void compareStrategiesOverUniformKeys() {
+        compareStrategies("uniform", changes(String.format("id %% %d", KEYS)));
+    }
+
+    @Test
+    public void compareStrategiesOverSkewedKeys() {
+        // Half of the changes are to 10 keys, as when a few hot rows are updated repeatedly
+        compareStrategies("skewed", changes(String.format("if(id %% 2 = 0, id %% 10, id %% %d)", KEYS)));
+    }
+
+    private void compareStrategies(String distribution, Dataset<Row> numericKeyChanges) {
+        numericKeyChanges.cache().count();
+        Dataset<Row> stringKeyChanges = numericKeyChanges.selectExpr("cast(pk as string) as pk", TIMESTAMP, "data");
+        stringKeyChanges.cache().count();
+        try {
+            long windowCount = LatestRecords.byWindow(numericKeyChanges, primaryKey).count();
+            assertEquals(windowCount, LatestRecords.byAggregation(numericKeyChanges, primaryKey).count());
+            assertEquals(windowCount, LatestRecords.byAggregation(stringKeyChanges, primaryKey).count());
+
+            time(distribution, "window", numericKeyChanges, LatestRecords::byWindow);
+            time(distribution, "aggregate (numeric key fast path)", numericKeyChanges, LatestRecords::byAggregation);
+            time(distribution, "aggregate (max_by)", stringKeyChanges, LatestRecords::byAggregation);
+        } finally {
+            numericKeyChanges.unpersist();
+            stringKeyChanges.unpersist();
+        }
+    }
+
+    private static void time(
+            String distribution,
+            String strategy,
+            Dataset<Row> changes,
+            BiFunction<Dataset<Row>, SourceReference.PrimaryKey, Dataset<Row>> latestRecords
+    ) {
+        for (int run = 0; run < WARM_UP_RUNS; run++) {
+            latestRecords.apply(changes, primaryKey).write().format("noop").mode("overwrite").save();
+        }
+        long totalMillis = 0;
+        for (int run = 0; run < TIMED_RUNS; run++) {
+            long start = System.currentTimeMillis();
+            latestRecords.apply(changes, primaryKey).write().format("noop").mode("overwrite").save();
+            totalMillis += System.currentTimeMillis() - start;
+        }
+        logger.info("Latest records for {} rows over {} keys by {}: {}ms on average", ROWS, distribution, strategy, totalMillis / TIMED_RUNS);
+    }
+
+    private static Dataset<Row> changes(String keyExpression) {
+        return spark.range(ROWS).selectExpr(
+                String.format("cast(%s as long) as pk", keyExpression),
+                "cast(timestamp_micros(1699872568000000 + id) as string) as " + TIMESTAMP,
+                "cast(id as string) as data"
+        );
+    }
+}
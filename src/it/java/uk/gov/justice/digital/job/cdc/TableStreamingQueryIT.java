@@ -25,12 +25,17 @@ import uk.gov.justice.digital.datahub.model.SourceReference;
 import uk.gov.justice.digital.exception.NoSchemaNoDataException;
 import uk.gov.justice.digital.job.batchprocessing.CdcBatchProcessor;
 import uk.gov.justice.digital.provider.ConnectionPoolProvider;
+import uk.gov.justice.digital.service.ChangeLogService;
+import uk.gov.justice.digital.service.ConfigService;
 import uk.gov.justice.digital.service.DataStorageService;
 import uk.gov.justice.digital.service.JDBCGlueConnectionDetailsService;
+import uk.gov.justice.digital.service.ParquetSchemaCacheService;
+import uk.gov.justice.digital.service.SchedulerPoolService;
 import uk.gov.justice.digital.service.SourceReferenceService;
 import uk.gov.justice.digital.service.TableDiscoveryService;
 import uk.gov.justice.digital.service.ValidationService;
 import uk.gov.justice.digital.service.ViolationService;
+import uk.gov.justice.digital.service.metrics.StreamingMetricsCollector;
 import uk.gov.justice.digital.service.operationaldatastore.OperationalDataStoreService;
 import uk.gov.justice.digital.service.operationaldatastore.OperationalDataStoreServiceImpl;
 import uk.gov.justice.digital.service.operationaldatastore.OperationalDataStoreTransformation;
@@ -38,12 +43,14 @@ import uk.gov.justice.digital.service.operationaldatastore.dataaccess.Operationa
 import uk.gov.justice.digital.service.operationaldatastore.dataaccess.OperationalDataStoreRepository;
 import uk.gov.justice.digital.test.BaseMinimalDataIntegrationTest;
 import uk.gov.justice.digital.test.InMemoryOperationalDataStore;
+import uk.gov.justice.digital.test.InMemoryStreamingMetricsSink;
 import uk.gov.justice.digital.zone.curated.CuratedZoneCDC;
 import uk.gov.justice.digital.zone.structured.StructuredZoneCDC;
 
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.time.Clock;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
@@ -57,6 +64,7 @@ import static org.mockito.Mockito.when;
 import static uk.gov.justice.digital.common.CommonDataFields.ShortOperationCode.Delete;
 import static uk.gov.justice.digital.common.CommonDataFields.ShortOperationCode.Insert;
 import static uk.gov.justice.digital.common.CommonDataFields.ShortOperationCode.Update;
+import static uk.gov.justice.digital.config.JobArguments.DEFAULT_CDC_BATCH_STORAGE_LEVEL;
 import static uk.gov.justice.digital.config.JobArguments.DEFAULT_SPARK_BROADCAST_TIMEOUT_SECONDS;
 import static uk.gov.justice.digital.config.JobArguments.OPERATIONAL_DATA_STORE_JDBC_BATCH_SIZE_DEFAULT;
 import static uk.gov.justice.digital.test.MinimalTestData.PRIMARY_KEY_COLUMN;
@@ -98,6 +106,8 @@ public class TableStreamingQueryIT extends BaseMinimalDataIntegrationTest {
     @Mock
     private TableDiscoveryService tableDiscoveryService;
     @Mock
+    private ConfigService configService;
+    @Mock
     private JDBCGlueConnectionDetailsService connectionDetailsService;
     private TableStreamingQuery underTest;
     private MemoryStream<Row> inputStream;
@@ -404,6 +414,7 @@ public class TableStreamingQueryIT extends BaseMinimalDataIntegrationTest {
         givenPathsAreConfigured();
         givenRetrySettingsAreConfigured(arguments);
         when(arguments.getBroadcastTimeoutSeconds()).thenReturn(DEFAULT_SPARK_BROADCAST_TIMEOUT_SECONDS);
+        when(arguments.getCdcBatchStorageLevel()).thenReturn(DEFAULT_CDC_BATCH_STORAGE_LEVEL);
         lenient().when(arguments.getOperationalDataStoreJdbcBatchSize()).thenReturn(OPERATIONAL_DATA_STORE_JDBC_BATCH_SIZE_DEFAULT);
         when(arguments.getOperationalDataStoreGlueConnectionName()).thenReturn("operational-datastore-connection-name");
         when(properties.getSparkDriverMemory()).thenReturn("2g");
@@ -514,19 +525,28 @@ public class TableStreamingQueryIT extends BaseMinimalDataIntegrationTest {
                 new OperationalDataStoreDataAccessService(arguments, connectionDetailsService, connectionPoolProvider, operationalDataStoreRepository);
         OperationalDataStoreService operationalDataStoreService =
                 new OperationalDataStoreServiceImpl(arguments, operationalDataStoreTransformation, operationalDataStoreDataAccessService);
+        ParquetSchemaCacheService schemaCache = new ParquetSchemaCacheService();
+        StreamingMetricsCollector metricsCollector = new StreamingMetricsCollector(arguments, new InMemoryStreamingMetricsSink());
         CdcBatchProcessor batchProcessor = new CdcBatchProcessor(
-                new ValidationService(violationService),
+                arguments,
+                new ValidationService(violationService, schemaCache),
                 new StructuredZoneCDC(arguments, violationService, storageService),
-                new CuratedZoneCDC(arguments, violationService, storageService),
+                new CuratedZoneCDC(arguments, violationService, storageService, new ChangeLogService(arguments, configService, storageService, Clock.systemUTC())),
                 dataProvider,
-                operationalDataStoreService
+                operationalDataStoreService,
+                schemaCache,
+                metricsCollector
         );
         TableStreamingQueryProvider streamingQueryProvider = new TableStreamingQueryProvider(
                 arguments,
                 dataProvider,
                 batchProcessor,
                 sourceReferenceService,
-                violationService
+                violationService,
+                schemaCache,
+                new SchedulerPoolService(arguments, configService),
+                metricsCollector,
+                Clock.systemUTC()
         );
         underTest = streamingQueryProvider.provide(spark, inputSchemaName, inputTableName);
     }
@@ -0,0 +1,166 @@
+package uk.gov.justice.digital.service;
+
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Encoders;
+import org.apache.spark.sql.Row;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import uk.gov.justice.digital.config.JobArguments;
+import uk.gov.justice.digital.datahub.model.SourceReference;
+import uk.gov.justice.digital.test.BaseMinimalDataIntegrationTest;
+
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.apache.spark.sql.functions.col;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static uk.gov.justice.digital.common.CommonDataFields.ShortOperationCode.Delete;
+import static uk.gov.justice.digital.common.CommonDataFields.ShortOperationCode.Insert;
+import static uk.gov.justice.digital.common.CommonDataFields.ShortOperationCode.Update;
+import static uk.gov.justice.digital.test.MinimalTestData.PRIMARY_KEY;
+import static uk.gov.justice.digital.test.MinimalTestData.TEST_DATA_SCHEMA;
+import static uk.gov.justice.digital.test.MinimalTestData.createRow;
+
+@ExtendWith(MockitoExtension.class)
+public class ChangeLogServiceIntegrationTest extends BaseMinimalDataIntegrationTest {
+
+    @Mock
+    private JobArguments arguments;
+    @Mock
+    private ConfigService configService;
+
+    private DataStorageService storage;
+    private ChangeLogService underTest;
+    private String tablePath;
+
+    @BeforeEach
+    public void setUp() {
+        givenRetrySettingsAreConfigured(arguments);
+        when(arguments.isCdcChangeLogEnabled()).thenReturn(true);
+        when(arguments.getCdcChangeLogCompactionIntervalSeconds()).thenReturn(900L);
+        tablePath = testRoot.resolve("curated").resolve("my_table").toAbsolutePath().toString();
+        storage = new DataStorageService(arguments);
+        underTest = new ChangeLogService(arguments, configService, storage, Clock.systemUTC());
+    }
+
+    @Test
+    public void shouldReadTheCurrentStateBeforeAnythingIsCompacted() {
+        givenChangesAreAppended();
+
+        Dataset<Row> current = underTest.readCurrent(spark, tablePath, PRIMARY_KEY);
+
+        assertCurrentData(current, "data1b", pk1);
+        assertCurrentData(current, "data3a", pk3);
+        assertEquals(0, current.where(col("pk").equalTo(pk2)).count());
+        assertEquals(2, current.count());
+    }
+
+    @Test
+    public void shouldCompactTheChangeLogIntoTheTable() {
+        givenChangesAreAppended();
+
+        underTest.compactAll();
+
+        assertDeltaTableContainsForPK(tablePath, "data1b", pk1);
+        assertDeltaTableContainsForPK(tablePath, "data3a", pk3);
+        assertDeltaTableDoesNotContainPK(tablePath, pk2);
+        assertEquals(0, storage.get(spark, ChangeLogService.changeLogPath(tablePath)).count());
+    }
+
+    @Test
+    public void shouldCompactTheChangeLogWithTheLayoutOfTheTable() {
+        SourceReference.TableLayout layout = new SourceReference.TableLayout(2, true, false);
+        DataStorageService spiedStorage = spy(storage);
+        ChangeLogService withLayout = new ChangeLogService(arguments, configService, spiedStorage, Clock.systemUTC());
+        withLayout.appendChanges(spark, tablePath, spark.createDataFrame(Collections.singletonList(
+                createRow(pk1, "2023-11-13 10:50:00.123456", Insert, "data1a")
+        ), TEST_DATA_SCHEMA), PRIMARY_KEY, layout);
+
+        withLayout.compactAll();
+
+        verify(spiedStorage, times(1)).mergeRecords(any(), eq(tablePath), any(), eq(PRIMARY_KEY), eq(layout));
+        assertDeltaTableContainsForPK(tablePath, "data1a", pk1);
+    }
+
+    @Test
+    public void shouldApplyChangesAppendedSinceTheLastCompactionWhenReading() {
+        givenChangesAreAppended();
+        underTest.compactAll();
+
+        underTest.appendChanges(spark, tablePath, spark.createDataFrame(Arrays.asList(
+                createRow(pk1, "2023-11-13 10:52:00.123456", Delete, "data1c"),
+                createRow(pk4, "2023-11-13 10:52:00.123456", Insert, "data4c")
+        ), TEST_DATA_SCHEMA), PRIMARY_KEY);
+
+        Dataset<Row> current = underTest.readCurrent(spark, tablePath, PRIMARY_KEY);
+
+        assertEquals(0, current.where(col("pk").equalTo(pk1)).count());
+        assertCurrentData(current, "data3a", pk3);
+        assertCurrentData(current, "data4c", pk4);
+        assertEquals(2, current.count());
+        assertDeltaTableContainsForPK(tablePath, "data1b", pk1);
+    }
+
+    @Test
+    public void shouldCompactChangesLeftInTheChangeLogOfATableWhichIsNoLongerMergeOnRead() {
+        givenChangesAreAppended();
+        ChangeLogService restarted = new ChangeLogService(arguments, configService, storage, Clock.systemUTC());
+
+        restarted.compactLeftoverChanges(spark, tablePath, PRIMARY_KEY);
+
+        assertDeltaTableContainsForPK(tablePath, "data1b", pk1);
+        assertDeltaTableContainsForPK(tablePath, "data3a", pk3);
+        assertEquals(0, storage.get(spark, ChangeLogService.changeLogPath(tablePath)).count());
+    }
+
+    @Test
+    public void shouldNotCompactChangesLoggedBeforeAReloadOverTheReloadedTable() {
+        givenChangesAreAppended();
+        long reloadStartTime = System.currentTimeMillis();
+
+        underTest.discardChangesAppendedBefore(spark, tablePath, reloadStartTime);
+        storage.append(tablePath, spark.createDataFrame(Collections.singletonList(
+                createRow(pk1, "2023-11-13 10:49:00.123456", Insert, "data1r")
+        ), TEST_DATA_SCHEMA));
+        underTest.appendChanges(spark, tablePath, spark.createDataFrame(Collections.singletonList(
+                createRow(pk4, "2023-11-13 10:53:00.123456", Insert, "data4d")
+        ), TEST_DATA_SCHEMA), PRIMARY_KEY);
+        underTest.compactAll();
+
+        assertDeltaTableContainsForPK(tablePath, "data1r", pk1);
+        assertDeltaTableContainsForPK(tablePath, "data4d", pk4);
+        assertDeltaTableDoesNotContainPK(tablePath, pk3);
+    }
+
+    private void givenChangesAreAppended() {
+        underTest.appendChanges(spark, tablePath, spark.createDataFrame(Arrays.asList(
+                createRow(pk1, "2023-11-13 10:50:00.123456", Insert, "data1a"),
+                createRow(pk2, "2023-11-13 10:50:00.123456", Insert, "data2a"),
+                createRow(pk3, "2023-11-13 10:50:00.123456", Insert, "data3a")
+        ), TEST_DATA_SCHEMA), PRIMARY_KEY);
+        underTest.appendChanges(spark, tablePath, spark.createDataFrame(Collections.singletonList(
+                createRow(pk1, "2023-11-13 10:51:00.123456", Update, "data1b")
+        ), TEST_DATA_SCHEMA), PRIMARY_KEY);
+        underTest.appendChanges(spark, tablePath, spark.createDataFrame(Collections.singletonList(
+                createRow(pk2, "2023-11-13 10:51:00.123456", Delete, "data2b")
+        ), TEST_DATA_SCHEMA), PRIMARY_KEY);
+    }
+
+    private static void assertCurrentData(Dataset<Row> current, String data, int primaryKey) {
+        assertEquals(Collections.singletonList(data), current
+                .where(col("pk").equalTo(primaryKey))
+                .select("data")
+                .as(Encoders.STRING())
+                .collectAsList());
+    }
+}
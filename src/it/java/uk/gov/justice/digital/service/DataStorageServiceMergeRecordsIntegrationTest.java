@@ -2,19 +2,31 @@ package uk.gov.justice.digital.service;
 
 import io.delta.tables.DeltaTable;
 import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Encoders;
 import org.apache.spark.sql.Row;
 import org.apache.spark.sql.types.StructType;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import uk.gov.justice.digital.config.JobArguments;
+import uk.gov.justice.digital.datahub.model.SourceReference;
 import uk.gov.justice.digital.exception.DataStorageRetriesExhaustedException;
 import uk.gov.justice.digital.test.BaseMinimalDataIntegrationTest;
 
+import java.util.ArrayList;
 import java.util.Arrays;
-
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.apache.spark.sql.functions.col;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
 import static uk.gov.justice.digital.common.CommonDataFields.ShortOperationCode.Delete;
 import static uk.gov.justice.digital.common.CommonDataFields.ShortOperationCode.Insert;
 import static uk.gov.justice.digital.common.CommonDataFields.ShortOperationCode.Update;
@@ -127,6 +139,121 @@ public class DataStorageServiceMergeRecordsIntegrationTest extends BaseMinimalDa
         assertDeltaTableDoesNotContainPK(tablePath, pk2);
     }
 
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10})
+    public void shouldInsertUpdateAndDeleteDataWithMergePruning(int maxInListKeys) {
+        when(arguments.isDataStorageMergePruningEnabled()).thenReturn(true);
+        when(arguments.getDataStorageMergePruningMaxInListKeys()).thenReturn(maxInListKeys);
+        when(arguments.getDataStorageMergeBroadcastMaxRows()).thenReturn(10L);
+        underTest = new DataStorageService(arguments);
+
+        Dataset<Row> input = spark.createDataFrame(Arrays.asList(
+                createRow(pk1, "2023-11-13 10:50:00.123456", Insert, "data1a"),
+                createRow(pk2, "2023-11-13 10:50:00.123456", Insert, "data2a"),
+                createRow(pk3, "2023-11-13 10:50:00.123456", Insert, "data3a"),
+                createRow(pk5, "2023-11-13 10:50:00.123456", Insert, "data5a")
+        ), TEST_DATA_SCHEMA);
+
+        underTest.mergeRecords(spark, tablePath, input, PRIMARY_KEY);
+
+        Dataset<Row> input2 = spark.createDataFrame(Arrays.asList(
+                createRow(pk2, "2023-11-13 10:51:00.123456", Update, "data2b"),
+                createRow(pk4, "2023-11-13 10:51:00.123456", Insert, "data4b"),
+                createRow(pk5, "2023-11-13 10:51:00.123456", Delete, "data5b")
+        ), TEST_DATA_SCHEMA);
+
+        underTest.mergeRecords(spark, tablePath, input2, PRIMARY_KEY);
+
+        assertDeltaTableContainsForPK(tablePath, "data1a", pk1);
+        assertDeltaTableContainsForPK(tablePath, "data2b", pk2);
+        assertDeltaTableContainsForPK(tablePath, "data3a", pk3);
+        assertDeltaTableContainsForPK(tablePath, "data4b", pk4);
+        assertDeltaTableDoesNotContainPK(tablePath, pk5);
+    }
+
+    @Test
+    public void shouldInsertBatchesOfNewKeysAndMergeEverythingElseWithTheInsertOnlyFastPath() {
+        when(arguments.isDataStorageMergeInsertOnlyFastPathEnabled()).thenReturn(true);
+        when(arguments.getDataStorageMergePruningMaxInListKeys()).thenReturn(10);
+        underTest = new DataStorageService(arguments);
+
+        Dataset<Row> newKeys = spark.createDataFrame(Arrays.asList(
+                createRow(pk1, "2023-11-13 10:50:00.123456", Insert, "data1a"),
+                createRow(pk2, "2023-11-13 10:50:00.123456", Insert, "data2a")
+        ), TEST_DATA_SCHEMA);
+
+        underTest.mergeRecords(spark, tablePath, newKeys, PRIMARY_KEY);
+
+        Dataset<Row> existingKey = spark.createDataFrame(Arrays.asList(
+                createRow(pk2, "2023-11-13 10:51:00.123456", Insert, "data2b"),
+                createRow(pk3, "2023-11-13 10:51:00.123456", Insert, "data3b")
+        ), TEST_DATA_SCHEMA);
+
+        underTest.mergeRecords(spark, tablePath, existingKey, PRIMARY_KEY);
+
+        Dataset<Row> delete = spark.createDataFrame(Collections.singletonList(
+                createRow(pk1, "2023-11-13 10:52:00.123456", Delete, "data1c")
+        ), TEST_DATA_SCHEMA);
+
+        underTest.mergeRecords(spark, tablePath, delete, PRIMARY_KEY);
+
+        assertDeltaTableDoesNotContainPK(tablePath, pk1);
+        assertDeltaTableContainsForPK(tablePath, "data2b", pk2);
+        assertDeltaTableContainsForPK(tablePath, "data3b", pk3);
+        assertEquals(2, spark.read().format("delta").load(tablePath).count());
+
+        List<String> operations = DeltaTable.forPath(spark, tablePath).history()
+                .orderBy(col("version"))
+                .select("operation")
+                .as(Encoders.STRING())
+                .collectAsList();
+        // Each batch is committed once, including the batch of inserts with an existing key which is fully merged
+        assertEquals(Arrays.asList("CREATE TABLE", "MERGE", "MERGE", "MERGE"), operations);
+    }
+
+    @Test
+    public void shouldReturnTheWriteStatsOfEachMergeWhenEnabled() {
+        when(arguments.isDataStorageWriteStatsEnabled()).thenReturn(true);
+        underTest = new DataStorageService(arguments);
+        List<WriteStats> harvested = new ArrayList<>();
+        underTest.setWriteStatsListener(harvested::add);
+
+        Optional<WriteStats> inserts = underTest.mergeRecords(spark, tablePath, spark.createDataFrame(Arrays.asList(
+                createRow(pk1, "2023-11-13 10:50:00.123456", Insert, "data1a"),
+                createRow(pk2, "2023-11-13 10:50:00.123456", Insert, "data2a")
+        ), TEST_DATA_SCHEMA), PRIMARY_KEY);
+        Optional<WriteStats> updateAndDelete = underTest.mergeRecords(spark, tablePath, spark.createDataFrame(Arrays.asList(
+                createRow(pk1, "2023-11-13 10:51:00.123456", Update, "data1b"),
+                createRow(pk2, "2023-11-13 10:51:00.123456", Delete, "data2b")
+        ), TEST_DATA_SCHEMA), PRIMARY_KEY);
+
+        assertTrue(inserts.isPresent());
+        assertEquals("MERGE", inserts.get().getOperation());
+        assertEquals(2L, inserts.get().getRowsInserted());
+        assertTrue(updateAndDelete.isPresent());
+        assertEquals(0L, updateAndDelete.get().getRowsInserted());
+        assertEquals(1L, updateAndDelete.get().getRowsUpdated());
+        assertEquals(1L, updateAndDelete.get().getRowsDeleted());
+        assertEquals(Arrays.asList(inserts.get(), updateAndDelete.get()), harvested);
+    }
+
+    @Test
+    public void shouldZOrderTheTableByItsKeyOnCompactionWhenItsLayoutSaysTo() {
+        SourceReference.TableLayout layout = new SourceReference.TableLayout(2, true, true);
+        underTest.mergeRecords(spark, tablePath, spark.createDataFrame(Arrays.asList(
+                createRow(pk1, "2023-11-13 10:50:00.123456", Insert, "data1"),
+                createRow(pk2, "2023-11-13 10:50:00.123456", Insert, "data2"),
+                createRow(pk3, "2023-11-13 10:50:00.123456", Insert, "data3")
+        ), TEST_DATA_SCHEMA), PRIMARY_KEY, layout);
+
+        underTest.compactDeltaTable(spark, tablePath);
+
+        Row lastCommit = DeltaTable.forPath(spark, tablePath).history(1).select("operation", "operationParameters").first();
+        assertEquals("OPTIMIZE", lastCommit.getString(0));
+        assertTrue(lastCommit.<String, String>getJavaMap(1).get("zOrderBy").contains("pk"));
+        assertEquals(3, spark.read().format("delta").load(tablePath).count());
+    }
+
     private void givenPathIsConfigured() {
         tablePath = testRoot.resolve("my-table-path").toAbsolutePath().toString();
     }
@@ -0,0 +1,94 @@
+package uk.gov.justice.digital.service;
+
+import io.delta.tables.DeltaTable;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.justice.digital.config.BaseSparkTest;
+import uk.gov.justice.digital.config.JobArguments;
+import uk.gov.justice.digital.datahub.model.SourceReference;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.apache.spark.sql.functions.rand;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static uk.gov.justice.digital.common.CommonDataFields.CHECKPOINT_COL;
+import static uk.gov.justice.digital.common.CommonDataFields.OPERATION;
+import static uk.gov.justice.digital.common.CommonDataFields.ShortOperationCode.Insert;
+import static uk.gov.justice.digital.common.CommonDataFields.ShortOperationCode.Update;
+import static uk.gov.justice.digital.common.CommonDataFields.TIMESTAMP;
+import static uk.gov.justice.digital.config.JobArguments.DATA_STORAGE_MERGE_PRUNING_ENABLED;
+import static uk.gov.justice.digital.test.MinimalTestData.PRIMARY_KEY;
+
+/**
+ * Compares the number of files a merge of updates to a narrow range of keys touches in a table loaded without a layout
+ * and in one loaded range partitioned and sorted by key. Only runs when DPR_RUN_BENCHMARKS=true,
+ * e.g. DPR_RUN_BENCHMARKS=true ./gradlew integrationTest --tests '*MergeLayoutBenchmarkIT'
+ */
+@EnabledIfEnvironmentVariable(named = "DPR_RUN_BENCHMARKS", matches = "true")
+class MergeLayoutBenchmarkIT extends BaseSparkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(MergeLayoutBenchmarkIT.class);
+
+    private static final long ROWS = 1_000_000L;
+    private static final int FILES = 32;
+    private static final long FIRST_UPDATED_KEY = 500_000L;
+    private static final long UPDATED_KEYS = 1_000L;
+
+    private final DataStorageService underTest = new DataStorageService(new JobArguments(
+            Collections.singletonMap(DATA_STORAGE_MERGE_PRUNING_ENABLED, "true")
+    ));
+
+    @TempDir
+    private Path folder;
+
+    @Test
+    public void compareFilesTouchedPerMerge() {
+        long unclustered = filesTouchedByMerge("unclustered", SourceReference.TableLayout.NONE);
+        long clustered = filesTouchedByMerge("clustered", new SourceReference.TableLayout(FILES, true, false));
+
+        logger.info("Merge of {} updated keys into {} files touched {} files without a layout and {} with a PK-clustered layout",
+                UPDATED_KEYS, FILES, unclustered, clustered);
+        assertTrue(clustered <= unclustered);
+    }
+
+    private long filesTouchedByMerge(String name, SourceReference.TableLayout layout) {
+        String tablePath = folder.resolve(name).toAbsolutePath().toString();
+        // Loaded in no particular key order, as the raw files of a full load are
+        Dataset<Row> load = records(spark.range(ROWS), Insert.getName()).orderBy(rand(42)).repartition(FILES);
+        underTest.appendDistinct(tablePath, load, PRIMARY_KEY, layout);
+
+        Dataset<Row> updates = records(spark.range(FIRST_UPDATED_KEY, FIRST_UPDATED_KEY + UPDATED_KEYS), Update.getName());
+        long start = System.currentTimeMillis();
+        underTest.mergeRecords(spark, tablePath, updates, PRIMARY_KEY, layout);
+        long mergeMillis = System.currentTimeMillis() - start;
+
+        Map<String, String> metrics = DeltaTable.forPath(spark, tablePath).history(1)
+                .select("operationMetrics")
+                .first()
+                .getJavaMap(0);
+        logger.info("Merge into {} table scanned {} of {} files and rewrote {} files in {}ms",
+                name,
+                metrics.get("numTargetFilesAfterSkipping"),
+                metrics.get("numTargetFilesBeforeSkipping"),
+                metrics.get("numTargetFilesRemoved"),
+                mergeMillis);
+        return Long.parseLong(metrics.get("numTargetFilesAfterSkipping"));
+    }
+
+    private static Dataset<Row> records(Dataset<Long> ids, String operation) {
+        return ids.selectExpr(
+                "cast(id as int) as pk",
+                "cast(timestamp_micros(1699872568000000 + id) as string) as " + TIMESTAMP,
+                String.format("'%s' as %s", operation, OPERATION),
+                "cast(id as string) as data",
+                "cast(id as string) as " + CHECKPOINT_COL
+        );
+    }
+}
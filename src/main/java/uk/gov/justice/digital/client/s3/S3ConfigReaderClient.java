@@ -2,6 +2,7 @@ package uk.gov.justice.digital.client.s3;
 
 import com.amazonaws.services.s3.AmazonS3;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import jakarta.inject.Inject;
 import lombok.val;
@@ -10,12 +11,16 @@ import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.gov.justice.digital.config.JobArguments;
+import uk.gov.justice.digital.datahub.model.SchedulingPriority;
 import uk.gov.justice.digital.exception.ConfigReaderClientException;
 
 import javax.inject.Singleton;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Singleton
@@ -31,6 +36,14 @@ public class S3ConfigReaderClient {
 
     static final String CONFIG_FILE_SUFFIX = "/table-config.json";
 
+    static final String PRIORITY_TIERS_KEY = "priorityTiers";
+
+    static final String MERGE_ON_READ_TABLES_KEY = "mergeOnReadTables";
+
+    // The defaults Spark gives a fair scheduler pool
+    private static final int DEFAULT_WEIGHT = 1;
+    private static final int DEFAULT_MIN_SHARE = 0;
+
     @Inject
     public S3ConfigReaderClient(
             S3ClientProvider clientProvider,
@@ -45,14 +58,66 @@ public class S3ConfigReaderClient {
         String configFileKey = CONFIGS_PATH + configKey + CONFIG_FILE_SUFFIX;
         logger.info("Loading config with key: {} from location: {}", configKey, configFileKey);
         try {
-            String configString = s3.getObjectAsString(configBucketName, configFileKey);
-            val config = new ObjectMapper().readValue(configString, HashMap.class);
+            val config = readConfig(configFileKey);
             return ImmutableSet.copyOf(convertToImmutablePairs((ArrayList<String>) config.get("tables")));
         } catch (Exception e) {
             throw new ConfigReaderClientException("Exception when loading config " + configFileKey, e);
         }
     }
 
+    /**
+     * Reads the optional priority tiers of a config, which have the form
+     * {"priorityTiers": {"critical": {"weight": 4, "minShare": 2, "tables": ["schema/table"]}}}
+     * Tables which are not in any tier are not in the returned map.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public ImmutableMap<ImmutablePair<String, String>, SchedulingPriority> getTablePriorities(String configKey) {
+        String configFileKey = CONFIGS_PATH + configKey + CONFIG_FILE_SUFFIX;
+        logger.info("Loading table priorities with key: {} from location: {}", configKey, configFileKey);
+        try {
+            val config = readConfig(configFileKey);
+            Map<String, Map<String, Object>> tiers = (Map) config.getOrDefault(PRIORITY_TIERS_KEY, Collections.emptyMap());
+            // Building fails if a table is in more than one tier
+            ImmutableMap.Builder<ImmutablePair<String, String>, SchedulingPriority> priorities = ImmutableMap.builder();
+            for (val tier : tiers.entrySet()) {
+                Map<String, Object> tierConfig = tier.getValue();
+                SchedulingPriority priority = new SchedulingPriority(
+                        tier.getKey(),
+                        ((Number) tierConfig.getOrDefault("weight", DEFAULT_WEIGHT)).intValue(),
+                        ((Number) tierConfig.getOrDefault("minShare", DEFAULT_MIN_SHARE)).intValue()
+                );
+                for (val table : convertToImmutablePairs((ArrayList<String>) tierConfig.get("tables"))) {
+                    priorities.put(table, priority);
+                }
+            }
+            return priorities.build();
+        } catch (Exception e) {
+            throw new ConfigReaderClientException("Exception when loading table priorities from config " + configFileKey, e);
+        }
+    }
+
+    /**
+     * Reads the optional list of tables whose curated changes are written to a change log and compacted into the
+     * curated table periodically, which has the form {"mergeOnReadTables": ["schema/table"]}
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public ImmutableSet<ImmutablePair<String, String>> getMergeOnReadTables(String configKey) {
+        String configFileKey = CONFIGS_PATH + configKey + CONFIG_FILE_SUFFIX;
+        logger.info("Loading merge on read tables with key: {} from location: {}", configKey, configFileKey);
+        try {
+            val config = readConfig(configFileKey);
+            return ImmutableSet.copyOf(convertToImmutablePairs((ArrayList<String>) config.getOrDefault(MERGE_ON_READ_TABLES_KEY, new ArrayList<>())));
+        } catch (Exception e) {
+            throw new ConfigReaderClientException("Exception when loading merge on read tables from config " + configFileKey, e);
+        }
+    }
+
+    @SuppressWarnings({"rawtypes"})
+    private HashMap readConfig(String configFileKey) throws IOException {
+        String configString = s3.getObjectAsString(configBucketName, configFileKey);
+        return new ObjectMapper().readValue(configString, HashMap.class);
+    }
+
     @NotNull
     private static List<ImmutablePair<String, String>> convertToImmutablePairs(ArrayList<String> strings) {
         return strings.stream().map(str -> {
@@ -1,8 +1,11 @@
 package uk.gov.justice.digital.client.s3;
 
+import com.google.common.annotations.VisibleForTesting;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
+import lombok.Data;
 import lombok.val;
+import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.spark.SparkException;
 import org.apache.spark.sql.AnalysisException;
 import org.apache.spark.sql.Column;
@@ -11,6 +14,11 @@ import org.apache.spark.sql.Row;
 import org.apache.spark.sql.SparkSession;
 import org.apache.spark.sql.delta.DeltaAnalysisException;
 import org.apache.spark.sql.streaming.DataStreamReader;
+import org.apache.spark.sql.types.ArrayType;
+import org.apache.spark.sql.types.DataType;
+import org.apache.spark.sql.types.DataTypes;
+import org.apache.spark.sql.types.MapType;
+import org.apache.spark.sql.types.StructField;
 import org.apache.spark.sql.types.StructType;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
@@ -23,10 +31,17 @@ import uk.gov.justice.digital.exception.DataProviderFailedMergingSchemasExceptio
 import uk.gov.justice.digital.exception.NoSchemaNoDataException;
 
 import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 import static java.lang.String.format;
+import static org.apache.spark.sql.functions.col;
 import static uk.gov.justice.digital.common.CommonDataFields.withMetadataFields;
 import static uk.gov.justice.digital.common.ResourcePath.ensureEndsWithSlash;
 import static uk.gov.justice.digital.common.ResourcePath.tablePath;
@@ -42,12 +57,28 @@ public class S3DataProvider {
 
     private static final Logger logger = LoggerFactory.getLogger(S3DataProvider.class);
 
+    public static final String BINARY_FILE_PATH_COLUMN = "path";
+    // Added to the per-table streaming source because Spark does not report the input files of a foreachBatch Dataset
+    public static final String INPUT_FILE_COLUMN = "_dpr_input_file";
+    public static final String INPUT_FILE_SIZE_COLUMN = "_dpr_input_file_size";
+
+    // The fixed schema of Spark's binaryFile source, which must be provided up front for a streaming read
+    private static final StructType BINARY_FILE_SCHEMA = new StructType()
+            .add(BINARY_FILE_PATH_COLUMN, DataTypes.StringType, false)
+            .add("modificationTime", DataTypes.TimestampType, false)
+            .add("length", DataTypes.LongType, false)
+            .add("content", DataTypes.BinaryType, true);
+
     @Inject
     public S3DataProvider(JobArguments arguments) {
         this.arguments = arguments;
     }
 
     public Dataset<Row> getStreamingSourceData(SparkSession sparkSession, SourceReference sourceReference) {
+        return getStreamingSourceData(sparkSession, sourceReference, arguments.streamingJobMaxFilePerTrigger());
+    }
+
+    public Dataset<Row> getStreamingSourceData(SparkSession sparkSession, SourceReference sourceReference, long maxFilesPerTrigger) {
         String source = sourceReference.getSource();
         String table = sourceReference.getTable();
         String tablePath = tablePath(arguments.getRawS3Path(), source, table);
@@ -55,9 +86,11 @@ public class S3DataProvider {
         String fileGlobPath = ensureEndsWithSlash(tablePath) + arguments.getCdcFileGlobPattern();
         StructType schema = withMetadataFields(sourceReference.getSchema());
         logger.info("Provided schema for {}.{}: \n{}", source, table, schema.treeString());
-        logger.info("Initialising S3 data source for {}.{} with file glob path {}", source, table, fileGlobPath);
+        logger.info("Initialising S3 data source for {}.{} with file glob path {} and max files per trigger {}", source, table, fileGlobPath, maxFilesPerTrigger);
 
-        return getStreamingDataset(sparkSession, fileGlobPath, schema);
+        return getStreamingDataset(sparkSession, fileGlobPath, schema, maxFilesPerTrigger)
+                .withColumn(INPUT_FILE_COLUMN, col("_metadata.file_path"))
+                .withColumn(INPUT_FILE_SIZE_COLUMN, col("_metadata.file_size"));
     }
 
     public Dataset<Row> getStreamingSourceDataWithSchemaInference(SparkSession sparkSession, String sourceName, String tableName) throws NoSchemaNoDataException {
@@ -69,7 +102,7 @@ public class S3DataProvider {
             logger.info("Inferred schema for {}.{}: \n{}", sourceName, tableName, schema.treeString());
             logger.info("Initialising S3 data source for {}.{} with file glob path {}", sourceName, tableName, fileGlobPath);
 
-            return getStreamingDataset(sparkSession, fileGlobPath, schema);
+            return getStreamingDataset(sparkSession, fileGlobPath, schema, arguments.streamingJobMaxFilePerTrigger());
         } catch (Exception e) {
             if (isPathDoesNotExistException(e)) {
                 String msg = format("No data available to read and no schema provided to read it with, so we can't run a streaming job for %s.%s", sourceName, tableName);
@@ -82,6 +115,48 @@ public class S3DataProvider {
         }
     }
 
+    /**
+     * Provides a streaming Dataset of the paths of new CDC files across a group of tables, using a single file source.
+     * Only file metadata is listed here - the parquet data is read per table in each micro-batch with
+     * getBatchCdcSourceData so that each table is read with its own schema.
+     */
+    public Dataset<Row> getStreamingFilePathsForTables(SparkSession sparkSession, List<ImmutablePair<String, String>> tables) {
+        String tablePaths = tables.stream()
+                .map(t -> t.getLeft() + "/" + t.getRight())
+                .collect(Collectors.joining(","));
+        // Hadoop globs expand the braces to one pattern per table so a single listing covers the whole group
+        String fileGlobPath = ensureEndsWithSlash(arguments.getRawS3Path()) + "{" + tablePaths + "}/" + arguments.getCdcFileGlobPattern();
+        logger.info("Initialising S3 file path source for {} tables with file glob path {}", tables.size(), fileGlobPath);
+
+        DataStreamReader streamReader = sparkSession.readStream()
+                .format("binaryFile")
+                .option("maxFilesPerTrigger", arguments.streamingJobMaxFilePerTrigger())
+                .schema(BINARY_FILE_SCHEMA);
+
+        // Selecting only the path means the binaryFile source never reads the file content
+        return withStreamingSourceArchiving(streamReader)
+                .load(fileGlobPath)
+                .select(col(BINARY_FILE_PATH_COLUMN));
+    }
+
+    /**
+     * Reads the given CDC files for a single table with the table's schema, as the per-table streaming source would.
+     */
+    public Dataset<Row> getBatchCdcSourceData(SparkSession sparkSession, SourceReference sourceReference, List<String> filePaths) {
+        return getBatchCdcSourceData(sparkSession, withMetadataFields(sourceReference.getSchema()), filePaths);
+    }
+
+    /**
+     * Reads the given CDC files with the given schema, which for a table with no schema is the schema read from the files.
+     */
+    public Dataset<Row> getBatchCdcSourceData(SparkSession sparkSession, StructType schema, List<String> filePaths) {
+        val scalaFilePaths = JavaConverters.asScalaIteratorConverter(filePaths.iterator()).asScala().toSeq();
+        return sparkSession
+                .read()
+                .schema(schema)
+                .parquet(scalaFilePaths);
+    }
+
     public static boolean isPathDoesNotExistException(Exception e) {
         //  We sometimes only want to catch AnalysisException and check if it is because the path does not exist,
         //  but we can't be more specific than Exception in what we catch because the Java compiler will complain
@@ -115,6 +190,81 @@ public class S3DataProvider {
         }
     }
 
+    /**
+     * Reads a table's files which have been grouped by schema without merging the schema of every file. Each group is
+     * read with its own schema and the groups are unioned by column name, starting with the groups which are compatible
+     * with the table's expected schema and then the groups with the most files. The expected schema is null when the
+     * table has no source reference.
+     * A group with a column whose type differs from the same column in an earlier group cannot be unioned, so its files
+     * are returned for writing to violations instead.
+     */
+    public SchemaGroupedSourceData getSchemaGroupedBatchSourceData(
+            SparkSession sparkSession,
+            Map<StructType, List<String>> filesBySchema,
+            StructType expectedSchema) {
+        Map<String, DataType> expectedColumnTypes = new HashMap<>();
+        if (expectedSchema != null) {
+            for (StructField field : expectedSchema.fields()) {
+                expectedColumnTypes.put(field.name().toLowerCase(Locale.ROOT), field.dataType());
+            }
+        }
+        // Otherwise a bad batch of files which outnumbers the good ones would send the good ones to violations
+        Comparator<Map.Entry<StructType, List<String>>> expectedFirst =
+                Comparator.comparing(group -> !isCompatible(expectedColumnTypes, group.getKey()));
+        List<Map.Entry<StructType, List<String>>> groups = filesBySchema.entrySet().stream()
+                .sorted(expectedFirst.thenComparing(
+                        Comparator.comparingInt((Map.Entry<StructType, List<String>> group) -> group.getValue().size()).reversed()
+                ))
+                .collect(Collectors.toList());
+        Map<String, DataType> columnTypes = new HashMap<>();
+        Dataset<Row> data = null;
+        List<String> incompatibleFilePaths = new ArrayList<>();
+        for (val group : groups) {
+            StructType schema = group.getKey();
+            if (isCompatible(columnTypes, schema)) {
+                for (StructField field : schema.fields()) {
+                    columnTypes.put(field.name().toLowerCase(Locale.ROOT), field.dataType());
+                }
+                Dataset<Row> groupData = getBatchCdcSourceData(sparkSession, schema, group.getValue());
+                data = data == null ? groupData : data.unionByName(groupData, true);
+            } else {
+                logger.warn("{} files have a schema which is incompatible with the other files: \n{}", group.getValue().size(), schema.treeString());
+                incompatibleFilePaths.addAll(group.getValue());
+            }
+        }
+        logger.info("Reading {} schema groups, {} files are incompatible", groups.size(), incompatibleFilePaths.size());
+        return new SchemaGroupedSourceData(data, incompatibleFilePaths);
+    }
+
+    @VisibleForTesting
+    static boolean isCompatible(Map<String, DataType> columnTypes, StructType schema) {
+        for (StructField field : schema.fields()) {
+            // Spark resolves column names case insensitively by default
+            DataType existingType = columnTypes.get(field.name().toLowerCase(Locale.ROOT));
+            // unionByName widens nullability, including within structs, arrays and maps, so only the types must match
+            if (existingType != null && !asNullable(existingType).equals(asNullable(field.dataType()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static DataType asNullable(DataType dataType) {
+        if (dataType instanceof StructType) {
+            StructType structType = new StructType();
+            for (StructField field : ((StructType) dataType).fields()) {
+                structType = structType.add(field.name(), asNullable(field.dataType()), true, field.metadata());
+            }
+            return structType;
+        } else if (dataType instanceof ArrayType) {
+            return new ArrayType(asNullable(((ArrayType) dataType).elementType()), true);
+        } else if (dataType instanceof MapType) {
+            MapType mapType = (MapType) dataType;
+            return new MapType(asNullable(mapType.keyType()), asNullable(mapType.valueType()), true);
+        }
+        return dataType;
+    }
+
     public Dataset<Row> getBatchSourceData(SparkSession sparkSession, String filePath) {
         return sparkSession
                 .read()
@@ -160,19 +310,22 @@ public class S3DataProvider {
         return curated.select(sparkKeyColumns);
     }
 
-    private Dataset<Row> getStreamingDataset(SparkSession sparkSession, String fileGlobPath, StructType schema) {
+    private Dataset<Row> getStreamingDataset(SparkSession sparkSession, String fileGlobPath, StructType schema, long maxFilesPerTrigger) {
         DataStreamReader streamReader = sparkSession.readStream()
-                .option("maxFilesPerTrigger", arguments.streamingJobMaxFilePerTrigger())
+                .option("maxFilesPerTrigger", maxFilesPerTrigger)
                 .schema(schema);
 
+        return withStreamingSourceArchiving(streamReader).parquet(fileGlobPath);
+    }
+
+    private DataStreamReader withStreamingSourceArchiving(DataStreamReader streamReader) {
         if (arguments.enableStreamingSourceArchiving()) {
             String processedRawFilesLocation = ensureEndsWithSlash(arguments.getRawS3Path()) + arguments.getProcessedRawFilesPath();
             return streamReader
                     .option("cleanSource", "archive")
-                    .option("sourceArchiveDir", processedRawFilesLocation)
-                    .parquet(fileGlobPath);
+                    .option("sourceArchiveDir", processedRawFilesLocation);
         } else {
-            return streamReader.parquet(fileGlobPath);
+            return streamReader;
         }
     }
 
@@ -201,4 +354,11 @@ public class S3DataProvider {
 
         return optionalInnerThrowable.isPresent() && optionalInnerThrowable.get() instanceof FileNotFoundException;
     }
+
+    @Data
+    public static class SchemaGroupedSourceData {
+        // Null if there were no files to read
+        private final Dataset<Row> data;
+        private final List<String> incompatibleFilePaths;
+    }
 }
@@ -1,5 +1,11 @@
 package uk.gov.justice.digital.common;
 
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.spark.SparkContext;
+import org.apache.spark.sql.SparkSession;
+
+import java.util.Optional;
+
 import static uk.gov.justice.digital.common.ResourcePath.ensureEndsWithSlash;
 
 public class StreamingQuery {
@@ -8,14 +14,65 @@ public class StreamingQuery {
 
     private static final String QUERY_NAME_PREFIX = "Datahub_CDC";
 
+    // Spark local property set while a CDC query catches up with relaxed manifest updates
+    public static final String RELAXED_MANIFEST_UPDATES_PROPERTY = "dpr.cdc.relaxed.manifest.updates";
+    // Spark local properties through which a CDC micro-batch's input and its newest DMS _timestamp are reported to the
+    // query which processed it
+    public static final String BATCH_INPUT_ROWS_PROPERTY = "dpr.cdc.batch.input.rows";
+    public static final String BATCH_INPUT_FILES_PROPERTY = "dpr.cdc.batch.input.files";
+    public static final String BATCH_INPUT_BYTES_PROPERTY = "dpr.cdc.batch.input.bytes";
+    public static final String BATCH_NEWEST_TIMESTAMP_PROPERTY = "dpr.cdc.batch.newest.timestamp";
+
     public static String getQueryName(String source, String table) {
         return QUERY_NAME_PREFIX + "_" + source + "." + table;
     }
 
+    /**
+     * The inverse of getQueryName. Returns empty for a query which isn't a CDC query.
+     */
+    public static Optional<ImmutablePair<String, String>> getSourceAndTable(String queryName) {
+        String prefix = QUERY_NAME_PREFIX + "_";
+        if (queryName == null || !queryName.startsWith(prefix)) {
+            return Optional.empty();
+        }
+        String sourceAndTable = queryName.substring(prefix.length());
+        int separator = sourceAndTable.indexOf('.');
+        if (separator <= 0 || separator == sourceAndTable.length() - 1) {
+            return Optional.empty();
+        }
+        return Optional.of(ImmutablePair.of(sourceAndTable.substring(0, separator), sourceAndTable.substring(separator + 1)));
+    }
+
     public static String getQueryCheckpointPath(String checkpointLocation, String source, String table) {
         return ensureEndsWithSlash(checkpointLocation) + CHECKPOINT_FOLDER_PATH + "/" + getQueryName(source, table);
     }
 
+    /**
+     * Whether the current micro-batch may skip updating table manifests because they will be updated once its query
+     * has caught up.
+     */
+    public static boolean areManifestUpdatesRelaxed(SparkSession spark) {
+        return Boolean.parseBoolean(spark.sparkContext().getLocalProperty(RELAXED_MANIFEST_UPDATES_PROPERTY));
+    }
+
+    /**
+     * Reports the micro-batch being processed on this thread. The newest timestamp is in epoch millis and is null when
+     * the batch has no DMS _timestamp.
+     */
+    public static void reportProcessedBatch(SparkContext sparkContext, long inputRows, long inputFiles, long inputBytes, Long newestTimestampMillis) {
+        sparkContext.setLocalProperty(BATCH_INPUT_ROWS_PROPERTY, Long.toString(inputRows));
+        sparkContext.setLocalProperty(BATCH_INPUT_FILES_PROPERTY, Long.toString(inputFiles));
+        sparkContext.setLocalProperty(BATCH_INPUT_BYTES_PROPERTY, Long.toString(inputBytes));
+        sparkContext.setLocalProperty(BATCH_NEWEST_TIMESTAMP_PROPERTY, newestTimestampMillis == null ? null : newestTimestampMillis.toString());
+    }
+
+    public static void clearProcessedBatch(SparkContext sparkContext) {
+        sparkContext.setLocalProperty(BATCH_INPUT_ROWS_PROPERTY, null);
+        sparkContext.setLocalProperty(BATCH_INPUT_FILES_PROPERTY, null);
+        sparkContext.setLocalProperty(BATCH_INPUT_BYTES_PROPERTY, null);
+        sparkContext.setLocalProperty(BATCH_NEWEST_TIMESTAMP_PROPERTY, null);
+    }
+
     private StreamingQuery() {}
 
 }
@@ -11,6 +11,8 @@ import jakarta.inject.Singleton;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import uk.gov.justice.digital.job.batchprocessing.LatestRecordsStrategy;
+import uk.gov.justice.digital.service.ManifestUpdatePolicy;
 import uk.gov.justice.digital.service.datareconciliation.model.ReconciliationCheck;
 
 import java.time.Duration;
@@ -89,6 +91,9 @@ public class JobArguments {
     // The Domain layer only has a depth of 2, with tables nested under domains
     // e.g. s3://dpr-domain-preproduction/establishment/living_unit/
     public static final int MAINTENANCE_LIST_TABLE_RECURSE_MAX_DEPTH_DEFAULT = 2;
+    // The most directories listed at once when looking for the tables to maintain
+    public static final String MAINTENANCE_LIST_TABLE_PARALLELISM = "dpr.maintenance.listtable.parallelism";
+    public static final int MAINTENANCE_LIST_TABLE_PARALLELISM_DEFAULT = 16;
     public static final String CHECKPOINT_LOCATION = "checkpoint.location";
     public static final String BATCH_MAX_RETRIES = "dpr.batch.max.retries";
     public static final int BATCH_MAX_RETRIES_DEFAULT = 3;
@@ -107,12 +112,59 @@ public class JobArguments {
     public static final String DATA_STORAGE_RETRY_JITTER_FACTOR = "dpr.datastorage.retry.jitterFactor";
     public static final double DATA_STORAGE_RETRY_JITTER_FACTOR_DEFAULT = 0.25;
 
+    // Adds predicates on the primary key values in each batch to merge conditions so Delta can skip files which cannot match
+    public static final String DATA_STORAGE_MERGE_PRUNING_ENABLED = "dpr.datastorage.merge.pruning.enabled";
+    // Batches with up to this many records are pruned by an IN list of their keys, larger batches by the range of their keys
+    public static final String DATA_STORAGE_MERGE_PRUNING_MAX_IN_LIST_KEYS = "dpr.datastorage.merge.pruning.maxInListKeys";
+    public static final int DATA_STORAGE_MERGE_PRUNING_MAX_IN_LIST_KEYS_DEFAULT = 1000;
+    // With merge pruning enabled, batches with up to this many records are broadcast to the merge join. 0 turns off the broadcast hint
+    public static final String DATA_STORAGE_MERGE_BROADCAST_MAX_ROWS = "dpr.datastorage.merge.broadcast.maxRows";
+    public static final long DATA_STORAGE_MERGE_BROADCAST_MAX_ROWS_DEFAULT = 100000L;
+    // Merges batches made up only of inserts with an insert-only merge, falling back to a full merge when any of their
+    // keys are already in the table. The insert-only merge uses the same key predicates as merge pruning, so enabling
+    // this also prunes merges
+    public static final String DATA_STORAGE_MERGE_INSERT_ONLY_FAST_PATH_ENABLED = "dpr.datastorage.merge.insertOnlyFastPath.enabled";
+    // How symlink manifests are kept up to date after writes: eager, incremental, debounced or background.
+    // Debounced and background updates are only deferred while a job is running them, currently the CDC job
+    public static final String DATA_STORAGE_MANIFEST_UPDATE_POLICY = "dpr.datastorage.manifest.updatePolicy";
+    public static final String DATA_STORAGE_MANIFEST_UPDATE_POLICY_DEFAULT = "eager";
+    public static final String DATA_STORAGE_MANIFEST_DEBOUNCE_INTERVAL_SECONDS = "dpr.datastorage.manifest.debounceIntervalSeconds";
+    public static final long DATA_STORAGE_MANIFEST_DEBOUNCE_INTERVAL_SECONDS_DEFAULT = 300L;
+    // Caches Delta table handles and the paths known to be Delta tables for the rest of the run, rather than reading each
+    // table's _delta_log on every lookup
+    public static final String DATA_STORAGE_TABLE_REGISTRY_ENABLED = "dpr.datastorage.tableRegistry.enabled";
+    // How long a cached handle or existing path is trusted before the table is looked up again, so that tables deleted
+    // or recreated by other jobs are noticed
+    public static final String DATA_STORAGE_TABLE_REGISTRY_TTL_SECONDS = "dpr.datastorage.tableRegistry.ttlSeconds";
+    public static final long DATA_STORAGE_TABLE_REGISTRY_TTL_SECONDS_DEFAULT = 600L;
+    // Reads the operation metrics of each write from the table's commit history and appends them, batched every flush
+    // interval, to the write stats table at dpr.datastorage.writeStats.path
+    public static final String DATA_STORAGE_WRITE_STATS_ENABLED = "dpr.datastorage.writeStats.enabled";
+    public static final String DATA_STORAGE_WRITE_STATS_PATH = "dpr.datastorage.writeStats.path";
+    public static final String DATA_STORAGE_WRITE_STATS_FLUSH_INTERVAL_SECONDS = "dpr.datastorage.writeStats.flushIntervalSeconds";
+    public static final long DATA_STORAGE_WRITE_STATS_FLUSH_INTERVAL_SECONDS_DEFAULT = 300L;
+    // Queues the writes this process makes to the same table rather than letting them conflict and retry
+    public static final String DATA_STORAGE_COMMIT_COORDINATOR_ENABLED = "dpr.datastorage.commitCoordinator.enabled";
+    // Appends a load to a table which is empty or has none of its keys rather than merging it
+    public static final String DATA_STORAGE_LOAD_PLANNER_ENABLED = "dpr.datastorage.loadPlanner.enabled";
+
     public static final String CDC_FILE_GLOB_PATTERN = "dpr.cdc.fileglobpattern";
     // You might set this to '*-*.parquet' to only process CDC files or '*.parquet' to process load and CDC files
     public static final String CDC_FILE_GLOB_PATTERN_DEFAULT = "*-*.parquet";
 
     public static final String BATCH_LOAD_FILE_GLOB_PATTERN = "dpr.batch.load.fileglobpattern";
     public static final String BATCH_LOAD_FILE_GLOB_PATTERN_DEFAULT = "LOAD*parquet";
+    // The number of tables a batch load job loads at once. Tables are loaded one at a time by default
+    public static final String BATCH_LOAD_TABLE_PARALLELISM = "dpr.batch.load.table.parallelism";
+    public static final int BATCH_LOAD_TABLE_PARALLELISM_DEFAULT = 1;
+    // The number of tables whose load files are listed at once
+    public static final String BATCH_LOAD_DISCOVERY_PARALLELISM = "dpr.batch.load.discovery.parallelism";
+    public static final int BATCH_LOAD_DISCOVERY_PARALLELISM_DEFAULT = 16;
+    // Reads a table's load files in groups which share a schema rather than merging the schemas of every file
+    public static final String BATCH_LOAD_SCHEMA_GROUPING_ENABLED = "dpr.batch.load.schema.grouping.enabled";
+    // Records each table's progress so that a rerun of a failed batch load resumes rather than starting again
+    public static final String BATCH_LOAD_RESUME_ENABLED = "dpr.batch.load.resume.enabled";
+    public static final String BATCH_LOAD_PROGRESS_PATH = "dpr.batch.load.progress.path";
     public static final String FILE_TRANSFER_SOURCE_BUCKET_NAME = "dpr.file.transfer.source.bucket";
     public static final String FILE_SOURCE_PREFIX = "dpr.file.source.prefix";
     public static final String FILE_TRANSFER_DESTINATION_BUCKET_NAME = "dpr.file.transfer.destination.bucket";
@@ -143,6 +195,76 @@ public class JobArguments {
     static final String CLEAN_CDC_CHECKPOINT = "dpr.clean.cdc.checkpoint";
     static final String CDC_TRIGGER_INTERVAL_SECONDS = "dpr.cdc.trigger.interval.seconds";
     static final long DEFAULT_CDC_TRIGGER_INTERVAL_SECONDS = 60;
+    // When enabled the CDC job runs a small fixed number of streaming queries, each reading the raw files for a group
+    // of tables, rather than one streaming query per table. Tables are assigned to groups by a stable hash of their
+    // source and table name so a table stays in the same group, and checkpoint, as other tables are added.
+    static final String CDC_MULTIPLEXED_QUERIES_ENABLED = "dpr.cdc.multiplexed.queries.enabled";
+    static final String CDC_MULTIPLEXED_QUERY_GROUPS = "dpr.cdc.multiplexed.query.groups";
+    static final int DEFAULT_CDC_MULTIPLEXED_QUERY_GROUPS = 4;
+    // When enabled each table's trigger interval and max files per trigger are periodically re-evaluated from the
+    // backlog observed in its recent micro-batches. Busy tables move to the minimum interval with larger batches,
+    // idle tables back off towards the maximum interval. Applying new settings restarts the table's query.
+    static final String CDC_ADAPTIVE_TRIGGER_ENABLED = "dpr.cdc.adaptive.trigger.enabled";
+    static final String CDC_ADAPTIVE_TRIGGER_MIN_INTERVAL_SECONDS = "dpr.cdc.adaptive.trigger.min.interval.seconds";
+    static final long DEFAULT_CDC_ADAPTIVE_TRIGGER_MIN_INTERVAL_SECONDS = 10;
+    static final String CDC_ADAPTIVE_TRIGGER_MAX_INTERVAL_SECONDS = "dpr.cdc.adaptive.trigger.max.interval.seconds";
+    static final long DEFAULT_CDC_ADAPTIVE_TRIGGER_MAX_INTERVAL_SECONDS = 600;
+    static final String CDC_ADAPTIVE_TRIGGER_MAX_FILES_PER_TRIGGER_LIMIT = "dpr.cdc.adaptive.trigger.max.files.per.trigger.limit";
+    static final long DEFAULT_CDC_ADAPTIVE_TRIGGER_MAX_FILES_PER_TRIGGER_LIMIT = 8000;
+    static final String CDC_ADAPTIVE_TRIGGER_BUSY_LAG_SECONDS = "dpr.cdc.adaptive.trigger.busy.lag.seconds";
+    static final long DEFAULT_CDC_ADAPTIVE_TRIGGER_BUSY_LAG_SECONDS = 300;
+    static final String CDC_ADAPTIVE_TRIGGER_BUSY_BYTES = "dpr.cdc.adaptive.trigger.busy.bytes";
+    static final long DEFAULT_CDC_ADAPTIVE_TRIGGER_BUSY_BYTES = 512L * 1024 * 1024;
+    static final String CDC_ADAPTIVE_TRIGGER_EVALUATION_INTERVAL_SECONDS = "dpr.cdc.adaptive.trigger.evaluation.interval.seconds";
+    static final long DEFAULT_CDC_ADAPTIVE_TRIGGER_EVALUATION_INTERVAL_SECONDS = 300;
+    // When enabled the deduplicated CDC micro-batch is persisted once and, once the structured merge has committed it,
+    // the curated and ODS merges run at the same time, each in its own fair scheduler pool.
+    static final String CDC_PIPELINED_ZONE_WRITES_ENABLED = "dpr.cdc.pipelined.zone.writes.enabled";
+    // The Spark storage level used to materialise each CDC micro-batch once. NONE disables materialisation.
+    static final String CDC_BATCH_STORAGE_LEVEL = "dpr.cdc.batch.storage.level";
+    public static final String DEFAULT_CDC_BATCH_STORAGE_LEVEL = "MEMORY_AND_DISK";
+    // How the latest record for each primary key in a CDC micro-batch is found: window or aggregate
+    static final String CDC_LATEST_RECORDS_STRATEGY = "dpr.cdc.latest.records.strategy";
+    static final String DEFAULT_CDC_LATEST_RECORDS_STRATEGY = "window";
+    // Starts and stops table queries while the CDC job runs as tables are added to or removed from the table config
+    static final String CDC_TABLE_CONFIG_WATCH_ENABLED = "dpr.cdc.table.config.watch.enabled";
+    static final String CDC_TABLE_CONFIG_WATCH_INTERVAL_SECONDS = "dpr.cdc.table.config.watch.interval.seconds";
+    static final long DEFAULT_CDC_TABLE_CONFIG_WATCH_INTERVAL_SECONDS = 60L;
+    static final String CDC_QUERY_STARTUP_CONCURRENCY = "dpr.cdc.query.startup.concurrency";
+    static final int DEFAULT_CDC_QUERY_STARTUP_CONCURRENCY = 4;
+    static final String CDC_QUERY_GRACEFUL_STOP_TIMEOUT_SECONDS = "dpr.cdc.query.graceful.stop.timeout.seconds";
+    static final long DEFAULT_CDC_QUERY_GRACEFUL_STOP_TIMEOUT_SECONDS = 600L;
+    // Runs each CDC query in its own fair scheduler pool weighted by the table's priority tier in the table config
+    static final String CDC_SCHEDULER_POOLS_ENABLED = "dpr.cdc.scheduler.pools.enabled";
+    // Publishes per-table CDC streaming throughput, latency and backlog metrics to CloudWatch
+    static final String CDC_CLOUDWATCH_METRICS_ENABLED = "dpr.cdc.cloudwatch.metrics.enabled";
+    static final String CDC_CLOUDWATCH_METRICS_NAMESPACE = "dpr.cdc.cloudwatch.metrics.namespace";
+    static final String DEFAULT_CDC_CLOUDWATCH_METRICS_NAMESPACE = "DataHubCdc";
+    static final String CDC_CLOUDWATCH_METRICS_FLUSH_INTERVAL_SECONDS = "dpr.cdc.cloudwatch.metrics.flush.interval.seconds";
+    static final long DEFAULT_CDC_CLOUDWATCH_METRICS_FLUSH_INTERVAL_SECONDS = 60L;
+    // Restarts a failed CDC query with exponential backoff instead of failing the job, and quarantines the query's
+    // tables if it fails restart.max.failures times within the failure window
+    static final String CDC_QUERY_SUPERVISOR_ENABLED = "dpr.cdc.query.supervisor.enabled";
+    static final String CDC_QUERY_RESTART_INITIAL_BACKOFF_SECONDS = "dpr.cdc.query.restart.initial.backoff.seconds";
+    static final long DEFAULT_CDC_QUERY_RESTART_INITIAL_BACKOFF_SECONDS = 30L;
+    static final String CDC_QUERY_RESTART_MAX_BACKOFF_SECONDS = "dpr.cdc.query.restart.max.backoff.seconds";
+    static final long DEFAULT_CDC_QUERY_RESTART_MAX_BACKOFF_SECONDS = 900L;
+    static final String CDC_QUERY_RESTART_MAX_FAILURES = "dpr.cdc.query.restart.max.failures";
+    static final int DEFAULT_CDC_QUERY_RESTART_MAX_FAILURES = 5;
+    static final String CDC_QUERY_RESTART_FAILURE_WINDOW_SECONDS = "dpr.cdc.query.restart.failure.window.seconds";
+    static final long DEFAULT_CDC_QUERY_RESTART_FAILURE_WINDOW_SECONDS = 3600L;
+    // Starts each CDC query by working through its backlog with AvailableNow triggers before switching to its normal trigger
+    static final String CDC_CATCH_UP_ENABLED = "dpr.cdc.catchup.enabled";
+    static final String CDC_CATCH_UP_MAX_FILES_PER_TRIGGER = "dpr.cdc.catchup.max.files.per.trigger";
+    static final long DEFAULT_CDC_CATCH_UP_MAX_FILES_PER_TRIGGER = 20000L;
+    static final String CDC_CATCH_UP_LAG_THRESHOLD_SECONDS = "dpr.cdc.catchup.lag.threshold.seconds";
+    static final long DEFAULT_CDC_CATCH_UP_LAG_THRESHOLD_SECONDS = 300L;
+    static final String CDC_CATCH_UP_RELAXED_MANIFEST_UPDATES = "dpr.cdc.catchup.relaxed.manifest.updates";
+    // Appends curated changes for the mergeOnReadTables in the table config to a change log, which is compacted into
+    // the curated table every compaction interval, rather than merging every batch into the curated table
+    static final String CDC_CHANGE_LOG_ENABLED = "dpr.cdc.changelog.enabled";
+    static final String CDC_CHANGE_LOG_COMPACTION_INTERVAL_SECONDS = "dpr.cdc.changelog.compaction.interval.seconds";
+    static final long DEFAULT_CDC_CHANGE_LOG_COMPACTION_INTERVAL_SECONDS = 900L;
     static final String SPARK_BROADCAST_TIMEOUT_SECONDS = "dpr.spark.broadcast.timeout.seconds";
     public static final Integer DEFAULT_SPARK_BROADCAST_TIMEOUT_SECONDS = 300;
     // For maxrecordsperfile 100,000 is a good first guess if you're not sure about input record sizes.
@@ -387,6 +509,14 @@ public class JobArguments {
         return getArgument(MAINTENANCE_LIST_TABLE_RECURSE_MAX_DEPTH, MAINTENANCE_LIST_TABLE_RECURSE_MAX_DEPTH_DEFAULT);
     }
 
+    public int getMaintenanceListTableParallelism() {
+        int parallelism = getArgument(MAINTENANCE_LIST_TABLE_PARALLELISM, MAINTENANCE_LIST_TABLE_PARALLELISM_DEFAULT);
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException(MAINTENANCE_LIST_TABLE_PARALLELISM + " must be positive");
+        }
+        return parallelism;
+    }
+
     public String getCheckpointLocation() {
         return getArgument(CHECKPOINT_LOCATION);
     }
@@ -411,6 +541,78 @@ public class JobArguments {
         return getArgument(DATA_STORAGE_RETRY_JITTER_FACTOR, DATA_STORAGE_RETRY_JITTER_FACTOR_DEFAULT);
     }
 
+    public boolean isDataStorageMergePruningEnabled() {
+        return getArgument(DATA_STORAGE_MERGE_PRUNING_ENABLED, false);
+    }
+
+    public boolean isDataStorageMergeInsertOnlyFastPathEnabled() {
+        return getArgument(DATA_STORAGE_MERGE_INSERT_ONLY_FAST_PATH_ENABLED, false);
+    }
+
+    public int getDataStorageMergePruningMaxInListKeys() {
+        int maxInListKeys = getArgument(DATA_STORAGE_MERGE_PRUNING_MAX_IN_LIST_KEYS, DATA_STORAGE_MERGE_PRUNING_MAX_IN_LIST_KEYS_DEFAULT);
+        if (maxInListKeys < 0) {
+            throw new IllegalArgumentException(DATA_STORAGE_MERGE_PRUNING_MAX_IN_LIST_KEYS + " must not be negative");
+        }
+        return maxInListKeys;
+    }
+
+    public long getDataStorageMergeBroadcastMaxRows() {
+        long maxRows = getArgument(DATA_STORAGE_MERGE_BROADCAST_MAX_ROWS, DATA_STORAGE_MERGE_BROADCAST_MAX_ROWS_DEFAULT);
+        if (maxRows < 0) {
+            throw new IllegalArgumentException(DATA_STORAGE_MERGE_BROADCAST_MAX_ROWS + " must not be negative");
+        }
+        return maxRows;
+    }
+
+    public ManifestUpdatePolicy getDataStorageManifestUpdatePolicy() {
+        return ManifestUpdatePolicy.fromString(getArgument(DATA_STORAGE_MANIFEST_UPDATE_POLICY, DATA_STORAGE_MANIFEST_UPDATE_POLICY_DEFAULT));
+    }
+
+    public long getDataStorageManifestDebounceIntervalSeconds() {
+        long intervalSeconds = getArgument(DATA_STORAGE_MANIFEST_DEBOUNCE_INTERVAL_SECONDS, DATA_STORAGE_MANIFEST_DEBOUNCE_INTERVAL_SECONDS_DEFAULT);
+        if (intervalSeconds <= 0) {
+            throw new IllegalArgumentException(DATA_STORAGE_MANIFEST_DEBOUNCE_INTERVAL_SECONDS + " must be positive");
+        }
+        return intervalSeconds;
+    }
+
+    public boolean isDataStorageTableRegistryEnabled() {
+        return getArgument(DATA_STORAGE_TABLE_REGISTRY_ENABLED, false);
+    }
+
+    public long getDataStorageTableRegistryTtlSeconds() {
+        long ttlSeconds = getArgument(DATA_STORAGE_TABLE_REGISTRY_TTL_SECONDS, DATA_STORAGE_TABLE_REGISTRY_TTL_SECONDS_DEFAULT);
+        if (ttlSeconds <= 0) {
+            throw new IllegalArgumentException(DATA_STORAGE_TABLE_REGISTRY_TTL_SECONDS + " must be positive");
+        }
+        return ttlSeconds;
+    }
+
+    public boolean isDataStorageWriteStatsEnabled() {
+        return getArgument(DATA_STORAGE_WRITE_STATS_ENABLED, false);
+    }
+
+    public String getDataStorageWriteStatsPath() {
+        return getArgument(DATA_STORAGE_WRITE_STATS_PATH);
+    }
+
+    public long getDataStorageWriteStatsFlushIntervalSeconds() {
+        long intervalSeconds = getArgument(DATA_STORAGE_WRITE_STATS_FLUSH_INTERVAL_SECONDS, DATA_STORAGE_WRITE_STATS_FLUSH_INTERVAL_SECONDS_DEFAULT);
+        if (intervalSeconds <= 0) {
+            throw new IllegalArgumentException(DATA_STORAGE_WRITE_STATS_FLUSH_INTERVAL_SECONDS + " must be positive");
+        }
+        return intervalSeconds;
+    }
+
+    public boolean isDataStorageCommitCoordinatorEnabled() {
+        return getArgument(DATA_STORAGE_COMMIT_COORDINATOR_ENABLED, false);
+    }
+
+    public boolean isDataStorageLoadPlannerEnabled() {
+        return getArgument(DATA_STORAGE_LOAD_PLANNER_ENABLED, false);
+    }
+
     public String getCdcFileGlobPattern() {
         return getArgument(CDC_FILE_GLOB_PATTERN, CDC_FILE_GLOB_PATTERN_DEFAULT);
     }
@@ -419,6 +621,34 @@ public class JobArguments {
         return getArgument(BATCH_LOAD_FILE_GLOB_PATTERN, BATCH_LOAD_FILE_GLOB_PATTERN_DEFAULT);
     }
 
+    public int getBatchLoadTableParallelism() {
+        int parallelism = getArgument(BATCH_LOAD_TABLE_PARALLELISM, BATCH_LOAD_TABLE_PARALLELISM_DEFAULT);
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException(BATCH_LOAD_TABLE_PARALLELISM + " must be positive");
+        }
+        return parallelism;
+    }
+
+    public int getBatchLoadDiscoveryParallelism() {
+        int parallelism = getArgument(BATCH_LOAD_DISCOVERY_PARALLELISM, BATCH_LOAD_DISCOVERY_PARALLELISM_DEFAULT);
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException(BATCH_LOAD_DISCOVERY_PARALLELISM + " must be positive");
+        }
+        return parallelism;
+    }
+
+    public boolean isBatchLoadSchemaGroupingEnabled() {
+        return getArgument(BATCH_LOAD_SCHEMA_GROUPING_ENABLED, false);
+    }
+
+    public boolean isBatchLoadResumeEnabled() {
+        return getArgument(BATCH_LOAD_RESUME_ENABLED, false);
+    }
+
+    public String getBatchLoadProgressPath() {
+        return getArgument(BATCH_LOAD_PROGRESS_PATH);
+    }
+
     public String getTransferSourceBucket() {
         return getArgument(FILE_TRANSFER_SOURCE_BUCKET_NAME);
     }
@@ -539,6 +769,162 @@ public class JobArguments {
         return getArgument(CDC_TRIGGER_INTERVAL_SECONDS, DEFAULT_CDC_TRIGGER_INTERVAL_SECONDS);
     }
 
+    public boolean isCdcMultiplexedQueriesEnabled() {
+        return getArgument(CDC_MULTIPLEXED_QUERIES_ENABLED, false);
+    }
+
+    public int getCdcMultiplexedQueryGroups() {
+        int groups = getArgument(CDC_MULTIPLEXED_QUERY_GROUPS, DEFAULT_CDC_MULTIPLEXED_QUERY_GROUPS);
+        if (groups <= 0) {
+            throw new IllegalArgumentException(CDC_MULTIPLEXED_QUERY_GROUPS + " must be a positive integer");
+        }
+        return groups;
+    }
+
+    public boolean isCdcAdaptiveTriggerEnabled() {
+        return getArgument(CDC_ADAPTIVE_TRIGGER_ENABLED, false);
+    }
+
+    public long getCdcAdaptiveTriggerMinIntervalSeconds() {
+        return getArgument(CDC_ADAPTIVE_TRIGGER_MIN_INTERVAL_SECONDS, DEFAULT_CDC_ADAPTIVE_TRIGGER_MIN_INTERVAL_SECONDS);
+    }
+
+    public long getCdcAdaptiveTriggerMaxIntervalSeconds() {
+        long maxInterval = getArgument(CDC_ADAPTIVE_TRIGGER_MAX_INTERVAL_SECONDS, DEFAULT_CDC_ADAPTIVE_TRIGGER_MAX_INTERVAL_SECONDS);
+        if (maxInterval < getCdcAdaptiveTriggerMinIntervalSeconds()) {
+            throw new IllegalArgumentException(CDC_ADAPTIVE_TRIGGER_MAX_INTERVAL_SECONDS + " must not be less than " + CDC_ADAPTIVE_TRIGGER_MIN_INTERVAL_SECONDS);
+        }
+        return maxInterval;
+    }
+
+    public long getCdcAdaptiveTriggerMaxFilesPerTriggerLimit() {
+        return getArgument(CDC_ADAPTIVE_TRIGGER_MAX_FILES_PER_TRIGGER_LIMIT, DEFAULT_CDC_ADAPTIVE_TRIGGER_MAX_FILES_PER_TRIGGER_LIMIT);
+    }
+
+    public long getCdcAdaptiveTriggerBusyLagSeconds() {
+        return getArgument(CDC_ADAPTIVE_TRIGGER_BUSY_LAG_SECONDS, DEFAULT_CDC_ADAPTIVE_TRIGGER_BUSY_LAG_SECONDS);
+    }
+
+    public long getCdcAdaptiveTriggerBusyBytes() {
+        return getArgument(CDC_ADAPTIVE_TRIGGER_BUSY_BYTES, DEFAULT_CDC_ADAPTIVE_TRIGGER_BUSY_BYTES);
+    }
+
+    public long getCdcAdaptiveTriggerEvaluationIntervalSeconds() {
+        return getArgument(CDC_ADAPTIVE_TRIGGER_EVALUATION_INTERVAL_SECONDS, DEFAULT_CDC_ADAPTIVE_TRIGGER_EVALUATION_INTERVAL_SECONDS);
+    }
+
+    public boolean isCdcPipelinedZoneWritesEnabled() {
+        return getArgument(CDC_PIPELINED_ZONE_WRITES_ENABLED, false);
+    }
+
+    public String getCdcBatchStorageLevel() {
+        return getArgument(CDC_BATCH_STORAGE_LEVEL, DEFAULT_CDC_BATCH_STORAGE_LEVEL).toUpperCase();
+    }
+
+    public LatestRecordsStrategy getCdcLatestRecordsStrategy() {
+        return LatestRecordsStrategy.fromString(getArgument(CDC_LATEST_RECORDS_STRATEGY, DEFAULT_CDC_LATEST_RECORDS_STRATEGY));
+    }
+
+    public boolean isCdcTableConfigWatchEnabled() {
+        return getArgument(CDC_TABLE_CONFIG_WATCH_ENABLED, false);
+    }
+
+    public long getCdcTableConfigWatchIntervalSeconds() {
+        return getArgument(CDC_TABLE_CONFIG_WATCH_INTERVAL_SECONDS, DEFAULT_CDC_TABLE_CONFIG_WATCH_INTERVAL_SECONDS);
+    }
+
+    public int getCdcQueryStartupConcurrency() {
+        int concurrency = getArgument(CDC_QUERY_STARTUP_CONCURRENCY, DEFAULT_CDC_QUERY_STARTUP_CONCURRENCY);
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException(CDC_QUERY_STARTUP_CONCURRENCY + " must be a positive integer");
+        }
+        return concurrency;
+    }
+
+    public long getCdcQueryGracefulStopTimeoutSeconds() {
+        return getArgument(CDC_QUERY_GRACEFUL_STOP_TIMEOUT_SECONDS, DEFAULT_CDC_QUERY_GRACEFUL_STOP_TIMEOUT_SECONDS);
+    }
+
+    public boolean isCdcSchedulerPoolsEnabled() {
+        return getArgument(CDC_SCHEDULER_POOLS_ENABLED, false);
+    }
+
+    public boolean isCdcCloudwatchMetricsEnabled() {
+        return getArgument(CDC_CLOUDWATCH_METRICS_ENABLED, false);
+    }
+
+    public String getCdcCloudwatchMetricsNamespace() {
+        return getArgument(CDC_CLOUDWATCH_METRICS_NAMESPACE, DEFAULT_CDC_CLOUDWATCH_METRICS_NAMESPACE);
+    }
+
+    public long getCdcCloudwatchMetricsFlushIntervalSeconds() {
+        long flushIntervalSeconds = getArgument(CDC_CLOUDWATCH_METRICS_FLUSH_INTERVAL_SECONDS, DEFAULT_CDC_CLOUDWATCH_METRICS_FLUSH_INTERVAL_SECONDS);
+        if (flushIntervalSeconds <= 0) {
+            throw new IllegalArgumentException(CDC_CLOUDWATCH_METRICS_FLUSH_INTERVAL_SECONDS + " must be positive");
+        }
+        return flushIntervalSeconds;
+    }
+
+    public boolean isCdcQuerySupervisorEnabled() {
+        return getArgument(CDC_QUERY_SUPERVISOR_ENABLED, false);
+    }
+
+    public long getCdcQueryRestartInitialBackoffSeconds() {
+        return getArgument(CDC_QUERY_RESTART_INITIAL_BACKOFF_SECONDS, DEFAULT_CDC_QUERY_RESTART_INITIAL_BACKOFF_SECONDS);
+    }
+
+    public long getCdcQueryRestartMaxBackoffSeconds() {
+        long maxBackoffSeconds = getArgument(CDC_QUERY_RESTART_MAX_BACKOFF_SECONDS, DEFAULT_CDC_QUERY_RESTART_MAX_BACKOFF_SECONDS);
+        if (maxBackoffSeconds < getCdcQueryRestartInitialBackoffSeconds()) {
+            throw new IllegalArgumentException(CDC_QUERY_RESTART_MAX_BACKOFF_SECONDS + " must not be less than " + CDC_QUERY_RESTART_INITIAL_BACKOFF_SECONDS);
+        }
+        return maxBackoffSeconds;
+    }
+
+    public int getCdcQueryRestartMaxFailures() {
+        int maxFailures = getArgument(CDC_QUERY_RESTART_MAX_FAILURES, DEFAULT_CDC_QUERY_RESTART_MAX_FAILURES);
+        if (maxFailures <= 0) {
+            throw new IllegalArgumentException(CDC_QUERY_RESTART_MAX_FAILURES + " must be a positive integer");
+        }
+        return maxFailures;
+    }
+
+    public long getCdcQueryRestartFailureWindowSeconds() {
+        return getArgument(CDC_QUERY_RESTART_FAILURE_WINDOW_SECONDS, DEFAULT_CDC_QUERY_RESTART_FAILURE_WINDOW_SECONDS);
+    }
+
+    public boolean isCdcCatchUpEnabled() {
+        return getArgument(CDC_CATCH_UP_ENABLED, false);
+    }
+
+    public long getCdcCatchUpMaxFilesPerTrigger() {
+        long maxFilesPerTrigger = getArgument(CDC_CATCH_UP_MAX_FILES_PER_TRIGGER, DEFAULT_CDC_CATCH_UP_MAX_FILES_PER_TRIGGER);
+        if (maxFilesPerTrigger <= 0) {
+            throw new IllegalArgumentException(CDC_CATCH_UP_MAX_FILES_PER_TRIGGER + " must be positive");
+        }
+        return maxFilesPerTrigger;
+    }
+
+    public long getCdcCatchUpLagThresholdSeconds() {
+        return getArgument(CDC_CATCH_UP_LAG_THRESHOLD_SECONDS, DEFAULT_CDC_CATCH_UP_LAG_THRESHOLD_SECONDS);
+    }
+
+    public boolean isCdcCatchUpRelaxedManifestUpdates() {
+        return getArgument(CDC_CATCH_UP_RELAXED_MANIFEST_UPDATES, false);
+    }
+
+    public boolean isCdcChangeLogEnabled() {
+        return getArgument(CDC_CHANGE_LOG_ENABLED, false);
+    }
+
+    public long getCdcChangeLogCompactionIntervalSeconds() {
+        long intervalSeconds = getArgument(CDC_CHANGE_LOG_COMPACTION_INTERVAL_SECONDS, DEFAULT_CDC_CHANGE_LOG_COMPACTION_INTERVAL_SECONDS);
+        if (intervalSeconds <= 0) {
+            throw new IllegalArgumentException(CDC_CHANGE_LOG_COMPACTION_INTERVAL_SECONDS + " must be positive");
+        }
+        return intervalSeconds;
+    }
+
     public String getGlueTriggerName() {
         return getArgument(GLUE_TRIGGER_NAME);
     }
@@ -0,0 +1,13 @@
+package uk.gov.justice.digital.datahub.model;
+
+import lombok.Data;
+
+/**
+ * The fair scheduler weight and minimum share given to the CDC queries of the tables in a priority tier.
+ */
+@Data
+public class SchedulingPriority {
+    private final String tier;
+    private final int weight;
+    private final int minShare;
+}
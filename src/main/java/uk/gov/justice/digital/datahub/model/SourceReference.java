@@ -1,7 +1,10 @@
 package uk.gov.justice.digital.datahub.model;
 
+import lombok.AllArgsConstructor;
 import lombok.Data;
 import org.apache.spark.sql.Column;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
 import org.apache.spark.sql.types.StructType;
 import scala.collection.JavaConverters;
 import scala.collection.Seq;
@@ -15,6 +18,7 @@ import java.util.stream.Collectors;
 import static java.lang.String.format;
 
 @Data
+@AllArgsConstructor
 public class SourceReference {
     private final String key;
     private final String namespace;
@@ -24,6 +28,19 @@ public class SourceReference {
     private final String versionId;
     private final StructType schema;
     private final SensitiveColumns sensitiveColumns;
+    private final TableLayout layout;
+
+    public SourceReference(
+            String key,
+            String namespace,
+            String source,
+            String table,
+            PrimaryKey primaryKey,
+            String versionId,
+            StructType schema,
+            SensitiveColumns sensitiveColumns) {
+        this(key, namespace, source, table, primaryKey, versionId, schema, sensitiveColumns, TableLayout.NONE);
+    }
 
     public String getFullDatahubTableName() {
         return format("%s.%s", source, table);
@@ -108,4 +125,40 @@ public class SourceReference {
             return Objects.hash(columns);
         }
     }
+
+    /**
+     * How a table's files are laid out by primary key. Range partitioning gives each file written a narrow range of
+     * keys and sorting orders the records within each file, so the key statistics of most files exclude a merge's keys.
+     * Z-ordering re-clusters the files by key when the table is compacted.
+     */
+    @Data
+    public static class TableLayout {
+
+        public static final TableLayout NONE = new TableLayout(0, false, false);
+
+        // The number of key ranges a write is split into, or 0 to leave the records partitioned as they are
+        private final int rangePartitions;
+        private final boolean sortWithinFiles;
+        private final boolean zOrderOnCompaction;
+
+        public TableLayout(int rangePartitions, boolean sortWithinFiles, boolean zOrderOnCompaction) {
+            if (rangePartitions < 0) {
+                throw new IllegalArgumentException("rangePartitions must not be negative");
+            }
+            this.rangePartitions = rangePartitions;
+            this.sortWithinFiles = sortWithinFiles;
+            this.zOrderOnCompaction = zOrderOnCompaction;
+        }
+
+        public Dataset<Row> apply(Dataset<Row> dataFrame, PrimaryKey primaryKey) {
+            Dataset<Row> result = dataFrame;
+            if (rangePartitions > 0) {
+                result = result.repartitionByRange(rangePartitions, primaryKey.getSparkKeyColumns());
+            }
+            if (sortWithinFiles) {
+                result = result.sortWithinPartitions(primaryKey.getSparkKeyColumns());
+            }
+            return result;
+        }
+    }
 }
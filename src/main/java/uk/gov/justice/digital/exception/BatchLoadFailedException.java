@@ -0,0 +1,13 @@
+package uk.gov.justice.digital.exception;
+
+/**
+ * Indicates that loading one or more tables in a batch load job has failed
+ */
+public class BatchLoadFailedException extends RuntimeException {
+    private static final long serialVersionUID = 4512968373650217316L;
+
+    public BatchLoadFailedException(String errorMessage) {
+        super(errorMessage);
+    }
+
+}
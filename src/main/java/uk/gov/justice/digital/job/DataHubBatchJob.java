@@ -5,7 +5,11 @@ import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 import lombok.val;
 import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.spark.SparkContext;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
 import org.apache.spark.sql.SparkSession;
+import org.apache.spark.sql.types.StructType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import picocli.CommandLine;
@@ -13,18 +17,33 @@ import uk.gov.justice.digital.client.s3.S3DataProvider;
 import uk.gov.justice.digital.config.JobArguments;
 import uk.gov.justice.digital.config.JobProperties;
 import uk.gov.justice.digital.datahub.model.SourceReference;
+import uk.gov.justice.digital.exception.BatchLoadFailedException;
 import uk.gov.justice.digital.exception.DataProviderFailedMergingSchemasException;
 import uk.gov.justice.digital.exception.DataStorageException;
 import uk.gov.justice.digital.job.batchprocessing.BatchProcessor;
 import uk.gov.justice.digital.provider.SparkSessionProvider;
+import uk.gov.justice.digital.service.LoadProgressService;
+import uk.gov.justice.digital.service.LoadStageListener;
+import uk.gov.justice.digital.service.ParquetSchemaCacheService;
 import uk.gov.justice.digital.service.SourceReferenceService;
 import uk.gov.justice.digital.service.TableDiscoveryService;
 import uk.gov.justice.digital.service.ViolationService;
+import uk.gov.justice.digital.service.WriteStatsService;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
+import static java.lang.String.format;
 import static uk.gov.justice.digital.service.ViolationService.ZoneName.STRUCTURED_LOAD;
 
 @Singleton
@@ -33,6 +52,8 @@ public class DataHubBatchJob implements Runnable {
 
     private static final Logger logger = LoggerFactory.getLogger(DataHubBatchJob.class);
 
+    private static final String SCHEDULER_POOL_PROPERTY = "spark.scheduler.pool";
+
     private final JobArguments arguments;
     private final JobProperties properties;
     private final SparkSessionProvider sparkSessionProvider;
@@ -41,6 +62,10 @@ public class DataHubBatchJob implements Runnable {
     private final S3DataProvider dataProvider;
     private final SourceReferenceService sourceReferenceService;
     private final ViolationService violationService;
+    private final WriteStatsService writeStatsService;
+    private final ParquetSchemaCacheService schemaCache;
+    private final LoadProgressService loadProgressService;
+    private final AtomicInteger threadCount = new AtomicInteger();
 
     @Inject
     public DataHubBatchJob(
@@ -51,7 +76,10 @@ public class DataHubBatchJob implements Runnable {
             BatchProcessor batchProcessor,
             S3DataProvider dataProvider,
             SourceReferenceService sourceReferenceService,
-            ViolationService violationService) {
+            ViolationService violationService,
+            WriteStatsService writeStatsService,
+            ParquetSchemaCacheService schemaCache,
+            LoadProgressService loadProgressService) {
         this.arguments = arguments;
         this.properties = properties;
         this.sparkSessionProvider = sparkSessionProvider;
@@ -60,6 +88,9 @@ public class DataHubBatchJob implements Runnable {
         this.dataProvider = dataProvider;
         this.sourceReferenceService = sourceReferenceService;
         this.violationService = violationService;
+        this.writeStatsService = writeStatsService;
+        this.schemaCache = schemaCache;
+        this.loadProgressService = loadProgressService;
     }
 
     public static void main(String[] args) {
@@ -81,33 +112,124 @@ public class DataHubBatchJob implements Runnable {
         val startTime = System.currentTimeMillis();
         String rawPath = arguments.getRawS3Path();
         logger.info("Processing Raw {} table by table", rawPath);
-        Map<ImmutablePair<String, String>, List<String>> pathsByTable = tableDiscoveryService.discoverBatchFilesToLoad(rawPath, sparkSession);
-        if(pathsByTable.isEmpty()) {
+        Map<ImmutablePair<String, String>, Map<String, Long>> fileBytesByTable = tableDiscoveryService.discoverBatchFileSizesToLoad(rawPath, sparkSession);
+        if(fileBytesByTable.isEmpty()) {
             String msg = "No tables found under " + rawPath;
             logger.error(msg);
             throw new RuntimeException(msg);
         }
-        for (val entry: pathsByTable.entrySet()) {
-            val tableStartTime = System.currentTimeMillis();
-            val schema = entry.getKey().getLeft();
-            val table = entry.getKey().getRight();
-            logger.info("Processing table {}.{}", schema, table);
-            val filePaths = entry.getValue();
-            if(!filePaths.isEmpty()) {
-                processFilePaths(sparkSession, schema, table, filePaths, tableStartTime);
-            } else {
-                logger.warn("No paths found for table {}.{}", schema, table);
-            }
+        if (arguments.isDataStorageWriteStatsEnabled()) {
+            writeStatsService.start(sparkSession);
+        }
+        if (loadProgressService.isEnabled()) {
+            loadProgressService.start(sparkSession);
+        }
+        try {
+            loadTables(sparkSession, fileBytesByTable, arguments.getBatchLoadTableParallelism());
+        } finally {
+            writeStatsService.stop();
         }
         logger.info("Finished processing Raw {} table by table in {}ms", rawPath, System.currentTimeMillis() - startTime);
     }
 
-    private void processFilePaths(SparkSession sparkSession, String schema, String table, List<String> filePaths, long tableStartTime) throws DataStorageException {
-        Optional<SourceReference> maybeSourceReference = sourceReferenceService.getSourceReference(schema, table);
+    /**
+     * Loads up to parallelism tables at once, each in its own scheduler pool, starting with the largest tables so that
+     * the smaller tables are loaded while the largest is still running. Failed tables are skipped and only reported
+     * once every other table has been loaded.
+     * @throws BatchLoadFailedException If any table failed to load
+     */
+    private void loadTables(
+            SparkSession sparkSession,
+            Map<ImmutablePair<String, String>, Map<String, Long>> fileBytesByTable,
+            int parallelism) throws BatchLoadFailedException {
+        List<ImmutablePair<String, String>> tables = new ArrayList<>(fileBytesByTable.keySet());
+        if (parallelism > 1) {
+            Map<ImmutablePair<String, String>, Long> bytesByTable = new HashMap<>();
+            for (val table : tables) {
+                bytesByTable.put(table, totalBytes(fileBytesByTable.get(table)));
+            }
+            tables = largestFirst(bytesByTable);
+            logger.info("Loading {} tables {} at a time, largest first", tables.size(), parallelism);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "batch-load-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
         try {
-            val dataFrame = dataProvider.getBatchSourceData(sparkSession, filePaths);
+            // The pool's queue keeps the largest first order of the tables
+            Map<ImmutablePair<String, String>, Future<?>> loadsByTable = new LinkedHashMap<>();
+            for (val table : tables) {
+                loadsByTable.put(table, executor.submit(() -> {
+                    loadTable(sparkSession, table.getLeft(), table.getRight(), fileBytesByTable.get(table), parallelism > 1);
+                    return null;
+                }));
+            }
+            int numFailed = 0;
+            for (val entry : loadsByTable.entrySet()) {
+                try {
+                    entry.getValue().get();
+                } catch (ExecutionException e) {
+                    numFailed++;
+                    logger.error(format("Failed to load table %s.%s", entry.getKey().getLeft(), entry.getKey().getRight()), e.getCause());
+                }
+            }
+            if (numFailed != 0) {
+                String msg = format("Finished loading tables with %d failures", numFailed);
+                logger.error(msg);
+                throw new BatchLoadFailedException(msg);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BatchLoadFailedException("Interrupted while loading tables");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @VisibleForTesting
+    static List<ImmutablePair<String, String>> largestFirst(Map<ImmutablePair<String, String>, Long> bytesByTable) {
+        return bytesByTable.entrySet().stream()
+                .sorted(Map.Entry.<ImmutablePair<String, String>, Long>comparingByValue().reversed())
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
 
-            logger.info("Schema for {}.{}: \n{}", schema, table, dataFrame.schema().treeString());
+    private static long totalBytes(Map<String, Long> fileBytesByPath) {
+        return fileBytesByPath.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    private void loadTable(SparkSession sparkSession, String schema, String table, Map<String, Long> fileBytesByPath, boolean ownSchedulerPool) {
+        val tableStartTime = System.currentTimeMillis();
+        logger.info("Processing table {}.{}", schema, table);
+        if (fileBytesByPath.isEmpty()) {
+            logger.warn("No paths found for table {}.{}", schema, table);
+            return;
+        }
+        if (!ownSchedulerPool) {
+            processFilePaths(sparkSession, schema, table, fileBytesByPath, tableStartTime);
+            return;
+        }
+        // Pools are only used when the scheduler mode is FAIR, otherwise jobs still run in the order they are submitted
+        SparkContext sparkContext = sparkSession.sparkContext();
+        String previousPool = sparkContext.getLocalProperty(SCHEDULER_POOL_PROPERTY);
+        sparkContext.setLocalProperty(SCHEDULER_POOL_PROPERTY, format("batch-load-%s.%s", schema, table));
+        try {
+            processFilePaths(sparkSession, schema, table, fileBytesByPath, tableStartTime);
+        } finally {
+            sparkContext.setLocalProperty(SCHEDULER_POOL_PROPERTY, previousPool);
+        }
+    }
+
+    private void processFilePaths(SparkSession sparkSession, String schema, String table, Map<String, Long> fileBytesByPath, long tableStartTime) throws DataStorageException {
+        List<String> filePaths = new ArrayList<>(fileBytesByPath.keySet());
+        Optional<SourceReference> maybeSourceReference = sourceReferenceService.getSourceReference(schema, table);
+        if (loadProgressService.isEnabled() && maybeSourceReference.isPresent()) {
+            processTrackedFilePaths(sparkSession, maybeSourceReference.get(), schema, table, filePaths, totalBytes(fileBytesByPath), tableStartTime);
+            return;
+        }
+        try {
+            val dataFrame = readBatchSourceData(sparkSession, schema, table, filePaths, maybeSourceReference.map(SourceReference::getSchema).orElse(null));
             if(maybeSourceReference.isPresent()) {
                 SourceReference sourceReference = maybeSourceReference.get();
                 batchProcessor.processBatch(sparkSession, sourceReference, dataFrame);
@@ -122,4 +244,86 @@ public class DataHubBatchJob implements Runnable {
             violationService.writeBatchDataToViolations(sparkSession, schema, table, msg);
         }
     }
+
+    /**
+     * Loads the table while recording its progress, skipping the stages which an earlier run completed for the same
+     * input files.
+     */
+    private void processTrackedFilePaths(
+            SparkSession sparkSession,
+            SourceReference sourceReference,
+            String schema,
+            String table,
+            List<String> filePaths,
+            long totalFileBytes,
+            long tableStartTime) throws DataStorageException {
+        String source = sourceReference.getSource();
+        String sourceTable = sourceReference.getTable();
+        String fingerprint = LoadProgressService.fingerprint(filePaths, totalFileBytes);
+        Optional<LoadProgressService.LoadProgress> progress = loadProgressService.getProgress(source, sourceTable, fingerprint);
+        LoadStageListener tracker = loadProgressService.trackerFor(sparkSession, source, sourceTable, fingerprint);
+        if (progress.isPresent()) {
+            switch (progress.get().getStage()) {
+                case OPERATIONAL_DATA_STORE:
+                    logger.info("Skipping table {}.{} which was loaded from the same files by an earlier run", schema, table);
+                    return;
+                case CURATED:
+                    logger.info("Resuming table {}.{} after its curated write", schema, table);
+                    batchProcessor.resumeFromOperationalDataStore(sourceReference, loadProgressService.readCurated(sparkSession, progress.get()), tracker);
+                    logger.info("Processed table {}.{} in {}ms", schema, table, System.currentTimeMillis() - tableStartTime);
+                    return;
+                case STRUCTURED:
+                    logger.info("Resuming table {}.{} after its structured write", schema, table);
+                    batchProcessor.resumeFromCurated(sparkSession, sourceReference, loadProgressService.readStructured(sparkSession, progress.get()), tracker);
+                    logger.info("Processed table {}.{} in {}ms", schema, table, System.currentTimeMillis() - tableStartTime);
+                    return;
+                default:
+                    throw new IllegalStateException("Unknown load stage " + progress.get().getStage());
+            }
+        }
+        try {
+            val dataFrame = readBatchSourceData(sparkSession, schema, table, filePaths, sourceReference.getSchema());
+            batchProcessor.processBatch(sparkSession, sourceReference, dataFrame, tracker);
+            logger.info("Processed table {}.{} in {}ms", schema, table, System.currentTimeMillis() - tableStartTime);
+        } catch (DataProviderFailedMergingSchemasException e) {
+            String msg = String.format("Violation - Incompatible schemas across multiple files for %s.%s", schema, table);
+            logger.warn(msg, e);
+            violationService.writeBatchDataToViolations(sparkSession, schema, table, msg);
+        }
+    }
+
+    private Dataset<Row> readBatchSourceData(
+            SparkSession sparkSession,
+            String schema,
+            String table,
+            List<String> filePaths,
+            StructType expectedSchema) throws DataStorageException {
+        val dataFrame = arguments.isBatchLoadSchemaGroupingEnabled() ?
+                readSchemaGroups(sparkSession, schema, table, filePaths, expectedSchema) :
+                dataProvider.getBatchSourceData(sparkSession, filePaths);
+        logger.info("Schema for {}.{}: \n{}", schema, table, dataFrame.schema().treeString());
+        return dataFrame;
+    }
+
+    /**
+     * Reads the files which share a compatible schema and writes the rest to violations. The files matching the
+     * expected schema are preferred, which is null when the table has no source reference.
+     */
+    private Dataset<Row> readSchemaGroups(
+            SparkSession sparkSession,
+            String schema,
+            String table,
+            List<String> filePaths,
+            StructType expectedSchema) throws DataStorageException {
+        Map<StructType, List<String>> filesBySchema = schemaCache.getFilesBySchema(sparkSession, filePaths);
+        logger.info("Found {} schemas across {} files for {}.{}", filesBySchema.size(), filePaths.size(), schema, table);
+        val sourceData = dataProvider.getSchemaGroupedBatchSourceData(sparkSession, filesBySchema, expectedSchema);
+        List<String> incompatibleFilePaths = sourceData.getIncompatibleFilePaths();
+        if (!incompatibleFilePaths.isEmpty()) {
+            String msg = format("Violation - Incompatible schemas across multiple files for %s.%s", schema, table);
+            logger.warn("{}: {} of {} files", msg, incompatibleFilePaths.size(), filePaths.size());
+            violationService.writeBatchFilesToViolations(sparkSession, schema, table, incompatibleFilePaths, msg);
+        }
+        return sourceData.getData();
+    }
 }
@@ -21,15 +21,36 @@ import picocli.CommandLine;
 import uk.gov.justice.digital.config.JobArguments;
 import uk.gov.justice.digital.config.JobProperties;
 import uk.gov.justice.digital.exception.NoSchemaNoDataException;
+import uk.gov.justice.digital.job.cdc.AdaptiveTriggerScheduler;
+import uk.gov.justice.digital.job.cdc.CatchUpCoordinator;
+import uk.gov.justice.digital.job.cdc.StreamingQueryMetricsListener;
+import uk.gov.justice.digital.job.cdc.TableConfigWatcher;
+import uk.gov.justice.digital.job.cdc.TableQuerySupervisor;
 import uk.gov.justice.digital.job.cdc.TableStreamingQuery;
 import uk.gov.justice.digital.job.cdc.TableStreamingQueryProvider;
 import uk.gov.justice.digital.provider.SparkSessionProvider;
+import uk.gov.justice.digital.service.ChangeLogService;
+import uk.gov.justice.digital.service.DataStorageService;
 import uk.gov.justice.digital.service.TableDiscoveryService;
+import uk.gov.justice.digital.service.WriteStatsService;
+import uk.gov.justice.digital.service.metrics.StreamingMetricsCollector;
 
 import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 
 import static uk.gov.justice.digital.config.JobProperties.SPARK_JOB_NAME_PROPERTY;
 
@@ -39,11 +60,25 @@ public class DataHubCdcJob implements Runnable {
 
     private static final Logger logger = LoggerFactory.getLogger(DataHubCdcJob.class);
 
+    // A supervised query can be quarantined while no query is running, which nothing would wake the wait up for
+    private static final long SUPERVISED_TERMINATION_WAIT_MILLIS = 60_000L;
+
     private final JobArguments arguments;
     private final JobProperties properties;
     private final SparkSessionProvider sparkSessionProvider;
     private final TableStreamingQueryProvider tableStreamingQueryProvider;
     private final TableDiscoveryService tableDiscoveryService;
+    private final AdaptiveTriggerScheduler adaptiveTriggerScheduler;
+    private final TableConfigWatcher tableConfigWatcher;
+    private final StreamingMetricsCollector streamingMetricsCollector;
+    private final TableQuerySupervisor tableQuerySupervisor;
+    private final CatchUpCoordinator catchUpCoordinator;
+    private final DataStorageService storageService;
+    private final ChangeLogService changeLogService;
+    private final WriteStatsService writeStatsService;
+
+    private final List<TableStreamingQuery> streamingQueries = new CopyOnWriteArrayList<>();
+    private final Map<ImmutablePair<String, String>, TableStreamingQuery> queriesByTable = new ConcurrentHashMap<>();
 
     @Inject
     public DataHubCdcJob(
@@ -51,13 +86,29 @@ public class DataHubCdcJob implements Runnable {
             JobProperties properties,
             SparkSessionProvider sparkSessionProvider,
             TableStreamingQueryProvider tableStreamingQueryProvider,
-            TableDiscoveryService tableDiscoveryService) {
+            TableDiscoveryService tableDiscoveryService,
+            AdaptiveTriggerScheduler adaptiveTriggerScheduler,
+            TableConfigWatcher tableConfigWatcher,
+            StreamingMetricsCollector streamingMetricsCollector,
+            TableQuerySupervisor tableQuerySupervisor,
+            CatchUpCoordinator catchUpCoordinator,
+            DataStorageService storageService,
+            ChangeLogService changeLogService,
+            WriteStatsService writeStatsService) {
         logger.info("Initializing DataHubCdcJob");
         this.arguments = arguments;
         this.properties = properties;
         this.sparkSessionProvider = sparkSessionProvider;
         this.tableStreamingQueryProvider = tableStreamingQueryProvider;
         this.tableDiscoveryService = tableDiscoveryService;
+        this.adaptiveTriggerScheduler = adaptiveTriggerScheduler;
+        this.tableConfigWatcher = tableConfigWatcher;
+        this.streamingMetricsCollector = streamingMetricsCollector;
+        this.tableQuerySupervisor = tableQuerySupervisor;
+        this.catchUpCoordinator = catchUpCoordinator;
+        this.storageService = storageService;
+        this.changeLogService = changeLogService;
+        this.writeStatsService = writeStatsService;
         logger.info("DataHubCdcJob initialization complete");
     }
 
@@ -101,32 +152,197 @@ public class DataHubCdcJob implements Runnable {
     List<TableStreamingQuery> runJob(SparkSession spark) {
         logger.info("Initialising Job");
         List<ImmutablePair<String, String>> tablesToProcess = tableDiscoveryService.discoverTablesToProcess();
-        List<TableStreamingQuery> streamingQueries = new ArrayList<>();
+        boolean multiplexed = arguments.isCdcMultiplexedQueriesEnabled();
+        if (arguments.isCdcCloudwatchMetricsEnabled()) {
+            // Registered before any query starts so that no query's first batches are missed
+            spark.streams().addListener(new StreamingQueryMetricsListener(streamingMetricsCollector));
+            streamingMetricsCollector.start();
+        }
+        if (arguments.isCdcQuerySupervisorEnabled()) {
+            tableQuerySupervisor.start(spark);
+        }
+        // Only the debounced and background manifest update policies defer updates
+        storageService.startDeferredManifestUpdates();
+        if (arguments.isCdcChangeLogEnabled()) {
+            changeLogService.start();
+        }
+        if (arguments.isDataStorageWriteStatsEnabled()) {
+            writeStatsService.start(spark);
+        }
+        if (arguments.isCdcCatchUpEnabled()) {
+            if (multiplexed) {
+                logger.warn("Catch-up is not supported for multiplexed queries, which start with their normal trigger");
+            } else {
+                catchUpCoordinator.start(spark);
+            }
+        }
 
-        if(!tablesToProcess.isEmpty()) {
-            for (val tableDetails: tablesToProcess) {
-                String inputSchemaName = tableDetails.getLeft();
-                String inputTableName = tableDetails.getRight();
-                try {
-                    TableStreamingQuery streamingQuery = tableStreamingQueryProvider.provide(spark, inputSchemaName, inputTableName);
+        if(!tablesToProcess.isEmpty() && multiplexed) {
+            int groupCount = arguments.getCdcMultiplexedQueryGroups();
+            List<List<ImmutablePair<String, String>>> tableGroups = assignTablesToGroups(tablesToProcess, groupCount);
+            for (int groupIndex = 0; groupIndex < groupCount; groupIndex++) {
+                List<ImmutablePair<String, String>> tableGroup = tableGroups.get(groupIndex);
+                if (tableGroup.isEmpty()) {
+                    logger.info("No tables assigned to group {} of {}", groupIndex, groupCount);
+                } else {
+                    logger.info("Starting multiplexed query for group {} of {} with {} tables", groupIndex, groupCount, tableGroup.size());
+                    TableStreamingQuery streamingQuery = tableStreamingQueryProvider.provideMultiplexed(spark, groupIndex, groupCount, tableGroup);
                     streamingQuery.runQuery();
+                    tableQuerySupervisor.supervise(streamingQuery);
                     streamingQueries.add(streamingQuery);
-                } catch (NoSchemaNoDataException e) {
-                    logger.error("No schema and no data for {}.{}. We will skip this table and continue processing the other tables",
-                            inputSchemaName, inputTableName, e);
                 }
-
             }
+        } else if(!tablesToProcess.isEmpty()) {
+            startTableQueries(spark, tablesToProcess);
         } else {
             logger.warn("No tables to process");
         }
+        if (arguments.isCdcAdaptiveTriggerEnabled()) {
+            adaptiveTriggerScheduler.start(streamingQueries);
+        }
+        if (arguments.isCdcTableConfigWatchEnabled()) {
+            if (multiplexed) {
+                // Changing the tables in a group would change the paths read against the group's existing checkpoint
+                logger.warn("Table config changes are not watched for multiplexed queries and need a job restart");
+            } else {
+                tableConfigWatcher.start(new RunningTableQueries(spark));
+            }
+        }
         logger.info("Job finished");
         return streamingQueries;
     }
 
+    /**
+     * Starts a query per table, starting up to the startup concurrency of them at once, since most of the time taken
+     * to start a query is spent waiting on schema lookups and listing its source files.
+     */
+    private void startTableQueries(SparkSession spark, Collection<ImmutablePair<String, String>> tables) {
+        val startTime = System.currentTimeMillis();
+        int concurrency = Math.min(arguments.getCdcQueryStartupConcurrency(), tables.size());
+        List<Optional<TableStreamingQuery>> startedQueries = new ArrayList<>();
+        if (concurrency <= 1) {
+            for (val table : tables) {
+                startedQueries.add(startTableQuery(spark, table));
+            }
+        } else {
+            // Threads created by the pool inherit the Spark local properties of this thread
+            ExecutorService startupPool = Executors.newFixedThreadPool(concurrency, runnable -> {
+                Thread thread = new Thread(runnable, "cdc-query-startup");
+                thread.setDaemon(true);
+                return thread;
+            });
+            try {
+                List<CompletableFuture<Optional<TableStreamingQuery>>> startups = tables.stream()
+                        .map(table -> CompletableFuture.supplyAsync(() -> startTableQuery(spark, table), startupPool))
+                        .collect(Collectors.toList());
+                RuntimeException failure = null;
+                for (val startup : startups) {
+                    try {
+                        startedQueries.add(startup.join());
+                    } catch (CompletionException e) {
+                        Throwable cause = e.getCause();
+                        if (failure == null) failure = cause instanceof RuntimeException ? (RuntimeException) cause : e;
+                    }
+                }
+                if (failure != null) throw failure;
+            } finally {
+                startupPool.shutdown();
+            }
+        }
+        startedQueries.forEach(query -> query.ifPresent(streamingQueries::add));
+        logger.info("Started queries for {} tables in {}ms", tables.size(), System.currentTimeMillis() - startTime);
+    }
+
+    private Optional<TableStreamingQuery> startTableQuery(SparkSession spark, ImmutablePair<String, String> table) {
+        String inputSchemaName = table.getLeft();
+        String inputTableName = table.getRight();
+        try {
+            TableStreamingQuery streamingQuery = tableStreamingQueryProvider.provide(spark, inputSchemaName, inputTableName);
+            streamingQuery.runQuery();
+            tableQuerySupervisor.supervise(streamingQuery);
+            catchUpCoordinator.register(streamingQuery);
+            queriesByTable.put(table, streamingQuery);
+            return Optional.of(streamingQuery);
+        } catch (NoSchemaNoDataException e) {
+            logger.error("No schema and no data for {}.{}. We will skip this table and continue processing the other tables",
+                    inputSchemaName, inputTableName, e);
+            return Optional.empty();
+        }
+    }
+
+    private void stopTableQueries(Collection<ImmutablePair<String, String>> tables) {
+        long timeoutSeconds = arguments.getCdcQueryGracefulStopTimeoutSeconds();
+        for (val table : tables) {
+            TableStreamingQuery streamingQuery = queriesByTable.remove(table);
+            if (streamingQuery != null) {
+                tableQuerySupervisor.unsupervise(streamingQuery);
+                try {
+                    streamingQuery.stopGracefully(timeoutSeconds);
+                } catch (Exception e) {
+                    logger.error("Failed to stop query for {}.{}", table.getLeft(), table.getRight(), e);
+                }
+                streamingQueries.remove(streamingQuery);
+            }
+        }
+    }
+
+    private class RunningTableQueries implements TableConfigWatcher.TableQueries {
+
+        private final SparkSession spark;
+
+        private RunningTableQueries(SparkSession spark) {
+            this.spark = spark;
+        }
+
+        @Override
+        public Set<ImmutablePair<String, String>> runningTables() {
+            return new HashSet<>(queriesByTable.keySet());
+        }
+
+        @Override
+        public void startTables(Set<ImmutablePair<String, String>> tables) {
+            startTableQueries(spark, tables);
+        }
+
+        @Override
+        public void stopTables(Set<ImmutablePair<String, String>> tables) {
+            stopTableQueries(tables);
+        }
+    }
+
+    /**
+     * Assigns each table to a group based on a hash of its name so that a table stays in the same group, and therefore
+     * keeps the same query checkpoint, across restarts for as long as the number of groups is unchanged.
+     */
+    @VisibleForTesting
+    static List<List<ImmutablePair<String, String>>> assignTablesToGroups(List<ImmutablePair<String, String>> tables, int groupCount) {
+        List<List<ImmutablePair<String, String>>> groups = new ArrayList<>();
+        for (int i = 0; i < groupCount; i++) {
+            groups.add(new ArrayList<>());
+        }
+        for (val table : tables) {
+            int groupIndex = Math.floorMod((table.getLeft() + "." + table.getRight()).hashCode(), groupCount);
+            groups.get(groupIndex).add(table);
+        }
+        return groups;
+    }
+
     private void waitUntilQueryTerminates(SparkSession spark) {
         try {
-            spark.streams().awaitAnyTermination();
+            awaitAnyTermination(spark);
+            // Adaptive trigger scheduling stops and restarts queries, the table config watcher stops queries for
+            // removed tables, the supervisor restarts failed queries and catch-up runs end by design, none of which
+            // should be treated as the job finishing
+            while (tableConfigWatcher.isWatching() || tableQuerySupervisor.isSupervising() || catchUpCoordinator.isCatchingUp() ||
+                    ((arguments.isCdcAdaptiveTriggerEnabled() || arguments.isCdcCatchUpEnabled()) &&
+                    (spark.streams().active().length > 0 || adaptiveTriggerScheduler.isRestartInProgress()))) {
+                spark.streams().resetTerminated();
+                awaitAnyTermination(spark);
+            }
+            Set<ImmutablePair<String, String>> quarantinedTables = tableQuerySupervisor.getQuarantinedTables();
+            if (!quarantinedTables.isEmpty()) {
+                throw new RuntimeException("Every query has stopped. Quarantined tables: " + quarantinedTables);
+            }
         } catch (StreamingQueryException e) {
             if (isAbortedException(e)) {
                 logger.info("Job terminated because of Aborted Exception");
@@ -135,6 +351,31 @@ public class DataHubCdcJob implements Runnable {
                 logger.error("A streaming query terminated with an Exception", e);
                 throw new RuntimeException(e);
             }
+        } finally {
+            catchUpCoordinator.stop();
+            tableQuerySupervisor.stop();
+            // Compacting the change logs a last time requests manifest updates, so must come first
+            changeLogService.stop();
+            storageService.stopDeferredManifestUpdates();
+            // Stopped once nothing else writes so that the last compactions' stats are appended
+            writeStatsService.stop();
+            streamingMetricsCollector.stop();
+        }
+    }
+
+    private void awaitAnyTermination(SparkSession spark) throws StreamingQueryException {
+        try {
+            if (tableQuerySupervisor.isEnabled()) {
+                spark.streams().awaitAnyTermination(SUPERVISED_TERMINATION_WAIT_MILLIS);
+            } else {
+                spark.streams().awaitAnyTermination();
+            }
+        } catch (StreamingQueryException e) {
+            if (!tableQuerySupervisor.isEnabled() || isAbortedException(e)) {
+                throw e;
+            }
+            // The supervisor restarts or quarantines the failed query and the other queries keep running
+            logger.warn("A streaming query terminated with an Exception", e);
         }
     }
 
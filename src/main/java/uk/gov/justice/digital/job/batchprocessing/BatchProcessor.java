@@ -9,8 +9,10 @@ import org.apache.spark.sql.types.StructType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.gov.justice.digital.datahub.model.SourceReference;
+import uk.gov.justice.digital.service.LoadStageListener;
 import uk.gov.justice.digital.service.ValidationService;
 import uk.gov.justice.digital.service.operationaldatastore.OperationalDataStoreService;
+import uk.gov.justice.digital.zone.ZoneWriteResult;
 import uk.gov.justice.digital.zone.curated.CuratedZoneLoad;
 import uk.gov.justice.digital.zone.structured.StructuredZoneLoad;
 
@@ -52,6 +54,14 @@ public class BatchProcessor {
 
     @SuppressWarnings({"java:S2139", "java:S112"})
     public void processBatch(SparkSession spark, SourceReference sourceReference, Dataset<Row> dataFrame) {
+        processBatch(spark, sourceReference, dataFrame, LoadStageListener.NONE);
+    }
+
+    /**
+     * Processes the batch through each zone, telling the listener as each zone's write commits.
+     */
+    @SuppressWarnings({"java:S2139", "java:S112"})
+    public void processBatch(SparkSession spark, SourceReference sourceReference, Dataset<Row> dataFrame, LoadStageListener listener) {
         if(!dataFrame.isEmpty()) {
             String sourceName = sourceReference.getSource();
             String tableName = sourceReference.getTable();
@@ -62,9 +72,11 @@ public class BatchProcessor {
             val filteredDf = dataFrame.where(col(OPERATION).equalTo(Insert.getName()));
             StructType inferredSchema = filteredDf.schema();
             val validRows = validationService.handleValidation(spark, filteredDf, sourceReference, inferredSchema, STRUCTURED_LOAD);
-            val structuredLoadDf = structuredZoneLoad.process(spark, validRows, sourceReference);
-            val curatedLoadDf = curatedZoneLoad.process(spark, structuredLoadDf, sourceReference);
-            operationalDataStoreService.overwriteData(curatedLoadDf, sourceReference);
+            val structuredWrite = structuredZoneLoad.write(spark, validRows, sourceReference);
+            if (structuredWrite.isCommitted()) {
+                listener.structuredWritten();
+            }
+            writeCuratedAndOperationalDataStore(spark, sourceReference, structuredWrite, listener);
             dataFrame.unpersist();
 
             logger.info("Processed records {}/{} in {}ms",
@@ -76,4 +88,51 @@ public class BatchProcessor {
             logger.info("Skipping empty batch");
         }
     }
+
+    /**
+     * Resumes a batch whose structured write completed, from the records it wrote to the structured zone.
+     */
+    public void resumeFromCurated(SparkSession spark, SourceReference sourceReference, Dataset<Row> structuredDf, LoadStageListener listener) {
+        logger.info("Resuming records {}/{} from the curated zone", sourceReference.getSource(), sourceReference.getTable());
+        val startTime = System.currentTimeMillis();
+        writeCuratedAndOperationalDataStore(spark, sourceReference, ZoneWriteResult.committed(structuredDf), listener);
+        logger.info("Resumed records {}/{} in {}ms",
+                sourceReference.getSource(),
+                sourceReference.getTable(),
+                System.currentTimeMillis() - startTime
+        );
+    }
+
+    private void writeCuratedAndOperationalDataStore(
+            SparkSession spark,
+            SourceReference sourceReference,
+            ZoneWriteResult structuredWrite,
+            LoadStageListener listener) {
+        val curatedWrite = curatedZoneLoad.write(spark, structuredWrite.getData(), sourceReference);
+        // A stage is only recorded once it and every stage before it have committed, so that a rerun repeats the
+        // first stage which did not
+        boolean curatedCommitted = structuredWrite.isCommitted() && curatedWrite.isCommitted();
+        if (curatedCommitted) {
+            listener.curatedWritten();
+        }
+        operationalDataStoreService.overwriteData(curatedWrite.getData(), sourceReference);
+        if (curatedCommitted) {
+            listener.operationalDataStoreWritten();
+        }
+    }
+
+    /**
+     * Resumes a batch whose curated write completed, from the records it wrote to the curated zone.
+     */
+    public void resumeFromOperationalDataStore(SourceReference sourceReference, Dataset<Row> curatedDf, LoadStageListener listener) {
+        logger.info("Resuming records {}/{} from the Operational Data Store", sourceReference.getSource(), sourceReference.getTable());
+        val startTime = System.currentTimeMillis();
+        operationalDataStoreService.overwriteData(curatedDf, sourceReference);
+        listener.operationalDataStoreWritten();
+        logger.info("Resumed records {}/{} in {}ms",
+                sourceReference.getSource(),
+                sourceReference.getTable(),
+                System.currentTimeMillis() - startTime
+        );
+    }
 }
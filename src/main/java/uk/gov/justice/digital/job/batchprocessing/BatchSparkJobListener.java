@@ -0,0 +1,42 @@
+package uk.gov.justice.digital.job.batchprocessing;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.spark.scheduler.SparkListener;
+import org.apache.spark.scheduler.SparkListenerJobStart;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts the Spark jobs run on behalf of each micro-batch, i.e. how many passes were made over the batch's data.
+ * Jobs are attributed to a batch by the BATCH_KEY_PROPERTY Spark local property, which is inherited by the jobs
+ * submitted from the thread processing the batch and any threads it starts.
+ */
+public class BatchSparkJobListener extends SparkListener {
+
+    static final String BATCH_KEY_PROPERTY = "dpr.cdc.batch.key";
+
+    // Listener events are delivered asynchronously so a count can be created after its batch has been reported
+    private final Cache<String, AtomicInteger> jobCountsByBatch = CacheBuilder.newBuilder()
+            .expireAfterWrite(1, TimeUnit.HOURS)
+            .build();
+
+    @Override
+    public void onJobStart(SparkListenerJobStart jobStart) {
+        Properties properties = jobStart.properties();
+        String batchKey = properties == null ? null : properties.getProperty(BATCH_KEY_PROPERTY);
+        if (batchKey != null) {
+            jobCountsByBatch.asMap().computeIfAbsent(batchKey, key -> new AtomicInteger()).incrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the number of jobs seen so far for the batch and stops counting them.
+     */
+    public int removeJobCount(String batchKey) {
+        AtomicInteger jobCount = jobCountsByBatch.asMap().remove(batchKey);
+        return jobCount == null ? 0 : jobCount.get();
+    }
+}
@@ -1,28 +1,55 @@
 package uk.gov.justice.digital.job.batchprocessing;
 
-import com.google.common.annotations.VisibleForTesting;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
+import lombok.Data;
 import lombok.val;
+import org.apache.spark.SparkContext;
 import org.apache.spark.sql.Dataset;
 import org.apache.spark.sql.Row;
 import org.apache.spark.sql.SparkSession;
-import org.apache.spark.sql.expressions.Window;
-import org.apache.spark.sql.functions;
+import org.apache.spark.sql.types.DataTypes;
 import org.apache.spark.sql.types.StructType;
+import org.apache.spark.storage.StorageLevel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import scala.collection.JavaConverters;
 import uk.gov.justice.digital.client.s3.S3DataProvider;
+import uk.gov.justice.digital.config.JobArguments;
 import uk.gov.justice.digital.datahub.model.SourceReference;
+import uk.gov.justice.digital.service.ParquetSchemaCacheService;
 import uk.gov.justice.digital.service.ValidationService;
+import uk.gov.justice.digital.service.metrics.StreamingMetricsCollector;
 import uk.gov.justice.digital.service.operationaldatastore.OperationalDataStoreService;
+import uk.gov.justice.digital.zone.ZoneWriteResult;
 import uk.gov.justice.digital.zone.curated.CuratedZoneCDC;
 import uk.gov.justice.digital.zone.structured.StructuredZoneCDC;
 
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static com.amazonaws.services.cloudwatch.model.StandardUnit.Seconds;
+import static java.lang.String.format;
 import static org.apache.spark.sql.functions.col;
-import static org.apache.spark.sql.functions.row_number;
+import static org.apache.spark.sql.functions.collect_set;
+import static org.apache.spark.sql.functions.count;
+import static org.apache.spark.sql.functions.lit;
+import static org.apache.spark.sql.functions.max;
+import static org.apache.spark.sql.functions.struct;
+import static uk.gov.justice.digital.client.s3.S3DataProvider.INPUT_FILE_COLUMN;
+import static uk.gov.justice.digital.client.s3.S3DataProvider.INPUT_FILE_SIZE_COLUMN;
 import static uk.gov.justice.digital.common.CommonDataFields.TIMESTAMP;
+import static uk.gov.justice.digital.common.StreamingQuery.reportProcessedBatch;
+import static uk.gov.justice.digital.job.batchprocessing.BatchSparkJobListener.BATCH_KEY_PROPERTY;
+import static uk.gov.justice.digital.job.batchprocessing.LatestRecords.latestRecords;
+import static uk.gov.justice.digital.service.metrics.StreamingMetricsCollector.BACKLOG;
 import static uk.gov.justice.digital.service.ViolationService.ZoneName.STRUCTURED_CDC;
 
 /**
@@ -32,59 +59,271 @@ import static uk.gov.justice.digital.service.ViolationService.ZoneName.STRUCTURE
 @Singleton
 public class CdcBatchProcessor {
     private static final Logger logger = LoggerFactory.getLogger(CdcBatchProcessor.class);
+
+    private static final String SCHEDULER_POOL_PROPERTY = "spark.scheduler.pool";
+    private static final String CURATED_SCHEDULER_POOL = "curated";
+    private static final String OPERATIONAL_DATA_STORE_SCHEDULER_POOL = "operational-data-store";
+    private static final AtomicInteger zoneWriteThreadCount = new AtomicInteger();
     private final ValidationService validationService;
     private final StructuredZoneCDC structuredZone;
     private final CuratedZoneCDC curatedZone;
     private final S3DataProvider dataProvider;
     private final OperationalDataStoreService operationalDataStoreService;
+    private final ParquetSchemaCacheService schemaCache;
+    private final StreamingMetricsCollector metricsCollector;
+    private final boolean pipelinedZoneWrites;
+    // Runs the ODS merge alongside the curated merge when the zone writes are pipelined
+    private final ExecutorService zoneWriteExecutor;
+    private final StorageLevel batchStorageLevel;
+    private final LatestRecordsStrategy latestRecordsStrategy;
+    private final BatchSparkJobListener jobListener = new BatchSparkJobListener();
+    private SparkContext listenedSparkContext;
 
     @Inject
     public CdcBatchProcessor(
+            JobArguments arguments,
             ValidationService validationService,
             StructuredZoneCDC structuredZone,
             CuratedZoneCDC curatedZone,
             S3DataProvider dataProvider,
-            OperationalDataStoreService operationalDataStoreService
+            OperationalDataStoreService operationalDataStoreService,
+            ParquetSchemaCacheService schemaCache,
+            StreamingMetricsCollector metricsCollector
     ) {
         this.validationService = validationService;
         this.structuredZone = structuredZone;
         this.curatedZone = curatedZone;
         this.dataProvider = dataProvider;
         this.operationalDataStoreService = operationalDataStoreService;
+        this.schemaCache = schemaCache;
+        this.metricsCollector = metricsCollector;
+        this.pipelinedZoneWrites = arguments.isCdcPipelinedZoneWritesEnabled();
+        this.zoneWriteExecutor = pipelinedZoneWrites ? Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "cdc-zone-write-" + zoneWriteThreadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+        this.batchStorageLevel = StorageLevel.fromString(arguments.getCdcBatchStorageLevel());
+        this.latestRecordsStrategy = arguments.getCdcLatestRecordsStrategy();
     }
 
     public void processBatch(SourceReference sourceReference, SparkSession spark, Dataset<Row> df, Long batchId) {
-        if(!df.isEmpty()) {
+        String source = sourceReference.getSource();
+        String table = sourceReference.getTable();
+        val sparkContext = spark.sparkContext();
+        listenForJobs(sparkContext);
+        String batchKey = format("%s.%s:%d", source, table, batchId);
+        String previousBatchKey = sparkContext.getLocalProperty(BATCH_KEY_PROPERTY);
+        sparkContext.setLocalProperty(BATCH_KEY_PROPERTY, batchKey);
+        // Spark stops reporting the files a Dataset was read from once it is persisted
+        List<String> readFiles = Arrays.asList(df.inputFiles());
+        // Materialise the batch so the raw files are only scanned once, by the summary below, however many
+        // times validation and the zone writes go on to read it
+        val batch = materialise(df);
+        try {
             val batchStartTime = System.currentTimeMillis();
-            String source = sourceReference.getSource();
-            String table = sourceReference.getTable();
-            logger.info("Processing batch {} for {}.{}", batchId, source, table);
-            StructType inferredSchema = dataProvider.inferSchema(df.sparkSession(), sourceReference.getSource(), sourceReference.getTable());
-            val validRows = validationService.handleValidation(spark, df, sourceReference, inferredSchema, STRUCTURED_CDC);
-            val latestCDCRecordsByPK = latestRecords(validRows, sourceReference.getPrimaryKey());
-
-            val structuredDf = structuredZone.process(spark, latestCDCRecordsByPK, sourceReference);
-            val curatedDf = curatedZone.process(spark, structuredDf, sourceReference);
-            operationalDataStoreService.mergeData(curatedDf, sourceReference);
-            logger.info("Processing batch {} {}.{} took {}ms", batchId, source, table, System.currentTimeMillis() - batchStartTime);
-        } else {
-            logger.info("Skipping empty batch");
+            BatchSummary summary = summarise(batch, readFiles);
+            logger.info("Read {} rows from {} files for batch {} for {}.{}",
+                    summary.getRowCount(), summary.getInputFiles().size(), batchId, source, table);
+            recordBacklog(sparkContext, summary, source, table);
+            if (summary.getRowCount() > 0) {
+                logger.info("Processing batch {} for {}.{}", batchId, source, table);
+                StructType inferredSchema = inferBatchSchema(spark, summary.getInputFiles(), sourceReference);
+                val validRows = validationService.handleValidation(spark, withoutInputFileColumns(batch), sourceReference, inferredSchema, STRUCTURED_CDC);
+                val latestCDCRecordsByPK = latestRecords(validRows, sourceReference.getPrimaryKey(), latestRecordsStrategy);
+
+                if (pipelinedZoneWrites) {
+                    processZonesPipelined(spark, latestCDCRecordsByPK, sourceReference);
+                } else {
+                    val structuredDf = structuredZone.process(spark, latestCDCRecordsByPK, sourceReference);
+                    val curatedDf = curatedZone.process(spark, structuredDf, sourceReference);
+                    operationalDataStoreService.mergeData(curatedDf, sourceReference);
+                }
+                logger.info("Processing batch {} {}.{} took {}ms", batchId, source, table, System.currentTimeMillis() - batchStartTime);
+            } else {
+                logger.info("Skipping empty batch");
+            }
+        } finally {
+            if (isMaterialised()) {
+                batch.unpersist();
+            }
+            sparkContext.setLocalProperty(BATCH_KEY_PROPERTY, previousBatchKey);
+            logger.info("Batch {} for {}.{} ran {} Spark jobs", batchId, source, table, jobListener.removeJobCount(batchKey));
+        }
+    }
+
+    /**
+     * Updates the structured and curated manifests for a table whose batches were processed with relaxed manifest updates.
+     */
+    public void updateManifests(SparkSession spark, SourceReference sourceReference) {
+        structuredZone.updateManifest(spark, sourceReference);
+        curatedZone.updateManifest(spark, sourceReference);
+    }
+
+    /**
+     * Counts the batch and, in the same pass, finds its newest DMS _timestamp and the files it was read from. The
+     * per-table streaming source records each row's file and file size in columns, because a foreachBatch Dataset
+     * does not report its input files. Other batches use the files they were read from before they were persisted,
+     * whose sizes are not known.
+     */
+    private static BatchSummary summarise(Dataset<Row> batch, List<String> readFiles) {
+        List<String> columns = Arrays.asList(batch.columns());
+        boolean hasInputFileColumns = columns.contains(INPUT_FILE_COLUMN);
+        Row summary = batch.agg(
+                count(lit(1)),
+                columns.contains(TIMESTAMP) ? max(col(TIMESTAMP).cast(DataTypes.TimestampType)) : lit(null).cast(DataTypes.TimestampType),
+                hasInputFileColumns ? collect_set(struct(col(INPUT_FILE_COLUMN), col(INPUT_FILE_SIZE_COLUMN))) : lit(null)
+        ).first();
+        List<String> inputFiles = readFiles;
+        long inputBytes = 0L;
+        if (hasInputFileColumns) {
+            inputFiles = new ArrayList<>();
+            for (Row inputFile : summary.<Row>getList(2)) {
+                inputFiles.add(inputFile.getString(0));
+                inputBytes += inputFile.getLong(1);
+            }
+        }
+        return new BatchSummary(summary.getLong(0), summary.getTimestamp(1), inputFiles, inputBytes);
+    }
+
+    /**
+     * Records how far the table is behind its source and reports the batch to the streaming query, which observes its
+     * backlog from this rather than reading the batch again.
+     */
+    private void recordBacklog(SparkContext sparkContext, BatchSummary summary, String source, String table) {
+        Timestamp newestTimestamp = summary.getNewestTimestamp();
+        if (newestTimestamp != null) {
+            long backlogSeconds = Math.max(0, (System.currentTimeMillis() - newestTimestamp.getTime()) / 1000);
+            metricsCollector.record(BACKLOG, Seconds, source, table, backlogSeconds);
+        }
+        reportProcessedBatch(
+                sparkContext,
+                summary.getRowCount(),
+                summary.getInputFiles().size(),
+                summary.getInputBytes(),
+                newestTimestamp == null ? null : newestTimestamp.getTime()
+        );
+    }
+
+    private Dataset<Row> materialise(Dataset<Row> df) {
+        return isMaterialised() ? df.persist(batchStorageLevel) : df;
+    }
+
+    private boolean isMaterialised() {
+        return !StorageLevel.NONE().equals(batchStorageLevel);
+    }
+
+    private synchronized void listenForJobs(SparkContext sparkContext) {
+        if (listenedSparkContext != sparkContext) {
+            sparkContext.addSparkListener(jobListener);
+            listenedSparkContext = sparkContext;
         }
     }
 
-    @VisibleForTesting
-    static Dataset<Row> latestRecords(Dataset<Row> df, SourceReference.PrimaryKey primaryKey) {
-        val primaryKeys = JavaConverters
-                .asScalaIteratorConverter(primaryKey.getKeyColumnNames().stream().map(functions::col).iterator())
-                .asScala()
-                .toSeq();
-        val window = Window
-                .partitionBy(primaryKeys)
-                .orderBy(col(TIMESTAMP).desc());
-
-        return df
-                .withColumn("row_number", row_number().over(window))
-                .where("row_number = 1")
-                .drop("row_number");
+    /**
+     * Writes the deduplicated batch, persisted once, to each zone. Curated and the ODS only take the records once the
+     * structured merge has committed them, and then merge them at the same time, each in its own scheduler pool unless
+     * the query already runs in its table's pool. When structured exhausts its retries the records go to violations,
+     * as they do when the zones run sequentially, and the curated and ODS merges are skipped so that those zones never
+     * hold records which structured does not. Unlike the sequential writes, the ODS still takes the records when curated
+     * exhausts its retries, since the two merges no longer wait for each other.
+     */
+    private void processZonesPipelined(SparkSession spark, Dataset<Row> latestCDCRecordsByPK, SourceReference sourceReference) {
+        // Persist the deduplicated batch so that each zone does not re-derive it
+        Dataset<Row> persisted = materialise(latestCDCRecordsByPK);
+        try {
+            ZoneWriteResult structuredWrite = structuredZone.write(spark, persisted, sourceReference);
+            if (!structuredWrite.isCommitted()) {
+                logger.warn("Skipping curated and ODS for {}.{} because the structured merge did not commit",
+                        sourceReference.getSource(), sourceReference.getTable());
+                return;
+            }
+            Future<?> operationalDataStoreWrite = writeOperationalDataStoreAsync(spark, persisted, sourceReference);
+            try {
+                inSchedulerPool(spark, CURATED_SCHEDULER_POOL, () -> curatedZone.process(spark, persisted, sourceReference));
+            } catch (RuntimeException e) {
+                // The ODS merge still reads the persisted batch so it must finish before the batch is unpersisted
+                try {
+                    await(operationalDataStoreWrite);
+                } catch (RuntimeException operationalDataStoreFailure) {
+                    e.addSuppressed(operationalDataStoreFailure);
+                }
+                throw e;
+            }
+            await(operationalDataStoreWrite);
+        } finally {
+            if (isMaterialised()) {
+                persisted.unpersist();
+            }
+        }
+    }
+
+    private Future<?> writeOperationalDataStoreAsync(SparkSession spark, Dataset<Row> df, SourceReference sourceReference) {
+        val sparkContext = spark.sparkContext();
+        // Spark's local properties belong to the thread which sets them, so the batch's are set again on the writer's
+        String batchKey = sparkContext.getLocalProperty(BATCH_KEY_PROPERTY);
+        String queryPool = sparkContext.getLocalProperty(SCHEDULER_POOL_PROPERTY);
+        return zoneWriteExecutor.submit(() -> {
+            sparkContext.setLocalProperty(BATCH_KEY_PROPERTY, batchKey);
+            sparkContext.setLocalProperty(SCHEDULER_POOL_PROPERTY, queryPool == null ? OPERATIONAL_DATA_STORE_SCHEDULER_POOL : queryPool);
+            try {
+                operationalDataStoreService.mergeData(df, sourceReference);
+            } finally {
+                sparkContext.setLocalProperty(BATCH_KEY_PROPERTY, null);
+                sparkContext.setLocalProperty(SCHEDULER_POOL_PROPERTY, null);
+            }
+        });
+    }
+
+    private static void await(Future<?> write) {
+        try {
+            write.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("Zone write failed", cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for zone write", e);
+        }
+    }
+
+    private static <T> T inSchedulerPool(SparkSession spark, String pool, Supplier<T> func) {
+        val sparkContext = spark.sparkContext();
+        String previousPool = sparkContext.getLocalProperty(SCHEDULER_POOL_PROPERTY);
+        if (previousPool != null) {
+            // The query already runs in its table's pool, which the zone writes should share rather than leave
+            return func.get();
+        }
+        sparkContext.setLocalProperty(SCHEDULER_POOL_PROPERTY, pool);
+        try {
+            return func.get();
+        } finally {
+            sparkContext.setLocalProperty(SCHEDULER_POOL_PROPERTY, previousPool);
+        }
+    }
+
+    private StructType inferBatchSchema(SparkSession spark, List<String> inputFiles, SourceReference sourceReference) {
+        if (inputFiles.isEmpty()) {
+            // The batch isn't read from files so fall back to inferring the schema from the table's raw files
+            return dataProvider.inferSchema(spark, sourceReference.getSource(), sourceReference.getTable());
+        }
+        List<StructType> fileSchemas = schemaCache.getFileSchemas(spark, inputFiles);
+        return validationService.selectSchemaToValidate(fileSchemas, sourceReference);
+    }
+
+    private static Dataset<Row> withoutInputFileColumns(Dataset<Row> df) {
+        return Arrays.asList(df.columns()).contains(INPUT_FILE_COLUMN) ? df.drop(INPUT_FILE_COLUMN, INPUT_FILE_SIZE_COLUMN) : df;
+    }
+
+    @Data
+    private static class BatchSummary {
+        private final long rowCount;
+        // Null when the batch has no DMS _timestamp
+        private final Timestamp newestTimestamp;
+        private final List<String> inputFiles;
+        private final long inputBytes;
     }
 }
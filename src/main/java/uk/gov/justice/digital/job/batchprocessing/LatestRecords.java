@@ -0,0 +1,118 @@
+package uk.gov.justice.digital.job.batchprocessing;
+
+import org.apache.spark.api.java.function.MapFunction;
+import org.apache.spark.api.java.function.ReduceFunction;
+import org.apache.spark.sql.Column;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Encoders;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.catalyst.encoders.RowEncoder;
+import org.apache.spark.sql.expressions.Window;
+import org.apache.spark.sql.expressions.WindowSpec;
+import org.apache.spark.sql.functions;
+import org.apache.spark.sql.types.DataType;
+import org.apache.spark.sql.types.DataTypes;
+import org.apache.spark.sql.types.DecimalType;
+import org.apache.spark.sql.types.StructField;
+import org.apache.spark.sql.types.StructType;
+import scala.Tuple2;
+import scala.collection.JavaConverters;
+import scala.collection.Seq;
+import uk.gov.justice.digital.datahub.model.SourceReference;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.apache.spark.sql.functions.col;
+import static org.apache.spark.sql.functions.expr;
+import static org.apache.spark.sql.functions.row_number;
+import static org.apache.spark.sql.functions.struct;
+import static uk.gov.justice.digital.common.CommonDataFields.TIMESTAMP;
+
+/**
+ * Finds the latest CDC record for each primary key by timestamp.
+ * Every strategy gives the same records, except that which of several records sharing the latest timestamp for a key
+ * is kept is not defined.
+ */
+public class LatestRecords {
+
+    private static final String LATEST_RECORD = "_latest_record";
+    private static final String LATEST_ORDERING = "_latest_ordering";
+    // A long holds every value of these decimal precisions with a scale of zero
+    private static final int MAX_LONG_DECIMAL_PRECISION = 18;
+
+    public static Dataset<Row> latestRecords(Dataset<Row> df, SourceReference.PrimaryKey primaryKey, LatestRecordsStrategy strategy) {
+        return strategy == LatestRecordsStrategy.AGGREGATE ? byAggregation(df, primaryKey) : byWindow(df, primaryKey);
+    }
+
+    public static Dataset<Row> byWindow(Dataset<Row> df, SourceReference.PrimaryKey primaryKey) {
+        WindowSpec window = Window
+                .partitionBy(keyColumns(primaryKey))
+                .orderBy(col(TIMESTAMP).desc());
+
+        return df
+                .withColumn("row_number", row_number().over(window))
+                .where("row_number = 1")
+                .drop("row_number");
+    }
+
+    public static Dataset<Row> byAggregation(Dataset<Row> df, SourceReference.PrimaryKey primaryKey) {
+        List<String> keyColumnNames = new ArrayList<>(primaryKey.getKeyColumnNames());
+        if (keyColumnNames.size() == 1) {
+            Optional<StructField> keyField = Arrays.stream(df.schema().fields())
+                    .filter(field -> field.name().equalsIgnoreCase(keyColumnNames.get(0)))
+                    .findFirst();
+            if (keyField.isPresent() && isIntegral(keyField.get().dataType())) {
+                return bySingleIntegralKey(df, keyField.get().name());
+            }
+        }
+        Column[] allColumns = Arrays.stream(df.columns()).map(functions::col).toArray(Column[]::new);
+        // Wrapping the timestamp in a struct makes a null timestamp order lowest rather than be ignored by max_by
+        return df
+                .withColumn(LATEST_ORDERING, struct(col(TIMESTAMP)))
+                .withColumn(LATEST_RECORD, struct(allColumns))
+                .groupBy(keyColumns(primaryKey))
+                .agg(expr(String.format("max_by(%s, %s)", LATEST_RECORD, LATEST_ORDERING)).as(LATEST_RECORD))
+                .select(LATEST_RECORD + ".*");
+    }
+
+    /**
+     * Reduces the records for each key with a hash aggregation keyed on a long, avoiding the struct buffer which makes
+     * max_by fall back to a sort-based aggregation.
+     */
+    private static Dataset<Row> bySingleIntegralKey(Dataset<Row> df, String keyColumnName) {
+        StructType schema = df.schema();
+        int keyIndex = schema.fieldIndex(keyColumnName);
+        int timestampIndex = schema.fieldIndex(TIMESTAMP);
+        return df
+                .groupByKey((MapFunction<Row, Long>) row -> row.isNullAt(keyIndex) ? null : ((Number) row.get(keyIndex)).longValue(), Encoders.LONG())
+                .reduceGroups((ReduceFunction<Row>) (current, candidate) -> isLater(candidate, current, timestampIndex) ? candidate : current)
+                .map((MapFunction<Tuple2<Long, Row>, Row>) Tuple2::_2, RowEncoder.apply(schema));
+    }
+
+    private static boolean isLater(Row candidate, Row current, int timestampIndex) {
+        if (candidate.isNullAt(timestampIndex)) return false;
+        if (current.isNullAt(timestampIndex)) return true;
+        return candidate.getString(timestampIndex).compareTo(current.getString(timestampIndex)) > 0;
+    }
+
+    private static boolean isIntegral(DataType dataType) {
+        if (dataType instanceof DecimalType) {
+            DecimalType decimalType = (DecimalType) dataType;
+            return decimalType.scale() == 0 && decimalType.precision() <= MAX_LONG_DECIMAL_PRECISION;
+        }
+        return dataType.equals(DataTypes.LongType) || dataType.equals(DataTypes.IntegerType) ||
+                dataType.equals(DataTypes.ShortType) || dataType.equals(DataTypes.ByteType);
+    }
+
+    private static Seq<Column> keyColumns(SourceReference.PrimaryKey primaryKey) {
+        return JavaConverters
+                .asScalaIteratorConverter(primaryKey.getKeyColumnNames().stream().map(functions::col).iterator())
+                .asScala()
+                .toSeq();
+    }
+
+    private LatestRecords() {}
+}
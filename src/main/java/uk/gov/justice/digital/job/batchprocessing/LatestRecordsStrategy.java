@@ -0,0 +1,22 @@
+package uk.gov.justice.digital.job.batchprocessing;
+
+/**
+ * How the latest CDC record for each primary key in a micro-batch is found.
+ */
+public enum LatestRecordsStrategy {
+    // Ranks every record for a key by timestamp with a row_number window
+    WINDOW,
+    // Reduces the records for a key to the latest with an aggregation, which can combine records before the shuffle
+    AGGREGATE;
+
+    public static LatestRecordsStrategy fromString(String strategy) {
+        switch (strategy.trim().toLowerCase()) {
+            case "window":
+                return WINDOW;
+            case "aggregate":
+                return AGGREGATE;
+            default:
+                throw new IllegalArgumentException("Unknown latest records strategy: " + strategy);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package uk.gov.justice.digital.job.cdc;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import uk.gov.justice.digital.config.JobArguments;
+
+/**
+ * Decides the trigger settings a table should run with next, given the backlog observed since it was last evaluated.
+ * <ul>
+ *     <li>Busy - a batch hit the file limit, or the lag or bytes crossed their thresholds. Run at the minimum interval
+ *     and double the batch size up to the configured limit.</li>
+ *     <li>Idle - no files arrived. Double the interval up to the maximum and return to the default batch size.</li>
+ *     <li>Keeping up - halve the interval and batch size back towards the minimum interval and default batch size.</li>
+ * </ul>
+ */
+@Singleton
+public class AdaptiveTriggerPolicy {
+
+    private final long minIntervalSeconds;
+    private final long maxIntervalSeconds;
+    private final long defaultMaxFilesPerTrigger;
+    private final long maxFilesPerTriggerLimit;
+    private final long busyLagSeconds;
+    private final long busyBytes;
+
+    @Inject
+    public AdaptiveTriggerPolicy(JobArguments arguments) {
+        this(
+                arguments.getCdcAdaptiveTriggerMinIntervalSeconds(),
+                arguments.getCdcAdaptiveTriggerMaxIntervalSeconds(),
+                arguments.streamingJobMaxFilePerTrigger(),
+                arguments.getCdcAdaptiveTriggerMaxFilesPerTriggerLimit(),
+                arguments.getCdcAdaptiveTriggerBusyLagSeconds(),
+                arguments.getCdcAdaptiveTriggerBusyBytes()
+        );
+    }
+
+    AdaptiveTriggerPolicy(
+            long minIntervalSeconds,
+            long maxIntervalSeconds,
+            long defaultMaxFilesPerTrigger,
+            long maxFilesPerTriggerLimit,
+            long busyLagSeconds,
+            long busyBytes) {
+        this.minIntervalSeconds = minIntervalSeconds;
+        this.maxIntervalSeconds = maxIntervalSeconds;
+        this.defaultMaxFilesPerTrigger = defaultMaxFilesPerTrigger;
+        this.maxFilesPerTriggerLimit = Math.max(maxFilesPerTriggerLimit, defaultMaxFilesPerTrigger);
+        this.busyLagSeconds = busyLagSeconds;
+        this.busyBytes = busyBytes;
+    }
+
+    public TriggerSettings next(TriggerSettings current, BacklogObservation observed) {
+        boolean busy = observed.isReachedFileLimit() ||
+                observed.getLagSeconds() >= busyLagSeconds ||
+                observed.getBytes() >= busyBytes;
+        if (busy) {
+            return new TriggerSettings(
+                    minIntervalSeconds,
+                    Math.min(current.getMaxFilesPerTrigger() * 2, maxFilesPerTriggerLimit)
+            );
+        } else if (observed.getFiles() == 0) {
+            return new TriggerSettings(
+                    clampInterval(current.getIntervalSeconds() * 2),
+                    defaultMaxFilesPerTrigger
+            );
+        } else {
+            return new TriggerSettings(
+                    clampInterval(current.getIntervalSeconds() / 2),
+                    Math.max(current.getMaxFilesPerTrigger() / 2, defaultMaxFilesPerTrigger)
+            );
+        }
+    }
+
+    private long clampInterval(long intervalSeconds) {
+        return Math.min(Math.max(intervalSeconds, minIntervalSeconds), maxIntervalSeconds);
+    }
+}
@@ -0,0 +1,99 @@
+package uk.gov.justice.digital.job.cdc;
+
+import com.google.common.annotations.VisibleForTesting;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.justice.digital.config.JobArguments;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Periodically re-evaluates the trigger settings of adaptive table queries from the backlog they have observed and
+ * restarts any query whose settings should change.
+ * Evaluations are spaced by the evaluation interval, which also bounds how often any one query can be restarted.
+ */
+@Singleton
+public class AdaptiveTriggerScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveTriggerScheduler.class);
+
+    private final AdaptiveTriggerPolicy policy;
+    private final long evaluationIntervalSeconds;
+
+    private ScheduledExecutorService executor;
+    private volatile boolean restartInProgress = false;
+
+    @Inject
+    public AdaptiveTriggerScheduler(JobArguments arguments, AdaptiveTriggerPolicy policy) {
+        this.policy = policy;
+        this.evaluationIntervalSeconds = arguments.getCdcAdaptiveTriggerEvaluationIntervalSeconds();
+    }
+
+    /**
+     * Starts evaluating the adaptive queries among the given queries. The collection may be changed while the job runs
+     * and each evaluation uses the queries it contains at the time.
+     */
+    public synchronized void start(Collection<TableStreamingQuery> queries) {
+        logger.info("Evaluating trigger settings for adaptive queries every {} seconds", evaluationIntervalSeconds);
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "adaptive-trigger-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(
+                () -> evaluate(queries.stream().filter(TableStreamingQuery::isAdaptive).collect(Collectors.toList())),
+                evaluationIntervalSeconds,
+                evaluationIntervalSeconds,
+                TimeUnit.SECONDS
+        );
+    }
+
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * Whether a query is currently stopped so that it can be started with new settings. Anything waiting on query
+     * termination should keep waiting rather than treat that stop as the job finishing.
+     */
+    public boolean isRestartInProgress() {
+        return restartInProgress;
+    }
+
+    @VisibleForTesting
+    void evaluate(List<TableStreamingQuery> queries) {
+        for (TableStreamingQuery query : queries) {
+            if (!query.isActive()) {
+                continue;
+            }
+            if (query.isBatchInProgress()) {
+                // Restarting now would interrupt the batch, so leave its backlog to be evaluated next time
+                continue;
+            }
+            TriggerSettings current = query.getTriggerSettings();
+            BacklogObservation observed = query.drainBacklogObservation();
+            TriggerSettings next = policy.next(current, observed);
+            logger.debug("Observed backlog {} for query with trigger settings {}", observed, current);
+            if (!next.equals(current)) {
+                restartInProgress = true;
+                try {
+                    query.restartWith(next);
+                } catch (Exception e) {
+                    logger.error("Failed to restart query with trigger settings {}", next, e);
+                } finally {
+                    restartInProgress = false;
+                }
+            }
+        }
+    }
+}
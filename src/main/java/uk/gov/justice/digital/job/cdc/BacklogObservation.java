@@ -0,0 +1,52 @@
+package uk.gov.justice.digital.job.cdc;
+
+import lombok.Data;
+import org.apache.spark.SparkContext;
+
+import java.time.Clock;
+
+import static uk.gov.justice.digital.common.StreamingQuery.BATCH_INPUT_BYTES_PROPERTY;
+import static uk.gov.justice.digital.common.StreamingQuery.BATCH_INPUT_FILES_PROPERTY;
+import static uk.gov.justice.digital.common.StreamingQuery.BATCH_NEWEST_TIMESTAMP_PROPERTY;
+
+/**
+ * The backlog observed for a table across one or more micro-batches.
+ * The file source does not expose how many files are still waiting, so a batch which was capped by
+ * maxFilesPerTrigger is used as the signal that there are more unprocessed files behind it.
+ */
+@Data
+public class BacklogObservation {
+
+    public static final BacklogObservation NONE = new BacklogObservation(0, 0, 0, false);
+
+    private final long files;
+    private final long bytes;
+    // Seconds between the newest DMS _timestamp in the batch and when the batch was processed
+    private final long lagSeconds;
+    private final boolean reachedFileLimit;
+
+    public BacklogObservation combine(BacklogObservation other) {
+        return new BacklogObservation(
+                files + other.files,
+                bytes + other.bytes,
+                Math.max(lagSeconds, other.lagSeconds),
+                reachedFileLimit || other.reachedFileLimit
+        );
+    }
+
+    /**
+     * Observes the micro-batch just processed on this thread from what CdcBatchProcessor reported about it, so that the
+     * batch is not read again. A batch which reported nothing is observed as having no files.
+     */
+    public static BacklogObservation observeProcessedBatch(SparkContext sparkContext, long maxFilesPerTrigger, Clock clock) {
+        String reportedFiles = sparkContext.getLocalProperty(BATCH_INPUT_FILES_PROPERTY);
+        long files = reportedFiles == null ? 0 : Long.parseLong(reportedFiles);
+        if (files == 0) {
+            return NONE;
+        }
+        long bytes = Long.parseLong(sparkContext.getLocalProperty(BATCH_INPUT_BYTES_PROPERTY));
+        String newestTimestamp = sparkContext.getLocalProperty(BATCH_NEWEST_TIMESTAMP_PROPERTY);
+        long lagSeconds = newestTimestamp == null ? 0 : Math.max(0, (clock.millis() - Long.parseLong(newestTimestamp)) / 1000);
+        return new BacklogObservation(files, bytes, lagSeconds, files >= maxFilesPerTrigger);
+    }
+}
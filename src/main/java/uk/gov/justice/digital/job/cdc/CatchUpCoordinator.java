@@ -0,0 +1,122 @@
+package uk.gov.justice.digital.job.cdc;
+
+import com.google.common.annotations.VisibleForTesting;
+import jakarta.inject.Singleton;
+import org.apache.spark.sql.SparkSession;
+import org.apache.spark.sql.streaming.StreamingQueryListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Moves queries which are catching up with their backlog on from each AvailableNow run as it finishes, either to
+ * another catch-up run or to their normal trigger.
+ */
+@Singleton
+public class CatchUpCoordinator {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatchUpCoordinator.class);
+
+    private static final long RETRY_DELAY_SECONDS = 60L;
+
+    private final Map<UUID, TableStreamingQuery> queriesById = new ConcurrentHashMap<>();
+    // Covers the gap between a query's last catch-up run ending and its normal query becoming active
+    private final AtomicInteger advancesInProgress = new AtomicInteger();
+    private ScheduledExecutorService executor;
+
+    public synchronized void start(SparkSession spark) {
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "catch-up-coordinator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        spark.streams().addListener(new CatchUpRunListener());
+    }
+
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * Registers a running query. Queries which are not catching up are ignored.
+     */
+    public void register(TableStreamingQuery query) {
+        if (query.isCatchingUp()) {
+            queriesById.put(query.getQueryId(), query);
+            if (!query.isActive()) {
+                // A run with little to do can finish before the query is registered, so its termination was missed
+                schedule(() -> advance(query), 0);
+            }
+        }
+    }
+
+    /**
+     * Whether any query is still catching up, in which case its runs finishing should not be treated as the job finishing.
+     */
+    public boolean isCatchingUp() {
+        if (advancesInProgress.get() > 0) {
+            return true;
+        }
+        queriesById.values().removeIf(query -> !query.isCatchingUp());
+        return !queriesById.isEmpty();
+    }
+
+    @VisibleForTesting
+    void advance(TableStreamingQuery query) {
+        advancesInProgress.incrementAndGet();
+        try {
+            query.advanceCatchUp();
+            if (!query.isCatchingUp()) {
+                queriesById.values().remove(query);
+            }
+        } catch (Exception e) {
+            // Nothing else will start the query again so keep trying rather than leave the table behind
+            logger.error("Failed to move query for {}/{} on from catching up. Retrying in {}s",
+                    query.getInputSourceName(), query.getInputTableName(), RETRY_DELAY_SECONDS, e);
+            schedule(() -> advance(query), RETRY_DELAY_SECONDS);
+        } finally {
+            advancesInProgress.decrementAndGet();
+        }
+    }
+
+    private synchronized void schedule(Runnable task, long delaySeconds) {
+        if (executor != null) {
+            executor.schedule(task, delaySeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    private class CatchUpRunListener extends StreamingQueryListener {
+
+        @Override
+        public void onQueryStarted(QueryStartedEvent event) {
+            // Nothing to do
+        }
+
+        @Override
+        public void onQueryProgress(QueryProgressEvent event) {
+            // Nothing to do
+        }
+
+        @Override
+        public void onQueryTerminated(QueryTerminatedEvent event) {
+            // A run which fails is left to the supervisor, if there is one, or fails the job
+            TableStreamingQuery query = queriesById.get(event.id());
+            if (query != null && event.exception().isEmpty()) {
+                schedule(() -> advance(query), 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package uk.gov.justice.digital.job.cdc;
+
+import lombok.Data;
+
+/**
+ * How a table's query works through the backlog which accumulated while it wasn't running before it switches to its
+ * normal trigger.
+ */
+@Data
+public class CatchUpSettings {
+    private final long maxFilesPerTrigger;
+    // The query switches to its normal trigger once its newest record is no older than this when a catch-up run ends
+    private final long lagThresholdSeconds;
+    // Skips updating the symlink manifests after each catch-up batch and updates them once when catch-up ends
+    private final boolean relaxedManifestUpdates;
+}
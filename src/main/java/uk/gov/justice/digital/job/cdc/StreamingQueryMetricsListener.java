@@ -0,0 +1,75 @@
+package uk.gov.justice.digital.job.cdc;
+
+import lombok.val;
+import org.apache.spark.sql.streaming.StreamingQueryListener;
+import org.apache.spark.sql.streaming.StreamingQueryProgress;
+import uk.gov.justice.digital.service.metrics.StreamingMetricsCollector;
+
+import java.util.Map;
+
+import static com.amazonaws.services.cloudwatch.model.StandardUnit.Count;
+import static com.amazonaws.services.cloudwatch.model.StandardUnit.CountSecond;
+import static com.amazonaws.services.cloudwatch.model.StandardUnit.Milliseconds;
+import static uk.gov.justice.digital.common.StreamingQuery.getSourceAndTable;
+import static uk.gov.justice.digital.job.cdc.TableStreamingQueryProvider.MULTIPLEXED_SOURCE_NAME;
+import static uk.gov.justice.digital.service.metrics.StreamingMetricsCollector.BATCH_DURATION;
+import static uk.gov.justice.digital.service.metrics.StreamingMetricsCollector.INPUT_ROWS;
+import static uk.gov.justice.digital.service.metrics.StreamingMetricsCollector.INPUT_ROWS_PER_SECOND;
+import static uk.gov.justice.digital.service.metrics.StreamingMetricsCollector.PROCESSED_ROWS_PER_SECOND;
+import static uk.gov.justice.digital.service.metrics.StreamingMetricsCollector.TRIGGER_TO_COMMIT_LATENCY;
+
+/**
+ * Records the throughput and latency of each CDC micro-batch from the progress Spark reports for its query.
+ * Progress is also reported periodically for idle queries, which is skipped so it doesn't drag down the rates.
+ * The progress of a multiplexed query counts the file paths of a group of tables, so it is skipped too and
+ * TableStreamingQueryProvider records the rows and duration of each table in the group's batches instead.
+ */
+public class StreamingQueryMetricsListener extends StreamingQueryListener {
+
+    // Time spent in the foreachBatch function
+    private static final String ADD_BATCH_DURATION = "addBatch";
+    // Time from the trigger firing to the batch being committed to the checkpoint
+    private static final String TRIGGER_EXECUTION_DURATION = "triggerExecution";
+
+    private final StreamingMetricsCollector metricsCollector;
+
+    public StreamingQueryMetricsListener(StreamingMetricsCollector metricsCollector) {
+        this.metricsCollector = metricsCollector;
+    }
+
+    @Override
+    public void onQueryStarted(QueryStartedEvent event) {
+        // Nothing to record until the first batch
+    }
+
+    @Override
+    public void onQueryProgress(QueryProgressEvent event) {
+        StreamingQueryProgress progress = event.progress();
+        if (progress.numInputRows() == 0) {
+            return;
+        }
+        getSourceAndTable(progress.name())
+                .filter(sourceAndTable -> !MULTIPLEXED_SOURCE_NAME.equals(sourceAndTable.getLeft()))
+                .ifPresent(sourceAndTable -> {
+                    String source = sourceAndTable.getLeft();
+                    String table = sourceAndTable.getRight();
+                    metricsCollector.record(INPUT_ROWS, Count, source, table, progress.numInputRows());
+                    metricsCollector.record(INPUT_ROWS_PER_SECOND, CountSecond, source, table, progress.inputRowsPerSecond());
+                    metricsCollector.record(PROCESSED_ROWS_PER_SECOND, CountSecond, source, table, progress.processedRowsPerSecond());
+                    Map<String, Long> durations = progress.durationMs();
+                    val batchDuration = durations.get(ADD_BATCH_DURATION);
+                    if (batchDuration != null) {
+                        metricsCollector.record(BATCH_DURATION, Milliseconds, source, table, batchDuration);
+                    }
+                    val triggerToCommit = durations.get(TRIGGER_EXECUTION_DURATION);
+                    if (triggerToCommit != null) {
+                        metricsCollector.record(TRIGGER_TO_COMMIT_LATENCY, Milliseconds, source, table, triggerToCommit);
+                    }
+                });
+    }
+
+    @Override
+    public void onQueryTerminated(QueryTerminatedEvent event) {
+        // Nothing to record
+    }
+}
@@ -0,0 +1,115 @@
+package uk.gov.justice.digital.job.cdc;
+
+import com.google.common.annotations.VisibleForTesting;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.justice.digital.config.JobArguments;
+import uk.gov.justice.digital.service.TableDiscoveryService;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically re-reads the table config while the CDC job runs and starts queries for tables which have been added
+ * to it and stops queries for tables which have been removed from it.
+ * Tables are compared against the queries which are running, so a table whose query could not be started, e.g. because
+ * it has no schema and no data yet, is tried again on the next poll.
+ */
+@Singleton
+public class TableConfigWatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(TableConfigWatcher.class);
+
+    /**
+     * The running table queries which the watcher reconciles with the table config.
+     */
+    public interface TableQueries {
+        Set<ImmutablePair<String, String>> runningTables();
+
+        void startTables(Set<ImmutablePair<String, String>> tables);
+
+        void stopTables(Set<ImmutablePair<String, String>> tables);
+    }
+
+    private final TableDiscoveryService tableDiscoveryService;
+    private final long watchIntervalSeconds;
+
+    private ScheduledExecutorService executor;
+
+    @Inject
+    public TableConfigWatcher(JobArguments arguments, TableDiscoveryService tableDiscoveryService) {
+        this.tableDiscoveryService = tableDiscoveryService;
+        this.watchIntervalSeconds = arguments.getCdcTableConfigWatchIntervalSeconds();
+    }
+
+    public synchronized void start(TableQueries tableQueries) {
+        logger.info("Watching the table config for changes every {} seconds", watchIntervalSeconds);
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "table-config-watcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(
+                () -> poll(tableQueries),
+                watchIntervalSeconds,
+                watchIntervalSeconds,
+                TimeUnit.SECONDS
+        );
+    }
+
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    public synchronized boolean isWatching() {
+        return executor != null;
+    }
+
+    @VisibleForTesting
+    void poll(TableQueries tableQueries) {
+        Set<ImmutablePair<String, String>> configuredTables;
+        try {
+            configuredTables = new HashSet<>(tableDiscoveryService.discoverTablesToProcess());
+        } catch (Exception e) {
+            // A config which can't be read, or is empty, is more likely a mistake than a request to stop every table
+            logger.error("Failed to read the table config. Running queries will be left unchanged", e);
+            return;
+        }
+        if (configuredTables.isEmpty()) {
+            logger.warn("The table config lists no tables. Running queries will be left unchanged");
+            return;
+        }
+        Set<ImmutablePair<String, String>> runningTables = tableQueries.runningTables();
+
+        Set<ImmutablePair<String, String>> removedTables = new HashSet<>(runningTables);
+        removedTables.removeAll(configuredTables);
+        Set<ImmutablePair<String, String>> addedTables = new HashSet<>(configuredTables);
+        addedTables.removeAll(runningTables);
+
+        if (!removedTables.isEmpty()) {
+            logger.info("Stopping queries for {} tables removed from the table config: {}", removedTables.size(), removedTables);
+            try {
+                tableQueries.stopTables(removedTables);
+            } catch (Exception e) {
+                logger.error("Failed to stop queries for removed tables", e);
+            }
+        }
+        if (!addedTables.isEmpty()) {
+            logger.info("Starting queries for {} tables added to the table config: {}", addedTables.size(), addedTables);
+            try {
+                tableQueries.startTables(addedTables);
+            } catch (Exception e) {
+                logger.error("Failed to start queries for added tables", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package uk.gov.justice.digital.job.cdc;
+
+import com.amazonaws.AbortedException;
+import com.google.common.annotations.VisibleForTesting;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import lombok.Data;
+import org.apache.commons.lang.exception.ExceptionUtils;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.spark.sql.SparkSession;
+import org.apache.spark.sql.streaming.StreamingQueryListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.justice.digital.config.JobArguments;
+import uk.gov.justice.digital.service.metrics.StreamingMetricsCollector;
+
+import java.time.Clock;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.amazonaws.services.cloudwatch.model.StandardUnit.Count;
+import static com.amazonaws.services.cloudwatch.model.StandardUnit.Milliseconds;
+import static uk.gov.justice.digital.service.metrics.StreamingMetricsCollector.QUERY_DOWNTIME;
+import static uk.gov.justice.digital.service.metrics.StreamingMetricsCollector.QUERY_QUARANTINED;
+import static uk.gov.justice.digital.service.metrics.StreamingMetricsCollector.QUERY_RESTARTS;
+
+/**
+ * Restarts a table's query from its checkpoint when it terminates with an exception, so that one table failing does
+ * not stop every other table streaming.
+ * Restarts back off exponentially from the initial backoff up to the max backoff. A query which fails max failures
+ * times within the failure window is quarantined: it is left stopped until the job is restarted while the other
+ * queries carry on.
+ */
+@Singleton
+public class TableQuerySupervisor {
+
+    private static final Logger logger = LoggerFactory.getLogger(TableQuerySupervisor.class);
+
+    private final boolean enabled;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final int maxFailures;
+    private final long failureWindowMillis;
+    private final StreamingMetricsCollector metricsCollector;
+    private final Clock clock;
+
+    private final Map<UUID, TableStreamingQuery> queriesById = new ConcurrentHashMap<>();
+    private final Map<ImmutablePair<String, String>, FailureHistory> historyByTable = new ConcurrentHashMap<>();
+    private ScheduledExecutorService executor;
+
+    @Inject
+    public TableQuerySupervisor(JobArguments arguments, StreamingMetricsCollector metricsCollector, Clock clock) {
+        this.enabled = arguments.isCdcQuerySupervisorEnabled();
+        this.initialBackoffMillis = TimeUnit.SECONDS.toMillis(arguments.getCdcQueryRestartInitialBackoffSeconds());
+        this.maxBackoffMillis = TimeUnit.SECONDS.toMillis(arguments.getCdcQueryRestartMaxBackoffSeconds());
+        this.maxFailures = arguments.getCdcQueryRestartMaxFailures();
+        this.failureWindowMillis = TimeUnit.SECONDS.toMillis(arguments.getCdcQueryRestartFailureWindowSeconds());
+        this.metricsCollector = metricsCollector;
+        this.clock = clock;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts listening for query terminations. Queries must be registered with supervise once they are running.
+     */
+    public synchronized void start(SparkSession spark) {
+        if (!enabled || executor != null) {
+            return;
+        }
+        logger.info("Supervising queries: backing off restarts from {}ms to {}ms and quarantining after {} failures in {}ms",
+                initialBackoffMillis, maxBackoffMillis, maxFailures, failureWindowMillis);
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "table-query-supervisor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        spark.streams().addListener(new TerminationListener());
+    }
+
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    public void supervise(TableStreamingQuery query) {
+        if (enabled) {
+            queriesById.put(query.getQueryId(), query);
+            historyByTable.putIfAbsent(tableOf(query), new FailureHistory());
+        }
+    }
+
+    /**
+     * Stops supervising a query which is being deliberately stopped, so that it is not restarted.
+     */
+    public void unsupervise(TableStreamingQuery query) {
+        queriesById.values().remove(query);
+    }
+
+    /**
+     * Whether there are queries which are running or will be restarted, so the job should keep waiting on them.
+     */
+    public boolean isSupervising() {
+        return enabled && !queriesById.isEmpty();
+    }
+
+    public Set<ImmutablePair<String, String>> getQuarantinedTables() {
+        return historyByTable.entrySet().stream()
+                .filter(entry -> entry.getValue().toHealth().isQuarantined())
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Returns the failures, restarts and time spent stopped after a failure for each supervised table.
+     */
+    public Map<ImmutablePair<String, String>, QueryHealth> getHealthByTable() {
+        Map<ImmutablePair<String, String>, QueryHealth> healthByTable = new HashMap<>();
+        historyByTable.forEach((table, history) -> healthByTable.put(table, history.toHealth()));
+        return healthByTable;
+    }
+
+    @VisibleForTesting
+    void onFailure(TableStreamingQuery query) {
+        if (query.getException().map(e -> ExceptionUtils.getRootCause(e) instanceof AbortedException).orElse(false)) {
+            // The job is being stopped so the query should not come back
+            logger.info("Not restarting query for {}/{} because it was aborted", query.getInputSourceName(), query.getInputTableName());
+            unsupervise(query);
+            return;
+        }
+        ImmutablePair<String, String> table = tableOf(query);
+        FailureHistory history = historyByTable.computeIfAbsent(table, key -> new FailureHistory());
+        int failuresInWindow = history.recordFailure(clock.millis(), failureWindowMillis);
+        if (failuresInWindow >= maxFailures) {
+            unsupervise(query);
+            history.quarantine();
+            metricsCollector.record(QUERY_QUARANTINED, Count, table.getLeft(), table.getRight(), 1);
+            logger.error("Quarantining query for {}/{} after {} failures in {}ms. The other queries will keep running",
+                    table.getLeft(), table.getRight(), failuresInWindow, failureWindowMillis,
+                    query.getException().orElse(null));
+            return;
+        }
+        long backoffMillis = backoffMillis(failuresInWindow);
+        logger.warn("Query for {}/{} failed ({} failures in {}ms). Restarting it in {}ms",
+                table.getLeft(), table.getRight(), failuresInWindow, failureWindowMillis, backoffMillis,
+                query.getException().orElse(null));
+        schedule(() -> restart(query), backoffMillis);
+    }
+
+    @VisibleForTesting
+    void restart(TableStreamingQuery query) {
+        if (!queriesById.containsValue(query)) {
+            return;
+        }
+        ImmutablePair<String, String> table = tableOf(query);
+        FailureHistory history = historyByTable.get(table);
+        try {
+            boolean restarted = query.restartAfterFailure();
+            long downtimeMillis = history.recordRecovery(clock.millis(), restarted);
+            if (restarted) {
+                metricsCollector.record(QUERY_RESTARTS, Count, table.getLeft(), table.getRight(), 1);
+                metricsCollector.record(QUERY_DOWNTIME, Milliseconds, table.getLeft(), table.getRight(), downtimeMillis);
+                logger.info("Restarted query for {}/{} after {}ms", table.getLeft(), table.getRight(), downtimeMillis);
+            }
+        } catch (Exception e) {
+            logger.error("Failed to restart query for {}/{}", table.getLeft(), table.getRight(), e);
+            onFailure(query);
+        }
+    }
+
+    @VisibleForTesting
+    long backoffMillis(int failuresInWindow) {
+        // Capping the shift keeps the doubling from overflowing for any initial backoff given in seconds
+        int doublings = Math.min(failuresInWindow - 1, 30);
+        return Math.min(initialBackoffMillis << doublings, maxBackoffMillis);
+    }
+
+    private synchronized void schedule(Runnable task, long delayMillis) {
+        if (executor != null) {
+            executor.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static ImmutablePair<String, String> tableOf(TableStreamingQuery query) {
+        return ImmutablePair.of(query.getInputSourceName(), query.getInputTableName());
+    }
+
+    private class TerminationListener extends StreamingQueryListener {
+
+        @Override
+        public void onQueryStarted(QueryStartedEvent event) {
+            // Nothing to do
+        }
+
+        @Override
+        public void onQueryProgress(QueryProgressEvent event) {
+            // Nothing to do
+        }
+
+        @Override
+        public void onQueryTerminated(QueryTerminatedEvent event) {
+            // Queries stopped deliberately, e.g. to change trigger settings, terminate without an exception
+            TableStreamingQuery query = queriesById.get(event.id());
+            if (query != null && event.exception().isDefined()) {
+                onFailure(query);
+            }
+        }
+    }
+
+    @Data
+    public static class QueryHealth {
+        private final int failures;
+        private final int restarts;
+        private final long downtimeMillis;
+        private final boolean quarantined;
+    }
+
+    private static class FailureHistory {
+        private final Deque<Long> failureTimes = new ArrayDeque<>();
+        private int failures;
+        private int restarts;
+        private long downtimeMillis;
+        private Long downSince;
+        private boolean quarantined;
+
+        synchronized int recordFailure(long now, long windowMillis) {
+            failures++;
+            failureTimes.addLast(now);
+            while (!failureTimes.isEmpty() && failureTimes.peekFirst() <= now - windowMillis) {
+                failureTimes.removeFirst();
+            }
+            if (downSince == null) {
+                downSince = now;
+            }
+            return failureTimes.size();
+        }
+
+        synchronized long recordRecovery(long now, boolean restarted) {
+            long downtime = downSince == null ? 0 : now - downSince;
+            downSince = null;
+            downtimeMillis += downtime;
+            if (restarted) {
+                restarts++;
+            }
+            return downtime;
+        }
+
+        synchronized void quarantine() {
+            quarantined = true;
+        }
+
+        synchronized QueryHealth toHealth() {
+            return new QueryHealth(failures, restarts, downtimeMillis, quarantined);
+        }
+    }
+}
@@ -1,37 +1,66 @@
 package uk.gov.justice.digital.job.cdc;
 
+import org.apache.spark.SparkContext;
 import org.apache.spark.api.java.function.VoidFunction2;
 import org.apache.spark.sql.Dataset;
 import org.apache.spark.sql.Row;
 import org.apache.spark.sql.streaming.StreamingQuery;
+import org.apache.spark.sql.streaming.StreamingQueryException;
 import org.apache.spark.sql.streaming.Trigger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.gov.justice.digital.exception.TableStreamingQueryTimeoutDuringStopException;
 
+import java.time.Clock;
+import java.util.Optional;
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongFunction;
 
+import static java.lang.String.format;
+import static uk.gov.justice.digital.common.StreamingQuery.RELAXED_MANIFEST_UPDATES_PROPERTY;
+import static uk.gov.justice.digital.common.StreamingQuery.clearProcessedBatch;
 import static uk.gov.justice.digital.common.StreamingQuery.getQueryCheckpointPath;
 import static uk.gov.justice.digital.common.StreamingQuery.getQueryName;
 
 /**
- * Encapsulates logic for processing a stream of micro-batches of CDC events for a single table.
+ * Encapsulates logic for processing a stream of micro-batches of CDC events for a single table, or for a group of
+ * tables when the CDC job runs in multiplexed mode.
  * You can test behaviour across multiple batches by testing against this class.
  */
 public class TableStreamingQuery {
 
     private static final Logger logger = LoggerFactory.getLogger(TableStreamingQuery.class);
 
+    private static final long GRACEFUL_STOP_POLL_MILLIS = 1000L;
+    private static final String SCHEDULER_POOL_PROPERTY = "spark.scheduler.pool";
+
     private final String inputSourceName;
     private final String inputTableName;
     private final String checkpointLocation;
-    private final long triggerIntervalSeconds;
+    private volatile long triggerIntervalSeconds;
+    private volatile long maxFilesPerTrigger;
 
-    private final Dataset<Row> sourceData;
+    private Dataset<Row> sourceData;
     private final VoidFunction2<Dataset<Row>, Long> batchProcessingFunc;
 
+    // Only set for queries with adaptive trigger settings, which need to rebuild their source when the batch size changes
+    private final LongFunction<Dataset<Row>> sourceDataProvider;
+    private final AtomicReference<BacklogObservation> backlogSinceLastEvaluation = new AtomicReference<>(BacklogObservation.NONE);
+
     private StreamingQuery query;
+    private volatile boolean stoppedGracefully = false;
+    private String schedulerPool;
+
+    // Only set for queries which start by catching up with their backlog
+    private CatchUpSettings catchUpSettings;
+    private LongFunction<Dataset<Row>> catchUpSourceDataProvider;
+    private Runnable onCatchUpComplete;
+    private Clock catchUpClock;
+    private volatile boolean catchingUp = false;
+    private volatile long catchUpLagSeconds = 0;
 
     public TableStreamingQuery(
             String inputSourceName,
@@ -46,6 +75,35 @@ public class TableStreamingQuery {
         this.triggerIntervalSeconds = triggerIntervalSeconds;
         this.sourceData = sourceData;
         this.batchProcessingFunc = batchProcessingFunc;
+        this.sourceDataProvider = null;
+    }
+
+    /**
+     * Creates a query whose trigger interval and max files per trigger can be changed while the job is running.
+     * The backlog of each micro-batch is recorded so that the AdaptiveTriggerScheduler can decide on new settings.
+     */
+    public TableStreamingQuery(
+            String inputSourceName,
+            String inputTableName,
+            String checkpointLocation,
+            TriggerSettings initialTriggerSettings,
+            LongFunction<Dataset<Row>> sourceDataProvider,
+            VoidFunction2<Dataset<Row>, Long> batchProcessingFunc,
+            Clock clock) {
+        this.inputSourceName = inputSourceName;
+        this.inputTableName = inputTableName;
+        this.checkpointLocation = checkpointLocation;
+        this.triggerIntervalSeconds = initialTriggerSettings.getIntervalSeconds();
+        this.maxFilesPerTrigger = initialTriggerSettings.getMaxFilesPerTrigger();
+        this.sourceDataProvider = sourceDataProvider;
+        this.sourceData = sourceDataProvider.apply(maxFilesPerTrigger);
+        this.batchProcessingFunc = (df, batchId) -> {
+            SparkContext sparkContext = df.sparkSession().sparkContext();
+            clearProcessedBatch(sparkContext);
+            batchProcessingFunc.call(df, batchId);
+            BacklogObservation observation = BacklogObservation.observeProcessedBatch(sparkContext, maxFilesPerTrigger, clock);
+            backlogSinceLastEvaluation.accumulateAndGet(observation, BacklogObservation::combine);
+        };
     }
 
 
@@ -55,7 +113,29 @@ public class TableStreamingQuery {
         String queryCheckpointPath = getQueryCheckpointPath(checkpointLocation, inputSourceName, inputTableName);
 
         logger.info("Initialising query {} with checkpoint path {}", queryName, queryCheckpointPath);
+        SparkContext sparkContext = schedulerPool == null ? null : sourceData.sparkSession().sparkContext();
+        String previousPool = null;
+        if (sparkContext != null) {
+            // The query's micro-batches run in the scheduler pool of the thread which starts it
+            previousPool = sparkContext.getLocalProperty(SCHEDULER_POOL_PROPERTY);
+            sparkContext.setLocalProperty(SCHEDULER_POOL_PROPERTY, schedulerPool);
+        }
         try {
+            if (catchingUp) {
+                // The newest record seen by this catch-up run decides whether another run is needed
+                catchUpLagSeconds = 0;
+                query = catchUpSourceDataProvider.apply(catchUpSettings.getMaxFilesPerTrigger())
+                        .writeStream()
+                        .queryName(queryName)
+                        .format("delta")
+                        .foreachBatch(catchUpBatchProcessingFunc())
+                        .outputMode("update")
+                        .option("checkpointLocation", queryCheckpointPath)
+                        .trigger(Trigger.AvailableNow())
+                        .start();
+                logger.info("Started query {} catching up with up to {} files per trigger", queryName, catchUpSettings.getMaxFilesPerTrigger());
+                return query;
+            }
             query = sourceData
                     .writeStream()
                     .queryName(queryName)
@@ -70,7 +150,194 @@ public class TableStreamingQuery {
         } catch (TimeoutException e) {
             logger.error("Encountered TimeoutException when running streaming query start", e);
             throw new RuntimeException(e);
+        } finally {
+            if (sparkContext != null) {
+                sparkContext.setLocalProperty(SCHEDULER_POOL_PROPERTY, previousPool);
+            }
+        }
+    }
+
+    /**
+     * Makes the query start by processing its backlog with AvailableNow triggers, each run taking everything available
+     * when it starts, before it switches to its normal trigger on the same checkpoint. Must be called before the query
+     * is first run. The CatchUpCoordinator moves the query on from each run by calling advanceCatchUp.
+     */
+    public void enableCatchUp(
+            CatchUpSettings catchUpSettings,
+            LongFunction<Dataset<Row>> catchUpSourceDataProvider,
+            Runnable onCatchUpComplete,
+            Clock clock) {
+        this.catchUpSettings = catchUpSettings;
+        this.catchUpSourceDataProvider = catchUpSourceDataProvider;
+        this.onCatchUpComplete = onCatchUpComplete;
+        this.catchUpClock = clock;
+        this.catchingUp = true;
+    }
+
+    public boolean isCatchingUp() {
+        return catchingUp;
+    }
+
+    /**
+     * Called once a catch-up run has finished. Starts another catch-up run if records older than the lag threshold
+     * were still being processed at the end of the last one, since more will have arrived while it ran, and otherwise
+     * switches the query to its normal trigger.
+     */
+    public synchronized void advanceCatchUp() {
+        if (!catchingUp || stoppedGracefully || isActive()) {
+            return;
+        }
+        if (catchUpLagSeconds > catchUpSettings.getLagThresholdSeconds()) {
+            logger.info("Query for {}/{} was {}s behind at the end of catching up so is catching up again",
+                    inputSourceName, inputTableName, catchUpLagSeconds);
+        } else {
+            logger.info("Query for {}/{} has caught up to {}s behind and is switching to its normal trigger",
+                    inputSourceName, inputTableName, catchUpLagSeconds);
+            if (catchUpSettings.isRelaxedManifestUpdates()) {
+                onCatchUpComplete.run();
+            }
+            catchingUp = false;
+        }
+        runQuery();
+    }
+
+    private VoidFunction2<Dataset<Row>, Long> catchUpBatchProcessingFunc() {
+        return (df, batchId) -> {
+            SparkContext sparkContext = df.sparkSession().sparkContext();
+            clearProcessedBatch(sparkContext);
+            String previousValue = sparkContext.getLocalProperty(RELAXED_MANIFEST_UPDATES_PROPERTY);
+            if (catchUpSettings.isRelaxedManifestUpdates()) {
+                sparkContext.setLocalProperty(RELAXED_MANIFEST_UPDATES_PROPERTY, "true");
+            }
+            try {
+                batchProcessingFunc.call(df, batchId);
+            } finally {
+                sparkContext.setLocalProperty(RELAXED_MANIFEST_UPDATES_PROPERTY, previousValue);
+            }
+            // An adaptive query's batch function has already observed the batch, which is still reported here
+            BacklogObservation observation = BacklogObservation.observeProcessedBatch(sparkContext, catchUpSettings.getMaxFilesPerTrigger(), catchUpClock);
+            if (observation.getFiles() > 0) {
+                catchUpLagSeconds = observation.getLagSeconds();
+            }
+        };
+    }
+
+    /**
+     * Sets the fair scheduler pool the query runs in from when it is next started.
+     */
+    public void setSchedulerPool(String schedulerPool) {
+        this.schedulerPool = schedulerPool;
+    }
+
+    public String getSchedulerPool() {
+        return schedulerPool;
+    }
+
+    public String getInputSourceName() {
+        return inputSourceName;
+    }
+
+    public String getInputTableName() {
+        return inputTableName;
+    }
+
+    /**
+     * The query's id, which is kept in its checkpoint and so stays the same when the query is restarted.
+     */
+    public UUID getQueryId() {
+        return query == null ? null : query.id();
+    }
+
+    public Optional<StreamingQueryException> getException() {
+        if (query == null || query.exception().isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(query.exception().get());
+    }
+
+    public boolean isAdaptive() {
+        return sourceDataProvider != null;
+    }
+
+    public boolean isActive() {
+        return query != null && query.isActive();
+    }
+
+    public boolean isBatchInProgress() {
+        return query != null && query.status().isTriggerActive();
+    }
+
+    public TriggerSettings getTriggerSettings() {
+        return new TriggerSettings(triggerIntervalSeconds, maxFilesPerTrigger);
+    }
+
+    /**
+     * Returns the backlog observed since this was last called and starts observing afresh.
+     */
+    public BacklogObservation drainBacklogObservation() {
+        return backlogSinceLastEvaluation.getAndSet(BacklogObservation.NONE);
+    }
+
+    /**
+     * Stops the query and starts it again from the same checkpoint with the new trigger settings.
+     */
+    public synchronized void restartWith(TriggerSettings triggerSettings) throws TableStreamingQueryTimeoutDuringStopException {
+        if (!isAdaptive()) {
+            throw new IllegalStateException(format("Query for %s/%s does not support changing trigger settings", inputSourceName, inputTableName));
+        }
+        if (stoppedGracefully) {
+            logger.info("Not restarting query for {}/{} because it has been stopped", inputSourceName, inputTableName);
+            return;
+        }
+        if (catchingUp) {
+            // The query takes its normal trigger settings once it has caught up
+            logger.info("Not restarting query for {}/{} because it is catching up", inputSourceName, inputTableName);
+            return;
+        }
+        logger.info("Restarting query for {}/{} with trigger settings {} (was {})", inputSourceName, inputTableName, triggerSettings, getTriggerSettings());
+        stopQuery();
+        triggerIntervalSeconds = triggerSettings.getIntervalSeconds();
+        maxFilesPerTrigger = triggerSettings.getMaxFilesPerTrigger();
+        sourceData = sourceDataProvider.apply(maxFilesPerTrigger);
+        runQuery();
+    }
+
+    /**
+     * Starts the query again from its checkpoint after it has terminated with an exception.
+     * Returns false without starting it if it is already running again, e.g. because its trigger settings were changed
+     * in the meantime, or if it has been stopped.
+     */
+    public synchronized boolean restartAfterFailure() {
+        if (stoppedGracefully || isActive()) {
+            return false;
+        }
+        logger.info("Restarting failed query for {}/{}", inputSourceName, inputTableName);
+        runQuery();
+        return true;
+    }
+
+    /**
+     * Stops the query once any micro-batch in progress has finished, or once the timeout has passed if it has not.
+     * A query stopped this way is not restarted with new trigger settings.
+     */
+    public synchronized void stopGracefully(long timeoutSeconds) throws TableStreamingQueryTimeoutDuringStopException {
+        stoppedGracefully = true;
+        catchingUp = false;
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(timeoutSeconds);
+        try {
+            while (isBatchInProgress() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(GRACEFUL_STOP_POLL_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (isBatchInProgress()) {
+            logger.warn("Stopping query for {}/{} while a batch is still in progress", inputSourceName, inputTableName);
+        }
+        if (query != null) {
+            stopQuery();
         }
+        logger.info("Stopped query for {}/{}", inputSourceName, inputTableName);
     }
 
     public void stopQuery() throws TableStreamingQueryTimeoutDuringStopException {
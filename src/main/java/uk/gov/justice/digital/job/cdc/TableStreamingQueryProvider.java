@@ -2,13 +2,19 @@ package uk.gov.justice.digital.job.cdc;
 
 import com.google.common.annotations.VisibleForTesting;
 import jakarta.inject.Inject;
+import lombok.val;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.hadoop.fs.Path;
+import org.apache.spark.SparkContext;
 import org.apache.spark.SparkException;
 import org.apache.spark.api.java.function.VoidFunction2;
 import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Encoders;
 import org.apache.spark.sql.Row;
 import org.apache.spark.sql.SparkSession;
 import org.apache.spark.sql.execution.QueryExecutionException;
 import org.apache.spark.sql.execution.datasources.SchemaColumnConvertNotSupportedException;
+import org.apache.spark.sql.types.StructType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.gov.justice.digital.client.s3.S3DataProvider;
@@ -16,50 +22,99 @@ import uk.gov.justice.digital.config.JobArguments;
 import uk.gov.justice.digital.datahub.model.SourceReference;
 import uk.gov.justice.digital.exception.NoSchemaNoDataException;
 import uk.gov.justice.digital.job.batchprocessing.CdcBatchProcessor;
+import uk.gov.justice.digital.service.ParquetSchemaCacheService;
+import uk.gov.justice.digital.service.SchedulerPoolService;
 import uk.gov.justice.digital.service.SourceReferenceService;
 import uk.gov.justice.digital.service.ViolationService;
+import uk.gov.justice.digital.service.metrics.StreamingMetricsCollector;
 
 import javax.inject.Singleton;
+import java.time.Clock;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
+import static com.amazonaws.services.cloudwatch.model.StandardUnit.Count;
+import static com.amazonaws.services.cloudwatch.model.StandardUnit.CountSecond;
+import static com.amazonaws.services.cloudwatch.model.StandardUnit.Milliseconds;
 import static java.lang.String.format;
+import static uk.gov.justice.digital.common.StreamingQuery.BATCH_INPUT_ROWS_PROPERTY;
+import static uk.gov.justice.digital.common.StreamingQuery.clearProcessedBatch;
+import static uk.gov.justice.digital.common.StreamingQuery.getQueryName;
 import static uk.gov.justice.digital.service.ViolationService.ZoneName.STRUCTURED_CDC;
+import static uk.gov.justice.digital.service.metrics.StreamingMetricsCollector.BATCH_DURATION;
+import static uk.gov.justice.digital.service.metrics.StreamingMetricsCollector.INPUT_ROWS;
+import static uk.gov.justice.digital.service.metrics.StreamingMetricsCollector.PROCESSED_ROWS_PER_SECOND;
 
 @Singleton
 public class TableStreamingQueryProvider {
 
     private static final Logger logger = LoggerFactory.getLogger(TableStreamingQueryProvider.class);
 
+    // Group queries are named and checkpointed as if they were a table called group_<index>_of_<count> in this source
+    static final String MULTIPLEXED_SOURCE_NAME = "multiplexed";
+
     private final JobArguments arguments;
     private final S3DataProvider s3DataProvider;
     private final CdcBatchProcessor batchProcessor;
     private final SourceReferenceService sourceReferenceService;
     private final ViolationService violationService;
+    private final ParquetSchemaCacheService schemaCache;
+    private final SchedulerPoolService schedulerPoolService;
+    private final StreamingMetricsCollector metricsCollector;
+    private final Clock clock;
     @Inject
     public TableStreamingQueryProvider(
             JobArguments arguments,
             S3DataProvider s3DataProvider,
             CdcBatchProcessor batchProcessor,
             SourceReferenceService sourceReferenceService,
-            ViolationService violationService) {
+            ViolationService violationService,
+            ParquetSchemaCacheService schemaCache,
+            SchedulerPoolService schedulerPoolService,
+            StreamingMetricsCollector metricsCollector,
+            Clock clock) {
         this.arguments = arguments;
         this.s3DataProvider = s3DataProvider;
         this.batchProcessor = batchProcessor;
         this.sourceReferenceService = sourceReferenceService;
         this.violationService = violationService;
+        this.schemaCache = schemaCache;
+        this.schedulerPoolService = schedulerPoolService;
+        this.metricsCollector = metricsCollector;
+        this.clock = clock;
     }
 
     public TableStreamingQuery provide(SparkSession spark, String inputSourceName, String inputTableName) throws NoSchemaNoDataException {
         // We'll build the streaming query we want here. It might do normal processing, or it might write everything to violations
         Optional<SourceReference> maybeSourceReference = sourceReferenceService.getSourceReference(inputSourceName, inputTableName);
+        TableStreamingQuery query;
         if(maybeSourceReference.isPresent()) {
             SourceReference sourceReference = maybeSourceReference.get();
             logger.info("{}/{} looks good so we will do normal batch processing", inputSourceName, inputTableName);
-            return standardProcessingQuery(spark, inputSourceName, inputTableName, sourceReference);
+            query = standardProcessingQuery(spark, inputSourceName, inputTableName, sourceReference);
         } else {
             logger.warn("{}/{} has no source reference so we will write all data to violations until the stream restarts", inputSourceName, inputTableName);
-            return noSchemaFoundQuery(spark, inputSourceName, inputTableName);
+            query = noSchemaFoundQuery(spark, inputSourceName, inputTableName);
         }
+        return inSchedulerPool(spark, query, inputSourceName, inputTableName, Collections.singletonList(ImmutablePair.of(inputSourceName, inputTableName)));
+    }
+
+    // Each query gets its own pool, named after the query, so that tables share the cluster fairly
+    private TableStreamingQuery inSchedulerPool(
+            SparkSession spark,
+            TableStreamingQuery query,
+            String inputSourceName,
+            String inputTableName,
+            List<ImmutablePair<String, String>> tables
+    ) {
+        schedulerPoolService
+                .assignPool(spark, getQueryName(inputSourceName, inputTableName), tables)
+                .ifPresent(query::setSchedulerPool);
+        return query;
     }
 
     @VisibleForTesting
@@ -70,19 +125,50 @@ public class TableStreamingQueryProvider {
             SourceReference sourceReference
     ) {
 
-        Dataset<Row> sourceData = s3DataProvider.getStreamingSourceData(spark, sourceReference);
         VoidFunction2<Dataset<Row>, Long> batchProcessingFunc = withIncompatibleSchemaHandling(inputSourceName, inputTableName,
                 (df, batchId) -> batchProcessor.processBatch(sourceReference, spark, df, batchId)
         );
 
-        return new TableStreamingQuery(
-                inputSourceName,
-                inputTableName,
-                arguments.getCheckpointLocation(),
-                arguments.getCdcTriggerIntervalSeconds(),
-                sourceData,
-                batchProcessingFunc
-        );
+        TableStreamingQuery query;
+        if (arguments.isCdcAdaptiveTriggerEnabled()) {
+            TriggerSettings initialTriggerSettings = new TriggerSettings(
+                    arguments.getCdcTriggerIntervalSeconds(),
+                    arguments.streamingJobMaxFilePerTrigger()
+            );
+            query = new TableStreamingQuery(
+                    inputSourceName,
+                    inputTableName,
+                    arguments.getCheckpointLocation(),
+                    initialTriggerSettings,
+                    maxFilesPerTrigger -> s3DataProvider.getStreamingSourceData(spark, sourceReference, maxFilesPerTrigger),
+                    batchProcessingFunc,
+                    clock
+            );
+        } else {
+            Dataset<Row> sourceData = s3DataProvider.getStreamingSourceData(spark, sourceReference);
+            query = new TableStreamingQuery(
+                    inputSourceName,
+                    inputTableName,
+                    arguments.getCheckpointLocation(),
+                    arguments.getCdcTriggerIntervalSeconds(),
+                    sourceData,
+                    batchProcessingFunc
+            );
+        }
+        if (arguments.isCdcCatchUpEnabled()) {
+            CatchUpSettings catchUpSettings = new CatchUpSettings(
+                    arguments.getCdcCatchUpMaxFilesPerTrigger(),
+                    arguments.getCdcCatchUpLagThresholdSeconds(),
+                    arguments.isCdcCatchUpRelaxedManifestUpdates()
+            );
+            query.enableCatchUp(
+                    catchUpSettings,
+                    maxFilesPerTrigger -> s3DataProvider.getStreamingSourceData(spark, sourceReference, maxFilesPerTrigger),
+                    () -> batchProcessor.updateManifests(spark, sourceReference),
+                    clock
+            );
+        }
+        return query;
     }
 
     @VisibleForTesting
@@ -103,6 +189,108 @@ public class TableStreamingQueryProvider {
     }
 
 
+    /**
+     * Provides a single streaming query which reads the CDC files for a group of tables and demultiplexes each
+     * micro-batch by table, so that listing, planning and checkpointing costs scale with the number of groups rather
+     * than the number of tables.
+     */
+    public TableStreamingQuery provideMultiplexed(SparkSession spark, int groupIndex, int groupCount, List<ImmutablePair<String, String>> tables) {
+        Map<ImmutablePair<String, String>, VoidFunction2<List<String>, Long>> tableFuncs = new HashMap<>();
+        for (ImmutablePair<String, String> table : tables) {
+            tableFuncs.put(table, tableFilesProcessingFunc(spark, table.getLeft(), table.getRight()));
+        }
+
+        Dataset<Row> sourceData = s3DataProvider.getStreamingFilePathsForTables(spark, tables);
+        VoidFunction2<Dataset<Row>, Long> batchProcessingFunc = (df, batchId) -> {
+            List<String> filePaths = df.as(Encoders.STRING()).collectAsList();
+            Map<ImmutablePair<String, String>, List<String>> filePathsByTable = groupFilePathsByTable(filePaths);
+            logger.info("Group {} batch {} has {} files across {} tables", groupIndex, batchId, filePaths.size(), filePathsByTable.size());
+            for (val entry : filePathsByTable.entrySet()) {
+                VoidFunction2<List<String>, Long> tableFunc = tableFuncs.get(entry.getKey());
+                if (tableFunc != null) {
+                    processTableFiles(spark, entry.getKey(), tableFunc, entry.getValue(), batchId);
+                } else {
+                    logger.warn("Skipping {} files for {} which is not configured in group {}", entry.getValue().size(), entry.getKey(), groupIndex);
+                }
+            }
+        };
+
+        String groupName = format("group_%d_of_%d", groupIndex, groupCount);
+        TableStreamingQuery query = new TableStreamingQuery(
+                MULTIPLEXED_SOURCE_NAME,
+                groupName,
+                arguments.getCheckpointLocation(),
+                arguments.getCdcTriggerIntervalSeconds(),
+                sourceData,
+                batchProcessingFunc
+        );
+        return inSchedulerPool(spark, query, MULTIPLEXED_SOURCE_NAME, groupName, tables);
+    }
+
+    /**
+     * Processes a table's files from a multiplexed micro-batch and records the rows and duration for the table, which
+     * Spark only reports for the group's query as a whole.
+     */
+    @VisibleForTesting
+    void processTableFiles(
+            SparkSession spark,
+            ImmutablePair<String, String> table,
+            VoidFunction2<List<String>, Long> tableFunc,
+            List<String> filePaths,
+            long batchId) throws Exception {
+        SparkContext sparkContext = spark.sparkContext();
+        clearProcessedBatch(sparkContext);
+        long startTime = clock.millis();
+        tableFunc.call(filePaths, batchId);
+        long durationMillis = clock.millis() - startTime;
+        String inputRows = sparkContext.getLocalProperty(BATCH_INPUT_ROWS_PROPERTY);
+        if (inputRows == null || Long.parseLong(inputRows) == 0) {
+            // Nothing was processed for the table, e.g. because its files were written to violations
+            return;
+        }
+        long rows = Long.parseLong(inputRows);
+        String source = table.getLeft();
+        String tableName = table.getRight();
+        metricsCollector.record(INPUT_ROWS, Count, source, tableName, rows);
+        metricsCollector.record(BATCH_DURATION, Milliseconds, source, tableName, durationMillis);
+        if (durationMillis > 0) {
+            metricsCollector.record(PROCESSED_ROWS_PER_SECOND, CountSecond, source, tableName, rows * 1000.0 / durationMillis);
+        }
+    }
+
+    /**
+     * Groups raw CDC file paths, which have the form {raw root}/{source}/{table}/{file}, by source and table.
+     */
+    @VisibleForTesting
+    static Map<ImmutablePair<String, String>, List<String>> groupFilePathsByTable(List<String> filePaths) {
+        return filePaths.stream().collect(Collectors.groupingBy(filePath -> {
+            Path tableDirectory = new Path(filePath).getParent();
+            return ImmutablePair.of(tableDirectory.getParent().getName(), tableDirectory.getName());
+        }));
+    }
+
+    // Equivalent of the per-table queries for a table inside a multiplexed group, taking the files for the table in the current micro-batch.
+    private VoidFunction2<List<String>, Long> tableFilesProcessingFunc(SparkSession spark, String inputSourceName, String inputTableName) {
+        Optional<SourceReference> maybeSourceReference = sourceReferenceService.getSourceReference(inputSourceName, inputTableName);
+        if (maybeSourceReference.isPresent()) {
+            SourceReference sourceReference = maybeSourceReference.get();
+            VoidFunction2<Dataset<Row>, Long> func = withIncompatibleSchemaHandling(inputSourceName, inputTableName,
+                    (df, batchId) -> batchProcessor.processBatch(sourceReference, spark, df, batchId)
+            );
+            return (filePaths, batchId) -> func.call(s3DataProvider.getBatchCdcSourceData(spark, sourceReference, filePaths), batchId);
+        } else {
+            logger.warn("{}/{} has no source reference so we will write all data to violations until the stream restarts", inputSourceName, inputTableName);
+            VoidFunction2<Dataset<Row>, Long> func = withIncompatibleSchemaHandling(inputSourceName, inputTableName,
+                    (df, batchId) -> violationService.handleNoSchemaFound(spark, df, inputSourceName, inputTableName, STRUCTURED_CDC)
+            );
+            return (filePaths, batchId) -> {
+                // Only the footers of this batch's files are read to get a schema to read them with
+                StructType schema = schemaCache.inferSchema(spark, filePaths);
+                func.call(s3DataProvider.getBatchCdcSourceData(spark, schema, filePaths), batchId);
+            };
+        }
+    }
+
     @VisibleForTesting
     // Add handling of incompatible schemas to the batch processing function.
     // If files use a schema which cannot be read using the configured input schema then write to violations and continue.
@@ -0,0 +1,12 @@
+package uk.gov.justice.digital.job.cdc;
+
+import lombok.Data;
+
+/**
+ * The trigger cadence and micro-batch size a table's streaming query is running with.
+ */
+@Data
+public class TriggerSettings {
+    private final long intervalSeconds;
+    private final long maxFilesPerTrigger;
+}
@@ -60,6 +60,14 @@ public class SparkSessionProvider {
                 // Standardise on UTC.
                 .set("spark.sql.session.timeZone", "UTC");
 
+        if (arguments.isCdcPipelinedZoneWritesEnabled() ||
+                arguments.isCdcSchedulerPoolsEnabled() ||
+                arguments.getBatchLoadTableParallelism() > 1) {
+            // Lets the zone merges in their own pools, and the queries for different tables, share the cluster rather
+            // than queue behind each other
+            sparkConf.set("spark.scheduler.mode", "FAIR");
+        }
+
         if (arguments.disableAutoBroadcastJoinThreshold()) {
             sparkConf
                     .set("spark.sql.autoBroadcastJoinThreshold", "-1")
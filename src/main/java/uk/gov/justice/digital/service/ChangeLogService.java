@@ -0,0 +1,275 @@
+package uk.gov.justice.digital.service;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableSet;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import lombok.Data;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.spark.sql.Column;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.SparkSession;
+import org.apache.spark.sql.expressions.Window;
+import org.apache.spark.sql.functions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.justice.digital.config.JobArguments;
+import uk.gov.justice.digital.datahub.model.SourceReference;
+import uk.gov.justice.digital.exception.DataStorageRetriesExhaustedException;
+
+import java.time.Clock;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.apache.spark.sql.functions.col;
+import static org.apache.spark.sql.functions.expr;
+import static org.apache.spark.sql.functions.lit;
+import static org.apache.spark.sql.functions.max;
+import static org.apache.spark.sql.functions.row_number;
+import static uk.gov.justice.digital.common.CommonDataFields.OPERATION;
+import static uk.gov.justice.digital.common.CommonDataFields.ShortOperationCode.Delete;
+import static uk.gov.justice.digital.common.CommonDataFields.TIMESTAMP;
+
+/**
+ * Keeps the curated tables of the mergeOnReadTables in the table config as merge-on-read tables. Each batch of changes
+ * is appended to a change log beside the curated table and the change log is compacted into the curated table every
+ * compaction interval, so the curated table's files are rewritten once per interval rather than once per batch.
+ * The curated table is only up to date as of the last compaction, so reads which need the latest state should use
+ * readCurrent, or applyChanges when they read the curated table themselves, which apply the change log to it.
+ */
+@Singleton
+public class ChangeLogService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChangeLogService.class);
+
+    @VisibleForTesting
+    static final String CHANGE_LOG_SUFFIX = "_change_log";
+    // Orders changes to a key with the same timestamp by when they were appended and marks which changes a compaction covered
+    @VisibleForTesting
+    static final String CHANGE_SEQUENCE = "_change_sequence";
+    private static final String CHANGE_RANK = "_change_rank";
+
+    private final boolean enabled;
+    private final long compactionIntervalSeconds;
+    private final Supplier<ImmutableSet<ImmutablePair<String, String>>> mergeOnReadTables;
+    private final DataStorageService storage;
+    private final Clock clock;
+
+    private final AtomicLong lastSequence = new AtomicLong();
+    private final Map<String, ChangeLog> changeLogsByTablePath = new ConcurrentHashMap<>();
+    private final Set<String> checkedTablePaths = ConcurrentHashMap.newKeySet();
+    private ScheduledExecutorService executor;
+
+    @Inject
+    public ChangeLogService(JobArguments arguments, ConfigService configService, DataStorageService storage, Clock clock) {
+        this.enabled = arguments.isCdcChangeLogEnabled();
+        this.compactionIntervalSeconds = enabled ? arguments.getCdcChangeLogCompactionIntervalSeconds() : 0L;
+        // Read once per run so that a table cannot switch to being merged into directly while its change log has changes
+        this.mergeOnReadTables = Suppliers.memoize(() -> enabled ?
+                configService.getMergeOnReadTables(arguments.getConfigKey()) :
+                ImmutableSet.<ImmutablePair<String, String>>of()
+        )::get;
+        this.storage = storage;
+        this.clock = clock;
+    }
+
+    public boolean isMergeOnRead(String source, String table) {
+        return enabled && mergeOnReadTables.get().contains(ImmutablePair.of(source, table));
+    }
+
+    public static String changeLogPath(String tablePath) {
+        return tablePath + CHANGE_LOG_SUFFIX;
+    }
+
+    /**
+     * Starts compacting the change logs which have had changes appended every compaction interval.
+     */
+    public synchronized void start() {
+        if (!enabled || executor != null) {
+            return;
+        }
+        logger.info("Compacting change logs into merge on read tables {} every {}s", mergeOnReadTables.get(), compactionIntervalSeconds);
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "change-log-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::compactAll, compactionIntervalSeconds, compactionIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Compacts every change log a last time and stops compacting.
+     */
+    public void stop() {
+        ScheduledExecutorService stopping;
+        synchronized (this) {
+            stopping = executor;
+            executor = null;
+        }
+        if (stopping == null) {
+            return;
+        }
+        try {
+            stopping.submit(this::compactAll).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Interrupted while compacting change logs for {}", changeLogsByTablePath.keySet());
+        } catch (ExecutionException e) {
+            logger.error("Failed to compact change logs", e);
+        } finally {
+            stopping.shutdownNow();
+        }
+    }
+
+    public void appendChanges(
+            SparkSession spark,
+            String tablePath,
+            Dataset<Row> changes,
+            SourceReference.PrimaryKey primaryKey) throws DataStorageRetriesExhaustedException {
+        appendChanges(spark, tablePath, changes, primaryKey, SourceReference.TableLayout.NONE);
+    }
+
+    /**
+     * Appends a batch of changes, which has the latest change for each key, to the change log of the table. The
+     * changes are compacted into the table with the given layout.
+     */
+    public void appendChanges(
+            SparkSession spark,
+            String tablePath,
+            Dataset<Row> changes,
+            SourceReference.PrimaryKey primaryKey,
+            SourceReference.TableLayout layout) throws DataStorageRetriesExhaustedException {
+        storage.append(changeLogPath(tablePath), changes.withColumn(CHANGE_SEQUENCE, lit(nextSequence())));
+        changeLogsByTablePath.putIfAbsent(tablePath, new ChangeLog(spark, primaryKey, layout));
+    }
+
+    public void compactLeftoverChanges(SparkSession spark, String tablePath, SourceReference.PrimaryKey primaryKey) {
+        compactLeftoverChanges(spark, tablePath, primaryKey, SourceReference.TableLayout.NONE);
+    }
+
+    /**
+     * Compacts any changes left in the change log of a table which is no longer merge-on-read before the table is
+     * merged into directly. The change log is only looked for the first time this is called for a table.
+     */
+    public void compactLeftoverChanges(
+            SparkSession spark,
+            String tablePath,
+            SourceReference.PrimaryKey primaryKey,
+            SourceReference.TableLayout layout) {
+        if (enabled && checkedTablePaths.add(tablePath) && storage.exists(spark, changeLogPath(tablePath))) {
+            logger.info("Compacting changes left in the change log for {}", tablePath);
+            compact(tablePath, new ChangeLog(spark, primaryKey, layout));
+        }
+    }
+
+    /**
+     * Discards the changes appended to the change log of a table before the given time because the table is being
+     * reloaded. A reload replaces whatever had been merged into the table before it, so compacting those changes
+     * afterwards would apply them over the reloaded data. Changes appended since the given time are kept.
+     */
+    public void discardChangesAppendedBefore(SparkSession spark, String tablePath, long timeMillis) throws DataStorageRetriesExhaustedException {
+        if (hasChangeLog(spark, tablePath)) {
+            logger.info("Discarding changes appended to the change log for {} before {}", tablePath, timeMillis);
+            // Sequence numbers start from the time they were appended
+            storage.deleteRecords(spark, changeLogPath(tablePath), col(CHANGE_SEQUENCE).lt(lit(timeMillis)));
+        }
+    }
+
+    public boolean hasChangeLog(SparkSession spark, String tablePath) {
+        return storage.exists(spark, changeLogPath(tablePath));
+    }
+
+    /**
+     * Returns the current state of a merge-on-read table: the curated table with the latest change for each key in its
+     * change log applied.
+     */
+    public Dataset<Row> readCurrent(SparkSession spark, String tablePath, SourceReference.PrimaryKey primaryKey) {
+        Dataset<Row> base = storage.get(spark, tablePath);
+        if (!hasChangeLog(spark, tablePath)) {
+            return base;
+        }
+        return applyChanges(spark, base, tablePath, primaryKey);
+    }
+
+    /**
+     * Applies the latest change for each key in the change log of a table to the table as read by the caller.
+     */
+    public Dataset<Row> applyChanges(SparkSession spark, Dataset<Row> base, String tablePath, SourceReference.PrimaryKey primaryKey) {
+        Dataset<Row> latestChanges = latestChanges(storage.get(spark, changeLogPath(tablePath)), primaryKey).drop(CHANGE_SEQUENCE);
+        Dataset<Row> current = latestChanges.where(col(OPERATION).notEqual(lit(Delete.getName())));
+        if (base.columns().length == 0) {
+            // Nothing has been compacted into the curated table yet
+            return current;
+        }
+        return base.as("base")
+                .join(latestChanges.as("changes"), expr(primaryKey.getSparkCondition("base", "changes")), "left_anti")
+                .unionByName(current);
+    }
+
+    @VisibleForTesting
+    void compactAll() {
+        changeLogsByTablePath.forEach(this::compact);
+    }
+
+    @VisibleForTesting
+    void compact(String tablePath, ChangeLog changeLog) {
+        String changeLogPath = changeLogPath(tablePath);
+        long startTime = clock.millis();
+        try {
+            Dataset<Row> changes = storage.get(changeLog.getSpark(), changeLogPath);
+            Row lastChange = changes.agg(max(col(CHANGE_SEQUENCE))).first();
+            if (lastChange.isNullAt(0)) {
+                return;
+            }
+            // Changes appended while compacting have later sequence numbers, so are left for the next compaction
+            Column compacted = col(CHANGE_SEQUENCE).leq(lit(lastChange.getLong(0)));
+            Dataset<Row> latestChanges = latestChanges(changes.where(compacted), changeLog.getPrimaryKey()).drop(CHANGE_SEQUENCE);
+            // Merging the same changes again has no further effect, so a failure before they are deleted from the change
+            // log is put right by the next compaction
+            storage.mergeRecords(
+                    changeLog.getSpark(),
+                    tablePath,
+                    latestChanges,
+                    changeLog.getPrimaryKey(),
+                    changeLog.getLayout()
+            );
+            storage.deleteRecords(changeLog.getSpark(), changeLogPath, compacted);
+            storage.updateDeltaManifestForTable(changeLog.getSpark(), tablePath);
+            logger.info("Compacted change log into {} in {}ms", tablePath, clock.millis() - startTime);
+        } catch (Exception e) {
+            logger.error("Failed to compact change log into {}. It will be compacted again next time", tablePath, e);
+        }
+    }
+
+    private long nextSequence() {
+        // Starting from the time keeps sequence numbers increasing across job runs
+        return lastSequence.updateAndGet(last -> Math.max(last + 1, clock.millis()));
+    }
+
+    private static Dataset<Row> latestChanges(Dataset<Row> changes, SourceReference.PrimaryKey primaryKey) {
+        Column[] keyColumns = primaryKey.getKeyColumnNames().stream().map(functions::col).toArray(Column[]::new);
+        return changes
+                .withColumn(CHANGE_RANK, row_number().over(Window
+                        .partitionBy(keyColumns)
+                        .orderBy(col(TIMESTAMP).desc(), col(CHANGE_SEQUENCE).desc())))
+                .where(col(CHANGE_RANK).equalTo(1))
+                .drop(CHANGE_RANK);
+    }
+
+    @Data
+    @VisibleForTesting
+    static class ChangeLog {
+        private final SparkSession spark;
+        private final SourceReference.PrimaryKey primaryKey;
+        private final SourceReference.TableLayout layout;
+    }
+}
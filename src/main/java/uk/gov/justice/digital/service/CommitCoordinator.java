@@ -0,0 +1,169 @@
+package uk.gov.justice.digital.service;
+
+import dev.failsafe.Failsafe;
+import dev.failsafe.RetryPolicy;
+import dev.failsafe.function.CheckedRunnable;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import lombok.Data;
+import org.apache.spark.sql.SparkSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.justice.digital.config.JobArguments;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Orders the commits this process makes to each Delta table, so that writers in the same driver, e.g. a table's
+ * streaming query, the compaction of its change log and its violations, queue for the table in turn rather than
+ * conflicting and retrying whole merges.
+ * Under Delta's default WriteSerializable isolation a blind append never conflicts with another commit, so appends only
+ * queue for tables with Serializable isolation. Writers in other processes are still only detected by Delta when they
+ * commit, so commits are retried with the retry policy as before.
+ */
+@Singleton
+public class CommitCoordinator {
+
+    private static final Logger logger = LoggerFactory.getLogger(CommitCoordinator.class);
+
+    static final String SERIALIZABLE = "Serializable";
+    // Delta's isolation level for tables which do not set one
+    static final String WRITE_SERIALIZABLE = "WriteSerializable";
+
+    private static final long LOG_EVERY_COMMITS = 100L;
+
+    enum WriteKind {
+        // Adds files without reading the table
+        BLIND_APPEND,
+        // Reads the table to decide which files to add and remove, e.g. a merge, update, delete or compaction
+        READ_MODIFY_WRITE
+    }
+
+    /**
+     * Returns the delta.isolationLevel property of the table, or WriteSerializable if it has no isolation level set, or
+     * null if the table does not exist.
+     */
+    @FunctionalInterface
+    interface IsolationLevelReader {
+        String isolationLevel(SparkSession spark, String tablePath);
+    }
+
+    private final boolean enabled;
+    private final IsolationLevelReader isolationLevelReader;
+    private final Map<String, ReentrantLock> leasesByTablePath = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> serializableByTablePath = new ConcurrentHashMap<>();
+    private final AtomicLong commits = new AtomicLong();
+    private final AtomicLong waits = new AtomicLong();
+    private final AtomicLong waitMillis = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+
+    @Inject
+    public CommitCoordinator(JobArguments arguments, DeltaTableRegistry tableRegistry) {
+        this(arguments, (spark, tablePath) -> {
+            if (!tableRegistry.exists(spark, tablePath)) {
+                return null;
+            }
+            String isolationLevel = DataStorageService.readTableProperty(
+                    spark,
+                    tablePath,
+                    DataStorageService.ISOLATION_LEVEL_PROPERTY
+            );
+            return isolationLevel == null ? WRITE_SERIALIZABLE : isolationLevel;
+        });
+    }
+
+    CommitCoordinator(JobArguments arguments, IsolationLevelReader isolationLevelReader) {
+        this.enabled = arguments.isDataStorageCommitCoordinatorEnabled();
+        this.isolationLevelReader = isolationLevelReader;
+    }
+
+    /**
+     * Runs the write with the retry policy, once any other write to the table from this process which it could
+     * conflict with has finished. The table's lease is held while retrying so that the writers queued behind it keep
+     * their order.
+     */
+    void commit(
+            SparkSession spark,
+            String tablePath,
+            WriteKind kind,
+            RetryPolicy<Void> retryPolicy,
+            CheckedRunnable write) {
+        AtomicInteger attempts = new AtomicInteger();
+        CheckedRunnable countedWrite = () -> {
+            if (attempts.getAndIncrement() > 0) {
+                retries.incrementAndGet();
+            }
+            write.run();
+        };
+        if (!enabled || (kind == WriteKind.BLIND_APPEND && !isSerializable(spark, tablePath))) {
+            Failsafe.with(retryPolicy).run(countedWrite);
+            recordCommit();
+            return;
+        }
+        // A fair lock hands the table to writers in the order they asked for it
+        ReentrantLock lease = leasesByTablePath.computeIfAbsent(tablePath, path -> new ReentrantLock(true));
+        // The timed tryLock respects the lock's fairness, whereas tryLock() would barge ahead of queued writers
+        if (!tryLease(lease, tablePath)) {
+            long startTime = System.currentTimeMillis();
+            waits.incrementAndGet();
+            lease.lock();
+            long waited = System.currentTimeMillis() - startTime;
+            waitMillis.addAndGet(waited);
+            logger.debug("Waited {}ms for the commit lease of {}", waited, tablePath);
+        }
+        try {
+            Failsafe.with(retryPolicy).run(countedWrite);
+        } finally {
+            lease.unlock();
+        }
+        recordCommit();
+    }
+
+    CommitStats getStats() {
+        return new CommitStats(commits.get(), waits.get(), waitMillis.get(), retries.get());
+    }
+
+    private static boolean tryLease(ReentrantLock lease, String tablePath) {
+        try {
+            return lease.tryLock(0, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the commit lease of " + tablePath, e);
+        }
+    }
+
+    private boolean isSerializable(SparkSession spark, String tablePath) {
+        // Isolation levels rarely change, so are only read once per table. A table which does not exist yet is read
+        // again on its next append, since it may be created with Serializable isolation
+        Boolean serializable = serializableByTablePath.get(tablePath);
+        if (serializable != null) {
+            return serializable;
+        }
+        String isolationLevel = isolationLevelReader.isolationLevel(spark, tablePath);
+        if (isolationLevel == null) {
+            return false;
+        }
+        serializable = SERIALIZABLE.equalsIgnoreCase(isolationLevel);
+        serializableByTablePath.put(tablePath, serializable);
+        return serializable;
+    }
+
+    private void recordCommit() {
+        if (commits.incrementAndGet() % LOG_EVERY_COMMITS == 0) {
+            logger.info("Commit stats: {}", getStats());
+        }
+    }
+
+    @Data
+    public static class CommitStats {
+        private final long commits;
+        private final long waits;
+        private final long waitMillis;
+        private final long retries;
+    }
+}
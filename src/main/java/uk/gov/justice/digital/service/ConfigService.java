@@ -1,8 +1,10 @@
 package uk.gov.justice.digital.service;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import uk.gov.justice.digital.client.s3.S3ConfigReaderClient;
+import uk.gov.justice.digital.datahub.model.SchedulingPriority;
 import uk.gov.justice.digital.exception.ConfigServiceException;
 
 import javax.inject.Inject;
@@ -24,6 +26,14 @@ public class ConfigService {
         return configuredTables;
     }
 
+    public ImmutableMap<ImmutablePair<String, String>, SchedulingPriority> getTablePriorities(String configKey) {
+        return configClient.getTablePriorities(configKey);
+    }
+
+    public ImmutableSet<ImmutablePair<String, String>> getMergeOnReadTables(String configKey) {
+        return configClient.getMergeOnReadTables(configKey);
+    }
+
     public ImmutableSet<String> getConfiguredTablePaths(String configKey) {
         return ImmutableSet.copyOf(getConfiguredTables(configKey)
                 .stream()
@@ -6,9 +6,8 @@ import dev.failsafe.function.CheckedRunnable;
 import io.delta.tables.DeltaTable;
 import jakarta.inject.Inject;
 import lombok.val;
-import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
-import org.apache.hadoop.fs.Path;
+import org.apache.spark.sql.Column;
 import org.apache.spark.sql.Dataset;
 import org.apache.spark.sql.Row;
 import org.apache.spark.sql.SaveMode;
@@ -29,20 +28,26 @@ import javax.inject.Singleton;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.ArrayList;
+import java.time.Clock;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static java.lang.String.format;
+import static org.apache.spark.sql.functions.expr;
 import static uk.gov.justice.digital.common.CommonDataFields.OPERATION;
 import static uk.gov.justice.digital.common.CommonDataFields.ShortOperationCode.Delete;
 import static uk.gov.justice.digital.common.CommonDataFields.ShortOperationCode.Insert;
 import static uk.gov.justice.digital.common.CommonDataFields.ShortOperationCode.Update;
 import static uk.gov.justice.digital.common.retry.RetryPolicyBuilder.buildRetryPolicy;
+import static uk.gov.justice.digital.service.CommitCoordinator.WriteKind.BLIND_APPEND;
+import static uk.gov.justice.digital.service.CommitCoordinator.WriteKind.READ_MODIFY_WRITE;
 
 @Singleton
 public class DataStorageService {
@@ -50,24 +55,83 @@ public class DataStorageService {
     private static final String SOURCE = "source";
     private static final String TARGET = "target";
     private static final Logger logger = LoggerFactory.getLogger(DataStorageService.class);
+    private static final String INCREMENTAL_MANIFEST_PROPERTY = "delta.compatibility.symlinkFormatManifest.enabled";
+    static final String ISOLATION_LEVEL_PROPERTY = "delta.isolationLevel";
+    // The columns compaction Z-orders the table by, recorded from the table's layout when it is written
+    private static final String Z_ORDER_COLUMNS_PROPERTY = "dpr.layout.zOrderColumns";
+    private static final String WRITE_OPERATION = "WRITE";
+    private static final String MERGE_OPERATION = "MERGE";
+    private static final String DELETE_OPERATION = "DELETE";
 
     // Retry policy used on operations that are at risk of concurrent modification exceptions
     private final RetryPolicy<Void> retryPolicy;
+    private final MergePlanner mergePlanner;
+    private final LoadPlanner loadPlanner;
+    private final ManifestManager manifestManager;
+    private final ManifestManager.ManifestWriter manifestWriter = new ManifestManager.ManifestWriter() {
+        @Override
+        public void generateManifest(SparkSession spark, String tablePath) {
+            DataStorageService.this.generateManifest(spark, tablePath);
+        }
+
+        @Override
+        public void enableIncrementalManifestUpdates(SparkSession spark, String tablePath) {
+            DataStorageService.this.enableIncrementalManifestUpdates(spark, tablePath);
+        }
+    };
+    private final DeltaTableRegistry tableRegistry;
+    private final CommitCoordinator commitCoordinator;
+    private final int listTableParallelism;
+    private final boolean writeStatsEnabled;
+    private volatile Consumer<WriteStats> writeStatsListener = stats -> { };
+    private final Set<String> zOrderRecordedTablePaths = ConcurrentHashMap.newKeySet();
 
     private final String insertMatchCondition = createMatchExpression(Insert);
     private final String updateMatchCondition = createMatchExpression(Update);
     private final String deleteMatchCondition = createMatchExpression(Delete);
     private final String notDeleteMatchCondition = String.format("%s.%s<>'%s'", TARGET, OPERATION, Delete.getName());
 
-    @Inject
     public DataStorageService(JobArguments jobArguments) {
+        this(jobArguments, new DeltaTableRegistry(jobArguments));
+    }
+
+    private DataStorageService(JobArguments jobArguments, DeltaTableRegistry tableRegistry) {
+        this(
+                jobArguments,
+                new MergePlanner(jobArguments),
+                new LoadPlanner(jobArguments),
+                new ManifestManager(jobArguments, Clock.systemUTC()),
+                tableRegistry,
+                new CommitCoordinator(jobArguments, tableRegistry)
+        );
+    }
+
+    @Inject
+    public DataStorageService(
+            JobArguments jobArguments,
+            MergePlanner mergePlanner,
+            LoadPlanner loadPlanner,
+            ManifestManager manifestManager,
+            DeltaTableRegistry tableRegistry,
+            CommitCoordinator commitCoordinator) {
         RetryConfig retryConfig = new RetryConfig(jobArguments);
         this.retryPolicy = buildRetryPolicy(retryConfig, DeltaConcurrentModificationException.class);
+        this.mergePlanner = mergePlanner;
+        this.loadPlanner = loadPlanner;
+        this.manifestManager = manifestManager;
+        this.tableRegistry = tableRegistry;
+        this.commitCoordinator = commitCoordinator;
+        this.listTableParallelism = jobArguments.getMaintenanceListTableParallelism();
+        this.writeStatsEnabled = jobArguments.isDataStorageWriteStatsEnabled();
     }
 
     public boolean exists(SparkSession spark, TableIdentifier tableId) {
-        val exists = DeltaTable.isDeltaTable(spark, tableId.toPath());
-        logger.info("Delta table path {} {}", tableId.toPath(), (exists) ? "exists" : "does not exist");
+        return exists(spark, tableId.toPath());
+    }
+
+    public boolean exists(SparkSession spark, String tablePath) {
+        val exists = tableRegistry.exists(spark, tablePath);
+        logger.info("Delta table path {} {}", tablePath, (exists) ? "exists" : "does not exist");
         return exists;
     }
 
@@ -83,64 +147,138 @@ public class DataStorageService {
         return hasRecords;
     }
 
-    public void append(@NotNull String tablePath, @NotNull Dataset<Row> df) throws DataStorageRetriesExhaustedException {
+    public Optional<WriteStats> append(@NotNull String tablePath, @NotNull Dataset<Row> df) throws DataStorageRetriesExhaustedException {
         logger.debug("Appending schema and data to " + tablePath);
-        doWithRetryOnConcurrentModification(() ->
+        doWithRetryOnConcurrentModification(df.sparkSession(), tablePath, BLIND_APPEND, () ->
                 df.write()
                         .format("delta")
                         .mode("append")
                         .option("path", tablePath)
                         .save()
         );
+        return harvestWriteStats(df.sparkSession(), tablePath, WRITE_OPERATION);
     }
 
-    public void appendDistinct(@NotNull String tablePath, @NotNull Dataset<Row> df, @NotNull SourceReference.PrimaryKey primaryKey) throws DataStorageRetriesExhaustedException {
+    public Optional<WriteStats> appendDistinct(@NotNull String tablePath, @NotNull Dataset<Row> df, @NotNull SourceReference.PrimaryKey primaryKey) throws DataStorageRetriesExhaustedException {
+        return appendDistinct(tablePath, df, primaryKey, SourceReference.TableLayout.NONE);
+    }
+
+    /**
+     * Appends the records whose keys are not in the table, laying out the files which are written directly according
+     * to the table's layout. Records which are merged in are written wherever the merge puts them, which includes a
+     * batch whose keys the load planner found are not in the table.
+     */
+    public Optional<WriteStats> appendDistinct(
+            @NotNull String tablePath,
+            @NotNull Dataset<Row> df,
+            @NotNull SourceReference.PrimaryKey primaryKey,
+            SourceReference.TableLayout layout) throws DataStorageRetriesExhaustedException {
         if(!df.isEmpty()) {
             val dt = getTable(df.sparkSession(), tablePath);
-            if(dt.isPresent()) {
-                val condition = primaryKey.getSparkCondition(SOURCE, TARGET);
-                doWithRetryOnConcurrentModification(() ->
-                        dt.get().as(SOURCE)
-                                .merge(df.as(TARGET), condition)
-                                .whenNotMatched().insertAll()
-                                .execute()
-                );
-            } else {
-                append(tablePath, df);
+            switch (loadPlanner.plan(df.sparkSession(), tablePath, dt, df, primaryKey)) {
+                case DIRECT_WRITE:
+                    return appendWithLayout(tablePath, df, primaryKey, layout);
+                case DISJOINT_APPEND:
+                    // A blind append is never checked for conflicts, so another writer could commit the same keys
+                    // after they were checked. An insert-only merge fails instead, and narrowed to the batch's keys it
+                    // only reads the files which could hold them
+                    logger.info("Inserting records whose keys are not in {}", tablePath);
+                    val plan = mergePlanner.plan(df, primaryKey, SOURCE, TARGET);
+                    return insertNotMatched(df.sparkSession(), tablePath, dt.get(), plan.getBatch(), plan.getCondition(), primaryKey, layout);
+                default:
+                    val condition = expr(primaryKey.getSparkCondition(SOURCE, TARGET));
+                    return insertNotMatched(df.sparkSession(), tablePath, dt.get(), df, condition, primaryKey, layout);
             }
         }
+        return Optional.empty();
+    }
+
+    private Optional<WriteStats> insertNotMatched(
+            SparkSession spark,
+            String tablePath,
+            DeltaTable dt,
+            Dataset<Row> df,
+            Column condition,
+            SourceReference.PrimaryKey primaryKey,
+            SourceReference.TableLayout layout) throws DataStorageRetriesExhaustedException {
+        doWithRetryOnConcurrentModification(spark, tablePath, READ_MODIFY_WRITE, () ->
+                dt.as(SOURCE)
+                        .merge(df.as(TARGET), condition)
+                        .whenNotMatched().insertAll()
+                        .execute()
+        );
+        val writeStats = harvestWriteStats(spark, tablePath, MERGE_OPERATION);
+        recordZOrderColumns(spark, tablePath, primaryKey, layout);
+        return writeStats;
     }
 
-    public void mergeRecords(
+    public Optional<WriteStats> mergeRecords(
             SparkSession spark,
             String tablePath,
             Dataset<Row> dataFrame,
             SourceReference.PrimaryKey primaryKey) throws DataStorageRetriesExhaustedException {
-        val dt = DeltaTable
+        return mergeRecords(spark, tablePath, dataFrame, primaryKey, SourceReference.TableLayout.NONE);
+    }
+
+    /**
+     * Merges the records into the table. A batch of new records is appended with the table's layout, and a table whose
+     * layout Z-orders it on compaction has its key columns recorded for compaction to use.
+     */
+    public Optional<WriteStats> mergeRecords(
+            SparkSession spark,
+            String tablePath,
+            Dataset<Row> dataFrame,
+            SourceReference.PrimaryKey primaryKey,
+            SourceReference.TableLayout layout) throws DataStorageRetriesExhaustedException {
+        val dt = tableRegistry.getOrCreate(tablePath, () -> DeltaTable
                 .createIfNotExists(spark)
                 .addColumns(dataFrame.schema())
                 .location(tablePath)
-                .execute();
+                .execute()
+        );
 
+        val plan = mergePlanner.plan(dataFrame, primaryKey, SOURCE, TARGET);
         val expression = createMergeExpression(dataFrame, Collections.emptyList());
-        val condition = primaryKey.getSparkCondition(SOURCE, TARGET);
-        logger.info("Upsert records from {} using condition: {}", tablePath, condition);
-        doWithRetryOnConcurrentModification(() ->
+        doWithRetryOnConcurrentModification(spark, tablePath, READ_MODIFY_WRITE, () -> {
+            // Checked on every attempt, before anything is committed, since a writer which committed in the meantime
+            // may have added some of the keys. Only a batch which cannot share keys with the table skips the full merge
+            if (plan.getBatchType() == MergePlanner.BatchType.INSERTS && !LoadPlanner.mayShareKeys(dt.toDF(), plan.getBatch(), primaryKey)) {
+                // An insert-only merge adds the records without rewriting any files. It is committed like any other
+                // merge, so a concurrent write of the same keys fails it rather than duplicating them
+                logger.info("Inserting new records into {} using condition: {}", tablePath, plan.getCondition());
                 dt.as(SOURCE)
-                        .merge(dataFrame.as(TARGET), condition)
-                        // Multiple whenMatched clauses are evaluated in the order they are specified.
-                        // As such the Delete needs to be specified after the update
-                        .whenMatched(insertMatchCondition)
-                        .updateExpr(expression)
-                        .whenMatched(updateMatchCondition)
-                        .updateExpr(expression)
-                        .whenMatched(deleteMatchCondition)
-                        .delete()
-                        // If the PKs don't match then insert anything that isn't a delete
+                        .merge(plan.getBatch().as(TARGET), plan.getCondition())
                         .whenNotMatched(notDeleteMatchCondition)
                         .insertExpr(expression)
-                        .execute()
-        );
+                        .execute();
+                return;
+            }
+            logger.info("Upsert records from {} using condition: {}", tablePath, plan.getCondition());
+            dt.as(SOURCE)
+                    .merge(plan.getBatch().as(TARGET), plan.getCondition())
+                    // Multiple whenMatched clauses are evaluated in the order they are specified.
+                    // As such the Delete needs to be specified after the update
+                    .whenMatched(insertMatchCondition)
+                    .updateExpr(expression)
+                    .whenMatched(updateMatchCondition)
+                    .updateExpr(expression)
+                    .whenMatched(deleteMatchCondition)
+                    .delete()
+                    // If the PKs don't match then insert anything that isn't a delete
+                    .whenNotMatched(notDeleteMatchCondition)
+                    .insertExpr(expression)
+                    .execute();
+        });
+        // The merge metrics and the write stats come from the same commit, which is only read once
+        Optional<Row> lastCommit = mergePlanner.isPruningEnabled() || writeStatsEnabled ?
+                readLastCommit(spark, tablePath, MERGE_OPERATION) :
+                Optional.empty();
+        if (mergePlanner.isPruningEnabled()) {
+            lastCommit.ifPresent(commit -> logMergeMetrics(tablePath, commit, plan.isBatchBroadcast()));
+        }
+        val writeStats = harvestWriteStats(tablePath, lastCommit);
+        recordZOrderColumns(spark, tablePath, primaryKey, layout);
+        return writeStats;
     }
 
     public void updateRecords(
@@ -154,13 +292,14 @@ public class DataStorageService {
             if (dt.isPresent()) {
                 val condition = primaryKey.getSparkCondition(SOURCE, TARGET);
                 logger.debug("Updating records from {} using condition: {}", tablePath, condition);
-                doWithRetryOnConcurrentModification(() ->
+                doWithRetryOnConcurrentModification(spark, tablePath, READ_MODIFY_WRITE, () ->
                         dt.get().as(SOURCE)
                                 .merge(dataFrame.as(TARGET), condition)
                                 .whenMatched()
                                 .updateAll()
                                 .execute()
                 );
+                harvestWriteStats(spark, tablePath, MERGE_OPERATION);
             } else {
                 logger.error("Failed to update table {}. Delta table is not present", tablePath);
             }
@@ -175,29 +314,35 @@ public class DataStorageService {
 
     public void create(@NotNull String tablePath, @NotNull Dataset<Row> df) {
         logger.info("Inserting schema and data to " + tablePath);
+        tableRegistry.invalidate(tablePath);
         df.write()
                 .format("delta")
                 .option("path", tablePath)
                 .save();
+        harvestWriteStats(df.sparkSession(), tablePath, WRITE_OPERATION);
     }
 
     public void replace(@NotNull String tablePath, @NotNull Dataset<Row> df) {
         logger.info("Overwriting schema and data to " + tablePath);
+        tableRegistry.invalidate(tablePath);
         df.write()
                 .format("delta")
                 .mode("overwrite")
                 .option("overwriteSchema", true)
                 .option("path", tablePath)
                 .save();
+        harvestWriteStats(df.sparkSession(), tablePath, WRITE_OPERATION);
     }
 
     public void resync(@NotNull String tablePath, @NotNull Dataset<Row> df) {
         logger.info("Syncing data to " + tablePath);
+        tableRegistry.invalidate(tablePath);
         df.write()
                 .format("delta")
                 .mode("overwrite")
                 .option("path", tablePath)
                 .save();
+        harvestWriteStats(df.sparkSession(), tablePath, WRITE_OPERATION);
     }
 
     public void delete(SparkSession spark, TableIdentifier tableId) throws DataStorageException {
@@ -206,6 +351,18 @@ public class DataStorageService {
         getTable(spark, tableId.toPath())
                 .orElseThrow(() -> new DataStorageException("Failed to delete table. Table does not exist"))
                 .delete();
+        tableRegistry.invalidate(tableId.toPath());
+    }
+
+    public void deleteRecords(SparkSession spark, String tablePath, Column condition) throws DataStorageRetriesExhaustedException {
+        logger.info("Deleting records from {} where {}", tablePath, condition);
+        val dt = getTable(spark, tablePath);
+        if (dt.isPresent()) {
+            doWithRetryOnConcurrentModification(spark, tablePath, READ_MODIFY_WRITE, () -> dt.get().delete(condition));
+            harvestWriteStats(spark, tablePath, DELETE_OPERATION);
+        } else {
+            logger.warn("Unable to delete records from table: {} Not a delta table", tablePath);
+        }
     }
 
     public void vacuum(SparkSession spark, TableIdentifier tableId) throws DataStorageException {
@@ -239,13 +396,29 @@ public class DataStorageService {
         return getTable(spark, tablePath).map(DeltaTable::toDF).orElse(spark.emptyDataFrame());
     }
 
+    /**
+     * Returns the table as it was at the given version.
+     */
+    public Dataset<Row> get(SparkSession spark, String tablePath, long version) {
+        return spark.read()
+                .format("delta")
+                .option("versionAsOf", version)
+                .load(tablePath);
+    }
+
+    /**
+     * Returns the version of the table's latest commit, or empty if the table does not exist.
+     */
+    public Optional<Long> getLatestVersion(SparkSession spark, String tablePath) {
+        return getTable(spark, tablePath).map(dt -> dt.history(1).select("version").first().getLong(0));
+    }
+
     protected Optional<DeltaTable> getTable(SparkSession spark, String tablePath) {
-        if (DeltaTable.isDeltaTable(spark, tablePath))
-            return Optional.of(DeltaTable.forPath(spark, tablePath));
-        else {
+        val table = tableRegistry.getTable(spark, tablePath);
+        if (!table.isPresent()) {
             logger.warn("No valid table found for path: {} - Not a delta table", tablePath);
-            return Optional.empty();
         }
+        return table;
     }
 
     public void endTableUpdates(SparkSession spark, TableIdentifier tableId) {
@@ -260,7 +433,29 @@ public class DataStorageService {
         dt.generate("symlink_format_manifest");
     }
 
+    /**
+     * Updates the manifest for the table at the given tablePath according to the configured manifest update policy.
+     */
     public void updateDeltaManifestForTable(SparkSession spark, String tablePath) {
+        manifestManager.requestUpdate(spark, tablePath, manifestWriter);
+    }
+
+    /**
+     * Defers manifest updates until they are due, for the debounced and background manifest update policies, until
+     * stopDeferredManifestUpdates is called.
+     */
+    public void startDeferredManifestUpdates() {
+        manifestManager.start();
+    }
+
+    /**
+     * Makes any deferred manifest updates which are still pending and goes back to updating manifests immediately.
+     */
+    public void stopDeferredManifestUpdates() {
+        manifestManager.stop();
+    }
+
+    void generateManifest(SparkSession spark, String tablePath) {
         logger.info("Updating manifest for table: {}", tablePath);
 
         val deltaTable = getTable(spark, tablePath);
@@ -269,6 +464,29 @@ public class DataStorageService {
         else logger.warn("Unable to update manifest for table: {} Not a delta table", tablePath);
     }
 
+    /**
+     * Has Delta keep the table's manifest up to date as part of each commit, rewriting only the manifests for the
+     * partitions changed by the commit, and generates a full manifest once so that it starts out up to date.
+     */
+    void enableIncrementalManifestUpdates(SparkSession spark, String tablePath) throws DataStorageRetriesExhaustedException {
+        if (!tableRegistry.exists(spark, tablePath)) {
+            logger.warn("Unable to enable incremental manifest updates for table: {} Not a delta table", tablePath);
+            return;
+        }
+        val enabled = spark.sql(format("DESCRIBE DETAIL delta.`%s`", tablePath))
+                .select("properties")
+                .first()
+                .<String, String>getJavaMap(0)
+                .get(INCREMENTAL_MANIFEST_PROPERTY);
+        if (!"true".equalsIgnoreCase(enabled)) {
+            logger.info("Enabling incremental manifest updates for table: {}", tablePath);
+            doWithRetryOnConcurrentModification(spark, tablePath, READ_MODIFY_WRITE, () ->
+                    spark.sql(format("ALTER TABLE delta.`%s` SET TBLPROPERTIES('%s' = 'true')", tablePath, INCREMENTAL_MANIFEST_PROPERTY))
+            );
+        }
+        generateManifest(spark, tablePath);
+    }
+
     /**
      * Runs a delta lake compaction on the Delta table at the given tablePath
      */
@@ -279,7 +497,13 @@ public class DataStorageService {
 
         if (optionalDeltaTable.isPresent()) {
             val deltaTable = optionalDeltaTable.get();
-            doWithRetryOnConcurrentModification(() -> deltaTable.optimize().executeCompaction());
+            val zOrderColumns = readZOrderColumns(spark, tablePath);
+            if (zOrderColumns.isPresent()) {
+                logger.info("Z-ordering table at path: {} by {}", tablePath, String.join(", ", zOrderColumns.get()));
+                doWithRetryOnConcurrentModification(spark, tablePath, READ_MODIFY_WRITE, () -> deltaTable.optimize().executeZOrderBy(zOrderColumns.get()));
+            } else {
+                doWithRetryOnConcurrentModification(spark, tablePath, READ_MODIFY_WRITE, () -> deltaTable.optimize().executeCompaction());
+            }
             updateManifest(deltaTable);
             logger.info("Finished compacting table at path: {}", tablePath);
         } else {
@@ -296,9 +520,16 @@ public class DataStorageService {
         logger.info("Listing all delta table paths within recurse depth: {} below: {}", depthLimit, rootPath);
         try {
             val fs = FileSystem.get(new URI(rootPath), spark.sparkContext().hadoopConfiguration());
-            List<String> deltaTablePathAccumulator = new ArrayList<>();
-            collectDeltaTablePaths(spark, fs, rootPath, depthLimit, deltaTablePathAccumulator);
-            return deltaTablePathAccumulator;
+            val listing = new DeltaTableWalker(fs, listTableParallelism).walk(rootPath, depthLimit);
+            logger.info("Listed {} directories below {} in {}ms ({} directories/s) and found {} delta tables",
+                    listing.getDirectoriesListed(),
+                    rootPath,
+                    listing.getElapsedMillis(),
+                    format("%.1f", listing.getDirectoriesListedPerSecond()),
+                    listing.getTablePaths().size()
+            );
+            tableRegistry.registerExisting(listing.getTablePaths());
+            return listing.getTablePaths();
         } catch (URISyntaxException e) {
             val errorMessage = format("Badly formatted root path when listing delta tables: %s", rootPath);
             logger.error(errorMessage);
@@ -311,37 +542,70 @@ public class DataStorageService {
     }
 
     /**
-     * Helper to recurse all delta table paths depth-first to given depth.
-     * Uses an accumulator rather than keeping intermediate results on the stack.
+     * Receives the stats of every write while dpr.datastorage.writeStats.enabled is set.
+     */
+    public void setWriteStatsListener(Consumer<WriteStats> writeStatsListener) {
+        this.writeStatsListener = writeStatsListener;
+    }
+
+    private Optional<WriteStats> harvestWriteStats(SparkSession spark, String tablePath, String operation) {
+        return writeStatsEnabled ? harvestWriteStats(tablePath, readLastCommit(spark, tablePath, operation)) : Optional.empty();
+    }
+
+    private Optional<WriteStats> harvestWriteStats(String tablePath, Optional<Row> lastCommit) {
+        if (!writeStatsEnabled || !lastCommit.isPresent()) {
+            return Optional.empty();
+        }
+        try {
+            WriteStats stats = WriteStats.fromCommit(tablePath, lastCommit.get());
+            writeStatsListener.accept(stats);
+            return Optional.of(stats);
+        } catch (Exception e) {
+            // The stats are for information only so must not fail the write
+            logger.warn("Unable to read write stats for {}", tablePath, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Reads the table's latest commit, with the version, timestamp, operation and operationMetrics columns, as long as
+     * it is the given operation rather than a commit another writer has made since.
      */
-    private void collectDeltaTablePaths(SparkSession spark, FileSystem fs, String rootPath, int depthLimit, List<String> accumulator) throws IOException {
-        logger.debug("Listing all delta table paths within recurse depth: {} below: {}", depthLimit, rootPath);
-        val path = new Path(rootPath);
-
-        Map<Boolean, List<String>> deltaTablesAndOtherDirs = (depthLimit == 0) ?
-                Collections.singletonMap(true, Collections.singletonList(rootPath)) :
-                Arrays.stream(fs.listStatus(path))
-                        .filter(FileStatus::isDirectory)
-                        .map(FileStatus::getPath)
-                        .map(Path::toUri)
-                        .map(URI::toString)
-                        .collect(Collectors.partitioningBy(tablePath -> DeltaTable.isDeltaTable(spark, tablePath)));
-
-        val deltaTables = deltaTablesAndOtherDirs.get(true);
-        accumulator.addAll(deltaTables);
-        logger.debug("Found {} delta tables under {}", deltaTables.size(), rootPath);
-
-        if(depthLimit > 1) {
-            // We can keep recursing so let's look in all the directories at this level
-            val otherDirs = deltaTablesAndOtherDirs.get(false);
-            logger.debug("Found {} directories that are not delta tables to recurse under {}", otherDirs.size(), rootPath);
-            for(String dir: otherDirs) {
-                collectDeltaTablePaths(spark, fs, dir, depthLimit - 1, accumulator);
+    private Optional<Row> readLastCommit(SparkSession spark, String tablePath, String operation) {
+        try {
+            Row lastCommit = tableRegistry.getTable(spark, tablePath)
+                    .orElseThrow(() -> new DataStorageException("Table does not exist"))
+                    .history(1)
+                    .select("version", "timestamp", "operation", "operationMetrics")
+                    .first();
+            if (!operation.equals(lastCommit.getString(2))) {
+                logger.debug("Skipping the commit metrics for {} since another writer has committed since the {}", tablePath, operation);
+                return Optional.empty();
             }
-        } else {
-            logger.debug("Reached depth limit. Skipping recursing non-delta table directories under path {}", rootPath);
+            return Optional.of(lastCommit);
+        } catch (Exception e) {
+            // The commit's metrics are for information only so must not fail the write
+            logger.warn("Unable to read the latest commit for {}", tablePath, e);
+            return Optional.empty();
         }
+    }
 
+    private void logMergeMetrics(String tablePath, Row lastCommit, boolean batchBroadcast) {
+        try {
+            Map<String, String> metrics = lastCommit.getJavaMap(3);
+            logger.info("Merge into {} scanned {} of {} files and {} of {} bytes, rewrote {} files and {} bytes. Batch broadcast: {}",
+                    tablePath,
+                    metrics.get("numTargetFilesAfterSkipping"),
+                    metrics.get("numTargetFilesBeforeSkipping"),
+                    metrics.get("numTargetBytesAfterSkipping"),
+                    metrics.get("numTargetBytesBeforeSkipping"),
+                    metrics.get("numTargetFilesRemoved"),
+                    metrics.get("numTargetBytesRemoved"),
+                    batchBroadcast);
+        } catch (Exception e) {
+            // The metrics are for information only so must not fail the merge
+            logger.warn("Unable to read merge metrics for {}", tablePath, e);
+        }
     }
 
     private void doWithRetryOnConcurrentModification(CheckedRunnable runnable) throws DataStorageRetriesExhaustedException {
@@ -352,6 +616,75 @@ public class DataStorageService {
         }
     }
 
+    private void doWithRetryOnConcurrentModification(
+            SparkSession spark,
+            String tablePath,
+            CommitCoordinator.WriteKind kind,
+            CheckedRunnable runnable) throws DataStorageRetriesExhaustedException {
+        try {
+            commitCoordinator.commit(spark, tablePath, kind, retryPolicy, runnable);
+        } catch (DeltaConcurrentModificationException e) {
+            throw new DataStorageRetriesExhaustedException(e);
+        }
+    }
+
+    private Optional<WriteStats> appendWithLayout(
+            String tablePath,
+            Dataset<Row> df,
+            SourceReference.PrimaryKey primaryKey,
+            SourceReference.TableLayout layout) throws DataStorageRetriesExhaustedException {
+        val writeStats = append(tablePath, layout == null ? df : layout.apply(df, primaryKey));
+        recordZOrderColumns(df.sparkSession(), tablePath, primaryKey, layout);
+        return writeStats;
+    }
+
+    /**
+     * Records the key columns on a table whose layout Z-orders it on compaction. Checked once per table per run.
+     */
+    private void recordZOrderColumns(
+            SparkSession spark,
+            String tablePath,
+            SourceReference.PrimaryKey primaryKey,
+            SourceReference.TableLayout layout) throws DataStorageRetriesExhaustedException {
+        if (layout == null || !layout.isZOrderOnCompaction() || !zOrderRecordedTablePaths.add(tablePath)) {
+            return;
+        }
+        val zOrderColumns = String.join(",", primaryKey.getKeyColumnNames());
+        if (!zOrderColumns.equals(readTableProperty(spark, tablePath, Z_ORDER_COLUMNS_PROPERTY))) {
+            logger.info("Recording Z-order columns {} for table: {}", zOrderColumns, tablePath);
+            doWithRetryOnConcurrentModification(spark, tablePath, READ_MODIFY_WRITE, () ->
+                    spark.sql(format("ALTER TABLE delta.`%s` SET TBLPROPERTIES('%s' = '%s')", tablePath, Z_ORDER_COLUMNS_PROPERTY, zOrderColumns))
+            );
+        }
+    }
+
+    private Optional<String[]> readZOrderColumns(SparkSession spark, String tablePath) {
+        try {
+            return Optional.ofNullable(readTableProperty(spark, tablePath, Z_ORDER_COLUMNS_PROPERTY))
+                    .filter(columns -> !columns.isEmpty())
+                    .map(columns -> columns.split(","));
+        } catch (Exception e) {
+            // Compacting without Z-ordering still leaves the table correct
+            logger.warn("Unable to read Z-order columns for {}", tablePath, e);
+            return Optional.empty();
+        }
+    }
+
+    static String readTableProperty(SparkSession spark, String tablePath, String property) {
+        return spark.sql(format("DESCRIBE DETAIL delta.`%s`", tablePath))
+                .select("properties")
+                .first()
+                .<String, String>getJavaMap(0)
+                .get(property);
+    }
+
+    static long readNumFiles(SparkSession spark, String tablePath) {
+        return spark.sql(format("DESCRIBE DETAIL delta.`%s`", tablePath))
+                .select("numFiles")
+                .first()
+                .getLong(0);
+    }
+
     @NotNull
     private static Map<String, String> createMergeExpression(Dataset<Row> dataFrame, List<String> columnsToExclude) {
         return Arrays
@@ -0,0 +1,145 @@
+package uk.gov.justice.digital.service;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.delta.tables.DeltaTable;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.apache.spark.sql.SparkSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.justice.digital.config.JobArguments;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Caches DeltaTable handles and the paths known to be Delta tables, so that each table's _delta_log is only looked up
+ * once rather than on every existence check or table lookup.
+ * Only tables which exist are cached because another job can create a table at any time. Handles are dropped when a
+ * table is created, replaced or deleted by this service, since its schema or existence may then have changed, and
+ * expire after dpr.datastorage.tableRegistry.ttlSeconds so that tables deleted or recreated by other jobs are looked up
+ * again. A handle always reads the table's latest version so does not need refreshing after other writes.
+ */
+@Singleton
+public class DeltaTableRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeltaTableRegistry.class);
+
+    private static final long LOG_EVERY_LOOKUPS = 1000L;
+
+    private final boolean enabled;
+    private final Cache<String, DeltaTable> tablesByPath;
+    private final Cache<String, Boolean> existingTablePaths;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    @Inject
+    public DeltaTableRegistry(JobArguments arguments) {
+        this(arguments, Ticker.systemTicker());
+    }
+
+    @VisibleForTesting
+    DeltaTableRegistry(JobArguments arguments, Ticker ticker) {
+        this.enabled = arguments.isDataStorageTableRegistryEnabled();
+        long ttlSeconds = enabled ? arguments.getDataStorageTableRegistryTtlSeconds() : 0L;
+        this.tablesByPath = CacheBuilder.newBuilder()
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .ticker(ticker)
+                .build();
+        this.existingTablePaths = CacheBuilder.newBuilder()
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .ticker(ticker)
+                .build();
+    }
+
+    public boolean exists(SparkSession spark, String tablePath) {
+        if (!enabled) {
+            return DeltaTable.isDeltaTable(spark, tablePath);
+        }
+        if (existingTablePaths.getIfPresent(tablePath) != null) {
+            recordLookup(true);
+            return true;
+        }
+        recordLookup(false);
+        boolean exists = DeltaTable.isDeltaTable(spark, tablePath);
+        if (exists) {
+            existingTablePaths.put(tablePath, Boolean.TRUE);
+        }
+        return exists;
+    }
+
+    public Optional<DeltaTable> getTable(SparkSession spark, String tablePath) {
+        if (!enabled) {
+            return DeltaTable.isDeltaTable(spark, tablePath) ?
+                    Optional.of(DeltaTable.forPath(spark, tablePath)) :
+                    Optional.empty();
+        }
+        DeltaTable cached = tablesByPath.getIfPresent(tablePath);
+        if (cached != null) {
+            recordLookup(true);
+            return Optional.of(cached);
+        }
+        if (!exists(spark, tablePath)) {
+            return Optional.empty();
+        }
+        DeltaTable table = DeltaTable.forPath(spark, tablePath);
+        tablesByPath.put(tablePath, table);
+        return Optional.of(table);
+    }
+
+    /**
+     * Returns the cached handle for the table, or registers the handle created by the given supplier, which must create
+     * the table if it does not exist.
+     */
+    public DeltaTable getOrCreate(String tablePath, Supplier<DeltaTable> create) {
+        if (!enabled) {
+            return create.get();
+        }
+        DeltaTable cached = tablesByPath.getIfPresent(tablePath);
+        if (cached != null) {
+            recordLookup(true);
+            return cached;
+        }
+        recordLookup(false);
+        DeltaTable table = create.get();
+        tablesByPath.put(tablePath, table);
+        existingTablePaths.put(tablePath, Boolean.TRUE);
+        return table;
+    }
+
+    /**
+     * Records paths which have been found to be Delta tables by other means, such as listing a directory tree.
+     */
+    public void registerExisting(Collection<String> tablePaths) {
+        if (enabled) {
+            tablePaths.forEach(tablePath -> existingTablePaths.put(tablePath, Boolean.TRUE));
+        }
+    }
+
+    public void invalidate(String tablePath) {
+        tablesByPath.invalidate(tablePath);
+        existingTablePaths.invalidate(tablePath);
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private void recordLookup(boolean hit) {
+        long lookups = hit ? hits.incrementAndGet() + misses.get() : hits.get() + misses.incrementAndGet();
+        if (lookups % LOG_EVERY_LOOKUPS == 0) {
+            logger.info("Delta table registry has had {} hits and {} misses for {} tables",
+                    hits.get(), misses.get(), existingTablePaths.size());
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package uk.gov.justice.digital.service;
+
+import lombok.Data;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Walks a directory tree for Delta tables, listing the directories at each level concurrently on a bounded pool.
+ * A directory is a Delta table when its own listing has a _delta_log directory, so each directory is only listed once
+ * and needs no further request to check whether it is a table.
+ */
+class DeltaTableWalker {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeltaTableWalker.class);
+
+    static final String DELTA_LOG_DIRECTORY = "_delta_log";
+
+    private final FileSystem fs;
+    private final int parallelism;
+    private final AtomicLong directoriesListed = new AtomicLong();
+
+    DeltaTableWalker(FileSystem fs, int parallelism) {
+        this.fs = fs;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Lists the Delta table paths below rootPath to the given depth, in the order they would be found depth-first.
+     */
+    ListingResult walk(String rootPath, int depthLimit) throws IOException {
+        long startTime = System.currentTimeMillis();
+        if (depthLimit == 0) {
+            return new ListingResult(Collections.singletonList(rootPath), 0L, 0L);
+        }
+        // The root is listed on the calling thread so that a missing root fails the listing straight away
+        List<Path> directories = subdirectories(listStatus(new Path(rootPath)));
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<String> tablePaths = pool.invoke(new ListDirectoriesTask(directories, depthLimit));
+            long elapsedMillis = System.currentTimeMillis() - startTime;
+            return new ListingResult(tablePaths, directoriesListed.get(), elapsedMillis);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private FileStatus[] listStatus(Path path) throws IOException {
+        FileStatus[] statuses = fs.listStatus(path);
+        directoriesListed.incrementAndGet();
+        return statuses;
+    }
+
+    private static List<Path> subdirectories(FileStatus[] statuses) {
+        return Arrays.stream(statuses)
+                .filter(FileStatus::isDirectory)
+                .map(FileStatus::getPath)
+                .collect(Collectors.toList());
+    }
+
+    private static boolean hasDeltaLog(FileStatus[] statuses) {
+        return Arrays.stream(statuses)
+                .anyMatch(status -> status.isDirectory() && DELTA_LOG_DIRECTORY.equals(status.getPath().getName()));
+    }
+
+    /**
+     * Lists each of the directories, which are remainingDepth levels from the depth limit, in its own subtask.
+     */
+    private class ListDirectoriesTask extends RecursiveTask<List<String>> {
+        private final List<Path> directories;
+        private final int remainingDepth;
+
+        ListDirectoriesTask(List<Path> directories, int remainingDepth) {
+            this.directories = directories;
+            this.remainingDepth = remainingDepth;
+        }
+
+        @Override
+        protected List<String> compute() {
+            if (directories.size() == 1) {
+                return listDirectory(directories.get(0));
+            }
+            List<ListDirectoriesTask> subtasks = directories.stream()
+                    .map(directory -> new ListDirectoriesTask(Collections.singletonList(directory), remainingDepth))
+                    .collect(Collectors.toList());
+            List<String> tablePaths = new ArrayList<>();
+            for (ListDirectoriesTask subtask : invokeAll(subtasks)) {
+                tablePaths.addAll(subtask.join());
+            }
+            return tablePaths;
+        }
+
+        private List<String> listDirectory(Path directory) {
+            FileStatus[] statuses;
+            try {
+                statuses = listStatus(directory);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (hasDeltaLog(statuses)) {
+                return Collections.singletonList(directory.toUri().toString());
+            } else if (remainingDepth > 1) {
+                List<Path> subdirectories = subdirectories(statuses);
+                return subdirectories.isEmpty() ?
+                        Collections.emptyList() :
+                        new ListDirectoriesTask(subdirectories, remainingDepth - 1).compute();
+            } else {
+                logger.debug("Reached depth limit. Skipping recursing non-delta table directory {}", directory);
+                return Collections.emptyList();
+            }
+        }
+    }
+
+    @Data
+    static class ListingResult {
+        private final List<String> tablePaths;
+        private final long directoriesListed;
+        private final long elapsedMillis;
+
+        double getDirectoriesListedPerSecond() {
+            return elapsedMillis == 0 ? directoriesListed : directoriesListed * TimeUnit.SECONDS.toMillis(1) / (double) elapsedMillis;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package uk.gov.justice.digital.service;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.delta.tables.DeltaTable;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.apache.spark.api.java.function.FilterFunction;
+import org.apache.spark.sql.Column;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Encoders;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.SparkSession;
+import org.apache.spark.sql.types.StructField;
+import org.apache.spark.util.sketch.BloomFilter;
+import uk.gov.justice.digital.config.JobArguments;
+import uk.gov.justice.digital.datahub.model.SourceReference;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.apache.spark.sql.functions.col;
+import static org.apache.spark.sql.functions.count;
+import static org.apache.spark.sql.functions.lit;
+import static org.apache.spark.sql.functions.max;
+import static org.apache.spark.sql.functions.min;
+import static org.apache.spark.sql.functions.xxhash64;
+
+/**
+ * Plans how a batch of records is loaded into a table which should only gain the records whose keys it does not have.
+ * A table which does not exist yet or has no files is written to directly.
+ * With the load planner enabled the batch's keys are also put in a bloom filter which the table's keys are checked
+ * against, so a batch none of whose keys can be in the table is inserted by an insert-only merge narrowed to the batch's
+ * keys rather than joined to the whole table. The insert is still a merge so that a writer which commits the same keys
+ * after they were checked fails it, where a blind append would duplicate them.
+ * The scan is narrowed to the range of the batch's keys, as with a pruned merge, so Delta can skip the files whose key
+ * statistics are outside it.
+ */
+@Singleton
+public class LoadPlanner {
+
+    // A false positive only costs a merge which was not needed
+    private static final double BLOOM_FILTER_FPP = 0.01;
+    private static final String KEY_HASH_COLUMN = "_key_hash";
+
+    public enum LoadStrategy {
+        // The table does not exist or has no files, so there are no keys to avoid
+        DIRECT_WRITE,
+        // None of the batch's keys were in the table when it was checked
+        DISJOINT_APPEND,
+        // Some of the batch's keys may be in the table
+        MERGE
+    }
+
+    /**
+     * Returns the number of files in the current version of the table.
+     */
+    @FunctionalInterface
+    interface NumFilesReader {
+        long numFiles(SparkSession spark, String tablePath);
+    }
+
+    private final boolean enabled;
+    private final NumFilesReader numFilesReader;
+
+    @Inject
+    public LoadPlanner(JobArguments arguments) {
+        this(arguments, DataStorageService::readNumFiles);
+    }
+
+    LoadPlanner(JobArguments arguments, NumFilesReader numFilesReader) {
+        this.enabled = arguments.isDataStorageLoadPlannerEnabled();
+        this.numFilesReader = numFilesReader;
+    }
+
+    LoadStrategy plan(
+            SparkSession spark,
+            String tablePath,
+            Optional<DeltaTable> table,
+            Dataset<Row> batch,
+            SourceReference.PrimaryKey primaryKey) {
+        if (!table.isPresent()) {
+            return LoadStrategy.DIRECT_WRITE;
+        }
+        if (!enabled) {
+            return LoadStrategy.MERGE;
+        }
+        if (numFilesReader.numFiles(spark, tablePath) == 0L) {
+            return LoadStrategy.DIRECT_WRITE;
+        }
+        return mayShareKeys(table.get().toDF(), batch, primaryKey) ? LoadStrategy.MERGE : LoadStrategy.DISJOINT_APPEND;
+    }
+
+    /**
+     * Whether the table may have any of the batch's keys. Keys are compared by their hash so that composite keys need
+     * only one bloom filter. There are no false negatives, so a batch for which this is false shares no keys.
+     */
+    @VisibleForTesting
+    static boolean mayShareKeys(Dataset<Row> table, Dataset<Row> batch, SourceReference.PrimaryKey primaryKey) {
+        List<StructField> keyFields = new ArrayList<>();
+        for (String keyColumnName : primaryKey.getKeyColumnNames()) {
+            Optional<StructField> keyField = MergePlanner.findField(table, keyColumnName);
+            if (!keyField.isPresent()) {
+                // Leave the merge to report the missing key column
+                return true;
+            }
+            keyFields.add(keyField.get());
+        }
+
+        // The range of each key is found in the same pass as the batch's size
+        List<StructField> prunableKeys = keyFields.stream()
+                .filter(field -> MergePlanner.isPrunable(field.dataType()))
+                .collect(Collectors.toList());
+        List<Column> aggregations = new ArrayList<>();
+        for (StructField key : prunableKeys) {
+            aggregations.add(min(keyColumn(key)));
+            aggregations.add(max(keyColumn(key)));
+        }
+        Row summary = batch.agg(count(lit(1)), aggregations.toArray(new Column[0])).first();
+        long rows = summary.getLong(0);
+        if (rows == 0L) {
+            return false;
+        }
+
+        Column keyRange = lit(true);
+        for (int i = 0; i < prunableKeys.size(); i++) {
+            Object minKey = summary.get(1 + 2 * i);
+            Object maxKey = summary.get(2 + 2 * i);
+            if (minKey == null) {
+                // Null keys never match on equality so there is nothing to narrow the scan to for this column
+                continue;
+            }
+            Column tableKey = col(prunableKeys.get(i).name());
+            keyRange = keyRange.and(tableKey.geq(lit(minKey))).and(tableKey.leq(lit(maxKey)));
+        }
+
+        BloomFilter batchKeys = batch.select(keyHash(keyFields)).stat().bloomFilter(KEY_HASH_COLUMN, rows, BLOOM_FILTER_FPP);
+        return !table.filter(keyRange)
+                .select(keyHash(keyFields))
+                .as(Encoders.LONG())
+                .filter((FilterFunction<Long>) batchKeys::mightContainLong)
+                .isEmpty();
+    }
+
+    /**
+     * The key column as the table's type, since xxhash64 hashes the same value differently as, say, an int and a long.
+     */
+    private static Column keyColumn(StructField keyField) {
+        return col(keyField.name()).cast(keyField.dataType());
+    }
+
+    private static Column keyHash(List<StructField> keyFields) {
+        Column[] keyColumns = keyFields.stream().map(LoadPlanner::keyColumn).toArray(Column[]::new);
+        return xxhash64(keyColumns).as(KEY_HASH_COLUMN);
+    }
+}
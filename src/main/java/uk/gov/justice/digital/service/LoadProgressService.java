@@ -0,0 +1,260 @@
+package uk.gov.justice.digital.service;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.hash.Hashing;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import lombok.Data;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.RowFactory;
+import org.apache.spark.sql.SparkSession;
+import org.apache.spark.sql.types.DataTypes;
+import org.apache.spark.sql.types.StructField;
+import org.apache.spark.sql.types.StructType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.justice.digital.config.JobArguments;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static uk.gov.justice.digital.common.ResourcePath.tablePath;
+
+/**
+ * Records how far a batch load has got with each table in the load progress table, so that rerunning a load which
+ * failed part way through skips the tables it finished and resumes the tables it was part way through.
+ * <p>
+ * Progress is only reused while a table's input files are the same as when it was recorded, which is checked with a
+ * fingerprint of their paths and total size. A table is resumed after its last completed stage by reading the
+ * structured or curated table at the version which that stage committed.
+ */
+@Singleton
+public class LoadProgressService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadProgressService.class);
+
+    static final String ODS_PENDING = "PENDING";
+    static final String ODS_WRITTEN = "WRITTEN";
+
+    @VisibleForTesting
+    static final StructType LOAD_PROGRESS_SCHEMA = new StructType(new StructField[]{
+            DataTypes.createStructField("source", DataTypes.StringType, false),
+            DataTypes.createStructField("table", DataTypes.StringType, false),
+            DataTypes.createStructField("input_fingerprint", DataTypes.StringType, false),
+            DataTypes.createStructField("stage", DataTypes.StringType, false),
+            DataTypes.createStructField("structured_version", DataTypes.LongType, true),
+            DataTypes.createStructField("curated_version", DataTypes.LongType, true),
+            DataTypes.createStructField("ods_status", DataTypes.StringType, false),
+            DataTypes.createStructField("updated_at", DataTypes.TimestampType, false)
+    });
+
+    /**
+     * The stages of loading a table, in the order they complete.
+     */
+    public enum LoadStage {
+        STRUCTURED,
+        CURATED,
+        OPERATIONAL_DATA_STORE
+    }
+
+    private final JobArguments arguments;
+    private final boolean enabled;
+    private final DataStorageService storage;
+    private final Map<ImmutablePair<String, String>, LoadProgress> progressByTable = new ConcurrentHashMap<>();
+    private String progressPath;
+
+    @Inject
+    public LoadProgressService(JobArguments arguments, DataStorageService storage) {
+        this.arguments = arguments;
+        this.enabled = arguments.isBatchLoadResumeEnabled();
+        this.storage = storage;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Reads the latest progress of every table recorded by earlier runs.
+     */
+    public void start(SparkSession spark) {
+        if (!enabled) {
+            return;
+        }
+        progressPath = arguments.getBatchLoadProgressPath();
+        progressByTable.clear();
+        // Progress is appended as each stage completes, so only the latest row for each table is current
+        for (Row row : storage.get(spark, progressPath).collectAsList()) {
+            LoadProgress progress = fromRow(row);
+            progressByTable.merge(
+                    ImmutablePair.of(progress.getSource(), progress.getTable()),
+                    progress,
+                    (existing, other) -> existing.getUpdatedAt().after(other.getUpdatedAt()) ? existing : other
+            );
+        }
+        logger.info("Read the load progress of {} tables from {}", progressByTable.size(), progressPath);
+    }
+
+    /**
+     * Returns the progress recorded for the table if it was recorded for the same input files.
+     */
+    public Optional<LoadProgress> getProgress(String source, String table, String inputFingerprint) {
+        return Optional.ofNullable(progressByTable.get(ImmutablePair.of(source, table)))
+                .filter(progress -> progress.getInputFingerprint().equals(inputFingerprint));
+    }
+
+    /**
+     * Returns a listener which records each stage of loading the table from the given input files as it completes.
+     */
+    public LoadStageListener trackerFor(SparkSession spark, String source, String table, String inputFingerprint) {
+        if (!enabled) {
+            return LoadStageListener.NONE;
+        }
+        Optional<LoadProgress> previous = getProgress(source, table, inputFingerprint);
+        return new TableProgressTracker(
+                spark,
+                source,
+                table,
+                inputFingerprint,
+                previous.map(LoadProgress::getStructuredVersion).orElse(null),
+                previous.map(LoadProgress::getCuratedVersion).orElse(null)
+        );
+    }
+
+    /**
+     * Returns the structured table as its last completed stage left it.
+     */
+    public Dataset<Row> readStructured(SparkSession spark, LoadProgress progress) {
+        return readVersion(spark, tablePath(arguments.getStructuredS3Path(), progress.getSource(), progress.getTable()), progress.getStructuredVersion());
+    }
+
+    /**
+     * Returns the curated table as its last completed stage left it.
+     */
+    public Dataset<Row> readCurated(SparkSession spark, LoadProgress progress) {
+        return readVersion(spark, tablePath(arguments.getCuratedS3Path(), progress.getSource(), progress.getTable()), progress.getCuratedVersion());
+    }
+
+    public static String fingerprint(List<String> filePaths, long totalBytes) {
+        List<String> sortedFilePaths = new ArrayList<>(filePaths);
+        Collections.sort(sortedFilePaths);
+        String inputs = String.join("\n", sortedFilePaths) + "\n" + totalBytes;
+        return Hashing.sha256().hashString(inputs, StandardCharsets.UTF_8).toString();
+    }
+
+    private Dataset<Row> readVersion(SparkSession spark, String tablePath, Long version) {
+        // A stage which sent every record to violations may not have created the table
+        return version == null ? spark.emptyDataFrame() : storage.get(spark, tablePath, version);
+    }
+
+    private void record(SparkSession spark, LoadProgress progress) {
+        progressByTable.put(ImmutablePair.of(progress.getSource(), progress.getTable()), progress);
+        try {
+            storage.append(progressPath, spark.createDataFrame(Collections.singletonList(toRow(progress)), LOAD_PROGRESS_SCHEMA));
+            logger.info("Recorded {} stage of {}.{} as complete", progress.getStage(), progress.getSource(), progress.getTable());
+        } catch (Exception e) {
+            // The table is loaded either way. A rerun just repeats the stage
+            logger.warn("Failed to record {} stage of {}.{} as complete", progress.getStage(), progress.getSource(), progress.getTable(), e);
+        }
+    }
+
+    private static Row toRow(LoadProgress progress) {
+        return RowFactory.create(
+                progress.getSource(),
+                progress.getTable(),
+                progress.getInputFingerprint(),
+                progress.getStage().name(),
+                progress.getStructuredVersion(),
+                progress.getCuratedVersion(),
+                progress.getOdsStatus(),
+                progress.getUpdatedAt()
+        );
+    }
+
+    private static LoadProgress fromRow(Row row) {
+        return new LoadProgress(
+                row.getAs("source"),
+                row.getAs("table"),
+                row.getAs("input_fingerprint"),
+                LoadStage.valueOf(row.getAs("stage")),
+                row.getAs("structured_version"),
+                row.getAs("curated_version"),
+                row.getAs("ods_status"),
+                row.getAs("updated_at")
+        );
+    }
+
+    private class TableProgressTracker implements LoadStageListener {
+        private final SparkSession spark;
+        private final String source;
+        private final String table;
+        private final String inputFingerprint;
+        private Long structuredVersion;
+        private Long curatedVersion;
+
+        private TableProgressTracker(
+                SparkSession spark,
+                String source,
+                String table,
+                String inputFingerprint,
+                Long structuredVersion,
+                Long curatedVersion) {
+            this.spark = spark;
+            this.source = source;
+            this.table = table;
+            this.inputFingerprint = inputFingerprint;
+            this.structuredVersion = structuredVersion;
+            this.curatedVersion = curatedVersion;
+        }
+
+        @Override
+        public void structuredWritten() {
+            structuredVersion = storage.getLatestVersion(spark, tablePath(arguments.getStructuredS3Path(), source, table)).orElse(null);
+            record(spark, progress(LoadStage.STRUCTURED, ODS_PENDING));
+        }
+
+        @Override
+        public void curatedWritten() {
+            curatedVersion = storage.getLatestVersion(spark, tablePath(arguments.getCuratedS3Path(), source, table)).orElse(null);
+            record(spark, progress(LoadStage.CURATED, ODS_PENDING));
+        }
+
+        @Override
+        public void operationalDataStoreWritten() {
+            record(spark, progress(LoadStage.OPERATIONAL_DATA_STORE, ODS_WRITTEN));
+        }
+
+        private LoadProgress progress(LoadStage stage, String odsStatus) {
+            return new LoadProgress(
+                    source,
+                    table,
+                    inputFingerprint,
+                    stage,
+                    structuredVersion,
+                    curatedVersion,
+                    odsStatus,
+                    new Timestamp(System.currentTimeMillis())
+            );
+        }
+    }
+
+    @Data
+    public static class LoadProgress {
+        private final String source;
+        private final String table;
+        private final String inputFingerprint;
+        private final LoadStage stage;
+        private final Long structuredVersion;
+        private final Long curatedVersion;
+        private final String odsStatus;
+        private final Timestamp updatedAt;
+    }
+}
@@ -0,0 +1,28 @@
+package uk.gov.justice.digital.service;
+
+/**
+ * Is told as each stage of loading a table's batch completes, so that a failed load can be resumed after the last
+ * completed stage.
+ */
+public interface LoadStageListener {
+
+    LoadStageListener NONE = new LoadStageListener() {
+        @Override
+        public void structuredWritten() {
+        }
+
+        @Override
+        public void curatedWritten() {
+        }
+
+        @Override
+        public void operationalDataStoreWritten() {
+        }
+    };
+
+    void structuredWritten();
+
+    void curatedWritten();
+
+    void operationalDataStoreWritten();
+}
@@ -0,0 +1,179 @@
+package uk.gov.justice.digital.service;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import lombok.Data;
+import org.apache.spark.sql.SparkSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.justice.digital.config.JobArguments;
+
+import java.time.Clock;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static uk.gov.justice.digital.service.ManifestUpdatePolicy.BACKGROUND;
+import static uk.gov.justice.digital.service.ManifestUpdatePolicy.DEBOUNCED;
+import static uk.gov.justice.digital.service.ManifestUpdatePolicy.INCREMENTAL;
+
+/**
+ * Applies the manifest update policy to the manifest updates requested after writes to Delta tables.
+ * Debounced and background updates are only deferred between start and stop. Outside of them manifests are
+ * regenerated straight away, so a job which does not run deferred updates never leaves a manifest out of date.
+ * Deferred updates all run on one thread, so a table's manifest is never generated by two threads at once and the
+ * last manifest generated for a table is always for its latest version. Each manifest is replaced whole, so readers
+ * always see a manifest for a complete version of the table.
+ */
+@Singleton
+public class ManifestManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(ManifestManager.class);
+
+    // The longest debounced updates wait after becoming due
+    private static final long MAX_DEBOUNCE_CHECK_INTERVAL_MILLIS = 5_000L;
+
+    /**
+     * Generates manifests for the manager, which only decides when they are generated.
+     */
+    public interface ManifestWriter {
+        void generateManifest(SparkSession spark, String tablePath);
+
+        void enableIncrementalManifestUpdates(SparkSession spark, String tablePath);
+    }
+
+    private final ManifestUpdatePolicy policy;
+    private final long debounceIntervalMillis;
+    private final Clock clock;
+
+    private final Map<String, PendingUpdate> pendingByTablePath = new ConcurrentHashMap<>();
+    private final Map<String, Long> lastUpdateMillisByTablePath = new ConcurrentHashMap<>();
+    private final Set<String> incrementalTablePaths = ConcurrentHashMap.newKeySet();
+    private ScheduledExecutorService executor;
+
+    @Inject
+    public ManifestManager(JobArguments arguments, Clock clock) {
+        this.policy = arguments.getDataStorageManifestUpdatePolicy();
+        this.debounceIntervalMillis = policy == DEBOUNCED ?
+                TimeUnit.SECONDS.toMillis(arguments.getDataStorageManifestDebounceIntervalSeconds()) : 0L;
+        this.clock = clock;
+    }
+
+    public void requestUpdate(SparkSession spark, String tablePath, ManifestWriter writer) {
+        if (policy == INCREMENTAL) {
+            enableIncrementalUpdates(spark, tablePath, writer);
+        } else if (isDeferring()) {
+            pendingByTablePath.put(tablePath, new PendingUpdate(spark, writer));
+            if (isDue(tablePath)) {
+                execute(this::updateDue);
+            }
+        } else {
+            writer.generateManifest(spark, tablePath);
+        }
+    }
+
+    /**
+     * Starts deferring debounced or background updates. Does nothing for the other policies.
+     */
+    public synchronized void start() {
+        if ((policy != DEBOUNCED && policy != BACKGROUND) || executor != null) {
+            return;
+        }
+        logger.info("Deferring manifest updates with the {} policy", policy);
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "manifest-manager");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (policy == DEBOUNCED) {
+            long checkIntervalMillis = Math.min(debounceIntervalMillis, MAX_DEBOUNCE_CHECK_INTERVAL_MILLIS);
+            executor.scheduleWithFixedDelay(this::updateDue, checkIntervalMillis, checkIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Makes every deferred update which is still pending and stops deferring updates.
+     */
+    public void stop() {
+        ScheduledExecutorService stopping;
+        synchronized (this) {
+            stopping = executor;
+            executor = null;
+        }
+        if (stopping == null) {
+            return;
+        }
+        try {
+            stopping.submit(this::updateAll).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Interrupted while making pending manifest updates for {}", pendingByTablePath.keySet());
+        } catch (ExecutionException e) {
+            logger.error("Failed to make pending manifest updates", e);
+        } finally {
+            stopping.shutdownNow();
+        }
+    }
+
+    public synchronized boolean isDeferring() {
+        return executor != null;
+    }
+
+    private void enableIncrementalUpdates(SparkSession spark, String tablePath, ManifestWriter writer) {
+        if (incrementalTablePaths.add(tablePath)) {
+            try {
+                writer.enableIncrementalManifestUpdates(spark, tablePath);
+            } catch (RuntimeException e) {
+                incrementalTablePaths.remove(tablePath);
+                throw e;
+            }
+        }
+    }
+
+    private boolean isDue(String tablePath) {
+        if (policy != DEBOUNCED) {
+            return true;
+        }
+        Long lastUpdateMillis = lastUpdateMillisByTablePath.get(tablePath);
+        return lastUpdateMillis == null || clock.millis() - lastUpdateMillis >= debounceIntervalMillis;
+    }
+
+    private void updateDue() {
+        pendingByTablePath.keySet().stream().filter(this::isDue).forEach(this::update);
+    }
+
+    private void updateAll() {
+        pendingByTablePath.keySet().forEach(this::update);
+    }
+
+    private void update(String tablePath) {
+        // Removed before generating so that a write made while the manifest is being generated is picked up next time
+        PendingUpdate pending = pendingByTablePath.remove(tablePath);
+        if (pending == null) {
+            return;
+        }
+        lastUpdateMillisByTablePath.put(tablePath, clock.millis());
+        try {
+            pending.getWriter().generateManifest(pending.getSpark(), tablePath);
+        } catch (Exception e) {
+            logger.error("Failed to update manifest for table {}. It will be retried", tablePath, e);
+            pendingByTablePath.putIfAbsent(tablePath, pending);
+        }
+    }
+
+    private synchronized void execute(Runnable task) {
+        if (executor != null) {
+            executor.execute(task);
+        }
+    }
+
+    @Data
+    private static class PendingUpdate {
+        private final SparkSession spark;
+        private final ManifestWriter writer;
+    }
+}
@@ -0,0 +1,30 @@
+package uk.gov.justice.digital.service;
+
+/**
+ * How the symlink manifests read by Glue and Athena are kept up to date after writes to a Delta table.
+ */
+public enum ManifestUpdatePolicy {
+    // Regenerates the whole manifest after every write
+    EAGER,
+    // Has Delta update the manifest as part of each commit, rewriting only the manifests of the partitions it changed
+    INCREMENTAL,
+    // Regenerates a table's manifest at most once per debounce interval
+    DEBOUNCED,
+    // Regenerates manifests on a background thread, coalescing the writes made while an update is waiting
+    BACKGROUND;
+
+    public static ManifestUpdatePolicy fromString(String policy) {
+        switch (policy.trim().toLowerCase()) {
+            case "eager":
+                return EAGER;
+            case "incremental":
+                return INCREMENTAL;
+            case "debounced":
+                return DEBOUNCED;
+            case "background":
+                return BACKGROUND;
+            default:
+                throw new IllegalArgumentException("Unknown manifest update policy: " + policy);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package uk.gov.justice.digital.service;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import lombok.Data;
+import org.apache.spark.sql.Column;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.types.DataType;
+import org.apache.spark.sql.types.DateType;
+import org.apache.spark.sql.types.NumericType;
+import org.apache.spark.sql.types.StringType;
+import org.apache.spark.sql.types.StructField;
+import org.apache.spark.sql.types.TimestampType;
+import uk.gov.justice.digital.config.JobArguments;
+import uk.gov.justice.digital.datahub.model.SourceReference;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.apache.spark.sql.functions.approx_count_distinct;
+import static org.apache.spark.sql.functions.broadcast;
+import static org.apache.spark.sql.functions.col;
+import static org.apache.spark.sql.functions.count;
+import static org.apache.spark.sql.functions.expr;
+import static org.apache.spark.sql.functions.lit;
+import static org.apache.spark.sql.functions.max;
+import static org.apache.spark.sql.functions.min;
+import static org.apache.spark.sql.functions.when;
+import static uk.gov.justice.digital.common.CommonDataFields.OPERATION;
+import static uk.gov.justice.digital.common.CommonDataFields.ShortOperationCode.Delete;
+import static uk.gov.justice.digital.common.CommonDataFields.ShortOperationCode.Update;
+
+/**
+ * Plans a Delta merge of a batch of records into a table by primary key.
+ * With pruning enabled the merge condition is narrowed with predicates on the table's key columns derived from the
+ * batch, an IN list of the batch's keys when it has few of them or the range of its keys otherwise, which Delta uses to
+ * skip files whose key statistics cannot match. The range is also used when it holds no keys besides the batch's.
+ * The work a merge does then depends on the size of the batch rather than the size of the table. Small batches are
+ * also broadcast to the merge join.
+ * With the insert-only fast path enabled each batch is also classified by the operations it contains, so that batches
+ * made up only of inserts can be merged with an insert-only merge, which does not rewrite any of the table's files.
+ */
+@Singleton
+public class MergePlanner {
+
+    private final boolean pruningEnabled;
+    private final boolean insertOnlyFastPathEnabled;
+    private final int maxInListKeys;
+    private final long broadcastMaxRows;
+
+    @Inject
+    public MergePlanner(JobArguments arguments) {
+        this.insertOnlyFastPathEnabled = arguments.isDataStorageMergeInsertOnlyFastPathEnabled();
+        // The insert-only merge relies on the key predicates to read only the files which could hold the batch's keys
+        this.pruningEnabled = arguments.isDataStorageMergePruningEnabled() || insertOnlyFastPathEnabled;
+        this.maxInListKeys = pruningEnabled ? arguments.getDataStorageMergePruningMaxInListKeys() : 0;
+        this.broadcastMaxRows = pruningEnabled ? arguments.getDataStorageMergeBroadcastMaxRows() : 0;
+    }
+
+    public boolean isPruningEnabled() {
+        return pruningEnabled;
+    }
+
+    /**
+     * Plans the merge of the batch, aliased as batchAlias, into the table aliased as tableAlias.
+     */
+    public MergePlan plan(Dataset<Row> batch, SourceReference.PrimaryKey primaryKey, String tableAlias, String batchAlias) {
+        Column keyCondition = expr(primaryKey.getSparkCondition(tableAlias, batchAlias));
+        if (!pruningEnabled) {
+            return new MergePlan(batch, keyCondition, false, BatchType.UNCLASSIFIED, -1L);
+        }
+
+        List<StructField> prunableKeys = new ArrayList<>();
+        for (String keyColumnName : primaryKey.getKeyColumnNames()) {
+            findField(batch, keyColumnName).filter(field -> isPrunable(field.dataType())).ifPresent(prunableKeys::add);
+        }
+        // The keys are counted in the same pass as their range, so that they are only collected for an IN list when
+        // there are few enough of them. Collecting every key of a large batch would pull them all to the driver
+        boolean countKeys = maxInListKeys > 0;
+        int aggregationsPerKey = countKeys ? 3 : 2;
+        List<Column> aggregations = new ArrayList<>();
+        for (StructField key : prunableKeys) {
+            aggregations.add(min(col(key.name())));
+            aggregations.add(max(col(key.name())));
+            if (countKeys) {
+                aggregations.add(approx_count_distinct(col(key.name())));
+            }
+        }
+        // Counted in the same pass as the key statistics so that classifying the batch costs no extra read of it
+        aggregations.add(count(when(col(OPERATION).equalTo(Update.getName()), true)));
+        aggregations.add(count(when(col(OPERATION).equalTo(Delete.getName()), true)));
+        Row summary = batch.agg(count(lit(1)), aggregations.toArray(new Column[0])).first();
+        long rows = summary.getLong(0);
+
+        Column condition = keyCondition;
+        for (int i = 0; i < prunableKeys.size(); i++) {
+            String keyColumnName = prunableKeys.get(i).name();
+            int firstAggregation = 1 + aggregationsPerKey * i;
+            Object minKey = summary.get(firstAggregation);
+            Object maxKey = summary.get(firstAggregation + 1);
+            if (minKey == null) {
+                // Null keys never match on equality so there is nothing to narrow the merge to for this column
+                continue;
+            }
+            Column tableKey = col(tableAlias + "." + keyColumnName);
+            List<Object> keys = countKeys && summary.getLong(firstAggregation + 2) <= maxInListKeys ?
+                    collectKeys(batch, keyColumnName) :
+                    null;
+            if (keys != null && keys.size() <= maxInListKeys && !isRangeOfKeys(minKey, maxKey, keys.size())) {
+                condition = condition.and(tableKey.isin(keys.toArray()));
+            } else {
+                condition = condition.and(tableKey.geq(lit(minKey))).and(tableKey.leq(lit(maxKey)));
+            }
+        }
+
+        boolean broadcastBatch = rows <= broadcastMaxRows;
+        return new MergePlan(broadcastBatch ? broadcast(batch) : batch, condition, broadcastBatch, classify(summary), rows);
+    }
+
+    /**
+     * Collects at most one more than maxInListKeys of the batch's distinct non-null keys, since the count they were
+     * checked against is approximate.
+     */
+    private List<Object> collectKeys(Dataset<Row> batch, String keyColumnName) {
+        return batch.select(col(keyColumnName))
+                .where(col(keyColumnName).isNotNull())
+                .distinct()
+                .limit(maxInListKeys + 1)
+                .collectAsList()
+                .stream()
+                .map(row -> row.get(0))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Whether every value in the range of an integral key is one of the batch's keys, so the range skips as many files
+     * as an IN list of the keys would.
+     */
+    private static boolean isRangeOfKeys(Object minKey, Object maxKey, int distinctKeys) {
+        if (!(minKey instanceof Long || minKey instanceof Integer || minKey instanceof Short || minKey instanceof Byte)) {
+            return false;
+        }
+        return ((Number) maxKey).longValue() - ((Number) minKey).longValue() + 1 == distinctKeys;
+    }
+
+    private BatchType classify(Row summary) {
+        if (!insertOnlyFastPathEnabled) {
+            return BatchType.UNCLASSIFIED;
+        }
+        int columns = summary.length();
+        if (summary.getLong(columns - 1) > 0) {
+            return BatchType.DELETES;
+        } else if (summary.getLong(columns - 2) > 0) {
+            return BatchType.UPDATES;
+        } else {
+            return BatchType.INSERTS;
+        }
+    }
+
+    static Optional<StructField> findField(Dataset<Row> df, String columnName) {
+        return Arrays.stream(df.schema().fields())
+                .filter(field -> field.name().equalsIgnoreCase(columnName))
+                .findFirst();
+    }
+
+    static boolean isPrunable(DataType dataType) {
+        return dataType instanceof NumericType || dataType instanceof StringType ||
+                dataType instanceof DateType || dataType instanceof TimestampType;
+    }
+
+    /**
+     * The operations in a batch, classified by the most disruptive of them.
+     */
+    public enum BatchType {
+        // The insert-only fast path is disabled so the batch was not classified
+        UNCLASSIFIED,
+        // Only inserts, which can be merged with an insert-only merge
+        INSERTS,
+        // Updates and possibly inserts
+        UPDATES,
+        // Deletes and possibly inserts and updates
+        DELETES
+    }
+
+    @Data
+    public static class MergePlan {
+        private final Dataset<Row> batch;
+        private final Column condition;
+        private final boolean batchBroadcast;
+        private final BatchType batchType;
+        // -1 when the batch was not summarised because pruning is disabled
+        private final long rows;
+    }
+}
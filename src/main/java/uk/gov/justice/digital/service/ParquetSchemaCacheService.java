@@ -0,0 +1,178 @@
+package uk.gov.justice.digital.service;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.hadoop.metadata.FileMetaData;
+import org.apache.parquet.hadoop.util.HadoopInputFile;
+import org.apache.spark.sql.SparkSession;
+import org.apache.spark.sql.execution.datasources.parquet.ParquetToSparkSchemaConverter;
+import org.apache.spark.sql.types.DataType;
+import org.apache.spark.sql.types.StructType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * Provides the schemas of raw parquet files by reading only their footers, so that checking the schema of a micro-batch
+ * costs one footer read per new file rather than a schema inference over every file in the table's directory.
+ * <p>
+ * Footers are fingerprinted and the converted Spark schema is memoised per fingerprint, so the many files which share
+ * a schema are only converted once. Schema comparison results are memoised per pair of schemas.
+ */
+@Singleton
+public class ParquetSchemaCacheService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParquetSchemaCacheService.class);
+
+    // The footer key Spark uses to store the Spark schema of files it writes
+    private static final String SPARK_SCHEMA_FOOTER_KEY = "org.apache.spark.sql.parquet.row.metadata";
+    private static final int MAX_CACHED_FILES = 100_000;
+    private static final int MAX_CACHED_SCHEMAS = 10_000;
+    private static final int FOOTER_READ_THREADS = 16;
+
+    private final Cache<String, String> fingerprintsByFile;
+    private final Cache<String, StructType> schemasByFingerprint;
+    private final Cache<ImmutablePair<StructType, StructType>, Boolean> schemaMatches;
+
+    private final ExecutorService footerReadPool = Executors.newFixedThreadPool(FOOTER_READ_THREADS, runnable -> {
+        Thread thread = new Thread(runnable, "parquet-footer-reader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Inject
+    public ParquetSchemaCacheService() {
+        this(MAX_CACHED_FILES, MAX_CACHED_SCHEMAS);
+    }
+
+    @VisibleForTesting
+    ParquetSchemaCacheService(int maxCachedFiles, int maxCachedSchemas) {
+        this.fingerprintsByFile = CacheBuilder.newBuilder().maximumSize(maxCachedFiles).build();
+        this.schemasByFingerprint = CacheBuilder.newBuilder().maximumSize(maxCachedSchemas).build();
+        this.schemaMatches = CacheBuilder.newBuilder().maximumSize(maxCachedSchemas).build();
+    }
+
+    /**
+     * Returns the distinct schemas of the given parquet files, in the order they are first seen.
+     */
+    public List<StructType> getFileSchemas(SparkSession spark, List<String> filePaths) {
+        Configuration conf = spark.sparkContext().hadoopConfiguration();
+        List<CompletableFuture<ImmutablePair<String, StructType>>> fileSchemas = filePaths.stream()
+                .map(filePath -> CompletableFuture.supplyAsync(() -> getFingerprintedSchema(conf, filePath), footerReadPool))
+                .collect(Collectors.toList());
+
+        Map<String, StructType> distinctSchemas = new LinkedHashMap<>();
+        for (CompletableFuture<ImmutablePair<String, StructType>> fileSchema : fileSchemas) {
+            ImmutablePair<String, StructType> fingerprintedSchema = fileSchema.join();
+            distinctSchemas.put(fingerprintedSchema.getLeft(), fingerprintedSchema.getRight());
+        }
+        logger.debug("Read {} distinct schemas from {} files", distinctSchemas.size(), filePaths.size());
+        return new ArrayList<>(distinctSchemas.values());
+    }
+
+    /**
+     * Groups the given parquet files by their schema. Groups are in the order their schemas are first seen and files
+     * keep their order within each group.
+     */
+    public Map<StructType, List<String>> getFilesBySchema(SparkSession spark, List<String> filePaths) {
+        Configuration conf = spark.sparkContext().hadoopConfiguration();
+        List<CompletableFuture<ImmutablePair<String, StructType>>> fileSchemas = filePaths.stream()
+                .map(filePath -> CompletableFuture.supplyAsync(() -> getFingerprintedSchema(conf, filePath), footerReadPool))
+                .collect(Collectors.toList());
+
+        Map<StructType, List<String>> filesBySchema = new LinkedHashMap<>();
+        for (int i = 0; i < filePaths.size(); i++) {
+            // Footers which differ only in ways the Spark schema does not capture share a group
+            StructType schema = fileSchemas.get(i).join().getRight();
+            filesBySchema.computeIfAbsent(schema, key -> new ArrayList<>()).add(filePaths.get(i));
+        }
+        logger.debug("Read {} distinct schemas from {} files", filesBySchema.size(), filePaths.size());
+        return filesBySchema;
+    }
+
+    /**
+     * Returns the schema to read the given files with when there is no schema for them, i.e. the schema of the first file.
+     */
+    public StructType inferSchema(SparkSession spark, List<String> filePaths) {
+        List<StructType> schemas = getFileSchemas(spark, filePaths);
+        if (schemas.isEmpty()) {
+            throw new IllegalArgumentException("Cannot infer a schema without any files");
+        }
+        if (schemas.size() > 1) {
+            logger.warn("Files have {} different schemas. The first will be used", schemas.size());
+        }
+        return schemas.get(0);
+    }
+
+    /**
+     * A memoised ValidationService.schemasMatch.
+     */
+    public boolean schemasMatch(StructType inferredSchema, StructType specifiedSchema) {
+        try {
+            return schemaMatches.get(
+                    ImmutablePair.of(inferredSchema, specifiedSchema),
+                    () -> ValidationService.schemasMatch(inferredSchema, specifiedSchema)
+            );
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to compare schemas", e.getCause());
+        }
+    }
+
+    private ImmutablePair<String, StructType> getFingerprintedSchema(Configuration conf, String filePath) {
+        try {
+            String fingerprint = fingerprintsByFile.get(filePath, () -> readFooterFingerprint(conf, filePath));
+            // The two caches evict independently, so the footer is read again if its schema has since been evicted
+            StructType schema = schemasByFingerprint.get(fingerprint, () -> toSparkSchema(conf, readFooter(conf, filePath)));
+            return ImmutablePair.of(fingerprint, schema);
+        } catch (ExecutionException e) {
+            throw new UncheckedIOException(new IOException("Failed to read parquet footer of " + filePath, e.getCause()));
+        }
+    }
+
+    private String readFooterFingerprint(Configuration conf, String filePath) throws IOException, ExecutionException {
+        FileMetaData fileMetaData = readFooter(conf, filePath);
+        String sparkSchemaJson = fileMetaData.getKeyValueMetaData().get(SPARK_SCHEMA_FOOTER_KEY);
+        String fingerprint = fingerprint(sparkSchemaJson != null ? sparkSchemaJson : fileMetaData.getSchema().toString());
+        // Convert the schema while the footer is to hand, unless it already has been
+        schemasByFingerprint.get(fingerprint, () -> toSparkSchema(conf, fileMetaData));
+        return fingerprint;
+    }
+
+    private static FileMetaData readFooter(Configuration conf, String filePath) throws IOException {
+        try (ParquetFileReader reader = ParquetFileReader.open(HadoopInputFile.fromPath(new Path(filePath), conf))) {
+            return reader.getFooter().getFileMetaData();
+        }
+    }
+
+    private static StructType toSparkSchema(Configuration conf, FileMetaData fileMetaData) {
+        String sparkSchemaJson = fileMetaData.getKeyValueMetaData().get(SPARK_SCHEMA_FOOTER_KEY);
+        return sparkSchemaJson != null ?
+                (StructType) DataType.fromJson(sparkSchemaJson) :
+                new ParquetToSparkSchemaConverter(conf).convert(fileMetaData.getSchema());
+    }
+
+    @VisibleForTesting
+    static String fingerprint(String footerSchema) {
+        return Hashing.sha256().hashString(footerSchema, StandardCharsets.UTF_8).toString();
+    }
+}
@@ -0,0 +1,107 @@
+package uk.gov.justice.digital.service;
+
+import lombok.Data;
+import org.apache.spark.scheduler.SparkListener;
+import org.apache.spark.scheduler.SparkListenerStageCompleted;
+import org.apache.spark.scheduler.SparkListenerStageSubmitted;
+import org.apache.spark.scheduler.SparkListenerTaskStart;
+import org.apache.spark.scheduler.StageInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records, per fair scheduler pool, how long stages wait between being submitted and their first task starting and
+ * how long they then take to run, and periodically logs a summary.
+ */
+public class SchedulerPoolMetricsListener extends SparkListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(SchedulerPoolMetricsListener.class);
+
+    private static final String SCHEDULER_POOL_PROPERTY = "spark.scheduler.pool";
+    private static final long SUMMARY_INTERVAL_MILLIS = 60_000L;
+
+    // Only used from the listener bus thread
+    private final Map<Integer, String> poolsByStage = new HashMap<>();
+    private final Map<Integer, Long> firstTaskLaunchByStage = new HashMap<>();
+    private long lastSummaryMillis = System.currentTimeMillis();
+
+    private final Map<String, PoolMetrics> metricsByPool = new ConcurrentHashMap<>();
+
+    @Override
+    public void onStageSubmitted(SparkListenerStageSubmitted stageSubmitted) {
+        Properties properties = stageSubmitted.properties();
+        String pool = properties == null ? null : properties.getProperty(SCHEDULER_POOL_PROPERTY);
+        if (pool != null) {
+            poolsByStage.put(stageSubmitted.stageInfo().stageId(), pool);
+        }
+    }
+
+    @Override
+    public void onTaskStart(SparkListenerTaskStart taskStart) {
+        if (poolsByStage.containsKey(taskStart.stageId())) {
+            firstTaskLaunchByStage.putIfAbsent(taskStart.stageId(), taskStart.taskInfo().launchTime());
+        }
+    }
+
+    @Override
+    public void onStageCompleted(SparkListenerStageCompleted stageCompleted) {
+        StageInfo stageInfo = stageCompleted.stageInfo();
+        String pool = poolsByStage.remove(stageInfo.stageId());
+        Long firstTaskLaunch = firstTaskLaunchByStage.remove(stageInfo.stageId());
+        if (pool == null || firstTaskLaunch == null || stageInfo.submissionTime().isEmpty() || stageInfo.completionTime().isEmpty()) {
+            return;
+        }
+        long queueMillis = firstTaskLaunch - (Long) stageInfo.submissionTime().get();
+        long runMillis = (Long) stageInfo.completionTime().get() - firstTaskLaunch;
+        metricsByPool.merge(pool, new PoolMetrics(1, queueMillis, queueMillis, runMillis), PoolMetrics::combine);
+        logSummaryIfDue();
+    }
+
+    /**
+     * Returns the metrics recorded so far for each pool.
+     */
+    public Map<String, PoolMetrics> getMetricsByPool() {
+        return new HashMap<>(metricsByPool);
+    }
+
+    private void logSummaryIfDue() {
+        long now = System.currentTimeMillis();
+        if (now - lastSummaryMillis >= SUMMARY_INTERVAL_MILLIS) {
+            lastSummaryMillis = now;
+            metricsByPool.forEach((pool, metrics) ->
+                    logger.info("Scheduler pool {}: {} stages, mean queue time {}ms, max queue time {}ms, mean run time {}ms",
+                            pool, metrics.getStages(), metrics.getMeanQueueMillis(), metrics.getMaxQueueMillis(), metrics.getMeanRunMillis())
+            );
+        }
+    }
+
+    @Data
+    public static class PoolMetrics {
+        private final long stages;
+        private final long totalQueueMillis;
+        private final long maxQueueMillis;
+        private final long totalRunMillis;
+
+        public long getMeanQueueMillis() {
+            return totalQueueMillis / stages;
+        }
+
+        public long getMeanRunMillis() {
+            return totalRunMillis / stages;
+        }
+
+        static PoolMetrics combine(PoolMetrics a, PoolMetrics b) {
+            return new PoolMetrics(
+                    a.stages + b.stages,
+                    a.totalQueueMillis + b.totalQueueMillis,
+                    Math.max(a.maxQueueMillis, b.maxQueueMillis),
+                    a.totalRunMillis + b.totalRunMillis
+            );
+        }
+    }
+}
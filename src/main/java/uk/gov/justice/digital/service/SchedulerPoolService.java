@@ -0,0 +1,108 @@
+package uk.gov.justice.digital.service;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableMap;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.spark.SparkContext;
+import org.apache.spark.scheduler.Pool;
+import org.apache.spark.scheduler.SchedulingMode;
+import org.apache.spark.sql.SparkSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.justice.digital.config.JobArguments;
+import uk.gov.justice.digital.datahub.model.SchedulingPriority;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Creates the fair scheduler pools which CDC queries run in, so that a large backlog for one table does not hold up
+ * the micro-batches of every other table. Each pool is weighted by the priority tier of its tables in the table config.
+ * <p>
+ * Spark only reads pool weights from an allocation file when the SparkContext starts, which is before the table config
+ * has been read, so pools are added to the scheduler's root pool directly instead.
+ */
+@Singleton
+public class SchedulerPoolService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SchedulerPoolService.class);
+
+    @VisibleForTesting
+    static final SchedulingPriority DEFAULT_PRIORITY = new SchedulingPriority("default", 1, 0);
+    // Tables added to the config while the job runs are found once the cached priorities expire
+    private static final long PRIORITIES_CACHE_SECONDS = 60L;
+
+    private final boolean enabled;
+    private final Supplier<ImmutableMap<ImmutablePair<String, String>, SchedulingPriority>> tablePriorities;
+    private final SchedulerPoolMetricsListener metricsListener = new SchedulerPoolMetricsListener();
+    private SparkContext listenedSparkContext;
+
+    @Inject
+    public SchedulerPoolService(JobArguments arguments, ConfigService configService) {
+        this.enabled = arguments.isCdcSchedulerPoolsEnabled();
+        this.tablePriorities = Suppliers.memoizeWithExpiration(
+                () -> configService.getTablePriorities(arguments.getConfigKey()),
+                PRIORITIES_CACHE_SECONDS,
+                TimeUnit.SECONDS
+        )::get;
+    }
+
+    /**
+     * Creates the pool, if it doesn't already exist, which a query for the given tables should run in.
+     * Returns the pool name or empty if queries should use the default pool.
+     */
+    public Optional<String> assignPool(SparkSession spark, String poolName, List<ImmutablePair<String, String>> tables) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        SparkContext sparkContext = spark.sparkContext();
+        if (!SchedulingMode.FAIR().equals(sparkContext.getSchedulingMode())) {
+            logger.warn("Not assigning {} to a scheduler pool because the scheduler mode is {}", poolName, sparkContext.getSchedulingMode());
+            return Optional.empty();
+        }
+        registerPool(sparkContext, poolName, priorityFor(tables));
+        return Optional.of(poolName);
+    }
+
+    public Map<String, SchedulerPoolMetricsListener.PoolMetrics> getMetricsByPool() {
+        return metricsListener.getMetricsByPool();
+    }
+
+    /**
+     * A query for several tables gets the highest priority of any of them.
+     */
+    @VisibleForTesting
+    SchedulingPriority priorityFor(List<ImmutablePair<String, String>> tables) {
+        Map<ImmutablePair<String, String>, SchedulingPriority> priorities = tablePriorities.get();
+        return tables.stream()
+                .map(priorities::get)
+                .filter(Objects::nonNull)
+                .max(Comparator.comparingInt(SchedulingPriority::getWeight).thenComparingInt(SchedulingPriority::getMinShare))
+                .orElse(DEFAULT_PRIORITY);
+    }
+
+    private synchronized void registerPool(SparkContext sparkContext, String poolName, SchedulingPriority priority) {
+        if (listenedSparkContext != sparkContext) {
+            sparkContext.addSparkListener(metricsListener);
+            listenedSparkContext = sparkContext;
+        }
+        Pool rootPool = sparkContext.taskScheduler().rootPool();
+        Pool existingPool = (Pool) rootPool.getSchedulableByName(poolName);
+        if (existingPool == null) {
+            rootPool.addSchedulable(new Pool(poolName, SchedulingMode.FAIR(), priority.getMinShare(), priority.getWeight()));
+            logger.info("Created scheduler pool {} in tier {} with weight {} and min share {}",
+                    poolName, priority.getTier(), priority.getWeight(), priority.getMinShare());
+        } else if (existingPool.weight() != priority.getWeight() || existingPool.minShare() != priority.getMinShare()) {
+            logger.warn("Scheduler pool {} keeps weight {} and min share {} until the job restarts",
+                    poolName, existingPool.weight(), existingPool.minShare());
+        }
+    }
+}
@@ -76,7 +76,8 @@ public class SourceReferenceService {
                         .orElseThrow(() -> new IllegalStateException("No primary key found in schema: " + response)),
                 response.getVersionId(),
                 schema,
-                new SourceReference.SensitiveColumns(sensitiveColumnNames)
+                new SourceReference.SensitiveColumns(sensitiveColumnNames),
+                parsedAvro.findLayout()
         );
 
     }
@@ -100,6 +101,8 @@ public class SourceReferenceService {
         private final String namespace;
         private final String name;
         private final List<Map<String, Object>> fields;
+        // e.g. "layout": {"rangePartitions": 16, "sortWithinFiles": true, "zOrderOnCompaction": true}
+        private final Map<String, Object> layout;
 
         private boolean isPrimaryKey(Map<String, Object> attributes) {
             return attributes.containsKey("key") &&
@@ -129,6 +132,20 @@ public class SourceReferenceService {
             return Optional.empty();
         }
 
+        public SourceReference.TableLayout findLayout() {
+            if (layout == null) {
+                return SourceReference.TableLayout.NONE;
+            }
+            return new SourceReference.TableLayout(
+                    Optional.ofNullable(layout.get("rangePartitions"))
+                            .filter(Number.class::isInstance)
+                            .map(n -> ((Number) n).intValue())
+                            .orElse(0),
+                    Boolean.TRUE.equals(layout.get("sortWithinFiles")),
+                    Boolean.TRUE.equals(layout.get("zOrderOnCompaction"))
+            );
+        }
+
         // If the table name has a version suffix e.g. SOME_TABLE_NAME_16 this must be removed from the value used in
         // the source reference instance. See SourceReferenceServiceTest for more context.
         public String getNameWithoutVersionSuffix() {
@@ -15,11 +15,18 @@ import uk.gov.justice.digital.exception.TableDiscoveryException;
 import javax.inject.Singleton;
 import java.io.IOException;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import static uk.gov.justice.digital.common.ResourcePath.tablePath;
@@ -27,8 +34,12 @@ import static uk.gov.justice.digital.common.ResourcePath.tablePath;
 @Singleton
 public class TableDiscoveryService {
 
+    // Only counted by S3A file systems
+    private static final String LIST_REQUESTS_STATISTIC = "object_list_request";
+
     private final JobArguments arguments;
     private final ConfigService configService;
+    private final AtomicInteger threadCount = new AtomicInteger();
 
     @Inject
     public TableDiscoveryService(JobArguments arguments, ConfigService configService) {
@@ -42,37 +53,88 @@ public class TableDiscoveryService {
         return configService.getConfiguredTables(arguments.getConfigKey()).asList();
     }
 
+    /**
+     * Lists the load files of every configured table under s3Path, listing up to the discovery parallelism tables at
+     * once.
+     */
     public Map<ImmutablePair<String, String>, List<String>> discoverBatchFilesToLoad(String s3Path, SparkSession sparkSession) throws TableDiscoveryException {
+        Map<ImmutablePair<String, String>, List<String>> pathsByTable = new HashMap<>();
+        discoverBatchFileSizesToLoad(s3Path, sparkSession)
+                .forEach((table, fileBytesByPath) -> pathsByTable.put(table, new ArrayList<>(fileBytesByPath.keySet())));
+        return pathsByTable;
+    }
+
+    /**
+     * Lists the load files of every configured table under s3Path as discoverBatchFilesToLoad does, returning the size
+     * in bytes of each file found by its path, in the order they were listed, so that callers which need the sizes do
+     * not have to look them up again.
+     */
+    public Map<ImmutablePair<String, String>, Map<String, Long>> discoverBatchFileSizesToLoad(String s3Path, SparkSession sparkSession) throws TableDiscoveryException {
         val listPathsStartTime = System.currentTimeMillis();
         String fileGlobPattern = arguments.getBatchLoadFileGlobPattern();
-        logger.info("Enumerating load files using glob pattern {}", fileGlobPattern);
+        int parallelism = arguments.getBatchLoadDiscoveryParallelism();
+        logger.info("Enumerating load files using glob pattern {} and {} threads", fileGlobPattern, parallelism);
+        FileSystem fileSystem;
         try {
-            FileSystem fileSystem = FileSystem.get(URI.create(s3Path), sparkSession.sparkContext().hadoopConfiguration());
-            List<ImmutablePair<String, String>> tablesToProcess = discoverTablesToProcess();
-
-            Map<ImmutablePair<String, String>, List<String>> pathsByTable = new HashMap<>();
+            fileSystem = FileSystem.get(URI.create(s3Path), sparkSession.sparkContext().hadoopConfiguration());
+        } catch (IOException e) {
+            throw new TableDiscoveryException(e);
+        }
+        List<ImmutablePair<String, String>> tablesToProcess = discoverTablesToProcess();
+        Long listRequestsBefore = listRequests(fileSystem);
 
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "table-discovery-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            Map<ImmutablePair<String, String>, Future<List<FileStatus>>> listingsByTable = new LinkedHashMap<>();
             for (val tableToProcess : tablesToProcess) {
-                String schema = tableToProcess.getLeft();
-                String table = tableToProcess.getRight();
-                String tablePath = tablePath(s3Path, schema, table);
-                List<String> filePathsToProcess = listFiles(fileSystem, tablePath, fileGlobPattern);
-                if(!filePathsToProcess.isEmpty()) {
+                String tablePath = tablePath(s3Path, tableToProcess.getLeft(), tableToProcess.getRight());
+                listingsByTable.put(tableToProcess, executor.submit(() -> listFileStatuses(fileSystem, tablePath, fileGlobPattern)));
+            }
+
+            Map<ImmutablePair<String, String>, Map<String, Long>> fileBytesByTable = new HashMap<>();
+            for (val entry : listingsByTable.entrySet()) {
+                String schema = entry.getKey().getLeft();
+                String table = entry.getKey().getRight();
+                List<FileStatus> filesToProcess = entry.getValue().get();
+                if(!filesToProcess.isEmpty()) {
+                    Map<String, Long> fileBytesByPath = new LinkedHashMap<>();
+                    for (FileStatus file : filesToProcess) {
+                        fileBytesByPath.put(file.getPath().toString(), file.getLen());
+                    }
                     val key = new ImmutablePair<>(schema, table);
-                    pathsByTable.put(key, filePathsToProcess);
+                    fileBytesByTable.put(key, fileBytesByPath);
                 } else {
                     logger.info("Found no files to process for {}.{} in {}", schema, table, s3Path);
                 }
             }
-            logger.info("Finished enumerating load files in {}ms", System.currentTimeMillis() - listPathsStartTime);
-            return pathsByTable;
-        } catch (IOException e) {
+            Long listRequestsAfter = listRequests(fileSystem);
+            logger.info("Finished enumerating load files for {} tables in {}ms with {} list requests",
+                    tablesToProcess.size(),
+                    System.currentTimeMillis() - listPathsStartTime,
+                    listRequestsBefore == null || listRequestsAfter == null ? "unknown" : listRequestsAfter - listRequestsBefore);
+            return fileBytesByTable;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof TableDiscoveryException ? (TableDiscoveryException) cause : new TableDiscoveryException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             throw new TableDiscoveryException(e);
+        } finally {
+            executor.shutdownNow();
         }
-
     }
 
     public List<String> listFiles(FileSystem fs, String tablePath, String fileGlobPattern) throws TableDiscoveryException {
+        return listFileStatuses(fs, tablePath, fileGlobPattern).stream()
+                .map(f -> f.getPath().toString())
+                .collect(Collectors.toList());
+    }
+
+    private List<FileStatus> listFileStatuses(FileSystem fs, String tablePath, String fileGlobPattern) throws TableDiscoveryException {
         logger.info("Listing files with path {} and glob pattern {}", tablePath, fileGlobPattern);
         Path tablePathGlob = new Path(tablePath, fileGlobPattern);
         try {
@@ -80,8 +142,7 @@ public class TableDiscoveryService {
             if (fileStatuses != null) {
                return Arrays.stream(fileStatuses)
                         .filter(FileStatus::isFile)
-                        .map(f -> f.getPath().toString())
-                        .peek(filePath -> logger.info("Processing file {}", filePath))
+                        .peek(f -> logger.info("Processing file {}", f.getPath()))
                         .collect(Collectors.toList());
             } else {
                 return Collections.emptyList();
@@ -90,4 +151,11 @@ public class TableDiscoveryService {
             throw new TableDiscoveryException(e);
         }
     }
+
+    /**
+     * Returns the number of list requests the file system has made so far, or null if it does not count them.
+     */
+    private static Long listRequests(FileSystem fs) {
+        return fs.getStorageStatistics().getLong(LIST_REQUESTS_STATISTIC);
+    }
 }
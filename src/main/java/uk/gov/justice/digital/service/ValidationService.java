@@ -16,6 +16,7 @@ import uk.gov.justice.digital.datahub.model.SourceReference;
 
 import javax.inject.Singleton;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -32,6 +33,7 @@ public class ValidationService {
     private static final String MISSING_OPERATION_COLUMN_MESSAGE = "Missing " + OPERATION + " column";
 
     private final ViolationService violationService;
+    private final ParquetSchemaCacheService schemaCache;
 
     // This contains a mapping of regex strings used for validating string fields annotated with the validationType metadata
     private final ImmutableMap<String, String> validationFormats = ImmutableMap.<String, String>builder()
@@ -39,15 +41,34 @@ public class ValidationService {
             .build();
 
     @Inject
-    public ValidationService(ViolationService violationService) {
+    public ValidationService(ViolationService violationService, ParquetSchemaCacheService schemaCache) {
         this.violationService = violationService;
+        this.schemaCache = schemaCache;
+    }
+
+    /**
+     * Chooses which of the schemas of the files in a batch to validate the batch against. Any file schema which does
+     * not match the source reference means the batch does not match, so that schema is chosen over matching ones.
+     */
+    public StructType selectSchemaToValidate(List<StructType> fileSchemas, SourceReference sourceReference) {
+        StructType schema = withCheckpointField(withMetadataFields(sourceReference.getSchema()));
+        return fileSchemas.stream()
+                .filter(fileSchema -> !schemaCache.schemasMatch(fileSchema, schema))
+                .findFirst()
+                .orElse(fileSchemas.get(0));
     }
 
     public Dataset<Row> handleValidation(SparkSession spark, Dataset<Row> dataFrame, SourceReference sourceReference, StructType inferredSchema, ViolationService.ZoneName zoneName) {
         val maybeValidRows = validateRows(dataFrame, sourceReference, inferredSchema);
         val validRows = maybeValidRows.filter(col(ERROR).isNull()).drop(ERROR);
         val invalidRows = maybeValidRows.filter(col(ERROR).isNotNull());
-        if (!invalidRows.isEmpty()) {
+        // Counting both sides of the split in one aggregation costs the same pass over the data as checking for any
+        // invalid rows, which has to read the whole batch whenever it is all valid
+        Row counts = maybeValidRows.agg(count(lit(1)), count(col(ERROR))).first();
+        long invalidRowCount = counts.getLong(1);
+        logger.info("Validated {} rows for {}.{}: {} valid, {} invalid", counts.getLong(0),
+                sourceReference.getSource(), sourceReference.getTable(), counts.getLong(0) - invalidRowCount, invalidRowCount);
+        if (invalidRowCount > 0) {
             violationService.handleViolation(spark, invalidRows, sourceReference.getSource(), sourceReference.getTable(), zoneName);
         }
         return validRows;
@@ -57,7 +78,7 @@ public class ValidationService {
     Dataset<Row> validateRows(Dataset<Row> df, SourceReference sourceReference, StructType inferredSchema) {
         StructType schema = withCheckpointField(withMetadataFields(sourceReference.getSchema()));
         val validatedDf = validateStringFields(df, sourceReference);
-        if (schemasMatch(inferredSchema, schema)) {
+        if (schemaCache.schemasMatch(inferredSchema, schema)) {
             return validatedDf.withColumn(
                     ERROR,
                     // The order of the 'when' clauses determines the validation error message used - first wins.
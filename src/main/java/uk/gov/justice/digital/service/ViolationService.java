@@ -139,22 +139,47 @@ public class ViolationService {
             String tablePath = tablePath(rawRoot, source, table);
             // We only read data that matches the file glob pattern
             List<String> filePaths = tableDiscoveryService.listFiles(fileSystem, tablePath, fileGlobPattern);
-            logger.info("Moving {} files to violations to avoid schema mismatch", filePaths.size());
-            for (String filePath: filePaths) {
-                logger.info("Moving {} to violations started", filePath);
-                // We need to read the data file-by-file, rather than in a single read call for all files, in case
-                // there are multiple files with incompatible schemas which cannot be read and merged in a single read.
-                Dataset<Row> df = dataProvider.getBatchSourceData(spark, filePath);
-                Dataset<Row> violations = df.withColumn(ERROR, functions.lit(errorMessage));
-                handleViolation(spark, violations, source, table, zone);
-                logger.info("Moving {} to violations completed", filePath);
-            }
+            moveFilesToViolations(spark, source, table, filePaths, errorMessage, zone);
             logger.info("Finished moving all available CDC data to violations to avoid schema mismatch");
         } catch (IOException e) {
             throw new DataStorageException("Unexpected Exception when moving CDC data to violations", e);
         }
     }
 
+    /**
+     * Writes only the given load files of a table to violations, e.g. the files whose schema is incompatible with the
+     * rest of the table's files.
+     */
+    public void writeBatchFilesToViolations(
+            SparkSession spark,
+            String source,
+            String table,
+            List<String> filePaths,
+            String errorMessage
+    ) throws DataStorageException {
+        moveFilesToViolations(spark, source, table, filePaths, errorMessage, STRUCTURED_LOAD);
+    }
+
+    private void moveFilesToViolations(
+            SparkSession spark,
+            String source,
+            String table,
+            List<String> filePaths,
+            String errorMessage,
+            ZoneName zone
+    ) throws DataStorageException {
+        logger.info("Moving {} files to violations to avoid schema mismatch", filePaths.size());
+        for (String filePath: filePaths) {
+            logger.info("Moving {} to violations started", filePath);
+            // We need to read the data file-by-file, rather than in a single read call for all files, in case
+            // there are multiple files with incompatible schemas which cannot be read and merged in a single read.
+            Dataset<Row> df = dataProvider.getBatchSourceData(spark, filePath);
+            Dataset<Row> violations = df.withColumn(ERROR, functions.lit(errorMessage));
+            handleViolation(spark, violations, source, table, zone);
+            logger.info("Moving {} to violations completed", filePath);
+        }
+    }
+
     /**
      * Handle violations with error column already present on the DataFrame.
      */
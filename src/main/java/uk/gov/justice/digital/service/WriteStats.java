@@ -0,0 +1,67 @@
+package uk.gov.justice.digital.service;
+
+import lombok.Data;
+import org.apache.spark.sql.Row;
+
+import java.sql.Timestamp;
+import java.util.Map;
+
+/**
+ * The metrics Delta recorded in a table's commit history for a single write. Each operation names its metrics
+ * differently, e.g. a MERGE records numTargetRowsInserted where a WRITE records numOutputRows, so they are normalised
+ * here. Metrics which the operation does not record are null.
+ */
+@Data
+public class WriteStats {
+
+    private final String tablePath;
+    private final long version;
+    private final Timestamp commitTimestamp;
+    private final String operation;
+    private final Long rowsInserted;
+    private final Long rowsUpdated;
+    private final Long rowsDeleted;
+    private final Long filesAdded;
+    private final Long filesRemoved;
+    private final Long executionTimeMs;
+    private final Long scanTimeMs;
+
+    /**
+     * Creates the stats from a row of DeltaTable.history with the version, timestamp, operation and operationMetrics
+     * columns, in that order.
+     */
+    public static WriteStats fromCommit(String tablePath, Row commit) {
+        Map<String, String> metrics = commit.getJavaMap(3);
+        return new WriteStats(
+                tablePath,
+                commit.getLong(0),
+                commit.getTimestamp(1),
+                commit.getString(2),
+                firstMetric(metrics, "numTargetRowsInserted", "numOutputRows"),
+                firstMetric(metrics, "numTargetRowsUpdated", "numUpdatedRows"),
+                firstMetric(metrics, "numTargetRowsDeleted", "numDeletedRows"),
+                firstMetric(metrics, "numTargetFilesAdded", "numAddedFiles", "numFiles"),
+                firstMetric(metrics, "numTargetFilesRemoved", "numRemovedFiles"),
+                firstMetric(metrics, "executionTimeMs"),
+                firstMetric(metrics, "scanTimeMs")
+        );
+    }
+
+    public String summary() {
+        return String.format("%s version %d inserted %s, updated %s and deleted %s rows, added %s and removed %s files in %sms",
+                operation, version, rowsInserted, rowsUpdated, rowsDeleted, filesAdded, filesRemoved, executionTimeMs);
+    }
+
+    private static Long firstMetric(Map<String, String> metrics, String... names) {
+        if (metrics == null) {
+            return null;
+        }
+        for (String name : names) {
+            String value = metrics.get(name);
+            if (value != null) {
+                return Long.parseLong(value);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,194 @@
+package uk.gov.justice.digital.service;
+
+import com.amazonaws.services.cloudwatch.model.StandardUnit;
+import com.google.common.annotations.VisibleForTesting;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.apache.hadoop.fs.Path;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.RowFactory;
+import org.apache.spark.sql.SparkSession;
+import org.apache.spark.sql.types.DataTypes;
+import org.apache.spark.sql.types.StructField;
+import org.apache.spark.sql.types.StructType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.justice.digital.config.JobArguments;
+import uk.gov.justice.digital.service.metrics.StreamingMetricsCollector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects the stats of each write to a Delta table while a job runs and appends them to the write stats table once
+ * every flush interval, so that tables with a high write amplification can be found by querying a single table.
+ * The stats of structured and curated tables are also recorded as CloudWatch metrics when the CDC CloudWatch metrics
+ * are enabled.
+ */
+@Singleton
+public class WriteStatsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(WriteStatsService.class);
+
+    public static final String ROWS_INSERTED = "RowsInserted";
+    public static final String ROWS_UPDATED = "RowsUpdated";
+    public static final String ROWS_DELETED = "RowsDeleted";
+    public static final String FILES_ADDED = "FilesAdded";
+    public static final String FILES_REMOVED = "FilesRemoved";
+    public static final String WRITE_EXECUTION_TIME = "WriteExecutionTime";
+
+    @VisibleForTesting
+    static final StructType WRITE_STATS_SCHEMA = new StructType(new StructField[]{
+            DataTypes.createStructField("table_path", DataTypes.StringType, false),
+            DataTypes.createStructField("version", DataTypes.LongType, false),
+            DataTypes.createStructField("commit_timestamp", DataTypes.TimestampType, true),
+            DataTypes.createStructField("operation", DataTypes.StringType, true),
+            DataTypes.createStructField("rows_inserted", DataTypes.LongType, true),
+            DataTypes.createStructField("rows_updated", DataTypes.LongType, true),
+            DataTypes.createStructField("rows_deleted", DataTypes.LongType, true),
+            DataTypes.createStructField("files_added", DataTypes.LongType, true),
+            DataTypes.createStructField("files_removed", DataTypes.LongType, true),
+            DataTypes.createStructField("execution_time_ms", DataTypes.LongType, true),
+            DataTypes.createStructField("scan_time_ms", DataTypes.LongType, true)
+    });
+
+    private final JobArguments arguments;
+    private final boolean enabled;
+    private final DataStorageService storage;
+    private final StreamingMetricsCollector metricsCollector;
+
+    private final Queue<WriteStats> pending = new ConcurrentLinkedQueue<>();
+    private String writeStatsPath;
+    private String structuredPath;
+    private String curatedPath;
+    private SparkSession spark;
+    private ScheduledExecutorService executor;
+
+    @Inject
+    public WriteStatsService(JobArguments arguments, DataStorageService storage, StreamingMetricsCollector metricsCollector) {
+        this.arguments = arguments;
+        this.enabled = arguments.isDataStorageWriteStatsEnabled();
+        this.storage = storage;
+        this.metricsCollector = metricsCollector;
+    }
+
+    /**
+     * Starts collecting the stats of every write and appending them to the write stats table every flush interval.
+     */
+    public synchronized void start(SparkSession spark) {
+        if (!enabled || executor != null) {
+            return;
+        }
+        this.spark = spark;
+        this.writeStatsPath = arguments.getDataStorageWriteStatsPath();
+        this.structuredPath = arguments.getStructuredS3Path();
+        this.curatedPath = arguments.getCuratedS3Path();
+        long flushIntervalSeconds = arguments.getDataStorageWriteStatsFlushIntervalSeconds();
+        logger.info("Appending write stats to {} every {}s", writeStatsPath, flushIntervalSeconds);
+        storage.setWriteStatsListener(this::record);
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "write-stats-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::flush, flushIntervalSeconds, flushIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Appends the stats collected since the last flush and stops collecting.
+     */
+    public void stop() {
+        ScheduledExecutorService stopping;
+        synchronized (this) {
+            stopping = executor;
+            executor = null;
+        }
+        if (stopping == null) {
+            return;
+        }
+        storage.setWriteStatsListener(stats -> { });
+        try {
+            stopping.submit(this::flush).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Interrupted while appending {} write stats", pending.size());
+        } catch (ExecutionException e) {
+            logger.error("Failed to append write stats", e);
+        } finally {
+            stopping.shutdownNow();
+        }
+    }
+
+    @VisibleForTesting
+    void record(WriteStats stats) {
+        if (stats.getTablePath().equals(writeStatsPath)) {
+            // Appending the stats is itself a write
+            return;
+        }
+        pending.add(stats);
+        if (stats.getTablePath().startsWith(structuredPath)) {
+            recordMetrics("Structured", stats);
+        } else if (stats.getTablePath().startsWith(curatedPath)) {
+            recordMetrics("Curated", stats);
+        }
+    }
+
+    @VisibleForTesting
+    void flush() {
+        List<Row> rows = new ArrayList<>();
+        WriteStats stats;
+        while ((stats = pending.poll()) != null) {
+            rows.add(toRow(stats));
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+        try {
+            storage.append(writeStatsPath, spark.createDataFrame(rows, WRITE_STATS_SCHEMA));
+            logger.info("Appended {} write stats to {}", rows.size(), writeStatsPath);
+        } catch (Exception e) {
+            // The stats are for information only so are dropped rather than retried
+            logger.error("Failed to append {} write stats to {}", rows.size(), writeStatsPath, e);
+        }
+    }
+
+    private void recordMetrics(String zone, WriteStats stats) {
+        Path path = new Path(stats.getTablePath());
+        String source = path.getParent().getName();
+        String table = path.getName();
+        recordMetric(zone + ROWS_INSERTED, StandardUnit.Count, source, table, stats.getRowsInserted());
+        recordMetric(zone + ROWS_UPDATED, StandardUnit.Count, source, table, stats.getRowsUpdated());
+        recordMetric(zone + ROWS_DELETED, StandardUnit.Count, source, table, stats.getRowsDeleted());
+        recordMetric(zone + FILES_ADDED, StandardUnit.Count, source, table, stats.getFilesAdded());
+        recordMetric(zone + FILES_REMOVED, StandardUnit.Count, source, table, stats.getFilesRemoved());
+        recordMetric(zone + WRITE_EXECUTION_TIME, StandardUnit.Milliseconds, source, table, stats.getExecutionTimeMs());
+    }
+
+    private void recordMetric(String metricName, StandardUnit unit, String source, String table, Long value) {
+        if (value != null) {
+            metricsCollector.record(metricName, unit, source, table, value);
+        }
+    }
+
+    private static Row toRow(WriteStats stats) {
+        return RowFactory.create(
+                stats.getTablePath(),
+                stats.getVersion(),
+                stats.getCommitTimestamp(),
+                stats.getOperation(),
+                stats.getRowsInserted(),
+                stats.getRowsUpdated(),
+                stats.getRowsDeleted(),
+                stats.getFilesAdded(),
+                stats.getFilesRemoved(),
+                stats.getExecutionTimeMs(),
+                stats.getScanTimeMs()
+        );
+    }
+}
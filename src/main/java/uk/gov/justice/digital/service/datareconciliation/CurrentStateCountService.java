@@ -13,6 +13,7 @@ import uk.gov.justice.digital.config.JobArguments;
 import uk.gov.justice.digital.datahub.model.SourceReference;
 import uk.gov.justice.digital.exception.OperationalDataStoreException;
 import uk.gov.justice.digital.exception.ReconciliationDataSourceException;
+import uk.gov.justice.digital.service.ChangeLogService;
 import uk.gov.justice.digital.service.datareconciliation.model.CurrentStateTableCount;
 import uk.gov.justice.digital.service.datareconciliation.model.CurrentStateTotalCounts;
 import uk.gov.justice.digital.service.datareconciliation.model.DataReconciliationResult;
@@ -32,18 +33,21 @@ public class CurrentStateCountService {
     private final S3DataProvider s3DataProvider;
     private final ReconciliationDataSourceService dataSourceService;
     private final OperationalDataStoreService operationalDataStoreService;
+    private final ChangeLogService changeLogService;
 
     @Inject
     public CurrentStateCountService(
             JobArguments jobArguments,
             S3DataProvider s3DataProvider,
             ReconciliationDataSourceService reconciliationDataSourceService,
-            OperationalDataStoreService operationalDataStoreService
+            OperationalDataStoreService operationalDataStoreService,
+            ChangeLogService changeLogService
     ) {
         this.jobArguments = jobArguments;
         this.s3DataProvider = s3DataProvider;
         this.dataSourceService = reconciliationDataSourceService;
         this.operationalDataStoreService = operationalDataStoreService;
+        this.changeLogService = changeLogService;
     }
 
     /**
@@ -73,7 +77,7 @@ public class CurrentStateCountService {
         long structuredCount = getStructuredCount(sparkSession, structuredTablePath, sourceName, tableName);
 
         String curatedTablePath = tablePath(jobArguments.getCuratedS3Path(), sourceName, tableName);
-        long curatedCount = getCuratedCount(sparkSession, curatedTablePath, sourceName, tableName, structuredTablePath);
+        long curatedCount = getCuratedCount(sparkSession, curatedTablePath, sourceReference, structuredTablePath);
 
         String operationalDataStoreFullTableName = sourceReference.getFullOperationalDataStoreTableNameWithSchema();
         Long operationalDataStoreCount = getOperationalDataStoreCount(sourceReference, operationalDataStoreFullTableName);
@@ -114,10 +118,16 @@ public class CurrentStateCountService {
         return structuredCount;
     }
 
-    private long getCuratedCount(SparkSession sparkSession, String curatedTablePath, String sourceName, String tableName, String structuredTablePath) {
+    private long getCuratedCount(SparkSession sparkSession, String curatedTablePath, SourceReference sourceReference, String structuredTablePath) {
+        String sourceName = sourceReference.getSource();
+        String tableName = sourceReference.getTable();
         long curatedCount;
         try {
             Dataset<Row> curated = s3DataProvider.getBatchDeltaTableData(sparkSession, curatedTablePath);
+            if (changeLogService.hasChangeLog(sparkSession, curatedTablePath)) {
+                // Count a merge-on-read table as it currently is rather than as of its last compaction
+                curated = changeLogService.applyChanges(sparkSession, curated, curatedTablePath, sourceReference.getPrimaryKey());
+            }
             logger.info("Reading Curated count for table {}/{}", sourceName, tableName);
             curatedCount = curated.count();
         } catch (Exception e) {
@@ -0,0 +1,41 @@
+package uk.gov.justice.digital.service.metrics;
+
+import com.amazonaws.services.cloudwatch.model.MetricDatum;
+import com.google.common.collect.Iterables;
+import io.micronaut.context.annotation.Requires;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.justice.digital.client.cloudwatch.CloudwatchClient;
+import uk.gov.justice.digital.config.JobArguments;
+
+import java.util.Collection;
+import java.util.List;
+
+@Singleton
+@Requires(property = "dpr.cdc.cloudwatch.metrics.enabled")
+public class CloudwatchStreamingMetricsSink implements StreamingMetricsSink {
+
+    private static final Logger logger = LoggerFactory.getLogger(CloudwatchStreamingMetricsSink.class);
+
+    // The most metrics CloudWatch accepts in a single PutMetricData request
+    static final int MAX_METRICS_PER_REQUEST = 1000;
+
+    private final String namespace;
+    private final CloudwatchClient cloudwatchClient;
+
+    @Inject
+    public CloudwatchStreamingMetricsSink(JobArguments jobArguments, CloudwatchClient cloudwatchClient) {
+        this.namespace = jobArguments.getCdcCloudwatchMetricsNamespace();
+        this.cloudwatchClient = cloudwatchClient;
+    }
+
+    @Override
+    public void publish(Collection<MetricDatum> metricData) {
+        logger.debug("Publishing {} metrics to namespace {}", metricData.size(), namespace);
+        for (List<MetricDatum> request : Iterables.partition(metricData, MAX_METRICS_PER_REQUEST)) {
+            cloudwatchClient.putMetrics(namespace, request);
+        }
+    }
+}
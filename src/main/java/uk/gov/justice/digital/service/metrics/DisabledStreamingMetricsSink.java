@@ -0,0 +1,16 @@
+package uk.gov.justice.digital.service.metrics;
+
+import com.amazonaws.services.cloudwatch.model.MetricDatum;
+import io.micronaut.context.annotation.Requires;
+import jakarta.inject.Singleton;
+
+import java.util.Collection;
+
+@Singleton
+@Requires(missingProperty = "dpr.cdc.cloudwatch.metrics.enabled")
+public class DisabledStreamingMetricsSink implements StreamingMetricsSink {
+    @Override
+    public void publish(Collection<MetricDatum> metricData) {
+        // No op
+    }
+}
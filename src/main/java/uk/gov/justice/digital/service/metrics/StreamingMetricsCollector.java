@@ -0,0 +1,164 @@
+package uk.gov.justice.digital.service.metrics;
+
+import com.amazonaws.services.cloudwatch.model.Dimension;
+import com.amazonaws.services.cloudwatch.model.MetricDatum;
+import com.amazonaws.services.cloudwatch.model.StandardUnit;
+import com.amazonaws.services.cloudwatch.model.StatisticSet;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import lombok.Data;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.justice.digital.config.JobArguments;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aggregates CDC streaming metrics per table in memory and periodically flushes them to the StreamingMetricsSink.
+ * Each metric is sent as a single statistic set per table per flush, however many micro-batches were recorded, which
+ * keeps the number of CloudWatch API calls independent of the trigger interval.
+ */
+@Singleton
+public class StreamingMetricsCollector {
+
+    private static final Logger logger = LoggerFactory.getLogger(StreamingMetricsCollector.class);
+
+    public static final String INPUT_ROWS = "InputRows";
+    public static final String INPUT_ROWS_PER_SECOND = "InputRowsPerSecond";
+    public static final String PROCESSED_ROWS_PER_SECOND = "ProcessedRowsPerSecond";
+    public static final String BATCH_DURATION = "BatchDuration";
+    public static final String TRIGGER_TO_COMMIT_LATENCY = "TriggerToCommitLatency";
+    public static final String BACKLOG = "Backlog";
+    public static final String QUERY_RESTARTS = "QueryRestarts";
+    public static final String QUERY_DOWNTIME = "QueryDowntime";
+    public static final String QUERY_QUARANTINED = "QueryQuarantined";
+
+    static final String SOURCE_DIMENSION = "Source";
+    static final String TABLE_DIMENSION = "Table";
+
+    private final boolean enabled;
+    private final long flushIntervalSeconds;
+    private final StreamingMetricsSink sink;
+
+    private Map<MetricKey, Statistics> pending = new HashMap<>();
+    private ScheduledExecutorService executor;
+
+    @Inject
+    public StreamingMetricsCollector(JobArguments arguments, StreamingMetricsSink sink) {
+        this.enabled = arguments.isCdcCloudwatchMetricsEnabled();
+        this.flushIntervalSeconds = enabled ? arguments.getCdcCloudwatchMetricsFlushIntervalSeconds() : 0;
+        this.sink = sink;
+    }
+
+    /**
+     * Records a single value, e.g. for one micro-batch, to be aggregated with the others for the table until the next flush.
+     */
+    public void record(String metricName, StandardUnit unit, String source, String table, double value) {
+        if (!enabled || !Double.isFinite(value)) {
+            // CloudWatch rejects NaN and infinite values, which Spark reports for rates over an empty interval
+            return;
+        }
+        MetricKey key = new MetricKey(metricName, unit, source, table);
+        synchronized (this) {
+            pending.computeIfAbsent(key, k -> new Statistics()).add(value);
+        }
+    }
+
+    public synchronized void start() {
+        if (!enabled || executor != null) {
+            return;
+        }
+        logger.info("Flushing CDC streaming metrics every {} seconds", flushIntervalSeconds);
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "streaming-metrics-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleAtFixedRate(this::flush, flushIntervalSeconds, flushIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops the periodic flush and flushes anything recorded since the last one.
+     */
+    public void stop() {
+        synchronized (this) {
+            if (executor != null) {
+                executor.shutdownNow();
+                executor = null;
+            }
+        }
+        flush();
+    }
+
+    /**
+     * Publishes everything recorded since the last flush. A failure to publish is logged and the metrics dropped,
+     * since metrics should never stop the job processing data.
+     */
+    public void flush() {
+        Map<MetricKey, Statistics> toPublish;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            toPublish = pending;
+            pending = new HashMap<>();
+        }
+        Date timestamp = new Date();
+        List<MetricDatum> metricData = new ArrayList<>(toPublish.size());
+        toPublish.forEach((key, statistics) -> metricData.add(
+                new MetricDatum()
+                        .withMetricName(key.getMetricName())
+                        .withUnit(key.getUnit())
+                        .withTimestamp(timestamp)
+                        .withDimensions(
+                                new Dimension().withName(SOURCE_DIMENSION).withValue(key.getSource()),
+                                new Dimension().withName(TABLE_DIMENSION).withValue(key.getTable())
+                        )
+                        .withStatisticValues(statistics.toStatisticSet())
+        ));
+        try {
+            sink.publish(metricData);
+            logger.debug("Published {} CDC streaming metrics", metricData.size());
+        } catch (Exception e) {
+            logger.warn("Failed to publish {} CDC streaming metrics", metricData.size(), e);
+        }
+    }
+
+    @Data
+    private static class MetricKey {
+        private final String metricName;
+        private final StandardUnit unit;
+        private final String source;
+        private final String table;
+    }
+
+    // Only accessed while holding the collector's lock
+    private static class Statistics {
+        private long sampleCount;
+        private double sum;
+        private double minimum = Double.MAX_VALUE;
+        private double maximum = -Double.MAX_VALUE;
+
+        void add(double value) {
+            sampleCount++;
+            sum += value;
+            minimum = Math.min(minimum, value);
+            maximum = Math.max(maximum, value);
+        }
+
+        StatisticSet toStatisticSet() {
+            return new StatisticSet()
+                    .withSampleCount((double) sampleCount)
+                    .withSum(sum)
+                    .withMinimum(minimum)
+                    .withMaximum(maximum);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package uk.gov.justice.digital.service.metrics;
+
+import com.amazonaws.services.cloudwatch.model.MetricDatum;
+
+import java.util.Collection;
+
+/**
+ * Receives the CDC streaming metrics which have been aggregated since the last flush.
+ */
+public interface StreamingMetricsSink {
+    void publish(Collection<MetricDatum> metricData);
+}
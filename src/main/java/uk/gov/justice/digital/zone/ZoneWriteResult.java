@@ -0,0 +1,38 @@
+package uk.gov.justice.digital.zone;
+
+import lombok.Data;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.SparkSession;
+import uk.gov.justice.digital.service.WriteStats;
+
+import java.util.Optional;
+
+/**
+ * The records a zone passes on to the next zone, whether its write committed them and the stats of the commit.
+ * A zone whose write exhausts its retries sends the records to violations instead and passes nothing on.
+ */
+@Data
+public class ZoneWriteResult {
+
+    private final Dataset<Row> data;
+    private final boolean committed;
+    // Null when the write was not committed or write stats are disabled
+    private final WriteStats writeStats;
+
+    public static ZoneWriteResult committed(Dataset<Row> data) {
+        return new ZoneWriteResult(data, true, null);
+    }
+
+    public static ZoneWriteResult committed(Dataset<Row> data, Optional<WriteStats> writeStats) {
+        return new ZoneWriteResult(data, true, writeStats.orElse(null));
+    }
+
+    public static ZoneWriteResult notCommitted(SparkSession spark) {
+        return new ZoneWriteResult(spark.emptyDataFrame(), false, null);
+    }
+
+    public Optional<WriteStats> getWriteStats() {
+        return Optional.ofNullable(writeStats);
+    }
+}
@@ -11,11 +11,14 @@ import org.slf4j.LoggerFactory;
 import uk.gov.justice.digital.config.JobArguments;
 import uk.gov.justice.digital.datahub.model.SourceReference;
 import uk.gov.justice.digital.exception.DataStorageRetriesExhaustedException;
+import uk.gov.justice.digital.service.ChangeLogService;
 import uk.gov.justice.digital.service.DataStorageService;
 import uk.gov.justice.digital.service.ViolationService;
 import uk.gov.justice.digital.zone.Zone;
+import uk.gov.justice.digital.zone.ZoneWriteResult;
 
 import static uk.gov.justice.digital.common.ResourcePath.tablePath;
+import static uk.gov.justice.digital.common.StreamingQuery.areManifestUpdatesRelaxed;
 import static uk.gov.justice.digital.service.ViolationService.ZoneName.STRUCTURED_CDC;
 
 @Singleton
@@ -26,19 +29,30 @@ public class CuratedZoneCDC implements Zone {
     private final String curatedZoneRootPath;
     private final ViolationService violationService;
     private final DataStorageService storage;
+    private final ChangeLogService changeLogService;
 
     @Inject
     public CuratedZoneCDC(
             JobArguments arguments,
             ViolationService violationService,
-            DataStorageService storage) {
+            DataStorageService storage,
+            ChangeLogService changeLogService) {
         this.curatedZoneRootPath = arguments.getCuratedS3Path();
         this.violationService = violationService;
         this.storage = storage;
+        this.changeLogService = changeLogService;
     }
 
 
     public Dataset<Row> process(SparkSession spark, Dataset<Row> dataFrame, SourceReference sourceReference) {
+        return write(spark, dataFrame, sourceReference).getData();
+    }
+
+    /**
+     * Merges the records into the curated table, or appends them to its change log, reporting whether the write
+     * committed them.
+     */
+    public ZoneWriteResult write(SparkSession spark, Dataset<Row> dataFrame, SourceReference sourceReference) {
         val startTime = System.currentTimeMillis();
         String sourceName = sourceReference.getSource();
         String tableName = sourceReference.getTable();
@@ -46,18 +60,39 @@ public class CuratedZoneCDC implements Zone {
         logger.debug("Processing records for curated {}/{} {}", sourceName, tableName, curatedTablePath);
 
         try {
-            logger.debug("Merging {} records to deltalake table: {}", dataFrame.count(), curatedTablePath);
-            storage.mergeRecords(spark, curatedTablePath, dataFrame, sourceReference.getPrimaryKey());
+            if (changeLogService.isMergeOnRead(sourceName, tableName)) {
+                // The curated table and its manifest are updated when the change log is compacted
+                logger.debug("Appending records to change log for table: {}", curatedTablePath);
+                changeLogService.appendChanges(
+                        spark,
+                        curatedTablePath,
+                        dataFrame,
+                        sourceReference.getPrimaryKey(),
+                        sourceReference.getLayout()
+                );
+                logger.info("Processed batch for curated {}/{} change log in {}ms", sourceName, tableName, System.currentTimeMillis() - startTime);
+                return ZoneWriteResult.committed(dataFrame);
+            }
+            changeLogService.compactLeftoverChanges(spark, curatedTablePath, sourceReference.getPrimaryKey(), sourceReference.getLayout());
+            logger.debug("Merging records to deltalake table: {}", curatedTablePath);
+            val writeStats = storage.mergeRecords(spark, curatedTablePath, dataFrame, sourceReference.getPrimaryKey(), sourceReference.getLayout());
             logger.debug("Merge completed successfully to table: {}", curatedTablePath);
-            storage.updateDeltaManifestForTable(spark, curatedTablePath);
+            writeStats.ifPresent(stats -> logger.info("Write stats for {}: {}", curatedTablePath, stats.summary()));
+            if (areManifestUpdatesRelaxed(spark)) {
+                logger.debug("Leaving the manifest for table {} to be updated once the table has caught up", curatedTablePath);
+            } else {
+                storage.updateDeltaManifestForTable(spark, curatedTablePath);
+            }
             logger.info("Processed batch for curated {}/{} in {}ms", sourceName, tableName, System.currentTimeMillis() - startTime);
-            return dataFrame;
+            return ZoneWriteResult.committed(dataFrame, writeStats);
         } catch (DataStorageRetriesExhaustedException e) {
             logger.warn("Curated zone cdc retries exhausted", e);
             violationService.handleRetriesExhausted(spark, dataFrame, sourceName, tableName, e, STRUCTURED_CDC);
-            return spark.emptyDataFrame();
+            return ZoneWriteResult.notCommitted(spark);
         }
     }
 
-
+    public void updateManifest(SparkSession spark, SourceReference sourceReference) {
+        storage.updateDeltaManifestForTable(spark, tablePath(curatedZoneRootPath, sourceReference.getSource(), sourceReference.getTable()));
+    }
 }
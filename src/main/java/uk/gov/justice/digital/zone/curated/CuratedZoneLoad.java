@@ -9,9 +9,11 @@ import org.slf4j.LoggerFactory;
 import uk.gov.justice.digital.config.JobArguments;
 import uk.gov.justice.digital.datahub.model.SourceReference;
 import uk.gov.justice.digital.exception.DataStorageRetriesExhaustedException;
+import uk.gov.justice.digital.service.ChangeLogService;
 import uk.gov.justice.digital.service.DataStorageService;
 import uk.gov.justice.digital.service.ViolationService;
 import uk.gov.justice.digital.zone.Zone;
+import uk.gov.justice.digital.zone.ZoneWriteResult;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -26,18 +28,28 @@ public class CuratedZoneLoad implements Zone {
     private final String curatedZoneRootPath;
     private final DataStorageService storage;
     private final ViolationService violationService;
+    private final ChangeLogService changeLogService;
 
     @Inject
     public CuratedZoneLoad(
             JobArguments arguments,
             DataStorageService storage,
-            ViolationService violationService) {
+            ViolationService violationService,
+            ChangeLogService changeLogService) {
         this.curatedZoneRootPath = arguments.getCuratedS3Path();
         this.storage = storage;
         this.violationService = violationService;
+        this.changeLogService = changeLogService;
     }
 
     public Dataset<Row> process(SparkSession spark, Dataset<Row> dataFrame, SourceReference sourceReference) {
+        return write(spark, dataFrame, sourceReference).getData();
+    }
+
+    /**
+     * Appends the records to the curated table, reporting whether the append committed them.
+     */
+    public ZoneWriteResult write(SparkSession spark, Dataset<Row> dataFrame, SourceReference sourceReference) {
         val startTime = System.currentTimeMillis();
         String sourceName = sourceReference.getSource();
         String tableName = sourceReference.getTable();
@@ -45,16 +57,19 @@ public class CuratedZoneLoad implements Zone {
         val path = tablePath(curatedZoneRootPath, sourceName, tableName);
         logger.debug("Processing records for curated {}/{} {}", sourceName, tableName, path);
         try {
+            // Changes logged for a merge-on-read table before the load must not be compacted over the loaded records
+            changeLogService.discardChangesAppendedBefore(spark, path, startTime);
             logger.info("Appending {} records to deltalake table: {}", dataFrame.count(), path);
-            storage.appendDistinct(path, dataFrame, primaryKey);
+            val writeStats = storage.appendDistinct(path, dataFrame, primaryKey, sourceReference.getLayout());
             logger.info("Append completed successfully to table: {}", path);
+            writeStats.ifPresent(stats -> logger.info("Write stats for {}: {}", path, stats.summary()));
             storage.updateDeltaManifestForTable(spark, path);
             logger.info("Processed batch for curated {}/{} in {}ms", sourceName, tableName, System.currentTimeMillis() - startTime);
-            return dataFrame;
+            return ZoneWriteResult.committed(dataFrame, writeStats);
         } catch (DataStorageRetriesExhaustedException e) {
             logger.warn("Curated zone load retries exhausted", e);
             violationService.handleRetriesExhausted(spark, dataFrame, sourceName, tableName, e, ViolationService.ZoneName.CURATED_LOAD);
-            return spark.emptyDataFrame();
+            return ZoneWriteResult.notCommitted(spark);
         }
     }
 }
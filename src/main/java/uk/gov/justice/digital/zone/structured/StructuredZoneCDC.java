@@ -14,8 +14,10 @@ import uk.gov.justice.digital.exception.DataStorageRetriesExhaustedException;
 import uk.gov.justice.digital.service.DataStorageService;
 import uk.gov.justice.digital.service.ViolationService;
 import uk.gov.justice.digital.zone.Zone;
+import uk.gov.justice.digital.zone.ZoneWriteResult;
 
 import static uk.gov.justice.digital.common.ResourcePath.tablePath;
+import static uk.gov.justice.digital.common.StreamingQuery.areManifestUpdatesRelaxed;
 import static uk.gov.justice.digital.service.ViolationService.ZoneName.STRUCTURED_CDC;
 
 @Singleton
@@ -39,6 +41,13 @@ public class StructuredZoneCDC implements Zone {
 
 
     public Dataset<Row> process(SparkSession spark, Dataset<Row> dataFrame, SourceReference sourceReference) {
+        return write(spark, dataFrame, sourceReference).getData();
+    }
+
+    /**
+     * Merges the records into the structured table, reporting whether the merge committed them.
+     */
+    public ZoneWriteResult write(SparkSession spark, Dataset<Row> dataFrame, SourceReference sourceReference) {
         val startTime = System.currentTimeMillis();
         String sourceName = sourceReference.getSource();
         String tableName = sourceReference.getTable();
@@ -46,18 +55,25 @@ public class StructuredZoneCDC implements Zone {
         logger.debug("Processing records for structured {}/{} {}", sourceName, tableName, structuredTablePath);
 
         try {
-            logger.debug("Merging {} records to deltalake table: {}", dataFrame.count(), structuredTablePath);
-            storage.mergeRecords(spark, structuredTablePath, dataFrame, sourceReference.getPrimaryKey());
+            logger.debug("Merging records to deltalake table: {}", structuredTablePath);
+            val writeStats = storage.mergeRecords(spark, structuredTablePath, dataFrame, sourceReference.getPrimaryKey(), sourceReference.getLayout());
             logger.debug("Merge completed successfully to table: {}", structuredTablePath);
-            storage.updateDeltaManifestForTable(spark, structuredTablePath);
+            writeStats.ifPresent(stats -> logger.info("Write stats for {}: {}", structuredTablePath, stats.summary()));
+            if (areManifestUpdatesRelaxed(spark)) {
+                logger.debug("Leaving the manifest for table {} to be updated once the table has caught up", structuredTablePath);
+            } else {
+                storage.updateDeltaManifestForTable(spark, structuredTablePath);
+            }
             logger.info("Processed batch for structured {}/{} in {}ms", sourceName, tableName, System.currentTimeMillis() - startTime);
-            return dataFrame;
+            return ZoneWriteResult.committed(dataFrame, writeStats);
         } catch (DataStorageRetriesExhaustedException e) {
             logger.warn("Structured zone cdc retries exhausted", e);
             violationService.handleRetriesExhausted(spark, dataFrame, sourceName, tableName, e, STRUCTURED_CDC);
-            return spark.emptyDataFrame();
+            return ZoneWriteResult.notCommitted(spark);
         }
     }
 
-
+    public void updateManifest(SparkSession spark, SourceReference sourceReference) {
+        storage.updateDeltaManifestForTable(spark, tablePath(structuredZoneRootPath, sourceReference.getSource(), sourceReference.getTable()));
+    }
 }
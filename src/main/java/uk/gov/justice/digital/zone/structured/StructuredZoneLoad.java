@@ -12,6 +12,7 @@ import uk.gov.justice.digital.exception.DataStorageRetriesExhaustedException;
 import uk.gov.justice.digital.service.DataStorageService;
 import uk.gov.justice.digital.service.ViolationService;
 import uk.gov.justice.digital.zone.Zone;
+import uk.gov.justice.digital.zone.ZoneWriteResult;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -37,23 +38,32 @@ public class StructuredZoneLoad implements Zone {
     }
 
     public Dataset<Row> process(SparkSession spark, Dataset<Row> dataFrame, SourceReference sourceReference) {
+        return write(spark, dataFrame, sourceReference).getData();
+    }
+
+    /**
+     * Appends the records to the structured table, reporting whether the append committed them.
+     */
+    public ZoneWriteResult write(SparkSession spark, Dataset<Row> dataFrame, SourceReference sourceReference) {
         val startTime = System.currentTimeMillis();
         String sourceName = sourceReference.getSource();
         String tableName = sourceReference.getTable();
         SourceReference.PrimaryKey primaryKey = sourceReference.getPrimaryKey();
         val path = tablePath(structuredZoneRootPath, sourceName, tableName);
         logger.debug("Processing records for structured {}/{} {}", sourceName, tableName, path);
-        Dataset<Row> result = dataFrame;
+        ZoneWriteResult result;
         try {
             logger.info("Appending {} records to deltalake table: {}", dataFrame.count(), path);
-            storage.appendDistinct(path, dataFrame, primaryKey);
+            val writeStats = storage.appendDistinct(path, dataFrame, primaryKey, sourceReference.getLayout());
             logger.info("Append completed successfully to table: {}", path);
+            writeStats.ifPresent(stats -> logger.info("Write stats for {}: {}", path, stats.summary()));
             storage.updateDeltaManifestForTable(spark, path);
             logger.info("Processed batch for structured {}/{} in {}ms", sourceName, tableName, System.currentTimeMillis() - startTime);
+            result = ZoneWriteResult.committed(dataFrame, writeStats);
         } catch (DataStorageRetriesExhaustedException e) {
             logger.warn("Structured zone load retries exhausted", e);
             violationService.handleRetriesExhausted(spark, dataFrame, sourceName, tableName, e, ViolationService.ZoneName.STRUCTURED_LOAD);
-            result = spark.emptyDataFrame();
+            result = ZoneWriteResult.notCommitted(spark);
         }
         return result;
     }
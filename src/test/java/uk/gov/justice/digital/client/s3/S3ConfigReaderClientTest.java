@@ -2,6 +2,7 @@ package uk.gov.justice.digital.client.s3;
 
 import com.amazonaws.SdkBaseException;
 import com.amazonaws.services.s3.AmazonS3;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.junit.jupiter.api.BeforeEach;
@@ -10,11 +11,14 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import uk.gov.justice.digital.config.JobArguments;
+import uk.gov.justice.digital.datahub.model.SchedulingPriority;
 import uk.gov.justice.digital.exception.ConfigReaderClientException;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.collection.IsIterableContainingInAnyOrder.containsInAnyOrder;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.when;
@@ -76,4 +80,60 @@ class S3ConfigReaderClientTest {
 
         assertThrows(ConfigReaderClientException.class, () -> underTest.getConfiguredTables(TEST_CONFIG_KEY));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldReadTablePrioritiesFromPriorityTiers() {
+        String configString = "{\"tables\": [\"schema_1/table_1\", \"schema_2/table_2\", \"schema_3/table_3\"], " +
+                "\"priorityTiers\": {" +
+                "\"critical\": {\"weight\": 4, \"minShare\": 2, \"tables\": [\"schema_1/table_1\"]}, " +
+                "\"bulk\": {\"tables\": [\"schema_2/table_2\"]}" +
+                "}}";
+        when(mockS3Client.getObjectAsString(TEST_CONFIG_BUCKET, CONFIGS_PATH + TEST_CONFIG_KEY + CONFIG_FILE_SUFFIX))
+                .thenReturn(configString);
+
+        ImmutableMap<ImmutablePair<String, String>, SchedulingPriority> result = underTest.getTablePriorities(TEST_CONFIG_KEY);
+
+        assertEquals(2, result.size());
+        assertEquals(new SchedulingPriority("critical", 4, 2), result.get(ImmutablePair.of("schema_1", "table_1")));
+        assertEquals(new SchedulingPriority("bulk", 1, 0), result.get(ImmutablePair.of("schema_2", "table_2")));
+    }
+
+    @Test
+    public void shouldReadNoTablePrioritiesWhenThereAreNoPriorityTiers() {
+        String configString = "{\"tables\": [\"schema_1/table_1\"]}";
+        when(mockS3Client.getObjectAsString(TEST_CONFIG_BUCKET, CONFIGS_PATH + TEST_CONFIG_KEY + CONFIG_FILE_SUFFIX))
+                .thenReturn(configString);
+
+        assertTrue(underTest.getTablePriorities(TEST_CONFIG_KEY).isEmpty());
+    }
+
+    @Test
+    public void shouldReadMergeOnReadTables() {
+        String configString = "{\"tables\": [\"schema_1/table_1\", \"schema_2/table_2\"], " +
+                "\"mergeOnReadTables\": [\"schema_2/table_2\"]}";
+        when(mockS3Client.getObjectAsString(TEST_CONFIG_BUCKET, CONFIGS_PATH + TEST_CONFIG_KEY + CONFIG_FILE_SUFFIX))
+                .thenReturn(configString);
+
+        assertEquals(ImmutableSet.of(ImmutablePair.of("schema_2", "table_2")), underTest.getMergeOnReadTables(TEST_CONFIG_KEY));
+    }
+
+    @Test
+    public void shouldReadNoMergeOnReadTablesWhenThereAreNone() {
+        String configString = "{\"tables\": [\"schema_1/table_1\"]}";
+        when(mockS3Client.getObjectAsString(TEST_CONFIG_BUCKET, CONFIGS_PATH + TEST_CONFIG_KEY + CONFIG_FILE_SUFFIX))
+                .thenReturn(configString);
+
+        assertTrue(underTest.getMergeOnReadTables(TEST_CONFIG_KEY).isEmpty());
+    }
+
+    @Test
+    public void shouldThrowWhenATableIsInMoreThanOnePriorityTier() {
+        String configString = "{\"tables\": [\"schema_1/table_1\"], \"priorityTiers\": {" +
+                "\"critical\": {\"weight\": 4, \"tables\": [\"schema_1/table_1\"]}, " +
+                "\"bulk\": {\"weight\": 1, \"tables\": [\"schema_1/table_1\"]}" +
+                "}}";
+        when(mockS3Client.getObjectAsString(any(), any())).thenReturn(configString);
+
+        assertThrows(ConfigReaderClientException.class, () -> underTest.getTablePriorities(TEST_CONFIG_KEY));
+    }
+}
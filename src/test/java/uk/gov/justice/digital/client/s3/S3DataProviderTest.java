@@ -3,8 +3,13 @@ package uk.gov.justice.digital.client.s3;
 import org.apache.spark.SparkException;
 import org.apache.spark.sql.AnalysisException;
 import org.apache.spark.sql.DataFrameReader;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
 import org.apache.spark.sql.SparkSession;
 import org.apache.spark.sql.delta.DeltaAnalysisException;
+import org.apache.spark.sql.types.DataType;
+import org.apache.spark.sql.types.DataTypes;
+import org.apache.spark.sql.types.StructType;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -15,9 +20,14 @@ import scala.collection.Seq;
 import uk.gov.justice.digital.config.JobArguments;
 import uk.gov.justice.digital.exception.DataProviderFailedMergingSchemasException;
 
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -37,6 +47,12 @@ class S3DataProviderTest {
     private AnalysisException analysisException;
     @Mock
     private DeltaAnalysisException deltaAnalysisException;
+    @Mock
+    private Dataset<Row> largestGroupData;
+    @Mock
+    private Dataset<Row> addedColumnData;
+    @Mock
+    private Dataset<Row> unionedData;
 
     private S3DataProvider underTest;
 
@@ -104,4 +120,74 @@ class S3DataProviderTest {
     void isPathDoesNotExistExceptionShouldReturnFalseWhenOtherExceptionType() {
         assertFalse(S3DataProvider.isPathDoesNotExistException(new Exception()));
     }
-}
\ No newline at end of file
+
+    @Test
+    void getSchemaGroupedBatchSourceDataShouldUnionCompatibleGroupsAndReturnTheFilesOfIncompatibleGroups() {
+        StructType largestGroupSchema = new StructType().add("id", DataTypes.IntegerType).add("name", DataTypes.StringType);
+        StructType addedColumnSchema = largestGroupSchema.add("description", DataTypes.StringType);
+        StructType changedTypeSchema = new StructType().add("id", DataTypes.StringType);
+        Map<StructType, List<String>> filesBySchema = new LinkedHashMap<>();
+        filesBySchema.put(addedColumnSchema, Collections.singletonList("s3://added-column"));
+        filesBySchema.put(changedTypeSchema, Collections.singletonList("s3://changed-type"));
+        filesBySchema.put(largestGroupSchema, Arrays.asList("s3://largest-1", "s3://largest-2"));
+
+        when(spark.read()).thenReturn(dfReader);
+        when(dfReader.schema(largestGroupSchema)).thenReturn(dfReader);
+        when(dfReader.schema(addedColumnSchema)).thenReturn(dfReader);
+        when(dfReader.parquet(toSeq(Arrays.asList("s3://largest-1", "s3://largest-2")))).thenReturn(largestGroupData);
+        when(dfReader.parquet(toSeq(Collections.singletonList("s3://added-column")))).thenReturn(addedColumnData);
+        when(largestGroupData.unionByName(addedColumnData, true)).thenReturn(unionedData);
+
+        S3DataProvider.SchemaGroupedSourceData result = underTest.getSchemaGroupedBatchSourceData(spark, filesBySchema, null);
+
+        assertEquals(unionedData, result.getData());
+        assertEquals(Collections.singletonList("s3://changed-type"), result.getIncompatibleFilePaths());
+    }
+
+    @Test
+    void getSchemaGroupedBatchSourceDataShouldPreferTheGroupMatchingTheExpectedSchemaOverTheLargestGroup() {
+        StructType expectedSchema = new StructType().add("id", DataTypes.IntegerType);
+        StructType changedTypeSchema = new StructType().add("id", DataTypes.StringType);
+        Map<StructType, List<String>> filesBySchema = new LinkedHashMap<>();
+        filesBySchema.put(changedTypeSchema, Arrays.asList("s3://changed-type-1", "s3://changed-type-2"));
+        filesBySchema.put(expectedSchema, Collections.singletonList("s3://expected"));
+
+        when(spark.read()).thenReturn(dfReader);
+        when(dfReader.schema(expectedSchema)).thenReturn(dfReader);
+        when(dfReader.parquet(toSeq(Collections.singletonList("s3://expected")))).thenReturn(largestGroupData);
+
+        S3DataProvider.SchemaGroupedSourceData result = underTest.getSchemaGroupedBatchSourceData(spark, filesBySchema, expectedSchema);
+
+        assertEquals(largestGroupData, result.getData());
+        assertEquals(Arrays.asList("s3://changed-type-1", "s3://changed-type-2"), result.getIncompatibleFilePaths());
+    }
+
+    @Test
+    void isCompatibleShouldIgnoreTheCaseOfColumnNames() {
+        Map<String, DataType> columnTypes = Collections.singletonMap("id", DataTypes.IntegerType);
+
+        assertTrue(S3DataProvider.isCompatible(columnTypes, new StructType().add("ID", DataTypes.IntegerType)));
+        assertFalse(S3DataProvider.isCompatible(columnTypes, new StructType().add("ID", DataTypes.LongType)));
+    }
+
+    @Test
+    void isCompatibleShouldIgnoreNestedNullability() {
+        StructType nullableStruct = new StructType().add("value", DataTypes.StringType, true);
+        StructType nonNullableStruct = new StructType().add("value", DataTypes.StringType, false);
+        Map<String, DataType> columnTypes = new HashMap<>();
+        columnTypes.put("struct", nullableStruct);
+        columnTypes.put("array", DataTypes.createArrayType(nullableStruct, true));
+        columnTypes.put("map", DataTypes.createMapType(DataTypes.StringType, DataTypes.IntegerType, true));
+
+        assertTrue(S3DataProvider.isCompatible(columnTypes, new StructType()
+                .add("struct", nonNullableStruct)
+                .add("array", DataTypes.createArrayType(nonNullableStruct, false))
+                .add("map", DataTypes.createMapType(DataTypes.StringType, DataTypes.IntegerType, false))));
+        assertFalse(S3DataProvider.isCompatible(columnTypes, new StructType()
+                .add("struct", new StructType().add("value", DataTypes.IntegerType, false))));
+    }
+
+    private static Seq<String> toSeq(List<String> paths) {
+        return JavaConverters.asScalaIteratorConverter(paths.iterator()).asScala().toSeq();
+    }
+}
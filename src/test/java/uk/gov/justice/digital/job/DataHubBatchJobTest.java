@@ -1,37 +1,55 @@
 package uk.gov.justice.digital.job;
 
+import com.google.common.collect.ImmutableMap;
 import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.spark.SparkContext;
 import org.apache.spark.sql.Dataset;
 import org.apache.spark.sql.Row;
 import org.apache.spark.sql.SparkSession;
+import org.apache.spark.sql.types.StructType;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import uk.gov.justice.digital.client.s3.S3DataProvider;
+import uk.gov.justice.digital.client.s3.S3DataProvider.SchemaGroupedSourceData;
 import uk.gov.justice.digital.config.JobArguments;
 import uk.gov.justice.digital.config.JobProperties;
 import uk.gov.justice.digital.datahub.model.SourceReference;
+import uk.gov.justice.digital.exception.BatchLoadFailedException;
+import uk.gov.justice.digital.exception.DataStorageException;
 import uk.gov.justice.digital.exception.DataProviderFailedMergingSchemasException;
 import uk.gov.justice.digital.job.batchprocessing.BatchProcessor;
 import uk.gov.justice.digital.provider.SparkSessionProvider;
+import uk.gov.justice.digital.service.LoadProgressService;
+import uk.gov.justice.digital.service.LoadProgressService.LoadProgress;
+import uk.gov.justice.digital.service.LoadProgressService.LoadStage;
+import uk.gov.justice.digital.service.LoadStageListener;
+import uk.gov.justice.digital.service.ParquetSchemaCacheService;
 import uk.gov.justice.digital.service.SourceReferenceService;
 import uk.gov.justice.digital.service.TableDiscoveryService;
 import uk.gov.justice.digital.service.ViolationService;
+import uk.gov.justice.digital.service.WriteStatsService;
 
 import java.io.IOException;
+import java.sql.Timestamp;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -43,6 +61,7 @@ class DataHubBatchJobTest {
     private static final SparkSessionProvider sparkSessionProvider = new SparkSessionProvider();
     private static final String rawPath = "s3://raw/path";
     private static final Map<ImmutablePair<String, String>, List<String>> discoveredPathsByTable;
+    private static final Map<ImmutablePair<String, String>, Map<String, Long>> discoveredFileBytesByTable;
 
     static {
         discoveredPathsByTable = new HashMap<>();
@@ -53,6 +72,12 @@ class DataHubBatchJobTest {
                 "t2-file1", "t2-file2"
         ));
         discoveredPathsByTable.put(new ImmutablePair<>("s3", "t3"), Collections.emptyList());
+        discoveredFileBytesByTable = new HashMap<>();
+        discoveredPathsByTable.forEach((table, paths) -> {
+            Map<String, Long> fileBytesByPath = new LinkedHashMap<>();
+            paths.forEach(path -> fileBytesByPath.put(path, 1024L));
+            discoveredFileBytesByTable.put(table, fileBytesByPath);
+        });
     }
     @Mock
     private JobArguments arguments;
@@ -69,12 +94,24 @@ class DataHubBatchJobTest {
     @Mock
     private ViolationService violationService;
     @Mock
+    private WriteStatsService writeStatsService;
+    @Mock
+    private ParquetSchemaCacheService schemaCache;
+    @Mock
+    private LoadProgressService loadProgressService;
+    @Mock
+    private Dataset<Row> structuredDataFrame;
+    @Mock
+    private Dataset<Row> curatedDataFrame;
+    @Mock
     private SourceReference sourceReference1;
     @Mock
     private SourceReference sourceReference2;
     @Mock
     private SparkSession spark;
     @Mock
+    private SparkContext sparkContext;
+    @Mock
     private Dataset<Row> dataFrame;
 
     private DataHubBatchJob underTest;
@@ -90,7 +127,10 @@ class DataHubBatchJobTest {
                 batchProcessor,
                 dataProvider,
                 sourceReferenceService,
-                violationService
+                violationService,
+                writeStatsService,
+                schemaCache,
+                loadProgressService
         );
     }
 
@@ -99,6 +139,7 @@ class DataHubBatchJobTest {
         stubRawPath();
         stubReadData();
         stubDiscoveredTablePaths();
+        stubTableParallelism(1);
 
         when(sourceReferenceService.getSourceReference("s1", "t1")).thenReturn(Optional.of(sourceReference1));
         when(sourceReferenceService.getSourceReference("s2", "t2")).thenReturn(Optional.of(sourceReference2));
@@ -124,6 +165,7 @@ class DataHubBatchJobTest {
         stubRawPath();
         stubReadData();
         stubDiscoveredTablePaths();
+        stubTableParallelism(1);
 
         when(sourceReferenceService.getSourceReference("s1", "t1")).thenReturn(Optional.empty());
         when(sourceReferenceService.getSourceReference("s2", "t2")).thenReturn(Optional.of(sourceReference2));
@@ -143,22 +185,166 @@ class DataHubBatchJobTest {
         when(dataProvider.getBatchSourceData(any(), anyList())).thenThrow(thrown);
         stubRawPath();
         stubDiscoveredTablePaths();
+        stubTableParallelism(1);
 
         underTest.runJob(spark);
 
         verify(violationService, times(2)).writeBatchDataToViolations(any(), any(), any(), any());
     }
 
+    @Test
+    public void shouldLoadTheRemainingTablesBeforeFailingWhenATableFails() {
+        stubRawPath();
+        stubReadData();
+        stubDiscoveredTablePaths();
+        stubTableParallelism(1);
+
+        when(sourceReferenceService.getSourceReference("s1", "t1")).thenReturn(Optional.of(sourceReference1));
+        when(sourceReferenceService.getSourceReference("s2", "t2")).thenReturn(Optional.of(sourceReference2));
+        doThrow(new DataStorageException("Failed to write")).when(batchProcessor).processBatch(any(), eq(sourceReference1), any());
+
+        BatchLoadFailedException thrown = assertThrows(BatchLoadFailedException.class, () -> underTest.runJob(spark));
+
+        assertEquals("Finished loading tables with 1 failures", thrown.getMessage());
+        verify(batchProcessor, times(1)).processBatch(any(), eq(sourceReference2), any());
+        verify(writeStatsService, times(1)).stop();
+    }
+
+    @Test
+    public void shouldLoadEachTableInItsOwnSchedulerPoolWhenLoadingTablesConcurrently() {
+        stubRawPath();
+        stubReadData();
+        stubDiscoveredTablePaths();
+        stubTableParallelism(2);
+        when(spark.sparkContext()).thenReturn(sparkContext);
+
+        when(sourceReferenceService.getSourceReference("s1", "t1")).thenReturn(Optional.of(sourceReference1));
+        when(sourceReferenceService.getSourceReference("s2", "t2")).thenReturn(Optional.of(sourceReference2));
+
+        underTest.runJob(spark);
+
+        verify(batchProcessor, times(2)).processBatch(any(), any(), any());
+        verify(sparkContext, times(1)).setLocalProperty("spark.scheduler.pool", "batch-load-s1.t1");
+        verify(sparkContext, times(1)).setLocalProperty("spark.scheduler.pool", "batch-load-s2.t2");
+    }
+
+    @Test
+    public void shouldWriteOnlyTheFilesWithIncompatibleSchemasToViolationsWhenGroupingBySchema() {
+        stubRawPath();
+        stubDiscoveredTablePaths();
+        stubTableParallelism(1);
+        when(arguments.isBatchLoadSchemaGroupingEnabled()).thenReturn(true);
+        when(dataFrame.schema()).thenReturn(SCHEMA_WITHOUT_METADATA_FIELDS);
+
+        Map<StructType, List<String>> t1FilesBySchema = ImmutableMap.of(
+                SCHEMA_WITHOUT_METADATA_FIELDS, Collections.singletonList("t1-file1")
+        );
+        Map<StructType, List<String>> t2FilesBySchema = ImmutableMap.of(
+                SCHEMA_WITHOUT_METADATA_FIELDS, Collections.singletonList("t2-file1"),
+                new StructType().add("other", "string"), Collections.singletonList("t2-file2")
+        );
+        when(schemaCache.getFilesBySchema(spark, discoveredPathsByTable.get(new ImmutablePair<>("s1", "t1")))).thenReturn(t1FilesBySchema);
+        when(schemaCache.getFilesBySchema(spark, discoveredPathsByTable.get(new ImmutablePair<>("s2", "t2")))).thenReturn(t2FilesBySchema);
+        when(dataProvider.getSchemaGroupedBatchSourceData(eq(spark), eq(t1FilesBySchema), any()))
+                .thenReturn(new SchemaGroupedSourceData(dataFrame, Collections.emptyList()));
+        when(dataProvider.getSchemaGroupedBatchSourceData(eq(spark), eq(t2FilesBySchema), any()))
+                .thenReturn(new SchemaGroupedSourceData(dataFrame, Collections.singletonList("t2-file2")));
+        when(sourceReferenceService.getSourceReference("s1", "t1")).thenReturn(Optional.of(sourceReference1));
+        when(sourceReferenceService.getSourceReference("s2", "t2")).thenReturn(Optional.of(sourceReference2));
+
+        underTest.runJob(spark);
+
+        verify(violationService, times(1)).writeBatchFilesToViolations(
+                eq(spark), eq("s2"), eq("t2"), eq(Collections.singletonList("t2-file2")), any()
+        );
+        verify(batchProcessor, times(1)).processBatch(any(), eq(sourceReference1), any());
+        verify(batchProcessor, times(1)).processBatch(any(), eq(sourceReference2), any());
+    }
+
+    @Test
+    public void shouldSkipTablesWhichAnEarlierRunLoadedFromTheSameFiles() {
+        stubRawPath();
+        stubReadData();
+        stubDiscoveredTablePaths();
+        stubTableParallelism(1);
+        stubLoadProgress();
+
+        when(loadProgressService.getProgress(eq("s1"), eq("t1"), anyString()))
+                .thenReturn(Optional.of(givenProgress("s1", "t1", LoadStage.OPERATIONAL_DATA_STORE)));
+        when(loadProgressService.getProgress(eq("s2"), eq("t2"), anyString())).thenReturn(Optional.empty());
+
+        underTest.runJob(spark);
+
+        verify(loadProgressService, times(1)).start(spark);
+        verify(batchProcessor, never()).processBatch(any(), eq(sourceReference1), any(), any());
+        verify(batchProcessor, times(1)).processBatch(spark, sourceReference2, dataFrame, LoadStageListener.NONE);
+    }
+
+    @Test
+    public void shouldResumeTablesAfterTheirLastCompletedStage() {
+        stubRawPath();
+        stubDiscoveredTablePaths();
+        stubTableParallelism(1);
+        stubLoadProgress();
+
+        LoadProgress t1Progress = givenProgress("s1", "t1", LoadStage.STRUCTURED);
+        LoadProgress t2Progress = givenProgress("s2", "t2", LoadStage.CURATED);
+        when(loadProgressService.getProgress(eq("s1"), eq("t1"), anyString())).thenReturn(Optional.of(t1Progress));
+        when(loadProgressService.getProgress(eq("s2"), eq("t2"), anyString())).thenReturn(Optional.of(t2Progress));
+        when(loadProgressService.readStructured(spark, t1Progress)).thenReturn(structuredDataFrame);
+        when(loadProgressService.readCurated(spark, t2Progress)).thenReturn(curatedDataFrame);
+
+        underTest.runJob(spark);
+
+        verify(batchProcessor, times(1)).resumeFromCurated(spark, sourceReference1, structuredDataFrame, LoadStageListener.NONE);
+        verify(batchProcessor, times(1)).resumeFromOperationalDataStore(sourceReference2, curatedDataFrame, LoadStageListener.NONE);
+        verify(batchProcessor, never()).processBatch(any(), any(), any(), any());
+    }
+
+    @Test
+    public void shouldOrderTablesLargestFirst() {
+        ImmutablePair<String, String> small = new ImmutablePair<>("s1", "small");
+        ImmutablePair<String, String> large = new ImmutablePair<>("s1", "large");
+        ImmutablePair<String, String> medium = new ImmutablePair<>("s2", "medium");
+
+        List<ImmutablePair<String, String>> ordered = DataHubBatchJob.largestFirst(ImmutableMap.of(
+                small, 10L,
+                large, 1000L,
+                medium, 100L
+        ));
+
+        assertEquals(Arrays.asList(large, medium, small), ordered);
+    }
+
     private void stubRawPath() {
         when(arguments.getRawS3Path()).thenReturn(rawPath);
     }
 
+    private void stubTableParallelism(int parallelism) {
+        when(arguments.getBatchLoadTableParallelism()).thenReturn(parallelism);
+    }
+
     private void stubDiscoveredTablePaths() {
-        when(tableDiscoveryService.discoverBatchFilesToLoad(rawPath, spark)).thenReturn(discoveredPathsByTable);
+        when(tableDiscoveryService.discoverBatchFileSizesToLoad(rawPath, spark)).thenReturn(discoveredFileBytesByTable);
     }
 
     private void stubEmptyDiscoveredTablePaths() {
-        when(tableDiscoveryService.discoverBatchFilesToLoad(rawPath, spark)).thenReturn(Collections.emptyMap());
+        when(tableDiscoveryService.discoverBatchFileSizesToLoad(rawPath, spark)).thenReturn(Collections.emptyMap());
+    }
+
+    private void stubLoadProgress() {
+        when(loadProgressService.isEnabled()).thenReturn(true);
+        when(sourceReferenceService.getSourceReference("s1", "t1")).thenReturn(Optional.of(sourceReference1));
+        when(sourceReferenceService.getSourceReference("s2", "t2")).thenReturn(Optional.of(sourceReference2));
+        when(sourceReference1.getSource()).thenReturn("s1");
+        when(sourceReference1.getTable()).thenReturn("t1");
+        when(sourceReference2.getSource()).thenReturn("s2");
+        when(sourceReference2.getTable()).thenReturn("t2");
+        when(loadProgressService.trackerFor(eq(spark), anyString(), anyString(), anyString())).thenReturn(LoadStageListener.NONE);
+    }
+
+    private static LoadProgress givenProgress(String source, String table, LoadStage stage) {
+        return new LoadProgress(source, table, "fingerprint", stage, 1L, 1L, "PENDING", new Timestamp(0L));
     }
 
     private void stubReadData() {
@@ -2,23 +2,39 @@ package uk.gov.justice.digital.job;
 
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.spark.sql.SparkSession;
+import org.apache.spark.sql.streaming.StreamingQueryManager;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import uk.gov.justice.digital.config.JobArguments;
 import uk.gov.justice.digital.config.JobProperties;
 import uk.gov.justice.digital.exception.NoSchemaNoDataException;
+import uk.gov.justice.digital.job.cdc.AdaptiveTriggerScheduler;
+import uk.gov.justice.digital.job.cdc.CatchUpCoordinator;
+import uk.gov.justice.digital.job.cdc.StreamingQueryMetricsListener;
+import uk.gov.justice.digital.job.cdc.TableConfigWatcher;
+import uk.gov.justice.digital.job.cdc.TableQuerySupervisor;
 import uk.gov.justice.digital.job.cdc.TableStreamingQuery;
 import uk.gov.justice.digital.job.cdc.TableStreamingQueryProvider;
 import uk.gov.justice.digital.provider.SparkSessionProvider;
+import uk.gov.justice.digital.service.ChangeLogService;
+import uk.gov.justice.digital.service.DataStorageService;
 import uk.gov.justice.digital.service.TableDiscoveryService;
+import uk.gov.justice.digital.service.WriteStatsService;
+import uk.gov.justice.digital.service.metrics.StreamingMetricsCollector;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -42,19 +58,40 @@ class DataHubCdcJobTest {
     @Mock
     private TableDiscoveryService tableDiscoveryService;
     @Mock
+    private AdaptiveTriggerScheduler adaptiveTriggerScheduler;
+    @Mock
+    private TableConfigWatcher tableConfigWatcher;
+    @Mock
+    private StreamingMetricsCollector streamingMetricsCollector;
+    @Mock
+    private TableQuerySupervisor tableQuerySupervisor;
+    @Mock
+    private CatchUpCoordinator catchUpCoordinator;
+    @Mock
+    private DataStorageService storageService;
+    @Mock
+    private ChangeLogService changeLogService;
+    @Mock
+    private WriteStatsService writeStatsService;
+    @Mock
     private SparkSession spark;
     @Mock
+    private StreamingQueryManager streamingQueryManager;
+    @Mock
     private TableStreamingQuery table1StreamingQuery;
     @Mock
     private TableStreamingQuery table2StreamingQuery;
     @Mock
     private TableStreamingQuery table3StreamingQuery;
 
+    @Captor
+    private ArgumentCaptor<TableConfigWatcher.TableQueries> tableQueriesCaptor;
+
     private DataHubCdcJob underTest;
 
     @BeforeEach
     public void setUp() {
-        underTest = new DataHubCdcJob(arguments, properties, sparkSessionProvider, tableStreamingQueryProvider, tableDiscoveryService);
+        underTest = new DataHubCdcJob(arguments, properties, sparkSessionProvider, tableStreamingQueryProvider, tableDiscoveryService, adaptiveTriggerScheduler, tableConfigWatcher, streamingMetricsCollector, tableQuerySupervisor, catchUpCoordinator, storageService, changeLogService, writeStatsService);
     }
 
     @Test
@@ -89,6 +126,167 @@ class DataHubCdcJobTest {
         verify(table3StreamingQuery, times(1)).runQuery();
     }
 
+    @Test
+    public void shouldRunAQueryPerNonEmptyGroupWhenMultiplexed() {
+        int groupCount = 2;
+        when(tableDiscoveryService.discoverTablesToProcess()).thenReturn(tablesToProcess);
+        when(arguments.isCdcMultiplexedQueriesEnabled()).thenReturn(true);
+        when(arguments.getCdcMultiplexedQueryGroups()).thenReturn(groupCount);
+
+        List<List<ImmutablePair<String, String>>> tableGroups = DataHubCdcJob.assignTablesToGroups(tablesToProcess, groupCount);
+        List<TableStreamingQuery> groupQueries = Arrays.asList(table1StreamingQuery, table2StreamingQuery);
+        int nonEmptyGroups = 0;
+        for (int groupIndex = 0; groupIndex < groupCount; groupIndex++) {
+            if (!tableGroups.get(groupIndex).isEmpty()) {
+                nonEmptyGroups++;
+                when(tableStreamingQueryProvider.provideMultiplexed(spark, groupIndex, groupCount, tableGroups.get(groupIndex)))
+                        .thenReturn(groupQueries.get(groupIndex));
+            }
+        }
+
+        List<TableStreamingQuery> result = underTest.runJob(spark);
+
+        assertEquals(nonEmptyGroups, result.size());
+        result.forEach(query -> verify(query, times(1)).runQuery());
+        verify(tableStreamingQueryProvider, never()).provide(any(), any(), any());
+    }
+
+    @Test
+    public void assignTablesToGroupsShouldAssignEveryTableToExactlyOneStableGroup() {
+        List<List<ImmutablePair<String, String>>> groups = DataHubCdcJob.assignTablesToGroups(tablesToProcess, 2);
+
+        assertEquals(2, groups.size());
+        assertEquals(tablesToProcess.size(), groups.stream().mapToInt(List::size).sum());
+        assertEquals(groups, DataHubCdcJob.assignTablesToGroups(tablesToProcess, 2));
+    }
+
+    @Test
+    public void shouldStartAdaptiveTriggerSchedulingForStartedQueriesWhenEnabled() {
+        when(tableDiscoveryService.discoverTablesToProcess()).thenReturn(tablesToProcess);
+        when(arguments.isCdcAdaptiveTriggerEnabled()).thenReturn(true);
+
+        when(tableStreamingQueryProvider.provide(spark, "source1", "table1")).thenReturn(table1StreamingQuery);
+        when(tableStreamingQueryProvider.provide(spark, "source2", "table2")).thenReturn(table2StreamingQuery);
+        when(tableStreamingQueryProvider.provide(spark, "source3", "table3")).thenReturn(table3StreamingQuery);
+
+        underTest.runJob(spark);
+
+        verify(adaptiveTriggerScheduler, times(1))
+                .start(Arrays.asList(table1StreamingQuery, table2StreamingQuery, table3StreamingQuery));
+    }
+
+    @Test
+    public void shouldNotStartAdaptiveTriggerSchedulingWhenDisabled() {
+        when(tableDiscoveryService.discoverTablesToProcess()).thenReturn(tablesToProcess);
+
+        when(tableStreamingQueryProvider.provide(spark, "source1", "table1")).thenReturn(table1StreamingQuery);
+        when(tableStreamingQueryProvider.provide(spark, "source2", "table2")).thenReturn(table2StreamingQuery);
+        when(tableStreamingQueryProvider.provide(spark, "source3", "table3")).thenReturn(table3StreamingQuery);
+
+        underTest.runJob(spark);
+
+        verify(adaptiveTriggerScheduler, never()).start(any());
+    }
+
+    @Test
+    public void shouldListenForQueryProgressAndStartFlushingMetricsWhenEnabled() {
+        when(tableDiscoveryService.discoverTablesToProcess()).thenReturn(Collections.emptyList());
+        when(arguments.isCdcCloudwatchMetricsEnabled()).thenReturn(true);
+        when(spark.streams()).thenReturn(streamingQueryManager);
+
+        underTest.runJob(spark);
+
+        verify(streamingQueryManager, times(1)).addListener(any(StreamingQueryMetricsListener.class));
+        verify(streamingMetricsCollector, times(1)).start();
+    }
+
+    @Test
+    public void shouldNotListenForQueryProgressWhenMetricsAreDisabled() {
+        when(tableDiscoveryService.discoverTablesToProcess()).thenReturn(Collections.emptyList());
+
+        underTest.runJob(spark);
+
+        verify(spark, never()).streams();
+        verify(streamingMetricsCollector, never()).start();
+    }
+
+    @Test
+    public void shouldSuperviseEachStartedQuery() {
+        when(tableDiscoveryService.discoverTablesToProcess()).thenReturn(tablesToProcess);
+        when(arguments.isCdcQuerySupervisorEnabled()).thenReturn(true);
+
+        when(tableStreamingQueryProvider.provide(spark, "source1", "table1")).thenReturn(table1StreamingQuery);
+        when(tableStreamingQueryProvider.provide(spark, "source2", "table2"))
+                .thenThrow(new NoSchemaNoDataException("", new Exception()));
+        when(tableStreamingQueryProvider.provide(spark, "source3", "table3")).thenReturn(table3StreamingQuery);
+
+        underTest.runJob(spark);
+
+        verify(tableQuerySupervisor, times(1)).start(spark);
+        verify(tableQuerySupervisor, times(1)).supervise(table1StreamingQuery);
+        verify(tableQuerySupervisor, times(1)).supervise(table3StreamingQuery);
+        verify(tableQuerySupervisor, never()).supervise(table2StreamingQuery);
+    }
+
+    @Test
+    public void shouldRegisterStartedQueriesForCatchUpWhenEnabled() {
+        when(tableDiscoveryService.discoverTablesToProcess()).thenReturn(tablesToProcess);
+        when(arguments.isCdcCatchUpEnabled()).thenReturn(true);
+
+        when(tableStreamingQueryProvider.provide(spark, "source1", "table1")).thenReturn(table1StreamingQuery);
+        when(tableStreamingQueryProvider.provide(spark, "source2", "table2")).thenReturn(table2StreamingQuery);
+        when(tableStreamingQueryProvider.provide(spark, "source3", "table3")).thenReturn(table3StreamingQuery);
+
+        underTest.runJob(spark);
+
+        verify(catchUpCoordinator, times(1)).start(spark);
+        verify(catchUpCoordinator, times(1)).register(table1StreamingQuery);
+        verify(catchUpCoordinator, times(1)).register(table2StreamingQuery);
+        verify(catchUpCoordinator, times(1)).register(table3StreamingQuery);
+    }
+
+    @Test
+    public void shouldNotStartCatchUpWhenDisabled() {
+        when(tableDiscoveryService.discoverTablesToProcess()).thenReturn(tablesToProcess);
+
+        when(tableStreamingQueryProvider.provide(spark, "source1", "table1")).thenReturn(table1StreamingQuery);
+        when(tableStreamingQueryProvider.provide(spark, "source2", "table2")).thenReturn(table2StreamingQuery);
+        when(tableStreamingQueryProvider.provide(spark, "source3", "table3")).thenReturn(table3StreamingQuery);
+
+        underTest.runJob(spark);
+
+        verify(catchUpCoordinator, never()).start(any());
+    }
+
+    @Test
+    public void shouldStartDeferredManifestUpdates() {
+        when(tableDiscoveryService.discoverTablesToProcess()).thenReturn(Collections.emptyList());
+
+        underTest.runJob(spark);
+
+        verify(storageService, times(1)).startDeferredManifestUpdates();
+    }
+
+    @Test
+    public void shouldStartCompactingChangeLogsWhenEnabled() {
+        when(arguments.isCdcChangeLogEnabled()).thenReturn(true);
+        when(tableDiscoveryService.discoverTablesToProcess()).thenReturn(Collections.emptyList());
+
+        underTest.runJob(spark);
+
+        verify(changeLogService, times(1)).start();
+    }
+
+    @Test
+    public void shouldStartCollectingWriteStatsWhenEnabled() {
+        when(arguments.isDataStorageWriteStatsEnabled()).thenReturn(true);
+        when(tableDiscoveryService.discoverTablesToProcess()).thenReturn(Collections.emptyList());
+
+        underTest.runJob(spark);
+
+        verify(writeStatsService, times(1)).start(spark);
+    }
+
     @Test
     public void shouldNotThrowForNoTables() {
         when(tableDiscoveryService.discoverTablesToProcess()).thenReturn(Collections.emptyList());
@@ -96,4 +294,72 @@ class DataHubCdcJobTest {
         underTest.runJob(spark);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void shouldStartQueriesConcurrentlyInTableOrder() {
+        when(tableDiscoveryService.discoverTablesToProcess()).thenReturn(tablesToProcess);
+        when(arguments.getCdcQueryStartupConcurrency()).thenReturn(2);
+
+        when(tableStreamingQueryProvider.provide(spark, "source1", "table1")).thenReturn(table1StreamingQuery);
+        when(tableStreamingQueryProvider.provide(spark, "source2", "table2"))
+                .thenThrow(new NoSchemaNoDataException("", new Exception()));
+        when(tableStreamingQueryProvider.provide(spark, "source3", "table3")).thenReturn(table3StreamingQuery);
+
+        List<TableStreamingQuery> result = underTest.runJob(spark);
+
+        assertEquals(Arrays.asList(table1StreamingQuery, table3StreamingQuery), result);
+        verify(table1StreamingQuery, times(1)).runQuery();
+        verify(table3StreamingQuery, times(1)).runQuery();
+    }
+
+    @Test
+    public void shouldNotWatchTableConfigWhenDisabled() {
+        when(tableDiscoveryService.discoverTablesToProcess()).thenReturn(tablesToProcess);
+
+        when(tableStreamingQueryProvider.provide(spark, "source1", "table1")).thenReturn(table1StreamingQuery);
+        when(tableStreamingQueryProvider.provide(spark, "source2", "table2")).thenReturn(table2StreamingQuery);
+        when(tableStreamingQueryProvider.provide(spark, "source3", "table3")).thenReturn(table3StreamingQuery);
+
+        underTest.runJob(spark);
+
+        verify(tableConfigWatcher, never()).start(any());
+    }
+
+    @Test
+    public void shouldNotWatchTableConfigForMultiplexedQueries() {
+        when(tableDiscoveryService.discoverTablesToProcess()).thenReturn(tablesToProcess);
+        when(arguments.isCdcMultiplexedQueriesEnabled()).thenReturn(true);
+        when(arguments.getCdcMultiplexedQueryGroups()).thenReturn(1);
+        when(arguments.isCdcTableConfigWatchEnabled()).thenReturn(true);
+        when(tableStreamingQueryProvider.provideMultiplexed(spark, 0, 1, tablesToProcess)).thenReturn(table1StreamingQuery);
+
+        underTest.runJob(spark);
+
+        verify(tableConfigWatcher, never()).start(any());
+    }
+
+    @Test
+    public void watchedTableQueriesShouldStartAddedTablesAndStopRemovedTables() {
+        when(tableDiscoveryService.discoverTablesToProcess()).thenReturn(tablesToProcess.subList(0, 2));
+        when(arguments.isCdcTableConfigWatchEnabled()).thenReturn(true);
+        when(arguments.getCdcQueryGracefulStopTimeoutSeconds()).thenReturn(60L);
+
+        when(tableStreamingQueryProvider.provide(spark, "source1", "table1")).thenReturn(table1StreamingQuery);
+        when(tableStreamingQueryProvider.provide(spark, "source2", "table2")).thenReturn(table2StreamingQuery);
+        when(tableStreamingQueryProvider.provide(spark, "source3", "table3")).thenReturn(table3StreamingQuery);
+
+        List<TableStreamingQuery> result = underTest.runJob(spark);
+
+        verify(tableConfigWatcher, times(1)).start(tableQueriesCaptor.capture());
+        TableConfigWatcher.TableQueries tableQueries = tableQueriesCaptor.getValue();
+        assertEquals(new HashSet<>(tablesToProcess.subList(0, 2)), tableQueries.runningTables());
+
+        tableQueries.startTables(Collections.singleton(tablesToProcess.get(2)));
+        tableQueries.stopTables(Collections.singleton(tablesToProcess.get(0)));
+
+        verify(table3StreamingQuery, times(1)).runQuery();
+        verify(tableQuerySupervisor, times(1)).unsupervise(table1StreamingQuery);
+        verify(table1StreamingQuery, times(1)).stopGracefully(60L);
+        assertEquals(new HashSet<>(tablesToProcess.subList(1, 3)), tableQueries.runningTables());
+        assertEquals(Arrays.asList(table2StreamingQuery, table3StreamingQuery), result);
+    }
+}
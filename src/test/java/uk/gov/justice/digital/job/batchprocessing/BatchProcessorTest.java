@@ -8,12 +8,15 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import uk.gov.justice.digital.config.BaseSparkTest;
 import uk.gov.justice.digital.datahub.model.SourceReference;
+import uk.gov.justice.digital.service.LoadStageListener;
 import uk.gov.justice.digital.service.ValidationService;
 import uk.gov.justice.digital.service.operationaldatastore.OperationalDataStoreService;
+import uk.gov.justice.digital.zone.ZoneWriteResult;
 import uk.gov.justice.digital.zone.curated.CuratedZoneLoad;
 import uk.gov.justice.digital.zone.structured.StructuredZoneLoad;
 
@@ -25,6 +28,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -66,6 +70,10 @@ class BatchProcessorTest extends BaseSparkTest {
     private ValidationService validationService;
     @Mock
     private OperationalDataStoreService operationalDataStoreService;
+    @Mock
+    private LoadStageListener listener;
+    @Mock
+    private Dataset<Row> structuredDfMock;
     @Captor
     private ArgumentCaptor<Dataset<Row>> argumentCaptor;
 
@@ -86,19 +94,19 @@ class BatchProcessorTest extends BaseSparkTest {
     void shouldSkipProcessingForEmptyDataframe() {
         underTest.processBatch(spark, sourceReference, spark.emptyDataFrame());
 
-        verify(structuredZoneLoad, times(0)).process(any(), any(), any());
-        verify(curatedZoneLoad, times(0)).process(any(), any(), any());
+        verify(structuredZoneLoad, times(0)).write(any(), any(), any());
+        verify(curatedZoneLoad, times(0)).write(any(), any(), any());
         verify(operationalDataStoreService, times(0)).overwriteData(any(), any());
     }
 
     @Test
     void shouldProcessStructured() {
         when(validationService.handleValidation(any(), any(), eq(sourceReference), eq(TEST_DATA_SCHEMA), eq(STRUCTURED_LOAD))).thenReturn(validatedDf);
-        when(structuredZoneLoad.process(any(), any(), any())).thenReturn(validatedDf);
+        when(structuredZoneLoad.write(any(), any(), any())).thenReturn(ZoneWriteResult.committed(validatedDf));
 
         underTest.processBatch(spark, sourceReference, inputDf);
 
-        verify(structuredZoneLoad, times(1)).process(any(), argumentCaptor.capture(), eq(sourceReference));
+        verify(structuredZoneLoad, times(1)).write(any(), argumentCaptor.capture(), eq(sourceReference));
         List<Row> result = argumentCaptor.getValue().collectAsList();
         assertEquals(validatedRows.size(), result.size());
         assertTrue(result.containsAll(validatedRows));
@@ -109,11 +117,11 @@ class BatchProcessorTest extends BaseSparkTest {
     void shouldProcessCurated() {
         when(validationService.handleValidation(any(), any(), eq(sourceReference), eq(TEST_DATA_SCHEMA), eq(STRUCTURED_LOAD)))
                 .thenReturn(validatedDf);
-        when(structuredZoneLoad.process(any(), any(), any())).thenReturn(validatedDf);
+        when(structuredZoneLoad.write(any(), any(), any())).thenReturn(ZoneWriteResult.committed(validatedDf));
 
         underTest.processBatch(spark, sourceReference, inputDf);
 
-        verify(curatedZoneLoad, times(1)).process(any(), argumentCaptor.capture(), eq(sourceReference));
+        verify(curatedZoneLoad, times(1)).write(any(), argumentCaptor.capture(), eq(sourceReference));
         List<Row> result = argumentCaptor.getValue().collectAsList();
         assertEquals(validatedRows.size(), result.size());
         assertTrue(result.containsAll(validatedRows));
@@ -123,8 +131,8 @@ class BatchProcessorTest extends BaseSparkTest {
     void shouldWriteCuratedOutputToOperationalDataStore() {
         when(validationService.handleValidation(any(), any(), eq(sourceReference), eq(TEST_DATA_SCHEMA), eq(STRUCTURED_LOAD)))
                 .thenReturn(validatedDf);
-        when(structuredZoneLoad.process(any(), any(), any())).thenReturn(validatedDf);
-        when(curatedZoneLoad.process(any(), any(), any())).thenReturn(curatedDfMock);
+        when(structuredZoneLoad.write(any(), any(), any())).thenReturn(ZoneWriteResult.committed(validatedDf));
+        when(curatedZoneLoad.write(any(), any(), any())).thenReturn(ZoneWriteResult.committed(curatedDfMock));
 
         underTest.processBatch(spark, sourceReference, inputDf);
 
@@ -139,7 +147,7 @@ class BatchProcessorTest extends BaseSparkTest {
 
         when(validationService.handleValidation(any(), any(), eq(sourceReference), eq(TEST_DATA_SCHEMA), eq(STRUCTURED_LOAD)))
                 .thenReturn(validatedDf);
-        when(structuredZoneLoad.process(any(), any(), any())).thenReturn(validatedDf);
+        when(structuredZoneLoad.write(any(), any(), any())).thenReturn(ZoneWriteResult.committed(validatedDf));
 
 
         underTest.processBatch(spark, sourceReference, mixedOperations);
@@ -150,4 +158,72 @@ class BatchProcessorTest extends BaseSparkTest {
         assertEquals(validatedRows.size(), result.size());
         assertTrue(result.containsAll(validatedRows));
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldTellTheListenerAsEachZoneIsWritten() {
+        when(validationService.handleValidation(any(), any(), eq(sourceReference), eq(TEST_DATA_SCHEMA), eq(STRUCTURED_LOAD)))
+                .thenReturn(validatedDf);
+        when(structuredZoneLoad.write(any(), any(), any())).thenReturn(ZoneWriteResult.committed(validatedDf));
+        when(curatedZoneLoad.write(any(), any(), any())).thenReturn(ZoneWriteResult.committed(curatedDfMock));
+
+        underTest.processBatch(spark, sourceReference, inputDf, listener);
+
+        InOrder inOrder = inOrder(structuredZoneLoad, curatedZoneLoad, operationalDataStoreService, listener);
+        inOrder.verify(structuredZoneLoad).write(any(), any(), eq(sourceReference));
+        inOrder.verify(listener).structuredWritten();
+        inOrder.verify(curatedZoneLoad).write(any(), any(), eq(sourceReference));
+        inOrder.verify(listener).curatedWritten();
+        inOrder.verify(operationalDataStoreService).overwriteData(curatedDfMock, sourceReference);
+        inOrder.verify(listener).operationalDataStoreWritten();
+    }
+
+    @Test
+    void shouldNotTellTheListenerOfZonesAfterAStructuredWriteWhichDidNotCommit() {
+        when(validationService.handleValidation(any(), any(), eq(sourceReference), eq(TEST_DATA_SCHEMA), eq(STRUCTURED_LOAD)))
+                .thenReturn(validatedDf);
+        when(structuredZoneLoad.write(any(), any(), any())).thenReturn(ZoneWriteResult.notCommitted(spark));
+        when(curatedZoneLoad.write(any(), any(), any())).thenReturn(ZoneWriteResult.committed(curatedDfMock));
+
+        underTest.processBatch(spark, sourceReference, inputDf, listener);
+
+        verify(listener, times(0)).structuredWritten();
+        verify(listener, times(0)).curatedWritten();
+        verify(listener, times(0)).operationalDataStoreWritten();
+    }
+
+    @Test
+    void shouldOnlyTellTheListenerOfTheStructuredWriteWhenCuratedDidNotCommit() {
+        when(validationService.handleValidation(any(), any(), eq(sourceReference), eq(TEST_DATA_SCHEMA), eq(STRUCTURED_LOAD)))
+                .thenReturn(validatedDf);
+        when(structuredZoneLoad.write(any(), any(), any())).thenReturn(ZoneWriteResult.committed(validatedDf));
+        when(curatedZoneLoad.write(any(), any(), any())).thenReturn(ZoneWriteResult.notCommitted(spark));
+
+        underTest.processBatch(spark, sourceReference, inputDf, listener);
+
+        verify(listener, times(1)).structuredWritten();
+        verify(listener, times(0)).curatedWritten();
+        verify(listener, times(0)).operationalDataStoreWritten();
+    }
+
+    @Test
+    void shouldResumeFromCuratedWithTheStructuredRecords() {
+        when(curatedZoneLoad.write(spark, structuredDfMock, sourceReference)).thenReturn(ZoneWriteResult.committed(curatedDfMock));
+
+        underTest.resumeFromCurated(spark, sourceReference, structuredDfMock, listener);
+
+        verify(structuredZoneLoad, times(0)).write(any(), any(), any());
+        verify(operationalDataStoreService, times(1)).overwriteData(curatedDfMock, sourceReference);
+        verify(listener, times(0)).structuredWritten();
+        verify(listener, times(1)).curatedWritten();
+        verify(listener, times(1)).operationalDataStoreWritten();
+    }
+
+    @Test
+    void shouldResumeFromOperationalDataStoreWithTheCuratedRecords() {
+        underTest.resumeFromOperationalDataStore(sourceReference, curatedDfMock, listener);
+
+        verify(curatedZoneLoad, times(0)).write(any(), any(), any());
+        verify(operationalDataStoreService, times(1)).overwriteData(curatedDfMock, sourceReference);
+        verify(listener, times(1)).operationalDataStoreWritten();
+    }
+}
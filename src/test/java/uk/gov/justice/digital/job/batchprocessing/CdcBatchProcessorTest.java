@@ -1,35 +1,69 @@
 package uk.gov.justice.digital.job.batchprocessing;
 
+import org.apache.spark.api.java.function.VoidFunction2;
 import org.apache.spark.sql.Dataset;
 import org.apache.spark.sql.Row;
+import org.apache.spark.sql.streaming.StreamingQuery;
+import org.apache.spark.sql.streaming.Trigger;
+import org.apache.spark.storage.StorageLevel;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import uk.gov.justice.digital.client.s3.S3DataProvider;
 import uk.gov.justice.digital.config.BaseSparkTest;
+import uk.gov.justice.digital.config.JobArguments;
 import uk.gov.justice.digital.datahub.model.SourceReference;
+import uk.gov.justice.digital.job.cdc.BacklogObservation;
+import uk.gov.justice.digital.service.ParquetSchemaCacheService;
 import uk.gov.justice.digital.service.ValidationService;
+import uk.gov.justice.digital.service.metrics.StreamingMetricsCollector;
 import uk.gov.justice.digital.service.operationaldatastore.OperationalDataStoreService;
+import uk.gov.justice.digital.zone.ZoneWriteResult;
 import uk.gov.justice.digital.zone.curated.CuratedZoneCDC;
 import uk.gov.justice.digital.zone.structured.StructuredZoneCDC;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import static com.amazonaws.services.cloudwatch.model.StandardUnit.Seconds;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static uk.gov.justice.digital.client.s3.S3DataProvider.INPUT_FILE_COLUMN;
+import static uk.gov.justice.digital.client.s3.S3DataProvider.INPUT_FILE_SIZE_COLUMN;
+import static uk.gov.justice.digital.common.CommonDataFields.CHECKPOINT_COL;
+import static uk.gov.justice.digital.config.JobArguments.DEFAULT_CDC_BATCH_STORAGE_LEVEL;
 import static uk.gov.justice.digital.service.ViolationService.ZoneName.STRUCTURED_CDC;
+import static uk.gov.justice.digital.service.metrics.StreamingMetricsCollector.BACKLOG;
 import static uk.gov.justice.digital.test.MinimalTestData.PRIMARY_KEY;
+import static uk.gov.justice.digital.test.MinimalTestData.SCHEMA_WITHOUT_METADATA_FIELDS;
 import static uk.gov.justice.digital.test.MinimalTestData.TEST_DATA_SCHEMA;
 import static uk.gov.justice.digital.test.MinimalTestData.manyRowsPerPkDfSameTimestamp;
 import static uk.gov.justice.digital.test.MinimalTestData.manyRowsPerPkSameTimestampLatest;
@@ -44,6 +78,8 @@ class CdcBatchProcessorTest extends BaseSparkTest {
 
     private CdcBatchProcessor underTest;
     @Mock
+    private JobArguments mockArguments;
+    @Mock
     private ValidationService mockValidationService;
     @Mock
     private StructuredZoneCDC mockStructuredZone;
@@ -56,6 +92,10 @@ class CdcBatchProcessorTest extends BaseSparkTest {
     @Mock
     private OperationalDataStoreService mockOperationalDataStoreService;
     @Mock
+    private ParquetSchemaCacheService mockSchemaCache;
+    @Mock
+    private StreamingMetricsCollector mockMetricsCollector;
+    @Mock
     private Dataset<Row> outputOfStructuredDf;
     @Mock
     private Dataset<Row> outputOfCuratedDf;
@@ -63,6 +103,12 @@ class CdcBatchProcessorTest extends BaseSparkTest {
     private ArgumentCaptor<Dataset<Row>> structuredArgumentCaptor;
     @Captor
     private ArgumentCaptor<Dataset<Row>> curatedArgumentCaptor;
+    @Captor
+    private ArgumentCaptor<Dataset<Row>> operationalDataStoreArgumentCaptor;
+    @Captor
+    private ArgumentCaptor<Dataset<Row>> validatedCaptor;
+    @Captor
+    private ArgumentCaptor<List<String>> fileNamesCaptor;
 
 
     @BeforeAll
@@ -73,13 +119,8 @@ class CdcBatchProcessorTest extends BaseSparkTest {
 
     @BeforeEach
     public void setUp() {
-        underTest = new CdcBatchProcessor(
-                mockValidationService,
-                mockStructuredZone,
-                mockCuratedZone,
-                mockDataProvider,
-                mockOperationalDataStoreService
-        );
+        when(mockArguments.getCdcBatchStorageLevel()).thenReturn(DEFAULT_CDC_BATCH_STORAGE_LEVEL);
+        underTest = createCdcBatchProcessor();
     }
 
     @Test
@@ -171,4 +212,252 @@ class CdcBatchProcessorTest extends BaseSparkTest {
 
         verify(mockOperationalDataStoreService, times(1)).mergeData(outputOfCuratedDf, mockSourceReference);
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldWriteLatestRecordsToStructuredThenCuratedAndOperationalDataStoreWhenPipelined() {
+        when(mockArguments.isCdcPipelinedZoneWritesEnabled()).thenReturn(true);
+        underTest = createCdcBatchProcessor();
+        when(mockSourceReference.getPrimaryKey()).thenReturn(PRIMARY_KEY);
+        when(mockSourceReference.getSource()).thenReturn("source");
+        when(mockSourceReference.getTable()).thenReturn("table");
+        when(mockValidationService.handleValidation(any(), any(), any(), any(), any())).thenReturn(manyRowsPerPk);
+        when(mockDataProvider.inferSchema(any(), any(), any())).thenReturn(TEST_DATA_SCHEMA);
+        when(mockStructuredZone.write(any(), any(), any())).thenAnswer(invocation -> ZoneWriteResult.committed(invocation.getArgument(1)));
+        when(mockCuratedZone.process(any(), any(), any())).thenReturn(outputOfCuratedDf);
+
+        underTest.processBatch(mockSourceReference, spark, manyRowsPerPk, batchId);
+
+        verify(mockStructuredZone, times(1)).write(any(), structuredArgumentCaptor.capture(), eq(mockSourceReference));
+        verify(mockCuratedZone, times(1)).process(any(), curatedArgumentCaptor.capture(), eq(mockSourceReference));
+        verify(mockOperationalDataStoreService, times(1)).mergeData(operationalDataStoreArgumentCaptor.capture(), eq(mockSourceReference));
+
+        List<Row> expected = manyRowsPerPkSameTimestampLatest();
+        List<Row> structuredActual = structuredArgumentCaptor.getValue().collectAsList();
+        List<Row> curatedActual = curatedArgumentCaptor.getValue().collectAsList();
+        assertEquals(expected.size(), structuredActual.size());
+        assertTrue(structuredActual.containsAll(expected));
+        assertEquals(expected.size(), curatedActual.size());
+        assertTrue(curatedActual.containsAll(expected));
+        assertEquals(curatedArgumentCaptor.getValue(), operationalDataStoreArgumentCaptor.getValue());
+    }
+
+    @Test
+    void shouldMergeCuratedAndOperationalDataStoreConcurrentlyWhenPipelined() {
+        when(mockArguments.isCdcPipelinedZoneWritesEnabled()).thenReturn(true);
+        underTest = createCdcBatchProcessor();
+        when(mockSourceReference.getPrimaryKey()).thenReturn(PRIMARY_KEY);
+        when(mockSourceReference.getSource()).thenReturn("source");
+        when(mockSourceReference.getTable()).thenReturn("table");
+        when(mockValidationService.handleValidation(any(), eq(rowPerPk), any(), any(), any())).thenReturn(rowPerPk);
+        when(mockDataProvider.inferSchema(any(), any(), any())).thenReturn(TEST_DATA_SCHEMA);
+        when(mockStructuredZone.write(any(), any(), any())).thenAnswer(invocation -> ZoneWriteResult.committed(invocation.getArgument(1)));
+        CountDownLatch operationalDataStoreStarted = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            operationalDataStoreStarted.countDown();
+            return null;
+        }).when(mockOperationalDataStoreService).mergeData(any(), any());
+        // Curated only finishes once the ODS merge has started alongside it
+        when(mockCuratedZone.process(any(), any(), any())).thenAnswer(invocation -> {
+            assertTrue(operationalDataStoreStarted.await(30, TimeUnit.SECONDS));
+            return outputOfCuratedDf;
+        });
+
+        underTest.processBatch(mockSourceReference, spark, rowPerPk, batchId);
+
+        verify(mockCuratedZone, times(1)).process(any(), any(), eq(mockSourceReference));
+        verify(mockOperationalDataStoreService, times(1)).mergeData(any(), eq(mockSourceReference));
+    }
+
+    @Test
+    void shouldPropagateOperationalDataStoreFailureWhenPipelined() {
+        when(mockArguments.isCdcPipelinedZoneWritesEnabled()).thenReturn(true);
+        underTest = createCdcBatchProcessor();
+        when(mockSourceReference.getPrimaryKey()).thenReturn(PRIMARY_KEY);
+        when(mockSourceReference.getSource()).thenReturn("source");
+        when(mockSourceReference.getTable()).thenReturn("table");
+        when(mockValidationService.handleValidation(any(), eq(rowPerPk), any(), any(), any())).thenReturn(rowPerPk);
+        when(mockDataProvider.inferSchema(any(), any(), any())).thenReturn(TEST_DATA_SCHEMA);
+        when(mockStructuredZone.write(any(), any(), any())).thenAnswer(invocation -> ZoneWriteResult.committed(invocation.getArgument(1)));
+        when(mockCuratedZone.process(any(), any(), any())).thenReturn(outputOfCuratedDf);
+        doThrow(new IllegalStateException("ODS failed")).when(mockOperationalDataStoreService).mergeData(any(), any());
+
+        assertThrows(IllegalStateException.class, () -> underTest.processBatch(mockSourceReference, spark, rowPerPk, batchId));
+        verify(mockCuratedZone, times(1)).process(any(), any(), eq(mockSourceReference));
+    }
+
+    @Test
+    void shouldSkipCuratedAndOperationalDataStoreWhenStructuredDoesNotCommitWhenPipelined() {
+        when(mockArguments.isCdcPipelinedZoneWritesEnabled()).thenReturn(true);
+        underTest = createCdcBatchProcessor();
+        when(mockSourceReference.getPrimaryKey()).thenReturn(PRIMARY_KEY);
+        when(mockSourceReference.getSource()).thenReturn("source");
+        when(mockSourceReference.getTable()).thenReturn("table");
+        when(mockValidationService.handleValidation(any(), eq(rowPerPk), any(), any(), any())).thenReturn(rowPerPk);
+        when(mockDataProvider.inferSchema(any(), any(), any())).thenReturn(TEST_DATA_SCHEMA);
+        when(mockStructuredZone.write(any(), any(), any())).thenReturn(ZoneWriteResult.notCommitted(spark));
+
+        underTest.processBatch(mockSourceReference, spark, rowPerPk, batchId);
+
+        verify(mockCuratedZone, never()).process(any(), any(), any());
+        verify(mockOperationalDataStoreService, never()).mergeData(any(), any());
+    }
+
+    @Test
+    void shouldPropagateStructuredZoneFailureWhenPipelined() {
+        when(mockArguments.isCdcPipelinedZoneWritesEnabled()).thenReturn(true);
+        underTest = createCdcBatchProcessor();
+        when(mockSourceReference.getPrimaryKey()).thenReturn(PRIMARY_KEY);
+        when(mockSourceReference.getSource()).thenReturn("source");
+        when(mockSourceReference.getTable()).thenReturn("table");
+        when(mockValidationService.handleValidation(any(), eq(rowPerPk), any(), any(), any())).thenReturn(rowPerPk);
+        when(mockDataProvider.inferSchema(any(), any(), any())).thenReturn(TEST_DATA_SCHEMA);
+        when(mockStructuredZone.write(any(), any(), any())).thenThrow(new IllegalStateException("structured failed"));
+
+        assertThrows(IllegalStateException.class, () -> underTest.processBatch(mockSourceReference, spark, rowPerPk, batchId));
+    }
+
+    @Test
+    void shouldMaterialiseTheBatchWhileItIsProcessed() {
+        AtomicReference<StorageLevel> storageLevelDuringValidation = new AtomicReference<>();
+        when(mockSourceReference.getPrimaryKey()).thenReturn(PRIMARY_KEY);
+        when(mockSourceReference.getSource()).thenReturn("source");
+        when(mockSourceReference.getTable()).thenReturn("table");
+        when(mockValidationService.handleValidation(any(), eq(rowPerPk), any(), any(), any())).thenAnswer(invocation -> {
+            storageLevelDuringValidation.set(rowPerPk.storageLevel());
+            return rowPerPk;
+        });
+        when(mockDataProvider.inferSchema(any(), any(), any())).thenReturn(TEST_DATA_SCHEMA);
+
+        underTest.processBatch(mockSourceReference, spark, rowPerPk, batchId);
+
+        assertEquals(StorageLevel.MEMORY_AND_DISK(), storageLevelDuringValidation.get());
+        assertEquals(StorageLevel.NONE(), rowPerPk.storageLevel());
+    }
+
+    @Test
+    void shouldNotMaterialiseTheBatchWhenStorageLevelIsNone() {
+        when(mockArguments.getCdcBatchStorageLevel()).thenReturn("NONE");
+        underTest = createCdcBatchProcessor();
+        AtomicReference<StorageLevel> storageLevelDuringValidation = new AtomicReference<>();
+        when(mockSourceReference.getPrimaryKey()).thenReturn(PRIMARY_KEY);
+        when(mockSourceReference.getSource()).thenReturn("source");
+        when(mockSourceReference.getTable()).thenReturn("table");
+        when(mockValidationService.handleValidation(any(), eq(rowPerPk), any(), any(), any())).thenAnswer(invocation -> {
+            storageLevelDuringValidation.set(rowPerPk.storageLevel());
+            return rowPerPk;
+        });
+        when(mockDataProvider.inferSchema(any(), any(), any())).thenReturn(TEST_DATA_SCHEMA);
+
+        underTest.processBatch(mockSourceReference, spark, rowPerPk, batchId);
+
+        assertEquals(StorageLevel.NONE(), storageLevelDuringValidation.get());
+    }
+
+    @Test
+    void shouldRecordTheBacklogOfTheBatch() {
+        when(mockSourceReference.getPrimaryKey()).thenReturn(PRIMARY_KEY);
+        when(mockSourceReference.getSource()).thenReturn("source");
+        when(mockSourceReference.getTable()).thenReturn("table");
+        when(mockValidationService.handleValidation(any(), eq(rowPerPk), any(), any(), any())).thenReturn(rowPerPk);
+        when(mockDataProvider.inferSchema(any(), any(), any())).thenReturn(TEST_DATA_SCHEMA);
+
+        underTest.processBatch(mockSourceReference, spark, rowPerPk, batchId);
+
+        verify(mockMetricsCollector, times(1)).record(eq(BACKLOG), eq(Seconds), eq("source"), eq("table"), anyDouble());
+    }
+
+    @Test
+    void shouldInferTheSchemaFromTheFilesOfAStreamingBatch(@TempDir Path rawPath) throws Exception {
+        Path tablePath = rawPath.resolve("source").resolve("table");
+        rowPerPk.drop(CHECKPOINT_COL).write().parquet(tablePath.toString());
+        when(mockArguments.getRawS3Path()).thenReturn(rawPath.toString());
+        when(mockArguments.getCdcFileGlobPattern()).thenReturn("*.parquet");
+        when(mockSourceReference.getPrimaryKey()).thenReturn(PRIMARY_KEY);
+        when(mockSourceReference.getSource()).thenReturn("source");
+        when(mockSourceReference.getTable()).thenReturn("table");
+        when(mockSourceReference.getSchema()).thenReturn(SCHEMA_WITHOUT_METADATA_FIELDS);
+        when(mockSchemaCache.getFileSchemas(any(), fileNamesCaptor.capture())).thenReturn(Collections.singletonList(TEST_DATA_SCHEMA));
+        when(mockValidationService.selectSchemaToValidate(any(), any())).thenReturn(TEST_DATA_SCHEMA);
+        when(mockValidationService.handleValidation(any(), validatedCaptor.capture(), any(), eq(TEST_DATA_SCHEMA), any()))
+                .thenAnswer(invocation -> invocation.getArgument(1));
+
+        List<BacklogObservation> observations = new ArrayList<>();
+        Dataset<Row> sourceData = new S3DataProvider(mockArguments).getStreamingSourceData(spark, mockSourceReference, 10);
+        StreamingQuery query = sourceData
+                .writeStream()
+                .foreachBatch((VoidFunction2<Dataset<Row>, Long>) (df, id) -> {
+                    underTest.processBatch(mockSourceReference, spark, df, id);
+                    observations.add(BacklogObservation.observeProcessedBatch(spark.sparkContext(), 10, Clock.systemUTC()));
+                })
+                .option("checkpointLocation", rawPath.resolve("checkpoint").toString())
+                .trigger(Trigger.AvailableNow())
+                .start();
+        query.awaitTermination();
+
+        List<String> expectedFileNames;
+        try (Stream<Path> files = Files.list(tablePath)) {
+            expectedFileNames = files
+                    .map(file -> file.getFileName().toString())
+                    .filter(fileName -> fileName.endsWith(".parquet"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        List<String> actualFileNames = fileNamesCaptor.getValue().stream()
+                .map(file -> file.substring(file.lastIndexOf('/') + 1))
+                .sorted()
+                .collect(Collectors.toList());
+        assertEquals(expectedFileNames, actualFileNames);
+        assertFalse(Arrays.asList(validatedCaptor.getValue().columns()).contains(INPUT_FILE_COLUMN));
+        assertFalse(Arrays.asList(validatedCaptor.getValue().columns()).contains(INPUT_FILE_SIZE_COLUMN));
+        verify(mockDataProvider, never()).inferSchema(any(), any(), any());
+
+        long expectedBytes;
+        try (Stream<Path> files = Files.list(tablePath)) {
+            expectedBytes = files
+                    .filter(file -> file.getFileName().toString().endsWith(".parquet"))
+                    .mapToLong(file -> file.toFile().length())
+                    .sum();
+        }
+        assertEquals(1, observations.size());
+        assertEquals(expectedFileNames.size(), observations.get(0).getFiles());
+        assertEquals(expectedBytes, observations.get(0).getBytes());
+    }
+
+    @Test
+    void shouldInferTheSchemaFromTheFilesOfAMaterialisedBatch(@TempDir Path tablePath) {
+        rowPerPk.write().mode("overwrite").parquet(tablePath.toString());
+        Dataset<Row> batch = spark.read().parquet(tablePath.toString());
+        List<String> batchFiles = Arrays.asList(batch.inputFiles());
+        when(mockSourceReference.getPrimaryKey()).thenReturn(PRIMARY_KEY);
+        when(mockSourceReference.getSource()).thenReturn("source");
+        when(mockSourceReference.getTable()).thenReturn("table");
+        when(mockSchemaCache.getFileSchemas(any(), eq(batchFiles))).thenReturn(Collections.singletonList(TEST_DATA_SCHEMA));
+        when(mockValidationService.selectSchemaToValidate(any(), any())).thenReturn(TEST_DATA_SCHEMA);
+        when(mockValidationService.handleValidation(any(), any(), any(), eq(TEST_DATA_SCHEMA), any())).thenReturn(batch);
+
+        underTest.processBatch(mockSourceReference, spark, batch, batchId);
+
+        verify(mockSchemaCache, times(1)).getFileSchemas(any(), eq(batchFiles));
+        verify(mockDataProvider, never()).inferSchema(any(), any(), any());
+    }
+
+    @Test
+    void shouldThrowForAnUnknownStorageLevel() {
+        when(mockArguments.getCdcBatchStorageLevel()).thenReturn("NOT_A_STORAGE_LEVEL");
+
+        assertThrows(IllegalArgumentException.class, this::createCdcBatchProcessor);
+    }
+
+    private CdcBatchProcessor createCdcBatchProcessor() {
+        return new CdcBatchProcessor(
+                mockArguments,
+                mockValidationService,
+                mockStructuredZone,
+                mockCuratedZone,
+                mockDataProvider,
+                mockOperationalDataStoreService,
+                mockSchemaCache,
+                mockMetricsCollector
+        );
+    }
+}
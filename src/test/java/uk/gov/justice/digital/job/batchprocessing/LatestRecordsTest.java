@@ -0,0 +1,155 @@
+package uk.gov.justice.digital.job.batchprocessing;
+
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.RowFactory;
+import org.apache.spark.sql.types.DataTypes;
+import org.apache.spark.sql.types.Metadata;
+import org.apache.spark.sql.types.StructField;
+import org.apache.spark.sql.types.StructType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import uk.gov.justice.digital.config.BaseSparkTest;
+import uk.gov.justice.digital.datahub.model.SourceReference;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.apache.spark.sql.functions.col;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static uk.gov.justice.digital.common.CommonDataFields.TIMESTAMP;
+import static uk.gov.justice.digital.test.MinimalTestData.manyRowsPerPkDfSameTimestamp;
+import static uk.gov.justice.digital.test.MinimalTestData.manyRowsPerPkDfSameTimestampToMicroSecondAccuracy;
+import static uk.gov.justice.digital.test.MinimalTestData.manyRowsPerPkSameTimestampLatest;
+import static uk.gov.justice.digital.test.MinimalTestData.manyRowsPerPkSameTimestampToMicroSecondAccuracyLatest;
+import static uk.gov.justice.digital.test.MinimalTestData.rowPerPkDfSameTimestamp;
+
+class LatestRecordsTest extends BaseSparkTest {
+
+    private static final SourceReference.PrimaryKey primaryKey = new SourceReference.PrimaryKey("pk");
+
+    @ParameterizedTest
+    @EnumSource(LatestRecordsStrategy.class)
+    public void shouldNotModifyRecordsForDifferentPKs(LatestRecordsStrategy strategy) {
+        Dataset<Row> inputDf = rowPerPkDfSameTimestamp(spark);
+        List<Row> expected = inputDf.collectAsList();
+
+        List<Row> result = LatestRecords.latestRecords(inputDf, primaryKey, strategy).collectAsList();
+
+        assertEquals(expected.size(), result.size());
+        assertTrue(expected.containsAll(result));
+        assertTrue(result.containsAll(expected));
+    }
+
+    @ParameterizedTest
+    @EnumSource(LatestRecordsStrategy.class)
+    public void shouldTakeTheLatestRecordByPK(LatestRecordsStrategy strategy) {
+        Dataset<Row> inputDf = manyRowsPerPkDfSameTimestamp(spark);
+        List<Row> expected = manyRowsPerPkSameTimestampLatest();
+
+        List<Row> result = LatestRecords.latestRecords(inputDf, primaryKey, strategy).collectAsList();
+
+        assertEquals(expected.size(), result.size());
+        assertTrue(result.containsAll(expected));
+    }
+
+    @ParameterizedTest
+    @EnumSource(LatestRecordsStrategy.class)
+    public void shouldTakeTheLatestRecordByPKToMicrosecondAccuracy(LatestRecordsStrategy strategy) {
+        Dataset<Row> inputDf = manyRowsPerPkDfSameTimestampToMicroSecondAccuracy(spark);
+        List<Row> expected = manyRowsPerPkSameTimestampToMicroSecondAccuracyLatest();
+
+        List<Row> result = LatestRecords.latestRecords(inputDf, primaryKey, strategy).collectAsList();
+
+        assertEquals(expected.size(), result.size());
+        assertTrue(result.containsAll(expected));
+    }
+
+    @ParameterizedTest
+    @EnumSource(LatestRecordsStrategy.class)
+    public void shouldTakeTheLatestRecordByCompositePK(LatestRecordsStrategy strategy) {
+        StructType schema = new StructType(new StructField[]{
+                new StructField("pk1", DataTypes.StringType, true, Metadata.empty()),
+                new StructField("pk2", DataTypes.IntegerType, true, Metadata.empty()),
+                new StructField(TIMESTAMP, DataTypes.StringType, true, Metadata.empty()),
+                new StructField("data", DataTypes.StringType, true, Metadata.empty())
+        });
+        Dataset<Row> inputDf = spark.createDataFrame(Arrays.asList(
+                RowFactory.create("a", 1, "2023-11-13 10:49:28.000000", "a1-old"),
+                RowFactory.create("a", 1, "2023-11-13 10:49:29.000000", "a1-new"),
+                RowFactory.create("a", 2, "2023-11-13 10:49:28.000000", "a2"),
+                RowFactory.create("b", 1, null, "b1-old"),
+                RowFactory.create("b", 1, "2023-11-13 10:49:27.000000", "b1-new"),
+                RowFactory.create(null, 1, "2023-11-13 10:49:28.000000", "null1")
+        ), schema);
+        List<Row> expected = Arrays.asList(
+                RowFactory.create("a", 1, "2023-11-13 10:49:29.000000", "a1-new"),
+                RowFactory.create("a", 2, "2023-11-13 10:49:28.000000", "a2"),
+                RowFactory.create("b", 1, "2023-11-13 10:49:27.000000", "b1-new"),
+                RowFactory.create(null, 1, "2023-11-13 10:49:28.000000", "null1")
+        );
+
+        List<Row> result = LatestRecords.latestRecords(inputDf, new SourceReference.PrimaryKey(Arrays.asList("pk1", "pk2")), strategy).collectAsList();
+
+        assertEquals(expected.size(), result.size());
+        assertTrue(result.containsAll(expected));
+    }
+
+    @ParameterizedTest
+    @EnumSource(LatestRecordsStrategy.class)
+    public void shouldOrderRecordsWithNoTimestampBeforeAllOthers(LatestRecordsStrategy strategy) {
+        StructType schema = new StructType(new StructField[]{
+                new StructField("pk", DataTypes.LongType, true, Metadata.empty()),
+                new StructField(TIMESTAMP, DataTypes.StringType, true, Metadata.empty()),
+                new StructField("data", DataTypes.StringType, true, Metadata.empty())
+        });
+        Dataset<Row> inputDf = spark.createDataFrame(Arrays.asList(
+                RowFactory.create(1L, null, "1a"),
+                RowFactory.create(2L, null, "2a"),
+                RowFactory.create(2L, "2023-11-13 10:49:28.000000", "2b"),
+                RowFactory.create(null, "2023-11-13 10:49:28.000000", "null-a"),
+                RowFactory.create(null, "2023-11-13 10:49:29.000000", "null-b")
+        ), schema);
+        List<Row> expected = Arrays.asList(
+                RowFactory.create(1L, null, "1a"),
+                RowFactory.create(2L, "2023-11-13 10:49:28.000000", "2b"),
+                RowFactory.create(null, "2023-11-13 10:49:29.000000", "null-b")
+        );
+
+        List<Row> result = LatestRecords.latestRecords(inputDf, primaryKey, strategy).collectAsList();
+
+        assertEquals(expected.size(), result.size());
+        assertTrue(result.containsAll(expected));
+    }
+
+    @Test
+    public void aggregationShouldGiveTheSameRecordsAsTheWindowForDistinctTimestamps() {
+        Dataset<Row> inputDf = spark.range(2000)
+                .selectExpr(
+                        "cast(id % 97 as int) as pk",
+                        "concat('2023-11-13 10:49:', lpad(cast(id % 60 as string), 2, '0'), '.', lpad(cast(id as string), 6, '0')) as " + TIMESTAMP,
+                        "cast(id as string) as data"
+                );
+
+        List<Row> byWindow = LatestRecords.byWindow(inputDf, primaryKey).collectAsList();
+        List<Row> byAggregation = LatestRecords.byAggregation(inputDf, primaryKey).collectAsList();
+        List<Row> byCompositeKeyAggregation = LatestRecords.byAggregation(
+                inputDf.withColumn("pk", col("pk").cast(DataTypes.StringType)), primaryKey
+        ).withColumn("pk", col("pk").cast(DataTypes.IntegerType)).collectAsList();
+
+        assertEquals(97, byWindow.size());
+        assertEquals(byWindow.size(), byAggregation.size());
+        assertTrue(byAggregation.containsAll(byWindow));
+        assertEquals(byWindow.size(), byCompositeKeyAggregation.size());
+        assertTrue(byCompositeKeyAggregation.containsAll(byWindow));
+    }
+
+    @Test
+    public void shouldRejectAnUnknownStrategy() {
+        assertEquals(LatestRecordsStrategy.AGGREGATE, LatestRecordsStrategy.fromString(" Aggregate "));
+        assertThrows(IllegalArgumentException.class, () -> LatestRecordsStrategy.fromString("sort"));
+    }
+}
@@ -0,0 +1,71 @@
+package uk.gov.justice.digital.job.cdc;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AdaptiveTriggerPolicyTest {
+
+    private static final long MIN_INTERVAL = 10;
+    private static final long MAX_INTERVAL = 600;
+    private static final long DEFAULT_MAX_FILES = 1000;
+    private static final long MAX_FILES_LIMIT = 8000;
+    private static final long BUSY_LAG_SECONDS = 300;
+    private static final long BUSY_BYTES = 1024;
+
+    private AdaptiveTriggerPolicy underTest;
+
+    @BeforeEach
+    public void setUp() {
+        underTest = new AdaptiveTriggerPolicy(MIN_INTERVAL, MAX_INTERVAL, DEFAULT_MAX_FILES, MAX_FILES_LIMIT, BUSY_LAG_SECONDS, BUSY_BYTES);
+    }
+
+    @Test
+    public void shouldUseMinimumIntervalAndDoubleBatchSizeWhenFileLimitReached() {
+        TriggerSettings result = underTest.next(new TriggerSettings(60, 1000), new BacklogObservation(1000, 10, 0, true));
+        assertEquals(new TriggerSettings(MIN_INTERVAL, 2000), result);
+    }
+
+    @Test
+    public void shouldTreatHighLagAsBusy() {
+        TriggerSettings result = underTest.next(new TriggerSettings(60, 1000), new BacklogObservation(5, 10, BUSY_LAG_SECONDS, false));
+        assertEquals(new TriggerSettings(MIN_INTERVAL, 2000), result);
+    }
+
+    @Test
+    public void shouldTreatHighBytesAsBusy() {
+        TriggerSettings result = underTest.next(new TriggerSettings(60, 1000), new BacklogObservation(5, BUSY_BYTES, 0, false));
+        assertEquals(new TriggerSettings(MIN_INTERVAL, 2000), result);
+    }
+
+    @Test
+    public void shouldNotGrowBatchSizeBeyondLimit() {
+        TriggerSettings result = underTest.next(new TriggerSettings(MIN_INTERVAL, 6000), new BacklogObservation(6000, 10, 0, true));
+        assertEquals(new TriggerSettings(MIN_INTERVAL, MAX_FILES_LIMIT), result);
+    }
+
+    @Test
+    public void shouldBackOffAndResetBatchSizeWhenIdle() {
+        TriggerSettings result = underTest.next(new TriggerSettings(60, 4000), BacklogObservation.NONE);
+        assertEquals(new TriggerSettings(120, DEFAULT_MAX_FILES), result);
+    }
+
+    @Test
+    public void shouldNotBackOffBeyondMaximumInterval() {
+        TriggerSettings result = underTest.next(new TriggerSettings(500, DEFAULT_MAX_FILES), BacklogObservation.NONE);
+        assertEquals(new TriggerSettings(MAX_INTERVAL, DEFAULT_MAX_FILES), result);
+    }
+
+    @Test
+    public void shouldStepBackTowardsMinimumIntervalAndDefaultBatchSizeWhenKeepingUp() {
+        TriggerSettings result = underTest.next(new TriggerSettings(600, 4000), new BacklogObservation(5, 10, 0, false));
+        assertEquals(new TriggerSettings(300, 2000), result);
+    }
+
+    @Test
+    public void shouldBeStableAtMinimumIntervalAndDefaultBatchSizeWhenKeepingUp() {
+        TriggerSettings current = new TriggerSettings(MIN_INTERVAL, DEFAULT_MAX_FILES);
+        assertEquals(current, underTest.next(current, new BacklogObservation(5, 10, 0, false)));
+    }
+}
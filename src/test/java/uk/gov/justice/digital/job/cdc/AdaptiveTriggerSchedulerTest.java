@@ -0,0 +1,95 @@
+package uk.gov.justice.digital.job.cdc;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import uk.gov.justice.digital.config.JobArguments;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AdaptiveTriggerSchedulerTest {
+
+    private static final TriggerSettings currentSettings = new TriggerSettings(60, 1000);
+    private static final TriggerSettings nextSettings = new TriggerSettings(120, 1000);
+
+    @Mock
+    private JobArguments arguments;
+    @Mock
+    private AdaptiveTriggerPolicy policy;
+    @Mock
+    private TableStreamingQuery query1;
+    @Mock
+    private TableStreamingQuery query2;
+
+    private AdaptiveTriggerScheduler underTest;
+
+    @BeforeEach
+    public void setUp() {
+        underTest = new AdaptiveTriggerScheduler(arguments, policy);
+    }
+
+    @Test
+    public void shouldRestartQueryWhenSettingsChange() {
+        when(query1.isActive()).thenReturn(true);
+        when(query1.getTriggerSettings()).thenReturn(currentSettings);
+        when(query1.drainBacklogObservation()).thenReturn(BacklogObservation.NONE);
+        when(policy.next(currentSettings, BacklogObservation.NONE)).thenReturn(nextSettings);
+
+        underTest.evaluate(Collections.singletonList(query1));
+
+        verify(query1, times(1)).restartWith(nextSettings);
+    }
+
+    @Test
+    public void shouldNotRestartQueryWhenSettingsAreUnchanged() {
+        when(query1.isActive()).thenReturn(true);
+        when(query1.getTriggerSettings()).thenReturn(currentSettings);
+        when(query1.drainBacklogObservation()).thenReturn(BacklogObservation.NONE);
+        when(policy.next(currentSettings, BacklogObservation.NONE)).thenReturn(currentSettings);
+
+        underTest.evaluate(Collections.singletonList(query1));
+
+        verify(query1, never()).restartWith(any());
+    }
+
+    @Test
+    public void shouldSkipQueriesWhichAreInactiveOrMidBatch() {
+        when(query1.isActive()).thenReturn(false);
+        when(query2.isActive()).thenReturn(true);
+        when(query2.isBatchInProgress()).thenReturn(true);
+
+        underTest.evaluate(Arrays.asList(query1, query2));
+
+        verify(query1, never()).drainBacklogObservation();
+        verify(query2, never()).drainBacklogObservation();
+        verify(query1, never()).restartWith(any());
+        verify(query2, never()).restartWith(any());
+    }
+
+    @Test
+    public void shouldContinueEvaluatingOtherQueriesWhenARestartFails() {
+        when(query1.isActive()).thenReturn(true);
+        when(query1.getTriggerSettings()).thenReturn(currentSettings);
+        when(query1.drainBacklogObservation()).thenReturn(BacklogObservation.NONE);
+        when(query2.isActive()).thenReturn(true);
+        when(query2.getTriggerSettings()).thenReturn(currentSettings);
+        when(query2.drainBacklogObservation()).thenReturn(BacklogObservation.NONE);
+        when(policy.next(currentSettings, BacklogObservation.NONE)).thenReturn(nextSettings);
+        doThrow(new RuntimeException("boom")).when(query1).restartWith(nextSettings);
+
+        underTest.evaluate(Arrays.asList(query1, query2));
+
+        verify(query2, times(1)).restartWith(nextSettings);
+    }
+}
@@ -0,0 +1,76 @@
+package uk.gov.justice.digital.job.cdc;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CatchUpCoordinatorTest {
+
+    @Mock
+    private TableStreamingQuery query;
+
+    private CatchUpCoordinator underTest;
+
+    @BeforeEach
+    public void setUp() {
+        underTest = new CatchUpCoordinator();
+    }
+
+    @Test
+    public void shouldIgnoreQueriesWhichAreNotCatchingUp() {
+        when(query.isCatchingUp()).thenReturn(false);
+
+        underTest.register(query);
+
+        assertFalse(underTest.isCatchingUp());
+    }
+
+    @Test
+    public void shouldBeCatchingUpWhileARegisteredQueryIsCatchingUp() {
+        givenRegistered();
+        when(query.isCatchingUp()).thenReturn(true);
+
+        assertTrue(underTest.isCatchingUp());
+    }
+
+    @Test
+    public void shouldStopTrackingAQueryOnceItHasCaughtUp() {
+        givenRegistered();
+        when(query.isCatchingUp()).thenReturn(false);
+
+        underTest.advance(query);
+
+        verify(query, times(1)).advanceCatchUp();
+        assertFalse(underTest.isCatchingUp());
+    }
+
+    @Test
+    public void shouldKeepTrackingAQueryWhichFailsToMoveOn() {
+        givenRegistered();
+        doThrow(new RuntimeException("failed to start")).when(query).advanceCatchUp();
+        when(query.isCatchingUp()).thenReturn(true);
+
+        underTest.advance(query);
+
+        assertTrue(underTest.isCatchingUp());
+    }
+
+    private void givenRegistered() {
+        when(query.isCatchingUp()).thenReturn(true);
+        when(query.getQueryId()).thenReturn(UUID.randomUUID());
+        when(query.isActive()).thenReturn(true);
+        underTest.register(query);
+    }
+}
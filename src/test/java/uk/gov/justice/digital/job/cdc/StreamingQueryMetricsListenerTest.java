@@ -0,0 +1,92 @@
+package uk.gov.justice.digital.job.cdc;
+
+import org.apache.spark.sql.streaming.StreamingQueryListener.QueryProgressEvent;
+import org.apache.spark.sql.streaming.StreamingQueryProgress;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import uk.gov.justice.digital.service.metrics.StreamingMetricsCollector;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.amazonaws.services.cloudwatch.model.StandardUnit.Count;
+import static com.amazonaws.services.cloudwatch.model.StandardUnit.CountSecond;
+import static com.amazonaws.services.cloudwatch.model.StandardUnit.Milliseconds;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static uk.gov.justice.digital.common.StreamingQuery.getQueryName;
+import static uk.gov.justice.digital.service.metrics.StreamingMetricsCollector.BATCH_DURATION;
+import static uk.gov.justice.digital.service.metrics.StreamingMetricsCollector.INPUT_ROWS;
+import static uk.gov.justice.digital.service.metrics.StreamingMetricsCollector.INPUT_ROWS_PER_SECOND;
+import static uk.gov.justice.digital.service.metrics.StreamingMetricsCollector.PROCESSED_ROWS_PER_SECOND;
+import static uk.gov.justice.digital.service.metrics.StreamingMetricsCollector.TRIGGER_TO_COMMIT_LATENCY;
+
+@ExtendWith(MockitoExtension.class)
+class StreamingQueryMetricsListenerTest {
+
+    @Mock
+    private StreamingMetricsCollector metricsCollector;
+    @Mock
+    private StreamingQueryProgress progress;
+
+    private StreamingQueryMetricsListener underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new StreamingQueryMetricsListener(metricsCollector);
+    }
+
+    @Test
+    void shouldRecordThroughputAndLatencyForTheQuerysTable() {
+        Map<String, Long> durations = new HashMap<>();
+        durations.put("addBatch", 800L);
+        durations.put("triggerExecution", 1000L);
+        when(progress.name()).thenReturn(getQueryName("source", "table"));
+        when(progress.numInputRows()).thenReturn(100L);
+        when(progress.inputRowsPerSecond()).thenReturn(10.0);
+        when(progress.processedRowsPerSecond()).thenReturn(100.0);
+        when(progress.durationMs()).thenReturn(durations);
+
+        underTest.onQueryProgress(new QueryProgressEvent(progress));
+
+        verify(metricsCollector, times(1)).record(INPUT_ROWS, Count, "source", "table", 100);
+        verify(metricsCollector, times(1)).record(INPUT_ROWS_PER_SECOND, CountSecond, "source", "table", 10.0);
+        verify(metricsCollector, times(1)).record(PROCESSED_ROWS_PER_SECOND, CountSecond, "source", "table", 100.0);
+        verify(metricsCollector, times(1)).record(BATCH_DURATION, Milliseconds, "source", "table", 800);
+        verify(metricsCollector, times(1)).record(TRIGGER_TO_COMMIT_LATENCY, Milliseconds, "source", "table", 1000);
+    }
+
+    @Test
+    void shouldSkipProgressForIdleQueries() {
+        when(progress.numInputRows()).thenReturn(0L);
+
+        underTest.onQueryProgress(new QueryProgressEvent(progress));
+
+        verifyNoInteractions(metricsCollector);
+    }
+
+    @Test
+    void shouldSkipProgressForQueriesWhichAreNotCdcQueries() {
+        when(progress.name()).thenReturn("some other query");
+        when(progress.numInputRows()).thenReturn(100L);
+
+        underTest.onQueryProgress(new QueryProgressEvent(progress));
+
+        verifyNoInteractions(metricsCollector);
+    }
+
+    @Test
+    void shouldSkipProgressForMultiplexedQueriesWhichAreRecordedPerTable() {
+        when(progress.name()).thenReturn(getQueryName("multiplexed", "group_0_of_2"));
+        when(progress.numInputRows()).thenReturn(100L);
+
+        underTest.onQueryProgress(new QueryProgressEvent(progress));
+
+        verifyNoInteractions(metricsCollector);
+    }
+}
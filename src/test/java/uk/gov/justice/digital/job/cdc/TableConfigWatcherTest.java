@@ -0,0 +1,99 @@
+package uk.gov.justice.digital.job.cdc;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import uk.gov.justice.digital.config.JobArguments;
+import uk.gov.justice.digital.exception.ConfigServiceException;
+import uk.gov.justice.digital.service.TableDiscoveryService;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TableConfigWatcherTest {
+
+    private static final ImmutablePair<String, String> table1 = ImmutablePair.of("source1", "table1");
+    private static final ImmutablePair<String, String> table2 = ImmutablePair.of("source2", "table2");
+    private static final ImmutablePair<String, String> table3 = ImmutablePair.of("source3", "table3");
+
+    @Mock
+    private JobArguments arguments;
+    @Mock
+    private TableDiscoveryService tableDiscoveryService;
+    @Mock
+    private TableConfigWatcher.TableQueries tableQueries;
+
+    private TableConfigWatcher underTest;
+
+    @BeforeEach
+    public void setUp() {
+        underTest = new TableConfigWatcher(arguments, tableDiscoveryService);
+    }
+
+    @Test
+    public void shouldStartAddedTablesAndStopRemovedTables() {
+        when(tableDiscoveryService.discoverTablesToProcess()).thenReturn(Arrays.asList(table2, table3));
+        when(tableQueries.runningTables()).thenReturn(new HashSet<>(Arrays.asList(table1, table2)));
+
+        underTest.poll(tableQueries);
+
+        verify(tableQueries, times(1)).stopTables(Collections.singleton(table1));
+        verify(tableQueries, times(1)).startTables(Collections.singleton(table3));
+    }
+
+    @Test
+    public void shouldDoNothingWhenTheConfigIsUnchanged() {
+        when(tableDiscoveryService.discoverTablesToProcess()).thenReturn(Arrays.asList(table1, table2));
+        when(tableQueries.runningTables()).thenReturn(new HashSet<>(Arrays.asList(table1, table2)));
+
+        underTest.poll(tableQueries);
+
+        verify(tableQueries, never()).stopTables(any());
+        verify(tableQueries, never()).startTables(any());
+    }
+
+    @Test
+    public void shouldLeaveQueriesRunningWhenTheConfigCannotBeRead() {
+        when(tableDiscoveryService.discoverTablesToProcess()).thenThrow(new ConfigServiceException("No tables configured"));
+
+        underTest.poll(tableQueries);
+
+        verify(tableQueries, never()).runningTables();
+        verify(tableQueries, never()).stopTables(any());
+        verify(tableQueries, never()).startTables(any());
+    }
+
+    @Test
+    public void shouldLeaveQueriesRunningWhenTheConfigIsEmpty() {
+        when(tableDiscoveryService.discoverTablesToProcess()).thenReturn(Collections.emptyList());
+
+        underTest.poll(tableQueries);
+
+        verify(tableQueries, never()).runningTables();
+        verify(tableQueries, never()).stopTables(any());
+        verify(tableQueries, never()).startTables(any());
+    }
+
+    @Test
+    public void shouldStillStartAddedTablesWhenStoppingRemovedTablesFails() {
+        when(tableDiscoveryService.discoverTablesToProcess()).thenReturn(Arrays.asList(table2, table3));
+        when(tableQueries.runningTables()).thenReturn(new HashSet<>(Arrays.asList(table1, table2)));
+        doThrow(new IllegalStateException("stop failed")).when(tableQueries).stopTables(any());
+
+        underTest.poll(tableQueries);
+
+        verify(tableQueries, times(1)).startTables(Collections.singleton(table3));
+    }
+}
@@ -0,0 +1,166 @@
+package uk.gov.justice.digital.job.cdc;
+
+import com.amazonaws.AbortedException;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.spark.sql.streaming.StreamingQueryException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import uk.gov.justice.digital.config.JobArguments;
+import uk.gov.justice.digital.service.metrics.StreamingMetricsCollector;
+
+import java.time.Clock;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.UUID;
+
+import static com.amazonaws.services.cloudwatch.model.StandardUnit.Count;
+import static com.amazonaws.services.cloudwatch.model.StandardUnit.Milliseconds;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static uk.gov.justice.digital.service.metrics.StreamingMetricsCollector.QUERY_DOWNTIME;
+import static uk.gov.justice.digital.service.metrics.StreamingMetricsCollector.QUERY_QUARANTINED;
+import static uk.gov.justice.digital.service.metrics.StreamingMetricsCollector.QUERY_RESTARTS;
+
+@ExtendWith(MockitoExtension.class)
+class TableQuerySupervisorTest {
+
+    private static final ImmutablePair<String, String> table = ImmutablePair.of("source", "table");
+    private static final long WINDOW_SECONDS = 3600L;
+
+    @Mock
+    private JobArguments arguments;
+    @Mock
+    private StreamingMetricsCollector metricsCollector;
+    @Mock
+    private Clock clock;
+    @Mock
+    private TableStreamingQuery query;
+
+    private TableQuerySupervisor underTest;
+
+    @BeforeEach
+    public void setUp() {
+        when(arguments.isCdcQuerySupervisorEnabled()).thenReturn(true);
+        when(arguments.getCdcQueryRestartInitialBackoffSeconds()).thenReturn(30L);
+        when(arguments.getCdcQueryRestartMaxBackoffSeconds()).thenReturn(120L);
+        when(arguments.getCdcQueryRestartMaxFailures()).thenReturn(3);
+        when(arguments.getCdcQueryRestartFailureWindowSeconds()).thenReturn(WINDOW_SECONDS);
+        underTest = new TableQuerySupervisor(arguments, metricsCollector, clock);
+    }
+
+    @Test
+    public void backoffShouldDoubleWithEachFailureUpToTheMaximum() {
+        assertEquals(30_000L, underTest.backoffMillis(1));
+        assertEquals(60_000L, underTest.backoffMillis(2));
+        assertEquals(120_000L, underTest.backoffMillis(3));
+        assertEquals(120_000L, underTest.backoffMillis(50));
+    }
+
+    @Test
+    public void shouldKeepSupervisingAQueryWhichHasFailedFewerThanTheMaxFailures() {
+        givenSupervised();
+        when(clock.millis()).thenReturn(1000L, 2000L);
+
+        underTest.onFailure(query);
+        underTest.onFailure(query);
+
+        assertTrue(underTest.isSupervising());
+        assertTrue(underTest.getQuarantinedTables().isEmpty());
+        assertEquals(new TableQuerySupervisor.QueryHealth(2, 0, 0, false), underTest.getHealthByTable().get(table));
+    }
+
+    @Test
+    public void shouldQuarantineAQueryWhichFailsTheMaxFailuresWithinTheWindow() {
+        givenSupervised();
+        when(clock.millis()).thenReturn(1000L, 2000L, 3000L);
+
+        underTest.onFailure(query);
+        underTest.onFailure(query);
+        underTest.onFailure(query);
+
+        assertFalse(underTest.isSupervising());
+        assertEquals(Collections.singleton(table), underTest.getQuarantinedTables());
+        verify(metricsCollector, times(1)).record(QUERY_QUARANTINED, Count, "source", "table", 1);
+    }
+
+    @Test
+    public void shouldNotCountFailuresOutsideTheWindowTowardsQuarantine() {
+        givenSupervised();
+        long windowMillis = WINDOW_SECONDS * 1000;
+        when(clock.millis()).thenReturn(1000L, 2000L, 2000L + windowMillis);
+
+        underTest.onFailure(query);
+        underTest.onFailure(query);
+        underTest.onFailure(query);
+
+        assertTrue(underTest.isSupervising());
+        assertTrue(underTest.getQuarantinedTables().isEmpty());
+    }
+
+    @Test
+    public void restartShouldRecordTheRestartAndTheDowntime() {
+        givenSupervised();
+        when(clock.millis()).thenReturn(1000L, 5000L);
+        when(query.restartAfterFailure()).thenReturn(true);
+
+        underTest.onFailure(query);
+        underTest.restart(query);
+
+        assertEquals(new TableQuerySupervisor.QueryHealth(1, 1, 4000L, false), underTest.getHealthByTable().get(table));
+        verify(metricsCollector, times(1)).record(QUERY_RESTARTS, Count, "source", "table", 1);
+        verify(metricsCollector, times(1)).record(QUERY_DOWNTIME, Milliseconds, "source", "table", 4000L);
+    }
+
+    @Test
+    public void aFailedRestartShouldCountAsAnotherFailure() {
+        givenSupervised();
+        when(clock.millis()).thenReturn(1000L, 2000L);
+        when(query.restartAfterFailure()).thenThrow(new IllegalStateException("Failed to start"));
+
+        underTest.onFailure(query);
+        underTest.restart(query);
+
+        assertEquals(2, underTest.getHealthByTable().get(table).getFailures());
+        assertTrue(underTest.isSupervising());
+    }
+
+    @Test
+    public void shouldNotRestartAnUnsupervisedQuery() {
+        givenSupervised();
+        underTest.unsupervise(query);
+
+        underTest.restart(query);
+
+        verify(query, never()).restartAfterFailure();
+        assertFalse(underTest.isSupervising());
+    }
+
+    @Test
+    public void shouldStopSupervisingAnAbortedQuery() {
+        givenSupervised();
+        StreamingQueryException exception = mock(StreamingQueryException.class);
+        when(exception.getCause()).thenReturn(new AbortedException());
+        when(query.getException()).thenReturn(Optional.of(exception));
+
+        underTest.onFailure(query);
+
+        assertFalse(underTest.isSupervising());
+        assertTrue(underTest.getQuarantinedTables().isEmpty());
+    }
+
+    private void givenSupervised() {
+        when(query.getInputSourceName()).thenReturn(table.getLeft());
+        when(query.getInputTableName()).thenReturn(table.getRight());
+        when(query.getQueryId()).thenReturn(UUID.randomUUID());
+        underTest.supervise(query);
+    }
+}
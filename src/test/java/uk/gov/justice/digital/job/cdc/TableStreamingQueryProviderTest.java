@@ -1,5 +1,7 @@
 package uk.gov.justice.digital.job.cdc;
 
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.spark.SparkContext;
 import org.apache.spark.SparkException;
 import org.apache.spark.api.java.function.VoidFunction2;
 import org.apache.spark.sql.Dataset;
@@ -16,18 +18,38 @@ import uk.gov.justice.digital.client.s3.S3DataProvider;
 import uk.gov.justice.digital.config.JobArguments;
 import uk.gov.justice.digital.datahub.model.SourceReference;
 import uk.gov.justice.digital.job.batchprocessing.CdcBatchProcessor;
+import uk.gov.justice.digital.service.ParquetSchemaCacheService;
+import uk.gov.justice.digital.service.SchedulerPoolService;
 import uk.gov.justice.digital.service.SourceReferenceService;
 import uk.gov.justice.digital.service.ViolationService;
+import uk.gov.justice.digital.service.metrics.StreamingMetricsCollector;
 
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
+import static com.amazonaws.services.cloudwatch.model.StandardUnit.Count;
+import static com.amazonaws.services.cloudwatch.model.StandardUnit.CountSecond;
+import static com.amazonaws.services.cloudwatch.model.StandardUnit.Milliseconds;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
+import static uk.gov.justice.digital.common.StreamingQuery.BATCH_INPUT_ROWS_PROPERTY;
+import static uk.gov.justice.digital.common.StreamingQuery.getQueryName;
+import static uk.gov.justice.digital.service.metrics.StreamingMetricsCollector.BATCH_DURATION;
+import static uk.gov.justice.digital.service.metrics.StreamingMetricsCollector.INPUT_ROWS;
+import static uk.gov.justice.digital.service.metrics.StreamingMetricsCollector.PROCESSED_ROWS_PER_SECOND;
 
 @ExtendWith(MockitoExtension.class)
 class TableStreamingQueryProviderTest {
@@ -47,8 +69,20 @@ class TableStreamingQueryProviderTest {
     @Mock
     private ViolationService violationService;
     @Mock
+    private ParquetSchemaCacheService schemaCache;
+    @Mock
+    private SchedulerPoolService schedulerPoolService;
+    @Mock
+    private StreamingMetricsCollector metricsCollector;
+    @Mock
+    private Clock clock;
+    @Mock
     private SparkSession spark;
     @Mock
+    private SparkContext sparkContext;
+    @Mock
+    private VoidFunction2<List<String>, Long> tableFunc;
+    @Mock
     private Dataset<Row> df;
     private TableStreamingQueryProvider underTest;
 
@@ -59,7 +93,11 @@ class TableStreamingQueryProviderTest {
                 dataProvider,
                 batchProcessor,
                 sourceReferenceService,
-                violationService
+                violationService,
+                schemaCache,
+                schedulerPoolService,
+                metricsCollector,
+                clock
         ));
     }
 
@@ -72,6 +110,55 @@ class TableStreamingQueryProviderTest {
         verify(underTest, times(1)).standardProcessingQuery(any(), eq(sourceName), eq(tableName), eq(sourceReference));
     }
 
+    @Test
+    public void shouldCreateAdaptiveQueryWhenAdaptiveTriggerIsEnabled() {
+        when(arguments.isCdcAdaptiveTriggerEnabled()).thenReturn(true);
+        when(arguments.getCdcTriggerIntervalSeconds()).thenReturn(60L);
+        when(arguments.streamingJobMaxFilePerTrigger()).thenReturn(1000L);
+        when(sourceReferenceService.getSourceReference(sourceName, tableName)).thenReturn(Optional.of(sourceReference));
+        when(dataProvider.getStreamingSourceData(spark, sourceReference, 1000L)).thenReturn(df);
+
+        TableStreamingQuery result = underTest.provide(spark, sourceName, tableName);
+
+        assertTrue(result.isAdaptive());
+        assertEquals(new TriggerSettings(60L, 1000L), result.getTriggerSettings());
+    }
+
+    @Test
+    public void shouldCreateQueryWhichStartsByCatchingUpWhenCatchUpIsEnabled() {
+        when(arguments.isCdcCatchUpEnabled()).thenReturn(true);
+        when(arguments.getCdcCatchUpMaxFilesPerTrigger()).thenReturn(20000L);
+        when(arguments.getCdcCatchUpLagThresholdSeconds()).thenReturn(300L);
+        when(sourceReferenceService.getSourceReference(sourceName, tableName)).thenReturn(Optional.of(sourceReference));
+        when(dataProvider.getStreamingSourceData(spark, sourceReference)).thenReturn(df);
+
+        TableStreamingQuery result = underTest.provide(spark, sourceName, tableName);
+
+        assertTrue(result.isCatchingUp());
+    }
+
+    @Test
+    public void shouldNotCatchUpWhenCatchUpIsDisabled() {
+        when(sourceReferenceService.getSourceReference(sourceName, tableName)).thenReturn(Optional.of(sourceReference));
+        when(dataProvider.getStreamingSourceData(spark, sourceReference)).thenReturn(df);
+
+        TableStreamingQuery result = underTest.provide(spark, sourceName, tableName);
+
+        assertFalse(result.isCatchingUp());
+    }
+
+    @Test
+    public void shouldRunQueryInTheSchedulerPoolAssignedToTheTable() {
+        when(sourceReferenceService.getSourceReference(sourceName, tableName)).thenReturn(Optional.of(sourceReference));
+        when(dataProvider.getStreamingSourceData(spark, sourceReference)).thenReturn(df);
+        when(schedulerPoolService.assignPool(spark, getQueryName(sourceName, tableName), Collections.singletonList(ImmutablePair.of(sourceName, tableName))))
+                .thenReturn(Optional.of("table-pool"));
+
+        TableStreamingQuery result = underTest.provide(spark, sourceName, tableName);
+
+        assertEquals("table-pool", result.getSchedulerPool());
+    }
+
     @Test
     public void shouldCreateNoSchemaFoundQueryWhenNoSourceReference() {
         when(sourceReferenceService.getSourceReference(sourceName, tableName)).thenReturn(Optional.empty());
@@ -106,4 +193,62 @@ class TableStreamingQueryProviderTest {
                 .writeCdcDataToViolations(any(), eq(sourceName), eq(tableName), anyString());
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldDecorateEachTableInMultiplexedGroupWithIncompatibleSchemaHandling() {
+        ImmutablePair<String, String> table1 = ImmutablePair.of(sourceName, tableName);
+        ImmutablePair<String, String> table2 = ImmutablePair.of(sourceName, "other_table");
+        when(sourceReferenceService.getSourceReference(sourceName, tableName)).thenReturn(Optional.of(sourceReference));
+        when(sourceReferenceService.getSourceReference(sourceName, "other_table")).thenReturn(Optional.empty());
+
+        underTest.provideMultiplexed(spark, 0, 2, Arrays.asList(table1, table2));
+
+        verify(underTest, times(1)).withIncompatibleSchemaHandling(eq(sourceName), eq(tableName), any());
+        verify(underTest, times(1)).withIncompatibleSchemaHandling(eq(sourceName), eq("other_table"), any());
+    }
+
+    @Test
+    public void groupFilePathsByTableShouldGroupBySourceAndTableDirectories() {
+        List<String> filePaths = Arrays.asList(
+                "s3://bucket/raw/source1/table1/file1.parquet",
+                "s3://bucket/raw/source1/table1/file2.parquet",
+                "s3://bucket/raw/source1/table2/file3.parquet",
+                "s3://bucket/raw/source2/table1/file4.parquet"
+        );
+
+        Map<ImmutablePair<String, String>, List<String>> result = TableStreamingQueryProvider.groupFilePathsByTable(filePaths);
+
+        assertEquals(3, result.size());
+        assertEquals(filePaths.subList(0, 2), result.get(ImmutablePair.of("source1", "table1")));
+        assertEquals(filePaths.subList(2, 3), result.get(ImmutablePair.of("source1", "table2")));
+        assertEquals(filePaths.subList(3, 4), result.get(ImmutablePair.of("source2", "table1")));
+    }
+
+    @Test
+    public void shouldRecordRowsAndDurationForEachTableInMultiplexedBatch() throws Exception {
+        List<String> filePaths = Collections.singletonList("s3://bucket/raw/source/table/file1.parquet");
+        when(spark.sparkContext()).thenReturn(sparkContext);
+        when(clock.millis()).thenReturn(1000L, 1500L);
+        when(sparkContext.getLocalProperty(BATCH_INPUT_ROWS_PROPERTY)).thenReturn("100");
+
+        underTest.processTableFiles(spark, ImmutablePair.of(sourceName, tableName), tableFunc, filePaths, 1L);
+
+        verify(tableFunc, times(1)).call(filePaths, 1L);
+        verify(metricsCollector, times(1)).record(INPUT_ROWS, Count, sourceName, tableName, 100);
+        verify(metricsCollector, times(1)).record(BATCH_DURATION, Milliseconds, sourceName, tableName, 500);
+        verify(metricsCollector, times(1)).record(PROCESSED_ROWS_PER_SECOND, CountSecond, sourceName, tableName, 200.0);
+    }
+
+    @Test
+    public void shouldNotRecordMetricsForTableInMultiplexedBatchWhenNoRowsWereProcessed() throws Exception {
+        List<String> filePaths = Collections.singletonList("s3://bucket/raw/source/table/file1.parquet");
+        when(spark.sparkContext()).thenReturn(sparkContext);
+        when(clock.millis()).thenReturn(1000L, 1500L);
+        when(sparkContext.getLocalProperty(BATCH_INPUT_ROWS_PROPERTY)).thenReturn(null);
+
+        underTest.processTableFiles(spark, ImmutablePair.of(sourceName, tableName), tableFunc, filePaths, 1L);
+
+        verify(tableFunc, times(1)).call(filePaths, 1L);
+        verifyNoInteractions(metricsCollector);
+    }
+}
@@ -5,6 +5,7 @@ import org.apache.spark.sql.Dataset;
 import org.apache.spark.sql.Row;
 import org.apache.spark.sql.execution.streaming.MemoryStream;
 import org.apache.spark.sql.streaming.StreamingQuery;
+import org.apache.spark.sql.streaming.StreamingQueryException;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -19,11 +20,16 @@ import scala.collection.Seq;
 import uk.gov.justice.digital.config.BaseSparkTest;
 
 import java.nio.file.Path;
+import java.time.Clock;
 import java.util.List;
+import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static uk.gov.justice.digital.test.MinimalTestData.encoder;
@@ -39,6 +45,8 @@ class TableStreamingQueryTest extends BaseSparkTest {
     private static Seq<Row> testDataSeq;
     @Mock
     private VoidFunction2<Dataset<Row>, Long> batchProcessingFunc;
+    @Mock
+    private Runnable onCatchUpComplete;
     @TempDir
     private Path testRoot;
     @Captor
@@ -81,4 +89,55 @@ class TableStreamingQueryTest extends BaseSparkTest {
         assertEquals(testData.size(), result.size());
         assertTrue(result.containsAll(testData));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void stopGracefullyShouldStopTheQueryOnceTheBatchInProgressHasFinished() throws Exception {
+        inputStream.addData(testDataSeq);
+        StreamingQuery sparkStreamingQuery = underTest.runQuery();
+        sparkStreamingQuery.processAllAvailable();
+
+        underTest.stopGracefully(10);
+
+        assertFalse(underTest.isActive());
+        verify(batchProcessingFunc, times(1)).call(any(), any());
+    }
+
+    @Test
+    public void restartAfterFailureShouldRestartAFailedQueryFromItsCheckpoint() throws Exception {
+        doThrow(new RuntimeException("Batch failed")).doNothing().when(batchProcessingFunc).call(any(), any());
+        inputStream.addData(testDataSeq);
+        StreamingQuery failedQuery = underTest.runQuery();
+        assertThrows(StreamingQueryException.class, failedQuery::processAllAvailable);
+        UUID queryId = underTest.getQueryId();
+
+        assertFalse(underTest.isActive());
+        assertTrue(underTest.getException().isPresent());
+        assertTrue(underTest.restartAfterFailure());
+        assertFalse(underTest.restartAfterFailure());
+
+        spark.streams().get(queryId).processAllAvailable();
+        assertEquals(queryId, underTest.getQueryId());
+        verify(batchProcessingFunc, times(2)).call(any(), any());
+        underTest.stopQuery();
+    }
+
+    @Test
+    public void shouldCatchUpWithAvailableNowBeforeSwitchingToTheNormalTrigger() throws Exception {
+        underTest.enableCatchUp(new CatchUpSettings(10L, 300L, true), maxFiles -> inputStream.toDF(), onCatchUpComplete, Clock.systemUTC());
+        inputStream.addData(testDataSeq);
+
+        StreamingQuery catchUpQuery = underTest.runQuery();
+        catchUpQuery.awaitTermination();
+
+        assertTrue(underTest.isCatchingUp());
+        verify(batchProcessingFunc, times(1)).call(any(), any());
+
+        underTest.advanceCatchUp();
+
+        assertFalse(underTest.isCatchingUp());
+        assertTrue(underTest.isActive());
+        assertEquals(catchUpQuery.id(), underTest.getQueryId());
+        verify(onCatchUpComplete, times(1)).run();
+        underTest.stopQuery();
+    }
+}
@@ -0,0 +1,52 @@
+package uk.gov.justice.digital.provider;
+
+import org.apache.spark.SparkConf;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import uk.gov.justice.digital.config.JobArguments;
+import uk.gov.justice.digital.config.JobProperties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class SparkSessionProviderTest {
+
+    @Mock
+    private JobArguments arguments;
+    @Mock
+    private JobProperties properties;
+
+    @BeforeEach
+    public void setUp() {
+        when(properties.getSparkDriverMemory()).thenReturn("1g");
+        when(properties.getSparkExecutorMemory()).thenReturn("2g");
+        when(arguments.getBroadcastTimeoutSeconds()).thenReturn(300);
+        when(arguments.getSparkSqlMaxRecordsPerFile()).thenReturn(0);
+    }
+
+    @Test
+    public void shouldUseFairSchedulerWhenLoadingSeveralBatchTablesAtOnce() {
+        when(arguments.getBatchLoadTableParallelism()).thenReturn(4);
+
+        SparkConf sparkConf = new SparkConf();
+        SparkSessionProvider.configureSparkConf(sparkConf, arguments, properties);
+
+        assertEquals("FAIR", sparkConf.get("spark.scheduler.mode"));
+    }
+
+    @Test
+    public void shouldKeepDefaultSchedulerWhenLoadingOneBatchTableAtATime() {
+        when(arguments.getBatchLoadTableParallelism()).thenReturn(1);
+
+        SparkConf sparkConf = new SparkConf();
+        SparkSessionProvider.configureSparkConf(sparkConf, arguments, properties);
+
+        assertFalse(sparkConf.contains("spark.scheduler.mode"));
+    }
+
+}
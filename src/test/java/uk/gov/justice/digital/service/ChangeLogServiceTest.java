@@ -0,0 +1,124 @@
+package uk.gov.justice.digital.service;
+
+import com.google.common.collect.ImmutableSet;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.spark.sql.SparkSession;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import uk.gov.justice.digital.config.JobArguments;
+
+import java.time.Clock;
+
+import static org.apache.spark.sql.functions.col;
+import static org.apache.spark.sql.functions.lit;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static uk.gov.justice.digital.service.ChangeLogService.CHANGE_SEQUENCE;
+import static uk.gov.justice.digital.test.MinimalTestData.PRIMARY_KEY;
+
+@ExtendWith(MockitoExtension.class)
+class ChangeLogServiceTest {
+
+    private static final String CONFIG_KEY = "domain";
+    private static final String tablePath = "/curated/source/table";
+
+    @Mock
+    private JobArguments arguments;
+    @Mock
+    private ConfigService configService;
+    @Mock
+    private DataStorageService storage;
+    @Mock
+    private Clock clock;
+    @Mock
+    private SparkSession spark;
+
+    @Test
+    public void shouldTreatConfiguredTablesAsMergeOnReadWhenEnabled() {
+        ChangeLogService underTest = givenEnabled();
+        when(arguments.getConfigKey()).thenReturn(CONFIG_KEY);
+        when(configService.getMergeOnReadTables(CONFIG_KEY)).thenReturn(ImmutableSet.of(ImmutablePair.of("source", "table")));
+
+        assertTrue(underTest.isMergeOnRead("source", "table"));
+        assertFalse(underTest.isMergeOnRead("source", "other_table"));
+        verify(configService, times(1)).getMergeOnReadTables(CONFIG_KEY);
+    }
+
+    @Test
+    public void shouldNotReadTheConfigWhenDisabled() {
+        ChangeLogService underTest = new ChangeLogService(arguments, configService, storage, clock);
+
+        assertFalse(underTest.isMergeOnRead("source", "table"));
+        verifyNoInteractions(configService);
+    }
+
+    @Test
+    public void shouldKeepChangeLogsBesideTheirTables() {
+        assertEquals("/curated/source/table_change_log", ChangeLogService.changeLogPath(tablePath));
+    }
+
+    @Test
+    public void shouldOnlyLookForLeftoverChangesOncePerTable() {
+        ChangeLogService underTest = givenEnabled();
+        when(storage.exists(spark, ChangeLogService.changeLogPath(tablePath))).thenReturn(false);
+
+        underTest.compactLeftoverChanges(spark, tablePath, PRIMARY_KEY);
+        underTest.compactLeftoverChanges(spark, tablePath, PRIMARY_KEY);
+
+        verify(storage, times(1)).exists(spark, ChangeLogService.changeLogPath(tablePath));
+        verify(storage, never()).mergeRecords(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    public void shouldNotLookForLeftoverChangesWhenDisabled() {
+        ChangeLogService underTest = new ChangeLogService(arguments, configService, storage, clock);
+
+        underTest.compactLeftoverChanges(spark, tablePath, PRIMARY_KEY);
+
+        verifyNoInteractions(storage);
+    }
+
+    @Test
+    public void shouldNotCompactAnythingWhenNoChangesHaveBeenAppended() {
+        ChangeLogService underTest = givenEnabled();
+
+        underTest.compactAll();
+
+        verifyNoInteractions(storage);
+    }
+
+    @Test
+    public void shouldDiscardChangesAppendedBeforeAReload() {
+        ChangeLogService underTest = new ChangeLogService(arguments, configService, storage, clock);
+        when(storage.exists(spark, ChangeLogService.changeLogPath(tablePath))).thenReturn(true);
+
+        underTest.discardChangesAppendedBefore(spark, tablePath, 1000L);
+
+        verify(storage, times(1)).deleteRecords(spark, ChangeLogService.changeLogPath(tablePath), col(CHANGE_SEQUENCE).lt(lit(1000L)));
+    }
+
+    @Test
+    public void shouldNotDiscardAnythingWhenTheTableHasNoChangeLog() {
+        ChangeLogService underTest = new ChangeLogService(arguments, configService, storage, clock);
+        when(storage.exists(spark, ChangeLogService.changeLogPath(tablePath))).thenReturn(false);
+
+        underTest.discardChangesAppendedBefore(spark, tablePath, 1000L);
+
+        verify(storage, never()).deleteRecords(any(), any(), any());
+    }
+
+    private ChangeLogService givenEnabled() {
+        when(arguments.isCdcChangeLogEnabled()).thenReturn(true);
+        when(arguments.getCdcChangeLogCompactionIntervalSeconds()).thenReturn(900L);
+        return new ChangeLogService(arguments, configService, storage, clock);
+    }
+}
@@ -0,0 +1,197 @@
+package uk.gov.justice.digital.service;
+
+import dev.failsafe.RetryPolicy;
+import io.delta.exceptions.ConcurrentAppendException;
+import org.apache.spark.sql.SparkSession;
+import org.apache.spark.sql.delta.DeltaConcurrentModificationException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import uk.gov.justice.digital.config.JobArguments;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+import static uk.gov.justice.digital.service.CommitCoordinator.SERIALIZABLE;
+import static uk.gov.justice.digital.service.CommitCoordinator.WRITE_SERIALIZABLE;
+import static uk.gov.justice.digital.service.CommitCoordinator.WriteKind.BLIND_APPEND;
+import static uk.gov.justice.digital.service.CommitCoordinator.WriteKind.READ_MODIFY_WRITE;
+
+@ExtendWith(MockitoExtension.class)
+class CommitCoordinatorTest {
+
+    private static final String tablePath = "s3://bucket/source/table";
+    private static final String otherTablePath = "s3://bucket/source/other_table";
+    private static final long WAIT_SECONDS = 5L;
+    // Long enough for a writer which is not queued to have finished
+    private static final long QUEUED_MILLIS = 200L;
+
+    private static final RetryPolicy<Void> retryPolicy = RetryPolicy.<Void>builder()
+            .handle(DeltaConcurrentModificationException.class)
+            .withMaxAttempts(3)
+            .build();
+
+    @Mock
+    private JobArguments arguments;
+    @Mock
+    private SparkSession spark;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+    private final CountDownLatch firstWriteStarted = new CountDownLatch(1);
+    private final CountDownLatch releaseFirstWrite = new CountDownLatch(1);
+
+    @AfterEach
+    public void tearDown() {
+        releaseFirstWrite.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void shouldQueueWritesToTheSameTable() throws Exception {
+        CommitCoordinator underTest = givenCoordinator(true, null);
+        givenFirstWriteIsInProgress(underTest, tablePath);
+
+        AtomicBoolean secondWriteRan = new AtomicBoolean();
+        Future<?> secondWrite = executor.submit(() ->
+                underTest.commit(spark, tablePath, READ_MODIFY_WRITE, retryPolicy, () -> secondWriteRan.set(true))
+        );
+        Thread.sleep(QUEUED_MILLIS);
+        assertFalse(secondWriteRan.get());
+
+        releaseFirstWrite.countDown();
+        secondWrite.get(WAIT_SECONDS, TimeUnit.SECONDS);
+
+        assertTrue(secondWriteRan.get());
+        assertEquals(2L, underTest.getStats().getCommits());
+        assertEquals(1L, underTest.getStats().getWaits());
+        assertTrue(underTest.getStats().getWaitMillis() >= QUEUED_MILLIS);
+    }
+
+    @Test
+    public void shouldNotQueueWritesToDifferentTables() throws Exception {
+        CommitCoordinator underTest = givenCoordinator(true, null);
+        givenFirstWriteIsInProgress(underTest, tablePath);
+
+        executor.submit(() -> underTest.commit(spark, otherTablePath, READ_MODIFY_WRITE, retryPolicy, () -> { }))
+                .get(WAIT_SECONDS, TimeUnit.SECONDS);
+
+        assertEquals(0L, underTest.getStats().getWaits());
+    }
+
+    @Test
+    public void shouldNotQueueBlindAppendsToWriteSerializableTables() throws Exception {
+        AtomicInteger isolationLevelReads = new AtomicInteger();
+        CommitCoordinator underTest = givenCoordinator(true, isolationLevelReads, WRITE_SERIALIZABLE);
+        givenFirstWriteIsInProgress(underTest, tablePath);
+
+        executor.submit(() -> underTest.commit(spark, tablePath, BLIND_APPEND, retryPolicy, () -> { }))
+                .get(WAIT_SECONDS, TimeUnit.SECONDS);
+        executor.submit(() -> underTest.commit(spark, tablePath, BLIND_APPEND, retryPolicy, () -> { }))
+                .get(WAIT_SECONDS, TimeUnit.SECONDS);
+
+        assertEquals(0L, underTest.getStats().getWaits());
+        assertEquals(1, isolationLevelReads.get());
+    }
+
+    @Test
+    public void shouldReadTheIsolationLevelOfATableAgainUntilItExists() {
+        AtomicInteger isolationLevelReads = new AtomicInteger();
+        when(arguments.isDataStorageCommitCoordinatorEnabled()).thenReturn(true);
+        CommitCoordinator underTest = new CommitCoordinator(arguments, (spark, path) ->
+                isolationLevelReads.incrementAndGet() == 1 ? null : SERIALIZABLE
+        );
+
+        underTest.commit(spark, tablePath, BLIND_APPEND, retryPolicy, () -> { });
+        underTest.commit(spark, tablePath, BLIND_APPEND, retryPolicy, () -> { });
+        underTest.commit(spark, tablePath, BLIND_APPEND, retryPolicy, () -> { });
+
+        assertEquals(2, isolationLevelReads.get());
+    }
+
+    @Test
+    public void shouldQueueBlindAppendsToSerializableTables() throws Exception {
+        CommitCoordinator underTest = givenCoordinator(true, SERIALIZABLE);
+        givenFirstWriteIsInProgress(underTest, tablePath);
+
+        Future<?> append = executor.submit(() -> underTest.commit(spark, tablePath, BLIND_APPEND, retryPolicy, () -> { }));
+        Thread.sleep(QUEUED_MILLIS);
+        assertFalse(append.isDone());
+
+        releaseFirstWrite.countDown();
+        append.get(WAIT_SECONDS, TimeUnit.SECONDS);
+
+        assertEquals(1L, underTest.getStats().getWaits());
+    }
+
+    @Test
+    public void shouldNotQueueWritesWhenDisabled() throws Exception {
+        CommitCoordinator underTest = givenCoordinator(false, null);
+        givenFirstWriteIsInProgress(underTest, tablePath);
+
+        executor.submit(() -> underTest.commit(spark, tablePath, READ_MODIFY_WRITE, retryPolicy, () -> { }))
+                .get(WAIT_SECONDS, TimeUnit.SECONDS);
+
+        assertEquals(0L, underTest.getStats().getWaits());
+    }
+
+    @Test
+    public void shouldCountRetriesOfConflictingWrites() {
+        CommitCoordinator underTest = givenCoordinator(true, null);
+        AtomicInteger attempts = new AtomicInteger();
+
+        underTest.commit(spark, tablePath, READ_MODIFY_WRITE, retryPolicy, () -> {
+            if (attempts.incrementAndGet() == 1) throw new ConcurrentAppendException("Files were added by a concurrent update");
+        });
+
+        assertEquals(1L, underTest.getStats().getCommits());
+        assertEquals(1L, underTest.getStats().getRetries());
+    }
+
+    @Test
+    public void shouldReleaseTheTableWhenRetriesAreExhausted() throws Exception {
+        CommitCoordinator underTest = givenCoordinator(true, null);
+
+        assertThrows(ConcurrentAppendException.class, () ->
+                underTest.commit(spark, tablePath, READ_MODIFY_WRITE, retryPolicy, () -> {
+                    throw new ConcurrentAppendException("Files were added by a concurrent update");
+                })
+        );
+        executor.submit(() -> underTest.commit(spark, tablePath, READ_MODIFY_WRITE, retryPolicy, () -> { }))
+                .get(WAIT_SECONDS, TimeUnit.SECONDS);
+
+        assertEquals(1L, underTest.getStats().getCommits());
+        assertEquals(2L, underTest.getStats().getRetries());
+    }
+
+    private CommitCoordinator givenCoordinator(boolean enabled, String isolationLevel) {
+        return givenCoordinator(enabled, new AtomicInteger(), isolationLevel);
+    }
+
+    private CommitCoordinator givenCoordinator(boolean enabled, AtomicInteger isolationLevelReads, String isolationLevel) {
+        when(arguments.isDataStorageCommitCoordinatorEnabled()).thenReturn(enabled);
+        return new CommitCoordinator(arguments, (spark, path) -> {
+            isolationLevelReads.incrementAndGet();
+            return isolationLevel;
+        });
+    }
+
+    private void givenFirstWriteIsInProgress(CommitCoordinator underTest, String path) throws InterruptedException {
+        executor.submit(() -> underTest.commit(spark, path, READ_MODIFY_WRITE, retryPolicy, () -> {
+            firstWriteStarted.countDown();
+            releaseFirstWrite.await();
+        }));
+        assertTrue(firstWriteStarted.await(WAIT_SECONDS, TimeUnit.SECONDS));
+    }
+}
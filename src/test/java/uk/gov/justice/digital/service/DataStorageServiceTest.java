@@ -9,6 +9,7 @@ import io.delta.tables.DeltaOptimizeBuilder;
 import io.delta.tables.DeltaTable;
 import io.delta.tables.DeltaTableBuilder;
 import lombok.val;
+import org.apache.spark.sql.Column;
 import org.apache.spark.sql.DataFrameWriter;
 import org.apache.spark.sql.Dataset;
 import org.apache.spark.sql.Row;
@@ -43,6 +44,7 @@ import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -277,6 +279,25 @@ class DataStorageServiceTest extends BaseSparkTest {
         verifyManifestGeneratedWithExpectedModeString();
     }
 
+    @Test
+    public void shouldRequestManifestUpdatesFromTheInjectedManifestManager() {
+        JobArguments arguments = new JobArguments(Collections.emptyMap());
+        ManifestManager manifestManager = mock(ManifestManager.class);
+        DeltaTableRegistry tableRegistry = new DeltaTableRegistry(arguments);
+        DataStorageService dataStorageService = new DataStorageService(
+                arguments,
+                new MergePlanner(arguments),
+                new LoadPlanner(arguments),
+                manifestManager,
+                tableRegistry,
+                new CommitCoordinator(arguments, tableRegistry)
+        );
+
+        dataStorageService.updateDeltaManifestForTable(spark, tablePath);
+
+        verify(manifestManager, times(1)).requestUpdate(eq(spark), eq(tablePath), any());
+    }
+
     @Test
     public void shouldRetryAppendAndSucceedEventually() {
         JobArguments mockJobArguments = mock(JobArguments.class);
@@ -304,6 +325,37 @@ class DataStorageServiceTest extends BaseSparkTest {
         verify(mockDeltaMergeBuilder, times(2)).execute();
     }
 
+    @Test
+    public void shouldInsertBatchWhoseKeysAreNotInTheTableWithAMergeNarrowedToItsKeys() {
+        JobArguments arguments = new JobArguments(Collections.emptyMap());
+        MergePlanner mergePlanner = mock(MergePlanner.class);
+        LoadPlanner loadPlanner = mock(LoadPlanner.class);
+        DeltaTableRegistry tableRegistry = new DeltaTableRegistry(arguments);
+        DataStorageService dataStorageService = new DataStorageService(
+                arguments,
+                mergePlanner,
+                loadPlanner,
+                mock(ManifestManager.class),
+                tableRegistry,
+                new CommitCoordinator(arguments, tableRegistry)
+        );
+        SourceReference.PrimaryKey primaryKey = new SourceReference.PrimaryKey("arbitrary");
+        Column keyCondition = new Column("arbitrary");
+
+        stubAppendDistinct();
+        givenDeltaTableExists();
+        when(mockDataSet.sparkSession()).thenReturn(spark);
+        when(loadPlanner.plan(eq(spark), eq(tablePath), any(), eq(mockDataSet), eq(primaryKey))).thenReturn(LoadPlanner.LoadStrategy.DISJOINT_APPEND);
+        when(mergePlanner.plan(mockDataSet, primaryKey, "source", "target"))
+                .thenReturn(new MergePlanner.MergePlan(mockDataSet, keyCondition, false, MergePlanner.BatchType.UNCLASSIFIED, -1L));
+
+        dataStorageService.appendDistinct(tablePath, mockDataSet, primaryKey);
+
+        verify(mockDeltaTable, times(1)).merge(any(), eq(keyCondition));
+        verify(mockDeltaMergeBuilder, times(1)).execute();
+        verify(mockDataSet, never()).write();
+    }
+
     @Test
     public void shouldRetryUpdateRecordsAndSucceedEventually() {
         JobArguments mockJobArguments = mock(JobArguments.class);
@@ -532,14 +584,14 @@ class DataStorageServiceTest extends BaseSparkTest {
 
     private void stubAppendDistinct() {
         when(mockDeltaTable.as(anyString())).thenReturn(mockDeltaTable);
-        when(mockDeltaTable.merge(any(), anyString())).thenReturn(mockDeltaMergeBuilder);
+        when(mockDeltaTable.merge(any(), any(Column.class))).thenReturn(mockDeltaMergeBuilder);
         when(mockDeltaMergeBuilder.whenNotMatched()).thenReturn(mockDeltaMergeNotMatchedActionBuilder);
         when(mockDeltaMergeNotMatchedActionBuilder.insertAll()).thenReturn(mockDeltaMergeBuilder);
     }
 
     private void stubMergeRecordsCdc() {
         when(mockDeltaTable.as(anyString())).thenReturn(mockDeltaTable);
-        when(mockDeltaTable.merge(any(), anyString())).thenReturn(mockDeltaMergeBuilder);
+        when(mockDeltaTable.merge(any(), any(Column.class))).thenReturn(mockDeltaMergeBuilder);
         when(mockDeltaMergeBuilder.whenMatched(anyString())).thenReturn(mockDeltaMergeMatchedActionBuilder);
         when(mockDeltaMergeMatchedActionBuilder.updateExpr(anyMap())).thenReturn(mockDeltaMergeBuilder);
         when(mockDeltaMergeBuilder.whenMatched(anyString())).thenReturn(mockDeltaMergeMatchedActionBuilder);
@@ -0,0 +1,171 @@
+package uk.gov.justice.digital.service;
+
+import com.google.common.base.Ticker;
+import io.delta.tables.DeltaTable;
+import org.apache.spark.sql.SparkSession;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.MockedStatic;
+import org.mockito.junit.jupiter.MockitoExtension;
+import uk.gov.justice.digital.config.JobArguments;
+
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class DeltaTableRegistryTest {
+
+    private static final String tablePath = "s3://bucket/source/table";
+
+    @Mock
+    private JobArguments arguments;
+    @Mock
+    private SparkSession spark;
+    @Mock
+    private DeltaTable table;
+    @Mock
+    private DeltaTable createdTable;
+
+    private MockedStatic<DeltaTable> mockDeltaTableStatic;
+
+    @BeforeEach
+    public void setUp() {
+        mockDeltaTableStatic = mockStatic(DeltaTable.class);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        mockDeltaTableStatic.close();
+    }
+
+    @Test
+    public void shouldOnlyCheckATableExistsOnce() {
+        DeltaTableRegistry underTest = givenEnabled();
+        when(DeltaTable.isDeltaTable(spark, tablePath)).thenReturn(true);
+
+        assertTrue(underTest.exists(spark, tablePath));
+        assertTrue(underTest.exists(spark, tablePath));
+
+        mockDeltaTableStatic.verify(() -> DeltaTable.isDeltaTable(spark, tablePath), times(1));
+        assertEquals(1, underTest.getHits());
+        assertEquals(1, underTest.getMisses());
+    }
+
+    @Test
+    public void shouldCheckAgainForATableWhichDidNotExist() {
+        DeltaTableRegistry underTest = givenEnabled();
+        when(DeltaTable.isDeltaTable(spark, tablePath)).thenReturn(false, true);
+
+        assertFalse(underTest.exists(spark, tablePath));
+        assertTrue(underTest.exists(spark, tablePath));
+
+        mockDeltaTableStatic.verify(() -> DeltaTable.isDeltaTable(spark, tablePath), times(2));
+        assertEquals(0, underTest.getHits());
+        assertEquals(2, underTest.getMisses());
+    }
+
+    @Test
+    public void shouldReuseTheTableHandle() {
+        DeltaTableRegistry underTest = givenEnabled();
+        when(DeltaTable.isDeltaTable(spark, tablePath)).thenReturn(true);
+        when(DeltaTable.forPath(spark, tablePath)).thenReturn(table);
+
+        assertEquals(Optional.of(table), underTest.getTable(spark, tablePath));
+        assertEquals(Optional.of(table), underTest.getTable(spark, tablePath));
+
+        mockDeltaTableStatic.verify(() -> DeltaTable.forPath(spark, tablePath), times(1));
+    }
+
+    @Test
+    public void shouldNotLookUpTablesWhichWereListed() {
+        DeltaTableRegistry underTest = givenEnabled();
+
+        underTest.registerExisting(Collections.singletonList(tablePath));
+
+        assertTrue(underTest.exists(spark, tablePath));
+        mockDeltaTableStatic.verifyNoInteractions();
+    }
+
+    @Test
+    public void shouldReuseTheHandleOfACreatedTable() {
+        DeltaTableRegistry underTest = givenEnabled();
+
+        assertSame(createdTable, underTest.getOrCreate(tablePath, () -> createdTable));
+        assertSame(createdTable, underTest.getOrCreate(tablePath, () -> table));
+        assertEquals(Optional.of(createdTable), underTest.getTable(spark, tablePath));
+        assertTrue(underTest.exists(spark, tablePath));
+
+        mockDeltaTableStatic.verifyNoInteractions();
+    }
+
+    @Test
+    public void shouldLookUpTheTableAgainOnceInvalidated() {
+        DeltaTableRegistry underTest = givenEnabled();
+        when(DeltaTable.isDeltaTable(spark, tablePath)).thenReturn(true);
+        when(DeltaTable.forPath(spark, tablePath)).thenReturn(table);
+        underTest.getTable(spark, tablePath);
+
+        underTest.invalidate(tablePath);
+        underTest.getTable(spark, tablePath);
+
+        mockDeltaTableStatic.verify(() -> DeltaTable.isDeltaTable(spark, tablePath), times(2));
+        mockDeltaTableStatic.verify(() -> DeltaTable.forPath(spark, tablePath), times(2));
+    }
+
+    @Test
+    public void shouldLookUpTheTableEveryTimeWhenDisabled() {
+        DeltaTableRegistry underTest = new DeltaTableRegistry(arguments);
+        when(DeltaTable.isDeltaTable(spark, tablePath)).thenReturn(true);
+        when(DeltaTable.forPath(spark, tablePath)).thenReturn(table);
+
+        underTest.registerExisting(Collections.singletonList(tablePath));
+        underTest.exists(spark, tablePath);
+        underTest.getTable(spark, tablePath);
+        underTest.getTable(spark, tablePath);
+
+        mockDeltaTableStatic.verify(() -> DeltaTable.isDeltaTable(spark, tablePath), times(3));
+        mockDeltaTableStatic.verify(() -> DeltaTable.forPath(spark, tablePath), times(2));
+        assertEquals(0, underTest.getHits());
+        assertEquals(0, underTest.getMisses());
+    }
+
+    @Test
+    public void shouldLookUpTheTableAgainOnceItsEntryHasExpired() {
+        AtomicLong nanos = new AtomicLong();
+        when(arguments.isDataStorageTableRegistryEnabled()).thenReturn(true);
+        when(arguments.getDataStorageTableRegistryTtlSeconds()).thenReturn(60L);
+        DeltaTableRegistry underTest = new DeltaTableRegistry(arguments, new Ticker() {
+            @Override
+            public long read() {
+                return nanos.get();
+            }
+        });
+        when(DeltaTable.isDeltaTable(spark, tablePath)).thenReturn(true, false);
+        when(DeltaTable.forPath(spark, tablePath)).thenReturn(table);
+        underTest.getTable(spark, tablePath);
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(61));
+
+        assertEquals(Optional.empty(), underTest.getTable(spark, tablePath));
+        mockDeltaTableStatic.verify(() -> DeltaTable.isDeltaTable(spark, tablePath), times(2));
+    }
+
+    private DeltaTableRegistry givenEnabled() {
+        when(arguments.isDataStorageTableRegistryEnabled()).thenReturn(true);
+        when(arguments.getDataStorageTableRegistryTtlSeconds()).thenReturn(600L);
+        return new DeltaTableRegistry(arguments);
+    }
+}
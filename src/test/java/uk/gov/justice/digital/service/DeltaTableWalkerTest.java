@@ -0,0 +1,78 @@
+package uk.gov.justice.digital.service;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static uk.gov.justice.digital.service.DeltaTableWalker.DELTA_LOG_DIRECTORY;
+
+class DeltaTableWalkerTest {
+
+    private static final int PARALLELISM = 4;
+
+    @TempDir
+    private Path folder;
+
+    private DeltaTableWalker underTest;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        // Tables at depths 1, 2 and 3 below the root, alongside an empty directory and a file
+        Files.createDirectories(folder.resolve("table_a").resolve(DELTA_LOG_DIRECTORY));
+        Files.createDirectories(folder.resolve("domain").resolve("table_b").resolve(DELTA_LOG_DIRECTORY));
+        Files.createDirectories(folder.resolve("domain").resolve("nested").resolve("table_c").resolve(DELTA_LOG_DIRECTORY));
+        Files.createDirectories(folder.resolve("empty"));
+        Files.createFile(folder.resolve("file.parquet"));
+        underTest = new DeltaTableWalker(FileSystem.getLocal(new Configuration()), PARALLELISM);
+    }
+
+    @Test
+    public void shouldOnlyListTablesDirectlyBelowTheRootAtDepthOne() throws IOException {
+        DeltaTableWalker.ListingResult result = underTest.walk(folder.toUri().toString(), 1);
+
+        assertEquals(Collections.singletonList("table_a"), sortedTableNames(result));
+        // The root and each of its 3 directories
+        assertEquals(4, result.getDirectoriesListed());
+    }
+
+    @Test
+    public void shouldListNestedTablesWithoutListingInsideTables() throws IOException {
+        DeltaTableWalker.ListingResult result = underTest.walk(folder.toUri().toString(), 3);
+
+        assertEquals(Arrays.asList("table_a", "table_b", "table_c"), sortedTableNames(result));
+        // The root, its 3 directories, domain's 2 directories and nested's 1 directory
+        assertEquals(7, result.getDirectoriesListed());
+    }
+
+    @Test
+    public void shouldAdoptTheRootAsTheTableAtDepthZero() throws IOException {
+        DeltaTableWalker.ListingResult result = underTest.walk(folder.toString(), 0);
+
+        assertEquals(Collections.singletonList(folder.toString()), result.getTablePaths());
+        assertEquals(0, result.getDirectoriesListed());
+    }
+
+    @Test
+    public void shouldThrowWhenTheRootDoesNotExist() {
+        assertThrows(IOException.class, () -> underTest.walk(folder.resolve("missing").toUri().toString(), 2));
+    }
+
+    private static List<String> sortedTableNames(DeltaTableWalker.ListingResult result) {
+        return result.getTablePaths().stream()
+                .map(path -> path.substring(path.lastIndexOf('/') + 1))
+                .sorted()
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,129 @@
+package uk.gov.justice.digital.service;
+
+import io.delta.tables.DeltaTable;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.RowFactory;
+import org.apache.spark.sql.types.DataTypes;
+import org.apache.spark.sql.types.StructType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import uk.gov.justice.digital.config.BaseSparkTest;
+import uk.gov.justice.digital.config.JobArguments;
+import uk.gov.justice.digital.datahub.model.SourceReference;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+import static uk.gov.justice.digital.common.CommonDataFields.ShortOperationCode.Insert;
+import static uk.gov.justice.digital.service.LoadPlanner.LoadStrategy.DIRECT_WRITE;
+import static uk.gov.justice.digital.service.LoadPlanner.LoadStrategy.DISJOINT_APPEND;
+import static uk.gov.justice.digital.service.LoadPlanner.LoadStrategy.MERGE;
+import static uk.gov.justice.digital.test.MinimalTestData.PRIMARY_KEY;
+import static uk.gov.justice.digital.test.MinimalTestData.TEST_DATA_SCHEMA;
+import static uk.gov.justice.digital.test.MinimalTestData.createRow;
+
+@ExtendWith(MockitoExtension.class)
+class LoadPlannerTest extends BaseSparkTest {
+
+    private static final String tablePath = "s3://bucket/source/table";
+
+    @Mock
+    private JobArguments arguments;
+    @Mock
+    private DeltaTable deltaTable;
+
+    @Test
+    public void shouldWriteDirectlyToATableWhichDoesNotExist() {
+        LoadPlanner underTest = new LoadPlanner(arguments, (session, path) -> 0L);
+
+        assertEquals(DIRECT_WRITE, underTest.plan(spark, tablePath, Optional.empty(), givenRows(1, 2), PRIMARY_KEY));
+    }
+
+    @Test
+    public void shouldMergeIntoATableWhichExistsWhenDisabled() {
+        LoadPlanner underTest = new LoadPlanner(arguments, (session, path) -> 0L);
+
+        assertEquals(MERGE, underTest.plan(spark, tablePath, Optional.of(deltaTable), givenRows(1, 2), PRIMARY_KEY));
+    }
+
+    @Test
+    public void shouldWriteDirectlyToATableWithoutFiles() {
+        when(arguments.isDataStorageLoadPlannerEnabled()).thenReturn(true);
+        LoadPlanner underTest = new LoadPlanner(arguments, (session, path) -> 0L);
+
+        assertEquals(DIRECT_WRITE, underTest.plan(spark, tablePath, Optional.of(deltaTable), givenRows(1, 2), PRIMARY_KEY));
+    }
+
+    @Test
+    public void shouldAppendBatchesWhoseKeysAreNotInTheTable() {
+        when(arguments.isDataStorageLoadPlannerEnabled()).thenReturn(true);
+        when(deltaTable.toDF()).thenReturn(givenRows(1, 2));
+        LoadPlanner underTest = new LoadPlanner(arguments, (session, path) -> 1L);
+
+        assertEquals(DISJOINT_APPEND, underTest.plan(spark, tablePath, Optional.of(deltaTable), givenRows(3, 4), PRIMARY_KEY));
+    }
+
+    @Test
+    public void shouldMergeBatchesWhichShareKeysWithTheTable() {
+        when(arguments.isDataStorageLoadPlannerEnabled()).thenReturn(true);
+        when(deltaTable.toDF()).thenReturn(givenRows(1, 2));
+        LoadPlanner underTest = new LoadPlanner(arguments, (session, path) -> 1L);
+
+        assertEquals(MERGE, underTest.plan(spark, tablePath, Optional.of(deltaTable), givenRows(2, 3), PRIMARY_KEY));
+    }
+
+    @Test
+    public void shouldCompareCompositeKeys() {
+        SourceReference.PrimaryKey compositeKey = new SourceReference.PrimaryKey(Arrays.asList("pk", "data"));
+        Dataset<Row> table = spark.createDataFrame(Arrays.asList(
+                createRow(1, "2023-11-13 10:00:00.123456", Insert, "a")
+        ), TEST_DATA_SCHEMA);
+        Dataset<Row> sameKey = spark.createDataFrame(Arrays.asList(
+                createRow(1, "2023-11-13 10:50:00.123456", Insert, "a")
+        ), TEST_DATA_SCHEMA);
+        Dataset<Row> differentKey = spark.createDataFrame(Arrays.asList(
+                createRow(1, "2023-11-13 10:50:00.123456", Insert, "b")
+        ), TEST_DATA_SCHEMA);
+
+        assertTrue(LoadPlanner.mayShareKeys(table, sameKey, compositeKey));
+        assertFalse(LoadPlanner.mayShareKeys(table, differentKey, compositeKey));
+    }
+
+    @Test
+    public void shouldCompareKeysAsTheTablesKeyTypes() {
+        StructType longKeySchema = new StructType().add("pk", DataTypes.LongType).add("data", DataTypes.StringType);
+        Dataset<Row> table = spark.createDataFrame(Arrays.asList(
+                RowFactory.create(1L, "a"),
+                RowFactory.create(2L, "b")
+        ), longKeySchema);
+
+        assertTrue(LoadPlanner.mayShareKeys(table, givenRows(2, 3), PRIMARY_KEY));
+        assertFalse(LoadPlanner.mayShareKeys(table, givenRows(3, 4), PRIMARY_KEY));
+    }
+
+    @Test
+    public void shouldFindSharedKeysWithinTheRangeOfTheBatchsKeys() {
+        Dataset<Row> table = givenRows(1, 5, 10, 20);
+
+        assertTrue(LoadPlanner.mayShareKeys(table, givenRows(4, 5, 6), PRIMARY_KEY));
+        assertFalse(LoadPlanner.mayShareKeys(table, givenRows(11, 12, 19), PRIMARY_KEY));
+        assertFalse(LoadPlanner.mayShareKeys(table, givenRows(), PRIMARY_KEY));
+    }
+
+    private static Dataset<Row> givenRows(int... keys) {
+        return spark.createDataFrame(
+                Arrays.stream(keys)
+                        .mapToObj(key -> createRow(key, "2023-11-13 10:50:00.123456", Insert, Integer.toString(key)))
+                        .collect(Collectors.toList()),
+                TEST_DATA_SCHEMA
+        );
+    }
+}
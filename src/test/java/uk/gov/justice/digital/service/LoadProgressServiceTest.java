@@ -0,0 +1,119 @@
+package uk.gov.justice.digital.service;
+
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.RowFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import uk.gov.justice.digital.config.BaseSparkTest;
+import uk.gov.justice.digital.config.JobArguments;
+import uk.gov.justice.digital.service.LoadProgressService.LoadProgress;
+import uk.gov.justice.digital.service.LoadProgressService.LoadStage;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static uk.gov.justice.digital.service.LoadProgressService.LOAD_PROGRESS_SCHEMA;
+
+@ExtendWith(MockitoExtension.class)
+class LoadProgressServiceTest extends BaseSparkTest {
+
+    private static final String PROGRESS_PATH = "s3://bucket/load_progress";
+    private static final String STRUCTURED_PATH = "s3://structured";
+    private static final String FINGERPRINT = "fingerprint";
+
+    @Mock
+    private JobArguments arguments;
+    @Mock
+    private DataStorageService storage;
+    @Captor
+    private ArgumentCaptor<Dataset<Row>> progressCaptor;
+
+    @Test
+    public void shouldFingerprintTheSameFilesInAnyOrderTheSame() {
+        assertEquals(
+                LoadProgressService.fingerprint(Arrays.asList("file1", "file2"), 100L),
+                LoadProgressService.fingerprint(Arrays.asList("file2", "file1"), 100L)
+        );
+    }
+
+    @Test
+    public void shouldFingerprintDifferentFilesDifferently() {
+        String fingerprint = LoadProgressService.fingerprint(Arrays.asList("file1", "file2"), 100L);
+
+        assertNotEquals(fingerprint, LoadProgressService.fingerprint(Arrays.asList("file1", "file3"), 100L));
+        assertNotEquals(fingerprint, LoadProgressService.fingerprint(Arrays.asList("file1", "file2"), 101L));
+    }
+
+    @Test
+    public void shouldDoNothingWhenDisabled() {
+        LoadProgressService underTest = new LoadProgressService(arguments, storage);
+
+        underTest.start(spark);
+
+        assertFalse(underTest.isEnabled());
+        assertSame(LoadStageListener.NONE, underTest.trackerFor(spark, "source", "table", FINGERPRINT));
+        verifyNoInteractions(storage);
+    }
+
+    @Test
+    public void shouldUseTheLatestProgressOfEachTableRecordedForTheSameFiles() {
+        LoadProgressService underTest = givenEnabledService();
+        when(storage.get(spark, PROGRESS_PATH)).thenReturn(spark.createDataFrame(Arrays.asList(
+                progressRow("source", "table", FINGERPRINT, LoadStage.STRUCTURED, 1000L),
+                progressRow("source", "table", FINGERPRINT, LoadStage.CURATED, 2000L),
+                progressRow("source", "other_table", "other", LoadStage.OPERATIONAL_DATA_STORE, 1000L)
+        ), LOAD_PROGRESS_SCHEMA));
+
+        underTest.start(spark);
+
+        Optional<LoadProgress> progress = underTest.getProgress("source", "table", FINGERPRINT);
+        assertTrue(progress.isPresent());
+        assertEquals(LoadStage.CURATED, progress.get().getStage());
+        assertFalse(underTest.getProgress("source", "other_table", FINGERPRINT).isPresent());
+        assertFalse(underTest.getProgress("source", "missing_table", FINGERPRINT).isPresent());
+    }
+
+    @Test
+    public void shouldRecordTheStructuredVersionWhenTheStructuredWriteCompletes() {
+        LoadProgressService underTest = givenEnabledService();
+        when(storage.get(spark, PROGRESS_PATH)).thenReturn(spark.emptyDataFrame());
+        when(arguments.getStructuredS3Path()).thenReturn(STRUCTURED_PATH);
+        when(storage.getLatestVersion(spark, STRUCTURED_PATH + "/source/table")).thenReturn(Optional.of(3L));
+        underTest.start(spark);
+
+        underTest.trackerFor(spark, "source", "table", FINGERPRINT).structuredWritten();
+
+        verify(storage).append(eq(PROGRESS_PATH), progressCaptor.capture());
+        List<Row> recorded = progressCaptor.getValue().collectAsList();
+        assertEquals(1, recorded.size());
+        assertEquals(LoadStage.STRUCTURED.name(), recorded.get(0).getAs("stage"));
+        assertEquals(3L, (Long) recorded.get(0).getAs("structured_version"));
+        assertEquals(LoadStage.STRUCTURED, underTest.getProgress("source", "table", FINGERPRINT).get().getStage());
+    }
+
+    private LoadProgressService givenEnabledService() {
+        when(arguments.isBatchLoadResumeEnabled()).thenReturn(true);
+        when(arguments.getBatchLoadProgressPath()).thenReturn(PROGRESS_PATH);
+        return new LoadProgressService(arguments, storage);
+    }
+
+    private static Row progressRow(String source, String table, String fingerprint, LoadStage stage, long updatedAt) {
+        return RowFactory.create(source, table, fingerprint, stage.name(), 1L, 1L, LoadProgressService.ODS_PENDING, new Timestamp(updatedAt));
+    }
+}
@@ -0,0 +1,189 @@
+package uk.gov.justice.digital.service;
+
+import org.apache.spark.sql.SparkSession;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import uk.gov.justice.digital.config.JobArguments;
+
+import java.time.Clock;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static uk.gov.justice.digital.service.ManifestUpdatePolicy.BACKGROUND;
+import static uk.gov.justice.digital.service.ManifestUpdatePolicy.DEBOUNCED;
+import static uk.gov.justice.digital.service.ManifestUpdatePolicy.EAGER;
+import static uk.gov.justice.digital.service.ManifestUpdatePolicy.INCREMENTAL;
+
+@ExtendWith(MockitoExtension.class)
+class ManifestManagerTest {
+
+    private static final String tablePath = "s3://bucket/source/table";
+    private static final String otherTablePath = "s3://bucket/source/other_table";
+    private static final long DEBOUNCE_INTERVAL_SECONDS = 300L;
+    private static final long WAIT_MILLIS = 5_000L;
+
+    @Mock
+    private JobArguments arguments;
+    @Mock
+    private ManifestManager.ManifestWriter writer;
+    @Mock
+    private Clock clock;
+    @Mock
+    private SparkSession spark;
+
+    private ManifestManager underTest;
+
+    @AfterEach
+    public void tearDown() {
+        if (underTest != null) underTest.stop();
+    }
+
+    @Test
+    public void shouldGenerateManifestImmediatelyForEagerPolicy() {
+        givenPolicy(EAGER);
+        underTest.start();
+
+        underTest.requestUpdate(spark, tablePath, writer);
+
+        assertFalse(underTest.isDeferring());
+        verify(writer, times(1)).generateManifest(spark, tablePath);
+    }
+
+    @Test
+    public void shouldGenerateManifestImmediatelyWhenNoPolicyIsConfigured() {
+        givenPolicy(null);
+        underTest.start();
+
+        underTest.requestUpdate(spark, tablePath, writer);
+
+        verify(writer, times(1)).generateManifest(spark, tablePath);
+    }
+
+    @Test
+    public void shouldEnableIncrementalUpdatesOncePerTable() {
+        givenPolicy(INCREMENTAL);
+
+        underTest.requestUpdate(spark, tablePath, writer);
+        underTest.requestUpdate(spark, tablePath, writer);
+        underTest.requestUpdate(spark, otherTablePath, writer);
+
+        verify(writer, times(1)).enableIncrementalManifestUpdates(spark, tablePath);
+        verify(writer, times(1)).enableIncrementalManifestUpdates(spark, otherTablePath);
+        verify(writer, never()).generateManifest(spark, tablePath);
+    }
+
+    @Test
+    public void shouldTryToEnableIncrementalUpdatesAgainAfterAFailure() {
+        givenPolicy(INCREMENTAL);
+        doThrow(new RuntimeException("Failed to alter table")).doNothing()
+                .when(writer).enableIncrementalManifestUpdates(spark, tablePath);
+
+        try {
+            underTest.requestUpdate(spark, tablePath, writer);
+        } catch (RuntimeException e) {
+            // Expected
+        }
+        underTest.requestUpdate(spark, tablePath, writer);
+
+        verify(writer, times(2)).enableIncrementalManifestUpdates(spark, tablePath);
+    }
+
+    @Test
+    public void shouldGenerateManifestImmediatelyForBackgroundPolicyUntilStarted() {
+        givenPolicy(BACKGROUND);
+
+        underTest.requestUpdate(spark, tablePath, writer);
+
+        assertFalse(underTest.isDeferring());
+        verify(writer, times(1)).generateManifest(spark, tablePath);
+    }
+
+    @Test
+    public void shouldGenerateManifestInTheBackgroundOnceStarted() {
+        givenPolicy(BACKGROUND);
+        underTest.start();
+
+        underTest.requestUpdate(spark, tablePath, writer);
+
+        assertTrue(underTest.isDeferring());
+        verify(writer, timeout(WAIT_MILLIS).times(1)).generateManifest(spark, tablePath);
+    }
+
+    @Test
+    public void shouldRetryFailedBackgroundUpdatesWhenStopped() {
+        givenPolicy(BACKGROUND);
+        doThrow(new RuntimeException("Failed to write manifest")).doNothing()
+                .when(writer).generateManifest(spark, tablePath);
+        underTest.start();
+
+        underTest.requestUpdate(spark, tablePath, writer);
+        verify(writer, timeout(WAIT_MILLIS).times(1)).generateManifest(spark, tablePath);
+        underTest.stop();
+
+        assertFalse(underTest.isDeferring());
+        verify(writer, times(2)).generateManifest(spark, tablePath);
+    }
+
+    @Test
+    public void shouldDeferUpdatesWithinTheDebounceIntervalUntilStopped() {
+        givenDebouncedPolicy();
+        when(clock.millis()).thenReturn(1_000L);
+        underTest.start();
+
+        underTest.requestUpdate(spark, tablePath, writer);
+        verify(writer, timeout(WAIT_MILLIS).times(1)).generateManifest(spark, tablePath);
+        underTest.requestUpdate(spark, tablePath, writer);
+        underTest.requestUpdate(spark, tablePath, writer);
+
+        verify(writer, times(1)).generateManifest(spark, tablePath);
+
+        underTest.stop();
+
+        verify(writer, times(2)).generateManifest(spark, tablePath);
+    }
+
+    @Test
+    public void shouldUpdateAgainOnceTheDebounceIntervalHasPassed() {
+        givenDebouncedPolicy();
+        when(clock.millis()).thenReturn(1_000L, 1_000L + DEBOUNCE_INTERVAL_SECONDS * 1000);
+        underTest.start();
+
+        underTest.requestUpdate(spark, tablePath, writer);
+        verify(writer, timeout(WAIT_MILLIS).times(1)).generateManifest(spark, tablePath);
+        underTest.requestUpdate(spark, tablePath, writer);
+
+        verify(writer, timeout(WAIT_MILLIS).times(2)).generateManifest(spark, tablePath);
+    }
+
+    @Test
+    public void shouldDebounceEachTableSeparately() {
+        givenDebouncedPolicy();
+        when(clock.millis()).thenReturn(1_000L);
+        underTest.start();
+
+        underTest.requestUpdate(spark, tablePath, writer);
+        underTest.requestUpdate(spark, otherTablePath, writer);
+
+        verify(writer, timeout(WAIT_MILLIS).times(1)).generateManifest(spark, tablePath);
+        verify(writer, timeout(WAIT_MILLIS).times(1)).generateManifest(spark, otherTablePath);
+    }
+
+    private void givenPolicy(ManifestUpdatePolicy policy) {
+        when(arguments.getDataStorageManifestUpdatePolicy()).thenReturn(policy);
+        underTest = new ManifestManager(arguments, clock);
+    }
+
+    private void givenDebouncedPolicy() {
+        when(arguments.getDataStorageManifestDebounceIntervalSeconds()).thenReturn(DEBOUNCE_INTERVAL_SECONDS);
+        givenPolicy(DEBOUNCED);
+    }
+}
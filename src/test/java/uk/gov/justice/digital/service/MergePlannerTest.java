@@ -0,0 +1,183 @@
+package uk.gov.justice.digital.service;
+
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import uk.gov.justice.digital.common.CommonDataFields.ShortOperationCode;
+import uk.gov.justice.digital.config.BaseSparkTest;
+import uk.gov.justice.digital.config.JobArguments;
+
+import java.util.Arrays;
+
+import static org.apache.spark.sql.functions.col;
+import static org.apache.spark.sql.functions.expr;
+import static org.apache.spark.sql.functions.lit;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+import static uk.gov.justice.digital.common.CommonDataFields.ShortOperationCode.Delete;
+import static uk.gov.justice.digital.common.CommonDataFields.ShortOperationCode.Insert;
+import static uk.gov.justice.digital.common.CommonDataFields.ShortOperationCode.Update;
+import static uk.gov.justice.digital.test.MinimalTestData.PRIMARY_KEY;
+import static uk.gov.justice.digital.test.MinimalTestData.TEST_DATA_SCHEMA;
+import static uk.gov.justice.digital.test.MinimalTestData.createRow;
+
+@ExtendWith(MockitoExtension.class)
+class MergePlannerTest extends BaseSparkTest {
+
+    @Mock
+    private JobArguments arguments;
+
+    @Test
+    public void shouldMergeOnThePrimaryKeyAloneWhenPruningIsDisabled() {
+        Dataset<Row> batch = givenBatch();
+
+        MergePlanner.MergePlan plan = new MergePlanner(arguments).plan(batch, PRIMARY_KEY, "source", "target");
+
+        assertSame(batch, plan.getBatch());
+        assertEquals(expr("source.pk = target.pk"), plan.getCondition());
+        assertFalse(plan.isBatchBroadcast());
+    }
+
+    @Test
+    public void shouldPruneSmallBatchesToTheirKeys() {
+        givenPruning(10, 0L);
+
+        MergePlanner.MergePlan plan = new MergePlanner(arguments).plan(givenBatch(), PRIMARY_KEY, "source", "target");
+
+        String condition = plan.getCondition().toString();
+        assertTrue(condition.contains("source.pk IN (") && condition.contains("1") && condition.contains("5"), condition);
+        assertFalse(plan.isBatchBroadcast());
+    }
+
+    @Test
+    public void shouldPruneLargerBatchesToTheRangeOfTheirKeys() {
+        givenPruning(2, 0L);
+
+        MergePlanner.MergePlan plan = new MergePlanner(arguments).plan(givenBatch(), PRIMARY_KEY, "source", "target");
+
+        String condition = plan.getCondition().toString();
+        assertTrue(condition.contains("(source.pk >= 1)"), condition);
+        assertTrue(condition.contains("(source.pk <= 5)"), condition);
+        assertFalse(condition.contains(" IN "), condition);
+    }
+
+    @Test
+    public void shouldPruneBatchesWithManyMoreKeysThanTheInListLimitToTheRangeOfTheirKeys() {
+        givenPruning(10, 0L);
+        Dataset<Row> batch = spark.range(0, 10000)
+                .selectExpr("cast(id * 2 as int) as pk")
+                .crossJoin(givenBatch().drop("pk").limit(1));
+
+        MergePlanner.MergePlan plan = new MergePlanner(arguments).plan(batch, PRIMARY_KEY, "source", "target");
+
+        String condition = plan.getCondition().toString();
+        assertTrue(condition.contains("(source.pk >= 0)"), condition);
+        assertTrue(condition.contains("(source.pk <= 19998)"), condition);
+        assertFalse(condition.contains(" IN "), condition);
+    }
+
+    @Test
+    public void shouldPruneToTheRangeOfTheKeysWhenItHoldsNoOtherKeys() {
+        givenPruning(10, 0L);
+        Dataset<Row> batch = spark.createDataFrame(Arrays.asList(
+                createRow(1, "2023-11-13 10:50:00.123456", Insert, "1"),
+                createRow(3, "2023-11-13 10:50:00.123456", Insert, "3"),
+                createRow(2, "2023-11-13 10:50:00.123456", Insert, "2")
+        ), TEST_DATA_SCHEMA);
+
+        MergePlanner.MergePlan plan = new MergePlanner(arguments).plan(batch, PRIMARY_KEY, "source", "target");
+
+        String condition = plan.getCondition().toString();
+        assertTrue(condition.contains("(source.pk >= 1)"), condition);
+        assertTrue(condition.contains("(source.pk <= 3)"), condition);
+        assertFalse(condition.contains(" IN "), condition);
+    }
+
+    @Test
+    public void shouldNotPruneOnKeysWhichAreAllNull() {
+        givenPruning(10, 0L);
+        Dataset<Row> batch = givenBatch().withColumn("pk", lit(null).cast("int"));
+
+        MergePlanner.MergePlan plan = new MergePlanner(arguments).plan(batch, PRIMARY_KEY, "source", "target");
+
+        assertEquals(expr("source.pk = target.pk"), plan.getCondition());
+    }
+
+    @Test
+    public void shouldBroadcastSmallBatches() {
+        givenPruning(10, 3L);
+
+        MergePlanner.MergePlan plan = new MergePlanner(arguments).plan(givenBatch(), PRIMARY_KEY, "source", "target");
+
+        assertTrue(plan.isBatchBroadcast());
+        assertTrue(plan.getBatch().queryExecution().analyzed().toString().contains("broadcast"));
+        assertEquals(3, plan.getBatch().where(col("pk").isNotNull()).count());
+    }
+
+    @Test
+    public void shouldNotClassifyBatchesWhenTheInsertOnlyFastPathIsDisabled() {
+        givenPruning(10, 0L);
+
+        MergePlanner.MergePlan plan = new MergePlanner(arguments).plan(givenBatch(), PRIMARY_KEY, "source", "target");
+
+        assertEquals(MergePlanner.BatchType.UNCLASSIFIED, plan.getBatchType());
+    }
+
+    @Test
+    public void shouldClassifyBatchesByTheirMostDisruptiveOperation() {
+        givenInsertOnlyFastPath();
+        MergePlanner underTest = new MergePlanner(arguments);
+
+        assertEquals(MergePlanner.BatchType.INSERTS, underTest.plan(givenBatch(), PRIMARY_KEY, "source", "target").getBatchType());
+        assertEquals(MergePlanner.BatchType.UPDATES, underTest.plan(givenBatch(Insert, Update, Insert), PRIMARY_KEY, "source", "target").getBatchType());
+        assertEquals(MergePlanner.BatchType.DELETES, underTest.plan(givenBatch(Update, Delete, Insert), PRIMARY_KEY, "source", "target").getBatchType());
+    }
+
+    @Test
+    public void shouldPruneMergesWhenTheInsertOnlyFastPathIsEnabled() {
+        givenInsertOnlyFastPath();
+
+        MergePlanner.MergePlan plan = new MergePlanner(arguments).plan(givenBatch(), PRIMARY_KEY, "source", "target");
+
+        assertTrue(plan.getCondition().toString().contains("source.pk IN ("), plan.getCondition().toString());
+    }
+
+    @Test
+    public void shouldCountTheRowsOfThePlannedBatch() {
+        givenInsertOnlyFastPath();
+
+        MergePlanner.MergePlan plan = new MergePlanner(arguments).plan(givenBatch(), PRIMARY_KEY, "source", "target");
+
+        assertEquals(3L, plan.getRows());
+    }
+
+    private void givenInsertOnlyFastPath() {
+        when(arguments.isDataStorageMergeInsertOnlyFastPathEnabled()).thenReturn(true);
+        when(arguments.getDataStorageMergePruningMaxInListKeys()).thenReturn(10);
+        when(arguments.getDataStorageMergeBroadcastMaxRows()).thenReturn(0L);
+    }
+
+    private void givenPruning(int maxInListKeys, long broadcastMaxRows) {
+        when(arguments.isDataStorageMergePruningEnabled()).thenReturn(true);
+        when(arguments.getDataStorageMergePruningMaxInListKeys()).thenReturn(maxInListKeys);
+        when(arguments.getDataStorageMergeBroadcastMaxRows()).thenReturn(broadcastMaxRows);
+    }
+
+    private static Dataset<Row> givenBatch() {
+        return givenBatch(Insert, Insert, Insert);
+    }
+
+    private static Dataset<Row> givenBatch(ShortOperationCode operation1, ShortOperationCode operation3, ShortOperationCode operation2) {
+        return spark.createDataFrame(Arrays.asList(
+                createRow(1, "2023-11-13 10:50:00.123456", operation1, "1"),
+                createRow(5, "2023-11-13 10:50:00.123456", operation3, "5"),
+                createRow(2, "2023-11-13 10:50:00.123456", operation2, "2")
+        ), TEST_DATA_SCHEMA);
+    }
+}
@@ -0,0 +1,126 @@
+package uk.gov.justice.digital.service;
+
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.types.StructType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import uk.gov.justice.digital.config.BaseSparkTest;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static uk.gov.justice.digital.test.MinimalTestData.DATA_COLUMN;
+import static uk.gov.justice.digital.test.MinimalTestData.rowPerPkDfSameTimestamp;
+
+class ParquetSchemaCacheServiceTest extends BaseSparkTest {
+
+    @TempDir
+    private Path testRoot;
+
+    private ParquetSchemaCacheService underTest;
+
+    @BeforeEach
+    public void setUp() {
+        underTest = new ParquetSchemaCacheService();
+    }
+
+    @Test
+    public void shouldReadTheSameSchemaAsSparkFromFileFooters() {
+        Dataset<Row> df = rowPerPkDfSameTimestamp(spark);
+        List<String> files = givenParquetFiles(df, "table");
+
+        List<StructType> result = underTest.getFileSchemas(spark, files);
+
+        assertEquals(1, result.size());
+        assertEquals(spark.read().parquet(files.get(0)).schema(), result.get(0));
+    }
+
+    @Test
+    public void shouldReturnEachDistinctSchemaOnce() {
+        Dataset<Row> df = rowPerPkDfSameTimestamp(spark);
+        List<String> files = new ArrayList<>(givenParquetFiles(df, "original"));
+        files.addAll(givenParquetFiles(df.drop(DATA_COLUMN), "dropped_column"));
+        files.addAll(givenParquetFiles(df, "original_again"));
+
+        List<StructType> result = underTest.getFileSchemas(spark, files);
+
+        assertEquals(2, result.size());
+        assertNotEquals(result.get(0), result.get(1));
+    }
+
+    @Test
+    public void shouldGroupFilesBySchema() {
+        Dataset<Row> df = rowPerPkDfSameTimestamp(spark);
+        List<String> originalFiles = givenParquetFiles(df, "grouped_original");
+        List<String> droppedColumnFiles = givenParquetFiles(df.drop(DATA_COLUMN), "grouped_dropped_column");
+        List<String> files = new ArrayList<>(originalFiles);
+        files.addAll(droppedColumnFiles);
+
+        Map<StructType, List<String>> result = underTest.getFilesBySchema(spark, files);
+
+        assertEquals(2, result.size());
+        assertEquals(originalFiles, result.get(spark.read().parquet(originalFiles.get(0)).schema()));
+        assertEquals(droppedColumnFiles, result.get(spark.read().parquet(droppedColumnFiles.get(0)).schema()));
+    }
+
+    @Test
+    public void shouldReadTheSchemaAgainWhenItHasBeenEvictedButTheFileHasNot() {
+        underTest = new ParquetSchemaCacheService(100, 1);
+        Dataset<Row> df = rowPerPkDfSameTimestamp(spark);
+        List<String> originalFiles = givenParquetFiles(df, "evicted_original");
+        List<String> droppedColumnFiles = givenParquetFiles(df.drop(DATA_COLUMN), "evicted_dropped_column");
+        StructType originalSchema = spark.read().parquet(originalFiles.get(0)).schema();
+
+        underTest.getFileSchemas(spark, originalFiles);
+        // Only one schema fits in the cache, so this evicts the schema of the original files
+        underTest.getFileSchemas(spark, droppedColumnFiles);
+
+        assertEquals(Collections.singletonList(originalSchema), underTest.getFileSchemas(spark, originalFiles));
+        assertEquals(originalFiles, underTest.getFilesBySchema(spark, originalFiles).get(originalSchema));
+    }
+
+    @Test
+    public void inferSchemaShouldUseTheSchemaOfTheFirstFile() {
+        Dataset<Row> df = rowPerPkDfSameTimestamp(spark);
+        List<String> files = new ArrayList<>(givenParquetFiles(df.drop(DATA_COLUMN), "dropped_column"));
+        files.addAll(givenParquetFiles(df, "original"));
+
+        StructType result = underTest.inferSchema(spark, files);
+
+        assertFalse(Arrays.asList(result.fieldNames()).contains(DATA_COLUMN));
+    }
+
+    @Test
+    public void schemasMatchShouldAgreeWithValidationService() {
+        StructType schema = rowPerPkDfSameTimestamp(spark).schema();
+        StructType otherSchema = rowPerPkDfSameTimestamp(spark).drop(DATA_COLUMN).schema();
+
+        assertTrue(underTest.schemasMatch(schema, schema));
+        assertFalse(underTest.schemasMatch(schema, otherSchema));
+        // Memoised results should be the same
+        assertTrue(underTest.schemasMatch(schema, schema));
+        assertFalse(underTest.schemasMatch(schema, otherSchema));
+    }
+
+    @Test
+    public void fingerprintShouldBeStableAndDistinguishSchemas() {
+        assertEquals(ParquetSchemaCacheService.fingerprint("a"), ParquetSchemaCacheService.fingerprint("a"));
+        assertNotEquals(ParquetSchemaCacheService.fingerprint("a"), ParquetSchemaCacheService.fingerprint("b"));
+    }
+
+    private List<String> givenParquetFiles(Dataset<Row> df, String directory) {
+        String path = testRoot.resolve(directory).toAbsolutePath().toString();
+        df.write().parquet(path);
+        return Arrays.asList(spark.read().parquet(path).inputFiles());
+    }
+}
@@ -0,0 +1,85 @@
+package uk.gov.justice.digital.service;
+
+import com.google.common.collect.ImmutableMap;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import uk.gov.justice.digital.config.BaseSparkTest;
+import uk.gov.justice.digital.config.JobArguments;
+import uk.gov.justice.digital.datahub.model.SchedulingPriority;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class SchedulerPoolServiceTest extends BaseSparkTest {
+
+    private static final String CONFIG_KEY = "some-config-key";
+    private static final ImmutablePair<String, String> criticalTable = ImmutablePair.of("source", "critical_table");
+    private static final ImmutablePair<String, String> importantTable = ImmutablePair.of("source", "important_table");
+    private static final ImmutablePair<String, String> otherTable = ImmutablePair.of("source", "other_table");
+    private static final SchedulingPriority critical = new SchedulingPriority("critical", 4, 2);
+    private static final SchedulingPriority important = new SchedulingPriority("important", 2, 1);
+
+    @Mock
+    private JobArguments arguments;
+    @Mock
+    private ConfigService configService;
+
+    @Test
+    public void shouldUseThePriorityOfTheTablesTier() {
+        SchedulerPoolService underTest = givenPrioritiesAreConfigured();
+
+        assertEquals(critical, underTest.priorityFor(Collections.singletonList(criticalTable)));
+    }
+
+    @Test
+    public void shouldUseTheDefaultPriorityForTablesWithoutATier() {
+        SchedulerPoolService underTest = givenPrioritiesAreConfigured();
+
+        assertEquals(SchedulerPoolService.DEFAULT_PRIORITY, underTest.priorityFor(Collections.singletonList(otherTable)));
+    }
+
+    @Test
+    public void shouldUseTheHighestPriorityOfSeveralTables() {
+        SchedulerPoolService underTest = givenPrioritiesAreConfigured();
+        List<ImmutablePair<String, String>> tables = Arrays.asList(otherTable, importantTable, criticalTable);
+
+        assertEquals(critical, underTest.priorityFor(tables));
+    }
+
+    @Test
+    public void shouldNotAssignAPoolWhenDisabled() {
+        SchedulerPoolService underTest = new SchedulerPoolService(arguments, configService);
+
+        assertEquals(Optional.empty(), underTest.assignPool(spark, "pool", Collections.singletonList(criticalTable)));
+        verify(configService, never()).getTablePriorities(any());
+    }
+
+    @Test
+    public void shouldNotAssignAPoolWhenTheSchedulerIsNotFair() {
+        when(arguments.isCdcSchedulerPoolsEnabled()).thenReturn(true);
+        SchedulerPoolService underTest = new SchedulerPoolService(arguments, configService);
+
+        assertEquals(Optional.empty(), underTest.assignPool(spark, "pool", Collections.singletonList(criticalTable)));
+    }
+
+    private SchedulerPoolService givenPrioritiesAreConfigured() {
+        when(arguments.getConfigKey()).thenReturn(CONFIG_KEY);
+        when(configService.getTablePriorities(CONFIG_KEY)).thenReturn(ImmutableMap.of(
+                criticalTable, critical,
+                importantTable, important
+        ));
+        return new SchedulerPoolService(arguments, configService);
+    }
+}
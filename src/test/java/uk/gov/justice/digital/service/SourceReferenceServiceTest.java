@@ -143,6 +143,33 @@ public class SourceReferenceServiceTest {
         assertTrue(underTest.getSourceReference("oms_owner", "composite").isPresent());
     }
 
+    @Test
+    public void shouldHaveNoLayoutWhenTheContractDoesNotDeclareOne() {
+        when(client.getSchema("oms_owner/composite")).thenReturn(Optional.of(new S3SchemaResponse(
+                UUID.randomUUID().toString(),
+                getResource(RESOURCE_PATH + "/" + COMPOSITE_KEY_CONTRACT),
+                VERSION_ID
+        )));
+
+        val result = underTest.getSourceReference("oms_owner", "composite");
+
+        assertEquals(Optional.of(SourceReference.TableLayout.NONE), result.map(SourceReference::getLayout));
+    }
+
+    @Test
+    public void shouldReadTheLayoutDeclaredByTheContract() {
+        String contract = getResource(RESOURCE_PATH + "/" + COMPOSITE_KEY_CONTRACT).replaceFirst(
+                "\"fields\"",
+                "\"layout\": { \"rangePartitions\": 16, \"sortWithinFiles\": true, \"zOrderOnCompaction\": true },\n  \"fields\""
+        );
+        when(client.getSchema("oms_owner/composite"))
+                .thenReturn(Optional.of(new S3SchemaResponse(UUID.randomUUID().toString(), contract, VERSION_ID)));
+
+        val result = underTest.getSourceReference("oms_owner", "composite");
+
+        assertEquals(Optional.of(new SourceReference.TableLayout(16, true, true)), result.map(SourceReference::getLayout));
+    }
+
     @Test
     public void shouldConcatenatePrimaryKeysIntoASqlCondition() {
         SourceReference.PrimaryKey pk = new SourceReference.PrimaryKey(Arrays.asList("key1"));
@@ -0,0 +1,95 @@
+package uk.gov.justice.digital.service;
+
+import com.google.common.collect.ImmutableSet;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.spark.SparkContext;
+import org.apache.spark.sql.SparkSession;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import uk.gov.justice.digital.config.JobArguments;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TableDiscoveryServiceTest {
+
+    private static final String CONFIG_KEY = "config-key";
+    private static final ImmutablePair<String, String> table1 = new ImmutablePair<>("source", "table1");
+    private static final ImmutablePair<String, String> table2 = new ImmutablePair<>("source", "table2");
+    private static final ImmutablePair<String, String> tableWithoutFiles = new ImmutablePair<>("source", "table3");
+
+    @TempDir
+    private Path folder;
+
+    @Mock
+    private JobArguments arguments;
+    @Mock
+    private ConfigService configService;
+    @Mock
+    private SparkSession spark;
+    @Mock
+    private SparkContext sparkContext;
+
+    private TableDiscoveryService underTest;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        givenFile(table1, "LOAD00000001.parquet", 10);
+        givenFile(table1, "LOAD00000002.parquet", 20);
+        givenFile(table1, "20240101-000000000.parquet", 40);
+        givenFile(table2, "LOAD00000001.parquet", 5);
+        Files.createDirectories(folder.resolve(tableWithoutFiles.getLeft()).resolve(tableWithoutFiles.getRight()));
+
+        when(arguments.getConfigKey()).thenReturn(CONFIG_KEY);
+        when(arguments.getBatchLoadFileGlobPattern()).thenReturn("LOAD*parquet");
+        when(arguments.getBatchLoadDiscoveryParallelism()).thenReturn(2);
+        when(configService.getConfiguredTables(CONFIG_KEY)).thenReturn(ImmutableSet.of(table1, table2, tableWithoutFiles));
+        when(spark.sparkContext()).thenReturn(sparkContext);
+        when(sparkContext.hadoopConfiguration()).thenReturn(new Configuration());
+        underTest = new TableDiscoveryService(arguments, configService);
+    }
+
+    @Test
+    public void shouldListTheLoadFilesOfEachTableWithFiles() {
+        Map<ImmutablePair<String, String>, List<String>> pathsByTable = underTest.discoverBatchFilesToLoad(rootPath(), spark);
+
+        assertEquals(2, pathsByTable.size());
+        assertEquals(2, pathsByTable.get(table1).size());
+        assertEquals(1, pathsByTable.get(table2).size());
+        assertFalse(pathsByTable.containsKey(tableWithoutFiles));
+    }
+
+    @Test
+    public void shouldReturnTheSizeOfEachDiscoveredFile() {
+        Map<ImmutablePair<String, String>, Map<String, Long>> fileBytesByTable = underTest.discoverBatchFileSizesToLoad(rootPath(), spark);
+
+        assertEquals(2, fileBytesByTable.get(table1).size());
+        assertEquals(30L, fileBytesByTable.get(table1).values().stream().mapToLong(Long::longValue).sum());
+        assertEquals(Collections.singletonList(5L), new ArrayList<>(fileBytesByTable.get(table2).values()));
+        assertFalse(fileBytesByTable.containsKey(tableWithoutFiles));
+    }
+
+    private String rootPath() {
+        return folder.toUri().toString();
+    }
+
+    private void givenFile(ImmutablePair<String, String> table, String fileName, int bytes) throws IOException {
+        Path tableFolder = Files.createDirectories(folder.resolve(table.getLeft()).resolve(table.getRight()));
+        Files.write(tableFolder.resolve(fileName), new byte[bytes]);
+    }
+}
@@ -79,7 +79,7 @@ class ValidationServiceTest extends BaseSparkTest {
 
     @BeforeEach
     void setUp() {
-        underTest = new ValidationService(violationService);
+        underTest = new ValidationService(violationService, new ParquetSchemaCacheService());
         List<Row> input = Arrays.asList(
                 createRow(1, "2023-11-13 10:49:28.000000", Delete, "data"),
                 createRow(2, "2023-11-13 10:49:28.000000", Delete, null),
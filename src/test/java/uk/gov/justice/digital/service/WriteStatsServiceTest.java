@@ -0,0 +1,130 @@
+package uk.gov.justice.digital.service;
+
+import com.amazonaws.services.cloudwatch.model.StandardUnit;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.SparkSession;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import uk.gov.justice.digital.config.JobArguments;
+import uk.gov.justice.digital.service.metrics.StreamingMetricsCollector;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static uk.gov.justice.digital.service.WriteStatsService.WRITE_STATS_SCHEMA;
+
+@ExtendWith(MockitoExtension.class)
+class WriteStatsServiceTest {
+
+    private static final String WRITE_STATS_PATH = "s3://bucket/write_stats";
+    private static final String STRUCTURED_PATH = "s3://structured";
+    private static final String CURATED_PATH = "s3://curated";
+    private static final String structuredTablePath = STRUCTURED_PATH + "/source/table";
+
+    @Mock
+    private JobArguments arguments;
+    @Mock
+    private DataStorageService storage;
+    @Mock
+    private StreamingMetricsCollector metricsCollector;
+    @Mock
+    private SparkSession spark;
+    @Mock
+    private Dataset<Row> dataFrame;
+    @Captor
+    private ArgumentCaptor<List<Row>> rowsCaptor;
+
+    private WriteStatsService underTest;
+
+    @AfterEach
+    public void tearDown() {
+        if (underTest != null) underTest.stop();
+    }
+
+    @Test
+    public void shouldNotStartWhenDisabled() {
+        underTest = new WriteStatsService(arguments, storage, metricsCollector);
+
+        underTest.start(spark);
+
+        verifyNoInteractions(storage);
+    }
+
+    @Test
+    public void shouldListenForWriteStatsOnceStarted() {
+        givenStarted();
+
+        verify(storage, times(1)).setWriteStatsListener(any());
+    }
+
+    @Test
+    public void shouldAppendTheCollectedStatsInOneBatch() {
+        givenStarted();
+        when(spark.createDataFrame(rowsCaptor.capture(), eq(WRITE_STATS_SCHEMA))).thenReturn(dataFrame);
+
+        underTest.record(givenStats(structuredTablePath, 1L));
+        underTest.record(givenStats(CURATED_PATH + "/source/table", 2L));
+        underTest.flush();
+        underTest.flush();
+
+        verify(storage, times(1)).append(WRITE_STATS_PATH, dataFrame);
+        assertEquals(2, rowsCaptor.getValue().size());
+        assertEquals(structuredTablePath, rowsCaptor.getValue().get(0).getString(0));
+    }
+
+    @Test
+    public void shouldRecordTheStatsOfStructuredAndCuratedTablesAsMetrics() {
+        givenStarted();
+
+        underTest.record(givenStats(structuredTablePath, 1L));
+        underTest.record(givenStats(CURATED_PATH + "/source/table", 2L));
+
+        verify(metricsCollector, times(1)).record("StructuredRowsInserted", StandardUnit.Count, "source", "table", 10.0);
+        verify(metricsCollector, times(1)).record("StructuredFilesAdded", StandardUnit.Count, "source", "table", 1.0);
+        verify(metricsCollector, times(1)).record("StructuredWriteExecutionTime", StandardUnit.Milliseconds, "source", "table", 500.0);
+        verify(metricsCollector, times(1)).record("CuratedRowsInserted", StandardUnit.Count, "source", "table", 10.0);
+        // Metrics which the operation did not record are not sent
+        verify(metricsCollector, never()).record(eq("StructuredRowsDeleted"), any(), anyString(), anyString(), anyDouble());
+    }
+
+    @Test
+    public void shouldIgnoreTheStatsOfAppendingStats() {
+        givenStarted();
+
+        underTest.record(givenStats(WRITE_STATS_PATH, 1L));
+        underTest.flush();
+
+        verify(storage, never()).append(any(), any());
+        verifyNoInteractions(metricsCollector);
+    }
+
+    private void givenStarted() {
+        when(arguments.isDataStorageWriteStatsEnabled()).thenReturn(true);
+        when(arguments.getDataStorageWriteStatsPath()).thenReturn(WRITE_STATS_PATH);
+        when(arguments.getStructuredS3Path()).thenReturn(STRUCTURED_PATH);
+        when(arguments.getCuratedS3Path()).thenReturn(CURATED_PATH);
+        when(arguments.getDataStorageWriteStatsFlushIntervalSeconds()).thenReturn(300L);
+        underTest = new WriteStatsService(arguments, storage, metricsCollector);
+        underTest.start(spark);
+    }
+
+    private static WriteStats givenStats(String tablePath, long version) {
+        return new WriteStats(tablePath, version, new Timestamp(0L), "MERGE", 10L, 0L, null, 1L, 0L, 500L, 100L);
+    }
+}
@@ -0,0 +1,65 @@
+package uk.gov.justice.digital.service;
+
+import com.google.common.collect.ImmutableMap;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.RowFactory;
+import org.junit.jupiter.api.Test;
+import scala.collection.JavaConverters;
+
+import java.sql.Timestamp;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class WriteStatsTest {
+
+    private static final String tablePath = "s3://bucket/source/table";
+    private static final Timestamp timestamp = new Timestamp(1_700_000_000_000L);
+
+    @Test
+    public void shouldReadTheMetricsOfAMerge() {
+        WriteStats stats = WriteStats.fromCommit(tablePath, givenCommit(3L, "MERGE", ImmutableMap.<String, String>builder()
+                .put("numTargetRowsInserted", "5")
+                .put("numTargetRowsUpdated", "2")
+                .put("numTargetRowsDeleted", "1")
+                .put("numTargetFilesAdded", "3")
+                .put("numTargetFilesRemoved", "4")
+                .put("executionTimeMs", "1200")
+                .put("scanTimeMs", "300")
+                .build()));
+
+        assertEquals(new WriteStats(tablePath, 3L, timestamp, "MERGE", 5L, 2L, 1L, 3L, 4L, 1200L, 300L), stats);
+    }
+
+    @Test
+    public void shouldReadTheMetricsOfAnAppend() {
+        WriteStats stats = WriteStats.fromCommit(tablePath, givenCommit(1L, "WRITE", ImmutableMap.of(
+                "numFiles", "2",
+                "numOutputRows", "100",
+                "numOutputBytes", "2048"
+        )));
+
+        assertEquals(100L, stats.getRowsInserted());
+        assertEquals(2L, stats.getFilesAdded());
+        assertNull(stats.getRowsUpdated());
+        assertNull(stats.getExecutionTimeMs());
+    }
+
+    @Test
+    public void shouldReadTheMetricsOfADelete() {
+        WriteStats stats = WriteStats.fromCommit(tablePath, givenCommit(2L, "DELETE", ImmutableMap.of(
+                "numDeletedRows", "7",
+                "numAddedFiles", "1",
+                "numRemovedFiles", "2"
+        )));
+
+        assertEquals(7L, stats.getRowsDeleted());
+        assertEquals(1L, stats.getFilesAdded());
+        assertEquals(2L, stats.getFilesRemoved());
+    }
+
+    private static Row givenCommit(long version, String operation, Map<String, String> metrics) {
+        return RowFactory.create(version, timestamp, operation, JavaConverters.mapAsScalaMapConverter(metrics).asScala());
+    }
+}
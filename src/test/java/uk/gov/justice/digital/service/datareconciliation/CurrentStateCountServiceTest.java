@@ -15,6 +15,7 @@ import uk.gov.justice.digital.config.JobArguments;
 import uk.gov.justice.digital.datahub.model.SourceReference;
 import uk.gov.justice.digital.exception.OperationalDataStoreException;
 import uk.gov.justice.digital.exception.ReconciliationDataSourceException;
+import uk.gov.justice.digital.service.ChangeLogService;
 import uk.gov.justice.digital.service.datareconciliation.model.CurrentStateTableCount;
 import uk.gov.justice.digital.service.datareconciliation.model.CurrentStateTotalCounts;
 import uk.gov.justice.digital.service.operationaldatastore.OperationalDataStoreService;
@@ -24,6 +25,7 @@ import java.util.Arrays;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.Mockito.when;
+import static uk.gov.justice.digital.test.MinimalTestData.PRIMARY_KEY;
 
 @ExtendWith(MockitoExtension.class)
 class CurrentStateCountServiceTest {
@@ -51,6 +53,10 @@ class CurrentStateCountServiceTest {
     @Mock
     private Dataset<Row> curated2;
     @Mock
+    private Dataset<Row> currentCurated1;
+    @Mock
+    private ChangeLogService changeLogService;
+    @Mock
     private DeltaAnalysisException deltaAnalysisException;
 
     @InjectMocks
@@ -140,6 +146,21 @@ class CurrentStateCountServiceTest {
         assertEquals(odsCount, result.getOperationalDataStoreCount());
     }
 
+    @Test
+    void shouldCountTheCurrentStateOfAMergeOnReadCuratedTable() {
+        when(reconciliationDataSourceService.getTableRowCount("table")).thenReturn(4L);
+        when(structured1.count()).thenReturn(3L);
+        when(sourceReference1.getPrimaryKey()).thenReturn(PRIMARY_KEY);
+        when(changeLogService.hasChangeLog(sparkSession, "s3://curated/source/table")).thenReturn(true);
+        when(changeLogService.applyChanges(sparkSession, curated1, "s3://curated/source/table", PRIMARY_KEY)).thenReturn(currentCurated1);
+        when(currentCurated1.count()).thenReturn(3L);
+        when(operationalDataStoreService.isEnabled()).thenReturn(false);
+
+        CurrentStateTableCount result = underTest.currentStateCountForTable(sparkSession, sourceReference1);
+
+        assertEquals(3L, result.getCuratedCount());
+    }
+
     @Test
     void shouldGetCurrentStateCountForTableWhenOperationalDataStoreIsDisabled() {
         long oracleCount = 4L;
@@ -0,0 +1,68 @@
+package uk.gov.justice.digital.service.metrics;
+
+import com.amazonaws.services.cloudwatch.model.MetricDatum;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import uk.gov.justice.digital.client.cloudwatch.CloudwatchClient;
+import uk.gov.justice.digital.config.JobArguments;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static uk.gov.justice.digital.service.metrics.CloudwatchStreamingMetricsSink.MAX_METRICS_PER_REQUEST;
+
+@ExtendWith(MockitoExtension.class)
+class CloudwatchStreamingMetricsSinkTest {
+
+    private static final String NAMESPACE = "SomeNamespace";
+
+    @Mock
+    private JobArguments jobArguments;
+    @Mock
+    private CloudwatchClient cloudwatchClient;
+    @Captor
+    private ArgumentCaptor<Collection<MetricDatum>> metricDatumCaptor;
+
+    private CloudwatchStreamingMetricsSink underTest;
+
+    @BeforeEach
+    void setUp() {
+        when(jobArguments.getCdcCloudwatchMetricsNamespace()).thenReturn(NAMESPACE);
+        underTest = new CloudwatchStreamingMetricsSink(jobArguments, cloudwatchClient);
+    }
+
+    @Test
+    void publishShouldSplitMetricsIntoRequestsOfAtMostTheCloudwatchLimit() {
+        List<MetricDatum> metrics = new ArrayList<>();
+        for (int i = 0; i < MAX_METRICS_PER_REQUEST + 1; i++) {
+            metrics.add(new MetricDatum().withMetricName("metric" + i));
+        }
+
+        underTest.publish(metrics);
+
+        verify(cloudwatchClient, times(2)).putMetrics(eq(NAMESPACE), metricDatumCaptor.capture());
+        List<Collection<MetricDatum>> requests = metricDatumCaptor.getAllValues();
+        assertEquals(MAX_METRICS_PER_REQUEST, requests.get(0).size());
+        assertEquals(1, requests.get(1).size());
+    }
+
+    @Test
+    void publishShouldNotCallCloudwatchForNoMetrics() {
+        underTest.publish(Collections.emptyList());
+
+        verifyNoInteractions(cloudwatchClient);
+    }
+}
@@ -0,0 +1,126 @@
+package uk.gov.justice.digital.service.metrics;
+
+import com.amazonaws.services.cloudwatch.model.Dimension;
+import com.amazonaws.services.cloudwatch.model.MetricDatum;
+import com.amazonaws.services.cloudwatch.model.StatisticSet;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import uk.gov.justice.digital.config.JobArguments;
+import uk.gov.justice.digital.test.InMemoryStreamingMetricsSink;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.amazonaws.services.cloudwatch.model.StandardUnit.Count;
+import static com.amazonaws.services.cloudwatch.model.StandardUnit.Seconds;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static uk.gov.justice.digital.service.metrics.StreamingMetricsCollector.BACKLOG;
+import static uk.gov.justice.digital.service.metrics.StreamingMetricsCollector.INPUT_ROWS;
+
+@ExtendWith(MockitoExtension.class)
+class StreamingMetricsCollectorTest {
+
+    @Mock
+    private JobArguments arguments;
+
+    private final InMemoryStreamingMetricsSink sink = new InMemoryStreamingMetricsSink();
+
+    @Test
+    void shouldAggregateValuesPerMetricAndTableIntoOneDatumPerFlush() {
+        StreamingMetricsCollector underTest = givenAnEnabledCollector();
+
+        underTest.record(INPUT_ROWS, Count, "source", "table1", 10);
+        underTest.record(INPUT_ROWS, Count, "source", "table1", 30);
+        underTest.record(INPUT_ROWS, Count, "source", "table2", 5);
+        underTest.record(BACKLOG, Seconds, "source", "table1", 120);
+        underTest.flush();
+
+        assertEquals(Collections.singletonList(3), sink.getPublishSizes());
+        List<MetricDatum> table1InputRows = sink.getPublished(INPUT_ROWS, "source", "table1");
+        assertEquals(1, table1InputRows.size());
+        MetricDatum datum = table1InputRows.get(0);
+        assertEquals(Count.toString(), datum.getUnit());
+        assertEquals(
+                new StatisticSet().withSampleCount(2.0).withSum(40.0).withMinimum(10.0).withMaximum(30.0),
+                datum.getStatisticValues()
+        );
+        assertTrue(datum.getDimensions().containsAll(Arrays.asList(
+                new Dimension().withName("Source").withValue("source"),
+                new Dimension().withName("Table").withValue("table1")
+        )));
+    }
+
+    @Test
+    void shouldOnlyPublishValuesRecordedSinceTheLastFlush() {
+        StreamingMetricsCollector underTest = givenAnEnabledCollector();
+
+        underTest.record(INPUT_ROWS, Count, "source", "table1", 10);
+        underTest.flush();
+        underTest.flush();
+        underTest.record(INPUT_ROWS, Count, "source", "table1", 20);
+        underTest.flush();
+
+        assertEquals(Arrays.asList(1, 1), sink.getPublishSizes());
+        assertEquals(20.0, sink.getPublished(INPUT_ROWS, "source", "table1").get(1).getStatisticValues().getSum());
+    }
+
+    @Test
+    void shouldIgnoreValuesCloudwatchWouldReject() {
+        StreamingMetricsCollector underTest = givenAnEnabledCollector();
+
+        underTest.record(INPUT_ROWS, Count, "source", "table1", Double.NaN);
+        underTest.record(INPUT_ROWS, Count, "source", "table1", Double.POSITIVE_INFINITY);
+        underTest.flush();
+
+        assertTrue(sink.getPublished().isEmpty());
+    }
+
+    @Test
+    void shouldNotRecordWhenDisabled() {
+        StreamingMetricsCollector underTest = new StreamingMetricsCollector(arguments, sink);
+
+        underTest.record(INPUT_ROWS, Count, "source", "table1", 10);
+        underTest.flush();
+
+        assertTrue(sink.getPublished().isEmpty());
+    }
+
+    @Test
+    void shouldNotThrowWhenPublishingFails() {
+        StreamingMetricsSink failingSink = mock(StreamingMetricsSink.class);
+        doThrow(new RuntimeException("CloudWatch unavailable")).when(failingSink).publish(any());
+        when(arguments.isCdcCloudwatchMetricsEnabled()).thenReturn(true);
+        when(arguments.getCdcCloudwatchMetricsFlushIntervalSeconds()).thenReturn(60L);
+        StreamingMetricsCollector underTest = new StreamingMetricsCollector(arguments, failingSink);
+
+        underTest.record(INPUT_ROWS, Count, "source", "table1", 10);
+
+        assertDoesNotThrow(underTest::flush);
+    }
+
+    @Test
+    void stopShouldFlushRemainingValues() {
+        StreamingMetricsCollector underTest = givenAnEnabledCollector();
+        underTest.start();
+
+        underTest.record(INPUT_ROWS, Count, "source", "table1", 10);
+        underTest.stop();
+
+        assertEquals(1, sink.getPublished(INPUT_ROWS, "source", "table1").size());
+    }
+
+    private StreamingMetricsCollector givenAnEnabledCollector() {
+        when(arguments.isCdcCloudwatchMetricsEnabled()).thenReturn(true);
+        when(arguments.getCdcCloudwatchMetricsFlushIntervalSeconds()).thenReturn(60L);
+        return new StreamingMetricsCollector(arguments, sink);
+    }
+}
@@ -0,0 +1,45 @@
+package uk.gov.justice.digital.test;
+
+import com.amazonaws.services.cloudwatch.model.Dimension;
+import com.amazonaws.services.cloudwatch.model.MetricDatum;
+import uk.gov.justice.digital.service.metrics.StreamingMetricsSink;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Keeps published streaming metrics in memory so that tests can assert on them instead of publishing to CloudWatch.
+ */
+public class InMemoryStreamingMetricsSink implements StreamingMetricsSink {
+
+    private final List<MetricDatum> published = new CopyOnWriteArrayList<>();
+    private final List<Integer> publishSizes = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void publish(Collection<MetricDatum> metricData) {
+        published.addAll(metricData);
+        publishSizes.add(metricData.size());
+    }
+
+    public List<MetricDatum> getPublished() {
+        return new ArrayList<>(published);
+    }
+
+    public List<Integer> getPublishSizes() {
+        return new ArrayList<>(publishSizes);
+    }
+
+    public List<MetricDatum> getPublished(String metricName, String source, String table) {
+        List<MetricDatum> matching = new ArrayList<>();
+        for (MetricDatum datum : published) {
+            if (datum.getMetricName().equals(metricName) &&
+                    datum.getDimensions().contains(new Dimension().withName("Source").withValue(source)) &&
+                    datum.getDimensions().contains(new Dimension().withName("Table").withValue(table))) {
+                matching.add(datum);
+            }
+        }
+        return matching;
+    }
+}
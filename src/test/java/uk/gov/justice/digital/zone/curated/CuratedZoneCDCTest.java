@@ -5,18 +5,28 @@ import org.apache.spark.sql.Row;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import uk.gov.justice.digital.config.BaseSparkTest;
 import uk.gov.justice.digital.config.JobArguments;
 import uk.gov.justice.digital.datahub.model.SourceReference;
 import uk.gov.justice.digital.exception.DataStorageRetriesExhaustedException;
+import uk.gov.justice.digital.service.ChangeLogService;
 import uk.gov.justice.digital.service.DataStorageService;
 import uk.gov.justice.digital.service.ViolationService;
+import uk.gov.justice.digital.service.WriteStats;
+import uk.gov.justice.digital.zone.ZoneWriteResult;
 
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -35,6 +45,8 @@ class CuratedZoneCDCTest extends BaseSparkTest {
     @Mock
     private DataStorageService storage;
     @Mock
+    private ChangeLogService changeLogService;
+    @Mock
     private SourceReference sourceReference;
     @Mock
     private static Dataset<Row> df;
@@ -46,15 +58,25 @@ class CuratedZoneCDCTest extends BaseSparkTest {
         when(sourceReference.getPrimaryKey()).thenReturn(PRIMARY_KEY);
         when(sourceReference.getSource()).thenReturn("source");
         when(sourceReference.getTable()).thenReturn("table");
-        when(df.count()).thenReturn(1L);
         when(arguments.getCuratedS3Path()).thenReturn(curatedRootPath);
-        underTest = new CuratedZoneCDC(arguments, violationService, storage);
+        underTest = new CuratedZoneCDC(arguments, violationService, storage, changeLogService);
     }
 
     @Test
     public void shouldMergeDataIntoTable() {
         underTest.process(spark, df, sourceReference);
-        verify(storage, times(1)).mergeRecords(any(), eq(curatedTablePath), any(), eq(PRIMARY_KEY));
+        verify(storage, times(1)).mergeRecords(any(), eq(curatedTablePath), any(), eq(PRIMARY_KEY), any());
+    }
+
+    @Test
+    public void shouldReturnTheWriteStatsOfTheMerge() {
+        WriteStats writeStats = new WriteStats(curatedTablePath, 1L, null, "MERGE", 1L, 0L, 0L, 1L, 0L, 100L, 10L);
+        when(storage.mergeRecords(any(), any(), any(), any(), any())).thenReturn(Optional.of(writeStats));
+
+        ZoneWriteResult result = underTest.write(spark, df, sourceReference);
+
+        assertTrue(result.isCommitted());
+        assertEquals(Optional.of(writeStats), result.getWriteStats());
     }
 
     @Test
@@ -63,10 +85,30 @@ class CuratedZoneCDCTest extends BaseSparkTest {
         verify(storage, times(1)).updateDeltaManifestForTable(any(), eq(curatedTablePath));
     }
 
+    @Test
+    public void shouldAppendToTheChangeLogRatherThanMergeForMergeOnReadTables() {
+        when(changeLogService.isMergeOnRead("source", "table")).thenReturn(true);
+
+        underTest.process(spark, df, sourceReference);
+
+        verify(changeLogService, times(1)).appendChanges(any(), eq(curatedTablePath), any(), eq(PRIMARY_KEY), any());
+        verify(storage, never()).mergeRecords(any(), any(), any(), any(), any());
+        verify(storage, never()).updateDeltaManifestForTable(any(), any());
+    }
+
+    @Test
+    public void shouldCompactLeftoverChangesBeforeMergingIntoTablesWhichAreNotMergeOnRead() {
+        underTest.process(spark, df, sourceReference);
+
+        InOrder inOrder = inOrder(changeLogService, storage);
+        inOrder.verify(changeLogService).compactLeftoverChanges(any(), eq(curatedTablePath), eq(PRIMARY_KEY), any());
+        inOrder.verify(storage).mergeRecords(any(), eq(curatedTablePath), any(), eq(PRIMARY_KEY), any());
+    }
+
     @Test
     public void shouldHandleRetriesExhausted() {
         DataStorageRetriesExhaustedException thrown = new DataStorageRetriesExhaustedException(new Exception());
-        doThrow(thrown).when(storage).mergeRecords(any(), any(), any(), any());
+        doThrow(thrown).when(storage).mergeRecords(any(), any(), any(), any(), any());
 
         underTest.process(spark, df, sourceReference);
 
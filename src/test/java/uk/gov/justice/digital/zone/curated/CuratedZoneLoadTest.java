@@ -11,11 +11,15 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import uk.gov.justice.digital.config.JobArguments;
 import uk.gov.justice.digital.datahub.model.SourceReference;
 import uk.gov.justice.digital.exception.DataStorageRetriesExhaustedException;
+import uk.gov.justice.digital.service.ChangeLogService;
 import uk.gov.justice.digital.service.DataStorageService;
 import uk.gov.justice.digital.service.ViolationService;
 
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.longThat;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -37,6 +41,8 @@ class CuratedZoneLoadTest {
     private DataStorageService storage;
     @Mock
     private ViolationService violationService;
+    @Mock
+    private ChangeLogService changeLogService;
 
     private CuratedZoneLoad underTest;
 
@@ -47,14 +53,23 @@ class CuratedZoneLoadTest {
         when(sourceReference.getTable()).thenReturn("table");
         when(sourceReference.getPrimaryKey()).thenReturn(PRIMARY_KEY);
 
-        underTest = new CuratedZoneLoad(arguments, storage, violationService);
+        underTest = new CuratedZoneLoad(arguments, storage, violationService, changeLogService);
     }
 
     @Test
     public void shouldAppendDistinctRecordsToTable() {
         underTest.process(spark, df, sourceReference);
 
-        verify(storage, times(1)).appendDistinct("s3://curated/path/source/table", df, PRIMARY_KEY);
+        verify(storage, times(1)).appendDistinct(eq("s3://curated/path/source/table"), eq(df), eq(PRIMARY_KEY), any());
+    }
+
+    @Test
+    public void shouldDiscardChangesLoggedBeforeTheLoad() {
+        long beforeLoad = System.currentTimeMillis();
+
+        underTest.process(spark, df, sourceReference);
+
+        verify(changeLogService, times(1)).discardChangesAppendedBefore(eq(spark), eq("s3://curated/path/source/table"), longThat(time -> time >= beforeLoad));
     }
 
     @Test
@@ -69,7 +84,7 @@ class CuratedZoneLoadTest {
         DataStorageRetriesExhaustedException thrown = new DataStorageRetriesExhaustedException(new Exception());
         doThrow(thrown)
                 .when(storage)
-                .appendDistinct(any(), any(), any());
+                .appendDistinct(any(), any(), any(), any());
 
         underTest.process(spark, df, sourceReference);
 
@@ -77,4 +92,15 @@ class CuratedZoneLoadTest {
                 .handleRetriesExhausted(any(), eq(df), eq("source"), eq("table"), eq(thrown), eq(ViolationService.ZoneName.CURATED_LOAD));
     }
 
+    @Test
+    public void shouldReportWhetherTheAppendCommitted() {
+        assertTrue(underTest.write(spark, df, sourceReference).isCommitted());
+
+        doThrow(new DataStorageRetriesExhaustedException(new Exception()))
+                .when(storage)
+                .appendDistinct(any(), any(), any(), any());
+
+        assertFalse(underTest.write(spark, df, sourceReference).isCommitted());
+    }
+
 }
\ No newline at end of file
@@ -13,13 +13,21 @@ import uk.gov.justice.digital.datahub.model.SourceReference;
 import uk.gov.justice.digital.exception.DataStorageRetriesExhaustedException;
 import uk.gov.justice.digital.service.DataStorageService;
 import uk.gov.justice.digital.service.ViolationService;
+import uk.gov.justice.digital.service.WriteStats;
 
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static uk.gov.justice.digital.common.StreamingQuery.RELAXED_MANIFEST_UPDATES_PROPERTY;
 import static uk.gov.justice.digital.test.MinimalTestData.PRIMARY_KEY;
 
 @ExtendWith(MockitoExtension.class)
@@ -46,7 +54,6 @@ class StructuredZoneCDCTest extends BaseSparkTest {
         when(sourceReference.getPrimaryKey()).thenReturn(PRIMARY_KEY);
         when(sourceReference.getSource()).thenReturn("source");
         when(sourceReference.getTable()).thenReturn("table");
-        when(df.count()).thenReturn(1L);
         when(arguments.getStructuredS3Path()).thenReturn(structuredRootPath);
         underTest = new StructuredZoneCDC(arguments, violationService, storage);
     }
@@ -54,13 +61,30 @@ class StructuredZoneCDCTest extends BaseSparkTest {
     @Test
     public void shouldMergeDataIntoTable() {
         underTest.process(spark, df, sourceReference);
-        verify(storage, times(1)).mergeRecords(any(), eq(structuredTablePath), any(), eq(PRIMARY_KEY));
+        verify(storage, times(1)).mergeRecords(any(), eq(structuredTablePath), any(), eq(PRIMARY_KEY), any());
+    }
+
+    @Test
+    public void shouldUpdateTheManifestAfterMerging() {
+        underTest.process(spark, df, sourceReference);
+        verify(storage, times(1)).updateDeltaManifestForTable(any(), eq(structuredTablePath));
+    }
+
+    @Test
+    public void shouldNotUpdateTheManifestWhenManifestUpdatesAreRelaxed() {
+        spark.sparkContext().setLocalProperty(RELAXED_MANIFEST_UPDATES_PROPERTY, "true");
+        try {
+            underTest.process(spark, df, sourceReference);
+        } finally {
+            spark.sparkContext().setLocalProperty(RELAXED_MANIFEST_UPDATES_PROPERTY, null);
+        }
+        verify(storage, never()).updateDeltaManifestForTable(any(), any());
     }
 
     @Test
     public void shouldHandleRetriesExhausted() {
         DataStorageRetriesExhaustedException thrown = new DataStorageRetriesExhaustedException(new Exception());
-        doThrow(thrown).when(storage).mergeRecords(any(), any(), any(), any());
+        doThrow(thrown).when(storage).mergeRecords(any(), any(), any(), any(), any());
 
         underTest.process(spark, df, sourceReference);
 
@@ -69,5 +93,22 @@ class StructuredZoneCDCTest extends BaseSparkTest {
         );
     }
 
+    @Test
+    public void shouldReportWhetherTheMergeCommitted() {
+        assertTrue(underTest.write(spark, df, sourceReference).isCommitted());
+
+        doThrow(new DataStorageRetriesExhaustedException(new Exception())).when(storage).mergeRecords(any(), any(), any(), any(), any());
+
+        assertFalse(underTest.write(spark, df, sourceReference).isCommitted());
+    }
+
+    @Test
+    public void shouldReturnTheWriteStatsOfTheMerge() {
+        WriteStats writeStats = new WriteStats(structuredTablePath, 1L, null, "MERGE", 1L, 0L, 0L, 1L, 0L, 100L, 10L);
+        when(storage.mergeRecords(any(), any(), any(), any(), any())).thenReturn(Optional.of(writeStats));
+
+        assertEquals(Optional.of(writeStats), underTest.write(spark, df, sourceReference).getWriteStats());
+    }
+
 
 }
\ No newline at end of file
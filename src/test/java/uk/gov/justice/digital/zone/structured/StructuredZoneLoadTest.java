@@ -62,7 +62,7 @@ class StructuredZoneLoadTest extends BaseSparkTest {
     public void shouldAppendDistinctRecordsToTable() {
         underTest.process(spark, df, sourceReference);
 
-        verify(storage, times(1)).appendDistinct("s3://structured/path/source/table", df, PRIMARY_KEY);
+        verify(storage, times(1)).appendDistinct(eq("s3://structured/path/source/table"), eq(df), eq(PRIMARY_KEY), any());
     }
 
     @Test
@@ -80,7 +80,7 @@ class StructuredZoneLoadTest extends BaseSparkTest {
         DataStorageRetriesExhaustedException thrown = new DataStorageRetriesExhaustedException(new Exception());
         doThrow(thrown)
                 .when(storage)
-                .appendDistinct(any(), any(), any());
+                .appendDistinct(any(), any(), any(), any());
 
         Dataset<Row> result = underTest.process(spark, df, sourceReference);
 